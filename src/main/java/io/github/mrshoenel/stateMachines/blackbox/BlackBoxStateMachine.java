@@ -2,18 +2,29 @@ package io.github.mrshoenel.stateMachines.blackbox;
 
 import io.github.mrshoenel.stateMachines.StateMachineArtifact;
 import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
 import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
 import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
 import io.github.mrshoenel.stateMachines.state.BaseState;
 import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.HierarchyIndex;
 import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.BaseTransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
+import io.github.mrshoenel.stateMachines.transition.PrimitiveTransitionArgument;
 import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.TransitionResult;
 import org.springframework.lang.NonNull;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 
 /**
@@ -38,9 +49,19 @@ import java.util.stream.Collectors;
  * @param <T> A type sub-classing (or being) {@link BaseStateMachine}.
  */
 public class BlackBoxStateMachine<T extends BaseStateMachine> implements StateMachineArtifact {
+    /**
+     * Used for arguments that had no value before {@link #transition(String, Map)}.
+     */
+    private static final Object NO_VALUE = new Object();
 
     private final T machine;
 
+    /**
+     * Routes transitions through the hierarchy of the machine; rebuilt lazily whenever
+     * the hierarchy changes.
+     */
+    private HierarchyIndex index;
+
     /**
      * Creates a new {@link BlackBoxStateMachine} with the given name.
      *
@@ -61,7 +82,9 @@ public class BlackBoxStateMachine<T extends BaseStateMachine> implements StateMa
      * current state will be set to itself after the transition. This method re-
      * quires that all states are belonging to another machine or that they are
      * machines as well (i.e. no orphaned states). The machine of the 'to'-state
-     * of the transition will be made to point at it afterwards by the BlackBox.
+     * of the transition will be made to point at it afterwards by the BlackBox,
+     * as will all machines between it and the least common ancestor of the 'from'-
+     * and 'to'-state (see {@link HierarchyIndex.Route}).
      * Note that all transitions require the usage of {@link BaseState} or more
      * derived classes.
      *
@@ -78,33 +101,190 @@ public class BlackBoxStateMachine<T extends BaseStateMachine> implements StateMa
         throws IllegalTransitionException, NoSuchTransitionException, NoSuchStateException
     {
         Objects.requireNonNull(name);
-        // Note that BlackBoxTransitions always guarantee usage of BaseState
-        final var trs = this.getTransitions();
-        if (!trs.containsKey(name)) {
+        // Only look up and evaluate the one transition in question:
+        final var tr = this.machine.getCurrentStateDeep().getAllDefinedTransitions().get(name);
+        if (tr == null || !GuardCache.isAllowed(tr)) {
             throw new NoSuchTransitionException("No transition with name " + name);
         }
 
-        final var tr = trs.get(name).getTransition();
-        final var to = (BaseState) tr.getToState();
+        this.execute(tr);
 
-        tr.transition();
+        return this;
+    }
 
-        if (to instanceof BaseStateMachine) {
-            ((BaseStateMachine) to).setCurrentState(to);
+    /**
+     * Executes a sequence of transitions by their names, in order. Each step has the
+     * same effect as calling {@link #transition(String)}, including the calls of the
+     * states' enter- and leave-hooks. Unlike that method, this method does not throw
+     * if a step fails, but stops and returns its index. All steps before it have been
+     * executed. Steps are executed using {@link #tryTransition(String)}, so that
+     * failing steps do not throw and catch an exception.
+     *
+     * The names are validated before the first step is executed. As this machine runs
+     * against the mutable authoring graph, each step still resolves its transition by
+     * name on the then-current state. For precomputed dispatch, compile the machine and
+     * use {@link io.github.mrshoenel.stateMachines.compiled.StateMachineInstance#applyAll(int[])}.
+     *
+     * @param names The names of the transitions to execute, in order.
+     * @return the index of the first step that failed, or -1 if all steps succeeded.
+     * @exception NullPointerException if any of the names is null; then, no step is executed.
+     */
+    public int applyAll(@NonNull final List<String> names) {
+        final var steps = Objects.requireNonNull(names).toArray(new String[0]);
+        for (final var name : steps) {
+            Objects.requireNonNull(name);
+        }
+        for (int i = 0; i < steps.length; i++) {
+            if (this.tryTransition(steps[i]) != TransitionResult.OK) {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        final var machine = this.machine.getDefinedStates().contains(to) ?
-            this.machine :
-            // Else: the 'to'-state is a state of/or a nested state-machine
-            to.getBelongsToMachine();
+    /**
+     * Like {@link #transition(String)}, but signals a failure by returning it, rather
+     * than throwing an exception. Unlike {@link #transition(String)}, a transition to
+     * an orphan state is not executed.
+     *
+     * @param name the name of the transiton to execute.
+     * @return {@link TransitionResult} {@link TransitionResult#OK} if the transition was
+     * executed, {@link TransitionResult#NO_SUCH_TRANSITION} if the current state has no
+     * transition with the given name, {@link TransitionResult#ORPHAN_STATE} if its 'to'-
+     * state is an orphan, or the result of {@link Transition#tryTransitionWith(ArgumentFrame)}.
+     */
+    public TransitionResult tryTransition(@NonNull final String name) {
+        Objects.requireNonNull(name);
+        final var tr = this.machine.getCurrentStateDeep().getAllDefinedTransitions().get(name);
+        if (tr == null) {
+            return TransitionResult.NO_SUCH_TRANSITION;
+        }
+
+        final var route = this.route(tr);
+        if (route != null) {
+            final TransitionResult result;
+            try (final var frame = ArgumentFrame.acquire(tr)) {
+                result = route.tryTransition(tr, frame);
+            }
+            if (result == TransitionResult.OK) {
+                this.onTransition(tr);
+            }
+            return result;
+        }
 
+        final var to = toStateOf(tr);
+        final var machine = this.machineOf(to);
         if (machine == null) {
-            throw new IllegalTransitionException("Orphan state: " + to.getName());
+            return TransitionResult.ORPHAN_STATE;
+        }
+        try (final var frame = ArgumentFrame.acquire(tr)) {
+            final var result = tr.tryTransitionWith(frame);
+            if (result != TransitionResult.OK) {
+                return result;
+            }
         }
 
-        machine.setCurrentState(to);
+        try {
+            this.point(to, machine);
+        } catch (NoSuchStateException nssEx) {
+            throw new Error(nssEx); // cannot happen, machines define the states they own
+        }
+        this.onTransition(tr);
+        return TransitionResult.OK;
+    }
 
-        return this;
+    /**
+     * Sets the values of the given arguments of a transition and then executes it
+     * using {@link #transition(String)}. The values are set before the transition's
+     * guard is evaluated, so that the guard may take them into account. All values
+     * are validated before any of them is set, and once the transition was executed
+     * or rejected, each argument is reset to the value it had before (or unset, if
+     * it had none), so that the values only apply to this one execution.
+     *
+     * @param name the name of the transiton to execute.
+     * @param arguments The values of the transition's arguments, keyed by name.
+     * @return {@link BlackBoxStateMachine} this for chaining
+     * @throws IllegalTransitionException if the 'to'-state is not a machine or a
+     * state that does not belong to a machine (an orphan).
+     * @throws NoSuchTransitionException If the transition identified by the given
+     * name cannot be found.
+     * @throws NoSuchStateException if the 'to'-state is a {@link BaseStateMachine}
+     * but cannot made to point at itself.
+     * @throws NoSuchArgumentException if the transition does not have one of the
+     * given arguments.
+     * @exception IllegalArgumentException if a value is not of its argument's type.
+     */
+    @SuppressWarnings("unchecked")
+    public BlackBoxStateMachine<T> transition(@NonNull final String name, @NonNull final Map<String, ?> arguments)
+        throws IllegalTransitionException, NoSuchTransitionException, NoSuchStateException, NoSuchArgumentException
+    {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(arguments);
+        if (!arguments.isEmpty()) {
+            final var tr = this.machine.getCurrentStateDeep().getAllDefinedTransitions().get(name);
+            if (tr == null) {
+                throw new NoSuchTransitionException("No transition with name " + name);
+            }
+
+            final var args = tr.getTransitionArguments();
+            final var targets = new ArrayList<TransitionArgument<Object>>(arguments.size());
+            for (final var entry : arguments.entrySet()) {
+                final var arg = (TransitionArgument<Object>) args.get(entry.getKey());
+                if (arg == null) {
+                    throw new NoSuchArgumentException("There is no argument with the name '" + entry.getKey() + "'.");
+                }
+                if (entry.getValue() == null ? arg instanceof PrimitiveTransitionArgument :
+                    !arg.getType().isInstance(entry.getValue()))
+                {
+                    throw new IllegalArgumentException("Argument '" + arg.getName() +
+                        "' requires a value of type " + arg.getType().getSimpleName());
+                }
+                targets.add(arg);
+            }
+
+            final var previous = new Object[targets.size()];
+            for (int i = 0; i < previous.length; i++) {
+                previous[i] = valueOf(targets.get(i));
+            }
+            try {
+                int i = 0;
+                for (final var value : arguments.values()) {
+                    targets.get(i++).setValue(value);
+                }
+                return this.transition(name);
+            } finally {
+                for (int i = 0; i < previous.length; i++) {
+                    restore(targets.get(i), previous[i]);
+                }
+            }
+        }
+
+        return this.transition(name);
+    }
+
+    /**
+     * @return the value of the argument, or {@link #NO_VALUE} if it has none.
+     */
+    private static Object valueOf(final TransitionArgument<Object> argument) {
+        try {
+            return argument.hasValue() ? argument.getValue() : NO_VALUE;
+        } catch (NoValueSetException nvsEx) {
+            throw new Error(nvsEx); // cannot happen, hasValue() was checked
+        }
+    }
+
+    /**
+     * Sets the argument to a value obtained using {@link #valueOf(TransitionArgument)}.
+     * Arguments that had no value are unset, if they support it, or set to null.
+     */
+    private static void restore(final TransitionArgument<Object> argument, final Object value) {
+        if (value != NO_VALUE) {
+            argument.setValue(value);
+        } else if (argument instanceof BaseTransitionArgument) {
+            ((BaseTransitionArgument<Object>) argument).unsetValue();
+        } else {
+            argument.setValue(null);
+        }
     }
 
     /**
@@ -126,19 +306,104 @@ public class BlackBoxStateMachine<T extends BaseStateMachine> implements StateMa
         return this.transition(Objects.requireNonNull(transition).getName());
     }
 
+    /**
+     * Executes the given transition of the current (deep) state and makes the
+     * machine of its 'to'-state point at it. Transitions within the hierarchy
+     * of the machine follow their {@link HierarchyIndex.Route}, which makes the
+     * machines point at the entered states without looking them up in their
+     * defined states.
+     */
+    private void execute(final Transition tr) throws IllegalTransitionException, NoSuchStateException {
+        final var route = this.route(tr);
+        if (route != null) {
+            route.transition(tr);
+            this.onTransition(tr);
+            return;
+        }
+
+        final var to = toStateOf(tr);
+
+        tr.transition();
+
+        final var machine = this.machineOf(to);
+        if (machine == null) {
+            throw new IllegalTransitionException("Orphan state: " + to.getName());
+        }
+
+        this.point(to, machine);
+        this.onTransition(tr);
+    }
+
+    /**
+     * @return the route of the given transition, or null if its 'from'- or 'to'-state
+     * is not part of the hierarchy of the machine.
+     */
+    private HierarchyIndex.Route route(final Transition tr) {
+        var index = this.index;
+        if (index == null || !index.isCurrent()) {
+            this.index = index = HierarchyIndex.of(this.machine);
+        }
+        return index.route(tr);
+    }
+
+    /**
+     * @return the machine that shall point at the given 'to'-state, or null if it is an orphan.
+     */
+    private BaseStateMachine machineOf(final BaseState to) {
+        return this.machine.getDefinedStates().contains(to) ?
+            this.machine :
+            // Else: the 'to'-state is a state of/or a nested state-machine
+            to.getBelongsToMachine();
+    }
+
+    /**
+     * Makes the given machine point at the entered state. If that is a machine, it
+     * points at itself.
+     */
+    private void point(final BaseState to, final BaseStateMachine machine) throws NoSuchStateException {
+        if (to instanceof BaseStateMachine) {
+            ((BaseStateMachine) to).setCurrentState(to);
+        }
+        machine.setCurrentState(to);
+    }
+
+    /**
+     * Called after a transition was executed successfully by this black box, and the
+     * machines point at its 'to'-state. Subclasses may override this method, e.g., to
+     * record the transition. The default implementation does nothing.
+     *
+     * @param transition The transition that was executed. Its arguments still hold
+     *                   the values it was executed with.
+     */
+    protected void onTransition(@NonNull final Transition transition) {
+    }
+
     /**
      * Get a map of all currently available transitions. These depend on the current
      * latent underlying state. Note that for every call to this method, a new instance
      * of a {@link Map} containing new instances of {@link BlackBoxTransition}s is
-     * returned.
+     * returned. These are equal to the previous instances for the same underlying
+     * {@link Transition}.
      *
      * @return {@link Map}
      */
     public Map<String, BlackBoxTransition> getTransitions() {
-        return Collections.unmodifiableMap(this.machine.getCurrentStateDeep().getTransitions().entrySet()
-            .stream().collect(Collectors.toMap(
-                Map.Entry::getKey,
-                kv -> new BlackBoxTransition(kv.getValue())
-            )));
+        final var transitions = new HashMap<String, BlackBoxTransition>();
+        this.machine.getCurrentStateDeep().forEachAllowedTransition(
+            tr -> transitions.put(tr.getName(), new BlackBoxTransition(tr)));
+        return Collections.unmodifiableMap(transitions);
+    }
+
+    /**
+     * Returns the 'to'-state of a transition, which, like its 'from'-state, must be a
+     * {@link BaseState}, as is required for {@link BlackBoxTransition}s.
+     *
+     * @exception IllegalArgumentException if either state is not a {@link BaseState}.
+     */
+    private static BaseState toStateOf(final Transition transition) {
+        if (!(transition.getFromState() instanceof BaseState) || !(transition.getToState() instanceof BaseState)) {
+            throw new IllegalArgumentException("From- and/or To-state is not of type BaseState.");
+        }
+        return (BaseState) transition.getToState();
     }
 }
@@ -2,6 +2,7 @@ package io.github.mrshoenel.stateMachines.blackbox;
 
 import io.github.mrshoenel.stateMachines.StateMachineArtifact;
 import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
 import io.github.mrshoenel.stateMachines.transition.Transition;
 import io.github.mrshoenel.stateMachines.transition.TransitionArgument;
 import org.springframework.lang.NonNull;
@@ -69,12 +70,13 @@ public class BlackBoxTransition implements StateMachineArtifact {
     }
 
     /**
-     * Returns the wrapped transition's value for {@link Transition#isAllowed()}.
+     * Returns the wrapped transition's value for {@link Transition#isAllowed()}, as
+     * evaluated by {@link GuardCache#isAllowed(Transition)}.
      *
      * @return {@link Boolean}
      */
     public boolean isAllowed() {
-        return this.transition.isAllowed();
+        return GuardCache.isAllowed(this.transition);
     }
 
     /**
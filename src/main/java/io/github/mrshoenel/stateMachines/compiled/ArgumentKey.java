@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+
+
+/**
+ * A handle for an argument that was interned by a {@link CompiledStateMachine}. An
+ * argument is identified by the name of its transition and its own name, and each
+ * distinct pair is assigned a dense slot. Callers may obtain a key once using
+ * {@link CompiledStateMachine#getArgumentKey(String, String)} and hold on to it.
+ * A key is only valid for the definition that created it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class ArgumentKey implements StateMachineArtifact {
+    final CompiledStateMachine definition;
+
+    final int id;
+
+    private final String transitionName, name;
+
+    ArgumentKey(final CompiledStateMachine definition, final int id, final String transitionName, final String name) {
+        this.definition = definition;
+        this.id = id;
+        this.transitionName = transitionName;
+        this.name = name;
+    }
+
+    /**
+     * @return the dense ID (slot) of this key within its definition.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the name of the transition(s) this argument belongs to.
+     */
+    public String getTransitionName() {
+        return this.transitionName;
+    }
+
+    /**
+     * @return the name of the argument.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.transitionName + "." + this.name + "#" + this.id + "]";
+    }
+}
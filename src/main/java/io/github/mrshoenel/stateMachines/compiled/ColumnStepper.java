@@ -0,0 +1,35 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+
+/**
+ * Advances a range of the instances of a {@link ColumnarDfa} by one symbol. This is
+ * the scalar implementation, where each instance's next state is a single indexed
+ * load. On Java 17 and newer, the multi-release JAR replaces this class with one
+ * that uses the gather operations of the Vector API, if the module
+ * jdk.incubator.vector is present (see {@link ColumnarDfa#isVectorized()}).
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+final class ColumnStepper {
+    private ColumnStepper() {
+    }
+
+    /**
+     * @return boolean false, as this implementation is scalar.
+     */
+    static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * @param column The next states for the symbol, indexed by the current state.
+     * @param states The states of the instances; [from, to) is updated in place.
+     * @param from The index of the first instance to advance.
+     * @param to One past the index of the last instance to advance.
+     */
+    static void step(final int[] column, final int[] states, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            states[i] = column[states[i]];
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Advances large populations of instances of a deterministic finite automaton (DFA)
+ * in lock-step. The states of all instances are held in a single int[] (one column),
+ * and each input symbol advances all of them at once by looking up their next state
+ * in a table that is laid out per symbol. Since this does not touch any objects but
+ * two int arrays, it is considerably faster than executing transitions on separate
+ * machines or {@link StateMachineInstance}s.
+ *
+ * A DFA can only be obtained from a {@link CompiledStateMachine} that is free of
+ * side-effects and state beyond the current state: it must consist of a single (not
+ * nested) machine, and none of its transitions may have a guard or arguments, or
+ * override {@link Transition#transition()} or any of its variants (such as {@link
+ * Transition#transitionWith(ArgumentFrame)}). Also, none of its states may override
+ * {@link State#enter(Transition)} or {@link State#leave(Transition)}, or their variants
+ * that take an {@link ArgumentFrame}, except for the implementations of {@link BaseState}.
+ *
+ * The states of instances are the ordinals of the compiled definition, unless the
+ * DFA was minimized ({@link #minimize()}); use {@link #stateOf(int)} to map ordinals
+ * to states. Symbols are the IDs of the definition's {@link TransitionKey}s. An
+ * instance whose state has no transition for a symbol, or that transitions into an
+ * orphan state, goes into the dead state ({@link #getDeadState()}) and stays there.
+ *
+ * On Java 11, stepping is scalar: each instance's next state is a single indexed
+ * load. The multi-release JAR contains an implementation for Java 17 and newer that
+ * gathers the next states of many instances at once using the incubating Vector API,
+ * if the module jdk.incubator.vector was added at run-time (e.g., using {@code
+ * --add-modules jdk.incubator.vector}); see {@link #isVectorized()}. Both yield the
+ * same states.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class ColumnarDfa {
+    private final CompiledStateMachine definition;
+
+    /**
+     * For each ordinal of the definition, the state of this DFA. The last entry
+     * is used for the definition's dead state (one past its ordinals).
+     */
+    private final int[] stateOf;
+
+    /**
+     * For each state of this DFA, whether it is final.
+     */
+    private final boolean[] finalStates;
+
+    private final int initialState;
+
+    private final int deadState;
+
+    /**
+     * For each symbol k, the next state of state s is found at [k][s].
+     */
+    private final int[][] next;
+
+    private ColumnarDfa(final CompiledStateMachine definition) {
+        this.definition = definition;
+        final int ordinals = definition.getStateCount();
+        this.initialState = definition.currentStateDeep(definition.initialCurrent);
+        this.deadState = ordinals;
+
+        this.stateOf = new int[ordinals + 1];
+        this.finalStates = new boolean[ordinals + 1];
+        for (int s = 0; s <= ordinals; s++) {
+            this.stateOf[s] = s;
+            this.finalStates[s] = s < ordinals && definition.states[s].isFinalState();
+        }
+
+        final int symbols = definition.transitionKeys.length;
+        this.next = new int[symbols][ordinals + 1];
+        for (int k = 0; k < symbols; k++) {
+            for (int s = 0; s < ordinals; s++) {
+                final int t = definition.transitionOf(s, k);
+                this.next[k][s] = t < 0 || definition.stateOwner[definition.transitionTo[t]] < 0 ?
+                    this.deadState : definition.transitionTo[t];
+            }
+            this.next[k][this.deadState] = this.deadState;
+        }
+    }
+
+    private ColumnarDfa(
+        final CompiledStateMachine definition, final int[] stateOf, final boolean[] finalStates,
+        final int initialState, final int deadState, final int[][] next)
+    {
+        this.definition = definition;
+        this.stateOf = stateOf;
+        this.finalStates = finalStates;
+        this.initialState = initialState;
+        this.deadState = deadState;
+        this.next = next;
+    }
+
+    /**
+     * Compiles the given definition into a DFA.
+     *
+     * @param definition A definition that is free of side-effects (see {@link ColumnarDfa}).
+     * @return {@link ColumnarDfa}
+     * @exception IllegalArgumentException if the definition is not free of side-effects.
+     */
+    public static ColumnarDfa compile(@NonNull final CompiledStateMachine definition) {
+        final var reason = impurityOf(Objects.requireNonNull(definition));
+        if (reason != null) {
+            throw new IllegalArgumentException("Not a pure DFA: " + reason);
+        }
+        return new ColumnarDfa(definition);
+    }
+
+    /**
+     * Returns a value indicating whether the given definition can be compiled into a
+     * DFA using {@link #compile(CompiledStateMachine)}.
+     *
+     * @param definition The definition to check.
+     * @return boolean
+     */
+    public static boolean isPure(@NonNull final CompiledStateMachine definition) {
+        return impurityOf(Objects.requireNonNull(definition)) == null;
+    }
+
+    /**
+     * @return a description of why the definition is not pure, or null, if it is.
+     */
+    private static String impurityOf(final CompiledStateMachine definition) {
+        if (definition.getMachineCount() != 1) {
+            return "nested machines are not supported";
+        }
+
+        for (final var state : definition.states) {
+            if (overrides(state, "enter", Transition.class) || overrides(state, "leave", Transition.class) ||
+                overrides(state, "enter", Transition.class, ArgumentFrame.class) ||
+                overrides(state, "leave", Transition.class, ArgumentFrame.class))
+            {
+                return state + " overrides enter() or leave()";
+            }
+        }
+
+        for (final var transition : definition.transitions) {
+            if (Transition.isGuarded(transition)) {
+                return transition + " has a guard";
+            }
+            if (!transition.getTransitionArguments().isEmpty()) {
+                return transition + " has arguments";
+            }
+            if (declaringClass(transition, "transition") != Transition.class ||
+                declaringClass(transition, "tryTransition") != Transition.class ||
+                declaringClass(transition, "transitionWith", ArgumentFrame.class) != Transition.class ||
+                declaringClass(transition, "tryTransitionWith", ArgumentFrame.class) != Transition.class)
+            {
+                return transition + " overrides transition() or one of its variants";
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean overrides(final State state, final String method, final Class<?>... parameterTypes) {
+        final var declaring = declaringClass(state, method, parameterTypes);
+        return declaring != State.class && declaring != BaseState.class;
+    }
+
+    private static Class<?> declaringClass(final Object object, final String method, final Class<?>... parameterTypes) {
+        try {
+            return object.getClass().getMethod(method, parameterTypes).getDeclaringClass();
+        } catch (NoSuchMethodException nsmEx) {
+            throw new Error(nsmEx); // cannot happen, these are defined by the interfaces
+        }
+    }
+
+    /**
+     * Computes the minimal DFA that is equivalent to this DFA, using Hopcroft's
+     * algorithm. First, states that cannot be reached from the initial state are
+     * removed; their ordinals are mapped to the dead state. Then, two states are
+     * equivalent, if for every sequence of symbols they end up in either final or
+     * non-final states (see {@link State#isFinalState()}). Equivalent states are
+     * merged into one state. Note that states that can never reach a final state
+     * are equivalent to the dead state.
+     *
+     * @return {@link ColumnarDfa} a new DFA with at most as many states as this one.
+     */
+    public ColumnarDfa minimize() {
+        return this.pruned().refined();
+    }
+
+    /**
+     * @return {@link ColumnarDfa} a DFA without the states that cannot be reached from
+     * the initial state (except for the dead state), or this DFA, if there are none.
+     */
+    private ColumnarDfa pruned() {
+        final int n = this.finalStates.length;
+        final var reachable = new BitSet(n);
+        final var queue = new int[n];
+        int head = 0, tail = 0;
+        reachable.set(this.deadState);
+        reachable.set(this.initialState);
+        queue[tail++] = this.initialState;
+        while (head < tail) {
+            final int s = queue[head++];
+            for (final int[] column : this.next) {
+                if (!reachable.get(column[s])) {
+                    reachable.set(column[s]);
+                    queue[tail++] = column[s];
+                }
+            }
+        }
+        if (reachable.cardinality() == n) {
+            return this;
+        }
+
+        // Keep the order of the remaining states, and map the others to the dead state:
+        final var idOf = new int[n];
+        int states = 0;
+        for (int s = 0; s < n; s++) {
+            idOf[s] = reachable.get(s) ? states++ : -1;
+        }
+        for (int s = 0; s < n; s++) {
+            if (idOf[s] < 0) {
+                idOf[s] = idOf[this.deadState];
+            }
+        }
+
+        final var stateOf = new int[this.stateOf.length];
+        for (int s = 0; s < stateOf.length; s++) {
+            stateOf[s] = idOf[this.stateOf[s]];
+        }
+        final var finalStates = new boolean[states];
+        final var next = new int[this.next.length][states];
+        for (int s = reachable.nextSetBit(0); s >= 0; s = reachable.nextSetBit(s + 1)) {
+            finalStates[idOf[s]] = this.finalStates[s];
+            for (int k = 0; k < next.length; k++) {
+                next[k][idOf[s]] = idOf[this.next[k][s]];
+            }
+        }
+
+        return new ColumnarDfa(this.definition, stateOf, finalStates,
+            idOf[this.initialState], idOf[this.deadState], next);
+    }
+
+    /**
+     * @return {@link ColumnarDfa} a DFA where all equivalent states of this DFA are merged.
+     */
+    private ColumnarDfa refined() {
+        final int n = this.finalStates.length;
+        final int symbols = this.next.length;
+
+        // The inverse transitions of each symbol: the predecessors of state q are
+        // found at pred[k][predOffset[k][q], predOffset[k][q + 1]).
+        final int[][] predOffset = new int[symbols][n + 1];
+        final int[][] pred = new int[symbols][n];
+        for (int k = 0; k < symbols; k++) {
+            for (int p = 0; p < n; p++) {
+                predOffset[k][this.next[k][p] + 1]++;
+            }
+            for (int q = 0; q < n; q++) {
+                predOffset[k][q + 1] += predOffset[k][q];
+            }
+            final var fill = predOffset[k].clone();
+            for (int p = 0; p < n; p++) {
+                pred[k][fill[this.next[k][p]]++] = p;
+            }
+        }
+
+        // The initial partition: final and non-final states.
+        final var blocks = new ArrayList<BitSet>();
+        final var blockOf = new int[n];
+        final var finals = new BitSet(n);
+        final var others = new BitSet(n);
+        for (int s = 0; s < n; s++) {
+            (this.finalStates[s] ? finals : others).set(s);
+        }
+        for (final var block : List.of(finals, others)) {
+            if (!block.isEmpty()) {
+                for (int s = block.nextSetBit(0); s >= 0; s = block.nextSetBit(s + 1)) {
+                    blockOf[s] = blocks.size();
+                }
+                blocks.add(block);
+            }
+        }
+
+        final var work = new ArrayDeque<Integer>();
+        final var inWork = new BitSet();
+        for (int b = 0; b < blocks.size(); b++) {
+            work.add(b);
+            inWork.set(b);
+        }
+
+        final var splitter = new BitSet(n);
+        while (!work.isEmpty()) {
+            final int a = work.poll();
+            inWork.clear(a);
+            final var members = (BitSet) blocks.get(a).clone();
+
+            for (int k = 0; k < symbols; k++) {
+                // All states that go into the splitter with symbol k:
+                splitter.clear();
+                for (int q = members.nextSetBit(0); q >= 0; q = members.nextSetBit(q + 1)) {
+                    for (int i = predOffset[k][q]; i < predOffset[k][q + 1]; i++) {
+                        splitter.set(pred[k][i]);
+                    }
+                }
+
+                final var touched = new BitSet();
+                for (int p = splitter.nextSetBit(0); p >= 0; p = splitter.nextSetBit(p + 1)) {
+                    touched.set(blockOf[p]);
+                }
+
+                for (int b = touched.nextSetBit(0); b >= 0; b = touched.nextSetBit(b + 1)) {
+                    final var block = blocks.get(b);
+                    final var inside = (BitSet) block.clone();
+                    inside.and(splitter);
+                    if (inside.cardinality() == block.cardinality()) {
+                        continue;
+                    }
+
+                    block.andNot(inside);
+                    final int nb = blocks.size();
+                    blocks.add(inside);
+                    for (int s = inside.nextSetBit(0); s >= 0; s = inside.nextSetBit(s + 1)) {
+                        blockOf[s] = nb;
+                    }
+
+                    if (inWork.get(b) || inside.cardinality() <= block.cardinality()) {
+                        work.add(nb);
+                        inWork.set(nb);
+                    } else {
+                        work.add(b);
+                        inWork.set(b);
+                    }
+                }
+            }
+        }
+
+        // Number the blocks by their smallest member, so that the result is deterministic:
+        final var order = new Integer[blocks.size()];
+        for (int b = 0; b < order.length; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (b1, b2) -> Integer.compare(blocks.get(b1).nextSetBit(0), blocks.get(b2).nextSetBit(0)));
+        final var idOf = new int[blocks.size()];
+        for (int id = 0; id < order.length; id++) {
+            idOf[order[id]] = id;
+        }
+
+        final var stateOf = new int[this.stateOf.length];
+        for (int s = 0; s < stateOf.length; s++) {
+            stateOf[s] = idOf[blockOf[this.stateOf[s]]];
+        }
+        final var finalStates = new boolean[blocks.size()];
+        final var next = new int[symbols][blocks.size()];
+        for (int b = 0; b < blocks.size(); b++) {
+            final int representative = blocks.get(b).nextSetBit(0);
+            finalStates[idOf[b]] = this.finalStates[representative];
+            for (int k = 0; k < symbols; k++) {
+                next[k][idOf[b]] = idOf[blockOf[this.next[k][representative]]];
+            }
+        }
+
+        return new ColumnarDfa(this.definition, stateOf, finalStates,
+            idOf[blockOf[this.initialState]], idOf[blockOf[this.deadState]], next);
+    }
+
+    /**
+     * @return {@link CompiledStateMachine} the definition this DFA was compiled from.
+     */
+    public CompiledStateMachine getDefinition() {
+        return this.definition;
+    }
+
+    /**
+     * Returns the state of this DFA that represents the given state of the definition.
+     * Unless this DFA was minimized, this is the ordinal itself. Once minimized, states
+     * that cannot be reached from the initial state are represented by the dead state.
+     *
+     * @param ordinal The ordinal of a state of the definition.
+     * @return the state of this DFA
+     */
+    public int stateOf(final int ordinal) {
+        if (ordinal < 0 || ordinal >= this.definition.getStateCount()) {
+            throw new IllegalArgumentException("Not an ordinal: " + ordinal);
+        }
+        return this.stateOf[ordinal];
+    }
+
+    /**
+     * Maps the name of each state of the definition to the name of the state that
+     * represents it in this DFA. A state is represented by the first state (by
+     * ordinal) it was merged with, which is the state itself, if it was not merged.
+     * States that were merged into the dead state, or that were removed, because
+     * they cannot be reached from the initial state, map to null.
+     *
+     * @return {@link Map} of names, ordered by ordinal.
+     */
+    public Map<String, String> getMergedNames() {
+        final int ordinals = this.definition.getStateCount();
+        final var representatives = new int[this.finalStates.length];
+        Arrays.fill(representatives, -1);
+        final var names = new LinkedHashMap<String, String>();
+        for (int s = 0; s < ordinals; s++) {
+            final int state = this.stateOf[s];
+            if (representatives[state] < 0) {
+                representatives[state] = s;
+            }
+            names.put(this.definition.states[s].getName(), state == this.deadState ?
+                null : this.definition.states[representatives[state]].getName());
+        }
+        return names;
+    }
+
+    /**
+     * @return the amount of states of this DFA, including the dead state.
+     */
+    public int getStateCount() {
+        return this.finalStates.length;
+    }
+
+    /**
+     * @return the amount of transitions of this DFA, i.e., the entries of its table
+     * that do not lead from a live state into the dead state.
+     */
+    public int getTransitionCount() {
+        int count = 0;
+        for (final int[] column : this.next) {
+            for (int s = 0; s < column.length; s++) {
+                if (s != this.deadState && column[s] != this.deadState) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the size of this DFA's table in bytes (symbols × states × 4).
+     */
+    public long getTableBytes() {
+        return 4L * this.next.length * this.finalStates.length;
+    }
+
+    /**
+     * @param state A state of this DFA.
+     * @return boolean true, if the state is final.
+     */
+    public boolean isFinalState(final int state) {
+        return this.finalStates[state];
+    }
+
+    /**
+     * @return the state new instances start in.
+     */
+    public int getInitialState() {
+        return this.initialState;
+    }
+
+    /**
+     * @return the dead state. Unless this DFA was minimized, it is one past the
+     * ordinals of the definition.
+     */
+    public int getDeadState() {
+        return this.deadState;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.definition.getName() + " (" +
+            this.getStateCount() + " states, " + this.getTransitionCount() + " transitions)]";
+    }
+
+    /**
+     * @return boolean true, if stepping uses the Vector API; false, if it is scalar.
+     */
+    public static boolean isVectorized() {
+        return ColumnStepper.isVectorized();
+    }
+
+    /**
+     * Creates a column of instances that are all in the initial state.
+     *
+     * @param size The amount of instances.
+     * @return int[] with the state of each instance.
+     */
+    public int[] newPopulation(final int size) {
+        final var states = new int[size];
+        Arrays.fill(states, this.initialState);
+        return states;
+    }
+
+    /**
+     * Advances all instances by one symbol.
+     *
+     * @param states The states of the instances; updated in place.
+     * @param symbol The ID of a {@link TransitionKey} of the definition.
+     */
+    public void step(@NonNull final int[] states, final int symbol) {
+        ColumnStepper.step(this.next[symbol], states, 0, states.length);
+    }
+
+    /**
+     * Advances all instances by each of the given symbols, in order. The population
+     * is processed in blocks, so that each block stays in the cache for all symbols.
+     *
+     * @param states The states of the instances; updated in place.
+     * @param symbols The IDs of {@link TransitionKey}s of the definition.
+     */
+    public void run(@NonNull final int[] states, @NonNull final int[] symbols) {
+        final int block = 4096;
+        for (int from = 0; from < states.length; from += block) {
+            final int to = Math.min(from + block, states.length);
+            for (final int symbol : symbols) {
+                ColumnStepper.step(this.next[symbol], states, from, to);
+            }
+        }
+    }
+
+    /**
+     * Counts the instances that are in the given state.
+     *
+     * @param states The states of the instances.
+     * @param state The state to count.
+     * @return the amount of instances in that state
+     */
+    public int count(@NonNull final int[] states, final int state) {
+        int count = 0;
+        for (final int s : states) {
+            if (s == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
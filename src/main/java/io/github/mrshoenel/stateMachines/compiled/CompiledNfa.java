@@ -0,0 +1,236 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.LabeledTransition;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Objects;
+
+
+/**
+ * A non-deterministic finite automaton (NFA) that is compiled from a machine. Unlike
+ * a {@link StateMachine}, which has exactly one current state, an NFA may be in many
+ * states at once (its configuration). Transitions are grouped by their label (see
+ * {@link LabeledTransition}), so that many transitions of a state may consume the
+ * same symbol, and transitions without a label are epsilon-transitions.
+ *
+ * All states of the machine, including nested machines and their states, take part
+ * as plain states; the hierarchy is not considered. The epsilon-closures of all
+ * states are computed at compile time, and so is, for each state and symbol, the
+ * set of states reached by consuming the symbol (including the closure). Advancing
+ * a configuration ({@link NfaRun#step(int)}) hence is a single pass over the active
+ * states and does not allocate.
+ *
+ * An NFA is purely structural: transitions must not have guards or arguments, and
+ * the states' enter- and leave-hooks are not called.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class CompiledNfa implements StateMachineArtifact {
+    private final CompiledStateMachine definition;
+
+    private final SymbolTable labels;
+
+    /**
+     * The amount of longs required for a configuration.
+     */
+    final int words;
+
+    /**
+     * The states reached from state s by consuming the symbol k are found at
+     * [stepOffset[k * states + s], stepOffset[k * states + s + 1]) in stepTargets.
+     */
+    final int[] stepOffset;
+
+    final int[] stepTargets;
+
+    /**
+     * The epsilon-closure of the initial state.
+     */
+    final long[] initial;
+
+    /**
+     * For each word of a configuration, the bits of final states.
+     */
+    final long[] finalStates;
+
+    private CompiledNfa(final CompiledStateMachine definition) {
+        this.definition = definition;
+        final int n = definition.getStateCount();
+        this.words = (n + 63) >>> 6;
+
+        final var labelNames = new ArrayList<String>();
+        for (final var transition : definition.transitions) {
+            final var label = LabeledTransition.labelOf(transition);
+            if (label != null) {
+                labelNames.add(label);
+            }
+        }
+        this.labels = new SymbolTable(labelNames);
+
+        final var closures = new BitSet[n];
+        for (int s = 0; s < n; s++) {
+            closures[s] = this.closureOf(s);
+        }
+
+        final int symbols = this.labels.size();
+        this.stepOffset = new int[symbols * n + 1];
+        final var targets = new ArrayList<Integer>();
+        final var reached = new BitSet(n);
+        for (int k = 0; k < symbols; k++) {
+            for (int s = 0; s < n; s++) {
+                reached.clear();
+                for (int t = definition.stateTransitionOffset[s]; t < definition.stateTransitionOffset[s + 1]; t++) {
+                    final var label = LabeledTransition.labelOf(definition.transitions[t]);
+                    if (label != null && this.labels.idOf(label) == k) {
+                        reached.or(closures[definition.transitionTo[t]]);
+                    }
+                }
+                reached.stream().forEach(targets::add);
+                this.stepOffset[k * n + s + 1] = targets.size();
+            }
+        }
+        this.stepTargets = targets.stream().mapToInt(Integer::intValue).toArray();
+
+        this.initial = new long[this.words];
+        final var initial = closures[definition.currentStateDeep(definition.initialCurrent)].toLongArray();
+        System.arraycopy(initial, 0, this.initial, 0, initial.length);
+
+        final var finals = new BitSet(n);
+        for (int s = 0; s < n; s++) {
+            finals.set(s, definition.states[s].isFinalState());
+        }
+        this.finalStates = new long[this.words];
+        final var finalWords = finals.toLongArray();
+        System.arraycopy(finalWords, 0, this.finalStates, 0, finalWords.length);
+    }
+
+    /**
+     * Compiles the given machine into an NFA.
+     *
+     * @param machine The machine to compile.
+     * @return {@link CompiledNfa}
+     * @exception IllegalArgumentException if a transition has a guard or arguments.
+     */
+    public static CompiledNfa compile(@NonNull final StateMachine machine) {
+        return compile(CompiledStateMachine.compile(Objects.requireNonNull(machine)));
+    }
+
+    /**
+     * Compiles the given definition into an NFA. The ordinals of the NFA's states are
+     * those of the definition.
+     *
+     * @param definition The definition to compile.
+     * @return {@link CompiledNfa}
+     * @exception IllegalArgumentException if a transition has a guard or arguments.
+     */
+    public static CompiledNfa compile(@NonNull final CompiledStateMachine definition) {
+        for (final var transition : Objects.requireNonNull(definition).transitions) {
+            if (Transition.isGuarded(transition) || !transition.getTransitionArguments().isEmpty()) {
+                throw new IllegalArgumentException("Transitions of an NFA must not have guards or arguments: " + transition);
+            }
+        }
+        return new CompiledNfa(definition);
+    }
+
+    /**
+     * Computes the states reachable from the given state by epsilon-transitions only
+     * (including the state itself).
+     */
+    private BitSet closureOf(final int state) {
+        final var def = this.definition;
+        final var closure = new BitSet(def.getStateCount());
+        final var pending = new ArrayList<Integer>();
+        closure.set(state);
+        pending.add(state);
+        while (!pending.isEmpty()) {
+            final int s = pending.remove(pending.size() - 1);
+            for (int t = def.stateTransitionOffset[s]; t < def.stateTransitionOffset[s + 1]; t++) {
+                final int to = def.transitionTo[t];
+                if (LabeledTransition.labelOf(def.transitions[t]) == null && !closure.get(to)) {
+                    closure.set(to);
+                    pending.add(to);
+                }
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * @return true, if any state of the given configuration is a final state.
+     */
+    boolean isAccepting(final long[] configuration) {
+        for (int w = 0; w < configuration.length; w++) {
+            if ((configuration[w] & this.finalStates[w]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the name of the compiled machine.
+     */
+    @Override
+    public String getName() {
+        return this.definition.getName();
+    }
+
+    /**
+     * @return {@link CompiledStateMachine} the definition this NFA was compiled from.
+     */
+    public CompiledStateMachine getDefinition() {
+        return this.definition;
+    }
+
+    /**
+     * @return {@link SymbolTable} the labels (symbols) of this NFA.
+     */
+    public SymbolTable getLabels() {
+        return this.labels;
+    }
+
+    /**
+     * @return the amount of states.
+     */
+    public int getStateCount() {
+        return this.definition.getStateCount();
+    }
+
+    /**
+     * @param ordinal The ordinal of a state.
+     * @return {@link State}
+     */
+    public State getState(final int ordinal) {
+        return this.definition.getState(ordinal);
+    }
+
+    /**
+     * @param state The state to get the ordinal of.
+     * @return the state's ordinal or -1, if it is not a state of this NFA.
+     */
+    public int ordinalOf(@NonNull final State state) {
+        return this.definition.ordinalOf(state);
+    }
+
+    /**
+     * @return {@link NfaRun} a new run that starts in the epsilon-closure of the
+     * machine's current state at the time of compilation.
+     */
+    public NfaRun newRun() {
+        return new NfaRun(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + "]";
+    }
+}
@@ -0,0 +1,788 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionArgument;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+
+/**
+ * An immutable, int-indexed definition of a configured state-machine. A {@link
+ * CompiledStateMachine} is obtained by compiling a machine that was built using
+ * the usual authoring API ({@link BaseStateMachine}, {@link State} and {@link
+ * Transition}). Every state is assigned an ordinal and every (nested) machine a
+ * slot, and the transitions are laid out in flat arrays. The names of transitions
+ * and arguments are interned into dense IDs ({@link TransitionKey}, {@link ArgumentKey}),
+ * and each state's transitions are found in a dense dispatch-table that requires
+ * (states × distinct transition-names) ints. If that table would exceed {@link
+ * #DENSE_DISPATCH_LIMIT} cells, each state's transitions are instead looked up
+ * by binary search in a row sorted by transition-name ID. A single definition can
+ * then be shared by arbitrary many {@link StateMachineInstance}s, each of which
+ * only holds the current state per machine and its own argument values.
+ *
+ * Ordinals are assigned deterministically: machines come before their sub-states,
+ * and sub-states as well as transitions and arguments are ordered by name. Hence,
+ * compiling two machines built from the same definition yields the same ordinals.
+ *
+ * Executing a transition makes the machine owning its 'to'-state point at it, and
+ * so do all machines between that machine and the least common ancestor of the
+ * transition's 'from'- and 'to'-state, as in {@link
+ * io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine}. Hence, a machine
+ * and the instances compiled from it agree after transitions across levels.
+ *
+ * Note that the compiled definition keeps references to the original states and
+ * transitions, and that compiled instances only support the structure of a machine:
+ * <ul>
+ *     <li>Instances never call {@link State#enter(Transition)} or {@link State#leave(Transition)}
+ *     (or their variants), nor overrides of {@link Transition#transition()}, as these are
+ *     bound to the mutable authoring graph. Compiling a machine whose states or
+ *     transitions override them does not fail, but their side effects do not happen.
+ *     {@link ColumnarDfa#isPure(CompiledStateMachine)} detects such overrides (but also
+ *     rejects guards, arguments and nested machines).</li>
+ *     <li>Guards ({@link Transition#isAllowed()}) are evaluated on the shared transitions,
+ *     which see the values of their own {@link TransitionArgument}s, not those an
+ *     instance has set. Guards that depend on argument values are not supported, as
+ *     all instances would get the same result.</li>
+ * </ul>
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class CompiledStateMachine implements StateMachineArtifact {
+    /**
+     * Used for arguments that have no value (yet).
+     */
+    static final Object UNSET = new Object();
+
+    /**
+     * The maximum amount of cells (states × distinct transition-names) of a dense
+     * dispatch-table; 16 MiB worth of ints.
+     */
+    public static final long DENSE_DISPATCH_LIMIT = 1L << 22;
+
+    private static final Comparator<StateMachineArtifact> BY_NAME =
+        Comparator.comparing(StateMachineArtifact::getName, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final String name;
+
+    private final Map<State, Integer> stateOrdinals;
+
+    final State[] states;
+
+    /**
+     * For each state, the slot of the machine it belongs to, or -1 for orphans.
+     */
+    final int[] stateOwner;
+
+    /**
+     * For each state, its machine slot if it is a machine, otherwise -1.
+     */
+    final int[] stateMachineSlot;
+
+    /**
+     * For each machine slot, the ordinal of the machine's state.
+     */
+    final int[] machineStates;
+
+    /**
+     * The current state of each machine at the time of compilation.
+     */
+    final int[] initialCurrent;
+
+    /**
+     * Transitions of state s are found at [stateTransitionOffset[s], stateTransitionOffset[s + 1]).
+     */
+    final int[] stateTransitionOffset;
+
+    final Transition[] transitions;
+
+    final int[] transitionTo;
+
+    /**
+     * The states entered by transition t are found, outermost first, at [enteredOffset[t],
+     * enteredOffset[t + 1]) of {@link #enteredStates}: the machines below the least common
+     * ancestor of the transition's 'from'- and 'to'-state that own the 'to'-state, and the
+     * 'to'-state. Executing the transition makes the owner of each of them point at it, as
+     * {@link io.github.mrshoenel.stateMachines.stateMachine.HierarchyIndex.Route} does.
+     */
+    final int[] enteredOffset;
+
+    final int[] enteredStates;
+
+    /**
+     * Interns the names of all transitions.
+     */
+    final SymbolTable transitionSymbols;
+
+    final TransitionKey[] transitionKeys;
+
+    /**
+     * For each transition, the ID of its name in {@link #transitionSymbols}.
+     */
+    final int[] transitionSymbol;
+
+    /**
+     * The dense dispatch-table: the transition of state s with the symbol k is found
+     * at [s * transitionSymbols.size() + k], or -1, if the state has no such transition.
+     * Null, if the table would exceed {@link #DENSE_DISPATCH_LIMIT} cells; then, the
+     * sparse rows are used. Use {@link #transitionOf(int, int)} for lookups.
+     */
+    final int[] dispatch;
+
+    /**
+     * The sparse dispatch-rows, used if {@link #dispatch} is null: the symbols of the
+     * transitions of state s are found, sorted, at [stateTransitionOffset[s],
+     * stateTransitionOffset[s + 1]) of {@link #rowSymbols}, and the transitions at the
+     * same indexes of {@link #rowTransitions}.
+     */
+    private final int[] rowSymbols, rowTransitions;
+
+    /**
+     * The argument-slots of transition t are found at [argumentOffset[t], argumentOffset[t + 1]).
+     */
+    final int[] argumentOffset;
+
+    final int[] argumentSlots;
+
+    /**
+     * All distinct pairs of transition- and argument-name; one per slot.
+     */
+    final ArgumentKey[] argumentKeys;
+
+    private final Map<String, Map<String, ArgumentKey>> argumentKeysByName;
+
+    /**
+     * For each slot, the type required for its values. If transitions with the same
+     * name declare the same argument using different types, then this is {@link Object}.
+     */
+    final Class<?>[] argumentTypes;
+
+    /**
+     * For each slot, the value at the time of compilation or {@link #UNSET}.
+     */
+    final Object[] initialArguments;
+
+    private final int fingerprint;
+
+    private CompiledStateMachine(final Builder builder) {
+        this.name = builder.root.getName();
+        this.stateOrdinals = builder.ordinals;
+        this.states = builder.states.toArray(new State[0]);
+        this.stateOwner = toArray(builder.owners);
+        this.stateMachineSlot = toArray(builder.machineSlots);
+        this.machineStates = toArray(builder.machines);
+
+        this.initialCurrent = new int[this.machineStates.length];
+        for (int slot = 0; slot < this.machineStates.length; slot++) {
+            final var current = ((StateMachine) this.states[this.machineStates[slot]]).getCurrentState();
+            final var ordinal = current == null ? null : this.stateOrdinals.get(current);
+            this.initialCurrent[slot] = ordinal == null ? this.machineStates[slot] : ordinal;
+        }
+
+        final var transitions = new ArrayList<Transition>();
+        final var transitionNames = new ArrayList<String>();
+        this.stateTransitionOffset = new int[this.states.length + 1];
+        for (int s = 0; s < this.states.length; s++) {
+            this.stateTransitionOffset[s] = transitions.size();
+            for (final var entry : sortedTransitions(this.states[s])) {
+                transitions.add(entry.getValue());
+                transitionNames.add(entry.getKey());
+            }
+        }
+        this.stateTransitionOffset[this.states.length] = transitions.size();
+
+        this.transitions = transitions.toArray(new Transition[0]);
+        this.transitionTo = new int[this.transitions.length];
+        for (int t = 0; t < this.transitions.length; t++) {
+            this.transitionTo[t] = this.stateOrdinals.get(this.transitions[t].getToState());
+        }
+
+        this.enteredOffset = new int[this.transitions.length + 1];
+        final var entered = new ArrayList<Integer>();
+        for (int t = 0; t < this.transitions.length; t++) {
+            this.enteredOffset[t] = entered.size();
+            final int to = this.transitionTo[t];
+            final int ancestor = this.leastCommonAncestor(this.transitionFrom(t), to);
+            for (int state = to; state != ancestor; state = this.parentOf(state)) {
+                entered.add(this.enteredOffset[t], state);
+            }
+        }
+        this.enteredOffset[this.transitions.length] = entered.size();
+        this.enteredStates = toArray(entered);
+
+        this.transitionSymbols = new SymbolTable(transitionNames);
+        this.transitionKeys = new TransitionKey[this.transitionSymbols.size()];
+        for (int k = 0; k < this.transitionKeys.length; k++) {
+            this.transitionKeys[k] = new TransitionKey(this, k, this.transitionSymbols.nameOf(k));
+        }
+        this.transitionSymbol = new int[this.transitions.length];
+        for (int t = 0; t < this.transitions.length; t++) {
+            this.transitionSymbol[t] = this.transitionSymbols.idOf(transitionNames.get(t));
+        }
+        if ((long) this.states.length * this.transitionKeys.length <= DENSE_DISPATCH_LIMIT) {
+            this.dispatch = new int[this.states.length * this.transitionKeys.length];
+            Arrays.fill(this.dispatch, -1);
+            for (int t = 0; t < this.transitions.length; t++) {
+                this.dispatch[this.transitionFrom(t) * this.transitionKeys.length + this.transitionSymbol[t]] = t;
+            }
+            this.rowSymbols = this.rowTransitions = null;
+        } else {
+            this.dispatch = null;
+            this.rowSymbols = new int[this.transitions.length];
+            this.rowTransitions = new int[this.transitions.length];
+            for (int s = 0; s < this.states.length; s++) {
+                final int from = this.stateTransitionOffset[s], to = this.stateTransitionOffset[s + 1];
+                final var row = new long[to - from];
+                for (int t = from; t < to; t++) {
+                    row[t - from] = ((long) this.transitionSymbol[t] << 32) | t;
+                }
+                Arrays.sort(row);
+                for (int i = 0; i < row.length; i++) {
+                    this.rowSymbols[from + i] = (int) (row[i] >>> 32);
+                    this.rowTransitions[from + i] = (int) row[i];
+                }
+            }
+        }
+
+        // Collect all distinct pairs of transition- and argument-name (ordered by these).
+        // Transitions with the same name share their slots, so that their arguments must agree:
+        final var pairs = new TreeMap<String, TreeMap<String, TransitionArgument<?>>>();
+        for (int t = 0; t < this.transitions.length; t++) {
+            for (final var arg : this.transitions[t].getTransitionArguments().values()) {
+                final var byName = pairs.computeIfAbsent(transitionNames.get(t), k -> new TreeMap<>());
+                final var previous = byName.putIfAbsent(arg.getName(), arg);
+                if (previous == null) {
+                    continue;
+                }
+                if (previous.getType() != arg.getType() || (previous.hasValue() && arg.hasValue() &&
+                    !Objects.equals(valueOf(previous), valueOf(arg))))
+                {
+                    throw new IllegalArgumentException("The argument '" + arg.getName() + "' of the transitions '" +
+                        transitionNames.get(t) + "' has conflicting types or preset values.");
+                }
+                if (!previous.hasValue() && arg.hasValue()) {
+                    byName.put(arg.getName(), arg); // prefer arguments with values
+                }
+            }
+        }
+
+        final var keys = new ArrayList<ArgumentKey>();
+        final var types = new ArrayList<Class<?>>();
+        final var values = new ArrayList<Object>();
+        this.argumentKeysByName = new HashMap<>();
+        for (final var pair : pairs.entrySet()) {
+            final var byName = new HashMap<String, ArgumentKey>();
+            for (final var arg : pair.getValue().values()) {
+                final var key = new ArgumentKey(this, keys.size(), pair.getKey(), arg.getName());
+                keys.add(key);
+                byName.put(arg.getName(), key);
+                types.add(arg.getType());
+                values.add(valueOf(arg));
+            }
+            this.argumentKeysByName.put(pair.getKey(), byName);
+        }
+        this.argumentKeys = keys.toArray(new ArgumentKey[0]);
+        this.argumentTypes = types.toArray(new Class<?>[0]);
+        this.initialArguments = values.toArray();
+
+        this.argumentOffset = new int[this.transitions.length + 1];
+        final var slots = new ArrayList<Integer>();
+        for (int t = 0; t < this.transitions.length; t++) {
+            this.argumentOffset[t] = slots.size();
+            final var byName = this.argumentKeysByName.get(transitionNames.get(t));
+            final var args = new ArrayList<>(this.transitions[t].getTransitionArguments().values());
+            args.sort(BY_NAME);
+            for (final var arg : args) {
+                final var slot = byName.get(arg.getName()).id;
+                if (this.argumentTypes[slot] != arg.getType()) {
+                    this.argumentTypes[slot] = Object.class;
+                }
+                slots.add(slot);
+            }
+        }
+        this.argumentOffset[this.transitions.length] = slots.size();
+        this.argumentSlots = toArray(slots);
+        this.fingerprint = this.computeFingerprint();
+    }
+
+    /**
+     * Hashes the structure of this definition: the names, owners and slots of the
+     * states, the names and 'to'-states of the transitions and the argument-slots.
+     */
+    private int computeFingerprint() {
+        int hash = this.states.length;
+        for (int s = 0; s < this.states.length; s++) {
+            hash = 31 * hash + Objects.hashCode(this.states[s].getName());
+            hash = 31 * hash + this.stateOwner[s];
+            hash = 31 * hash + this.stateMachineSlot[s];
+        }
+        for (int t = 0; t < this.transitions.length; t++) {
+            hash = 31 * hash + this.transitionSymbols.nameOf(this.transitionSymbol[t]).hashCode();
+            hash = 31 * hash + this.transitionTo[t];
+        }
+        for (int a = 0; a < this.argumentKeys.length; a++) {
+            hash = 31 * hash + this.argumentKeys[a].getTransitionName().hashCode();
+            hash = 31 * hash + this.argumentKeys[a].getName().hashCode();
+            hash = 31 * hash + this.argumentTypes[a].getName().hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Compiles the given machine into an immutable definition. The machine itself,
+     * its defined states, all nested machines and all states reachable through
+     * transitions are compiled. States that are only reachable through transitions,
+     * but are not defined by any of the machines, are compiled as orphans.
+     *
+     * Transitions with the same name share their argument-slots. Arguments with the
+     * same name of such transitions must therefore have the same type and, if both
+     * have one, the same preset value.
+     *
+     * @param machine The top-level machine to compile.
+     * @return {@link CompiledStateMachine}
+     * @exception IllegalArgumentException if transitions with the same name have
+     * arguments with the same name, but of different types or with different values.
+     */
+    public static CompiledStateMachine compile(@NonNull final StateMachine machine) {
+        Objects.requireNonNull(machine);
+        return new CompiledStateMachine(new Builder(machine).build());
+    }
+
+    /**
+     * @return the name of the compiled top-level machine.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Creates a new, lightweight instance of this definition that starts in the
+     * configuration the compiled machine was in at the time of compilation.
+     *
+     * @return {@link StateMachineInstance}
+     */
+    public StateMachineInstance newInstance() {
+        return new StateMachineInstance(this);
+    }
+
+    /**
+     * @return the amount of compiled states (including all machines).
+     */
+    public int getStateCount() {
+        return this.states.length;
+    }
+
+    /**
+     * @return the amount of compiled machines (the top-level and all nested ones).
+     */
+    public int getMachineCount() {
+        return this.machineStates.length;
+    }
+
+    /**
+     * @return the amount of compiled transitions.
+     */
+    public int getTransitionCount() {
+        return this.transitions.length;
+    }
+
+    /**
+     * Returns the state for the given ordinal.
+     *
+     * @param ordinal The state's ordinal.
+     * @return {@link State}
+     */
+    public State getState(final int ordinal) {
+        return this.states[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the given state.
+     *
+     * @param state The state to get the ordinal for.
+     * @return the ordinal or -1, if the state is not part of this definition.
+     */
+    public int ordinalOf(@NonNull final State state) {
+        final var ordinal = this.stateOrdinals.get(Objects.requireNonNull(state));
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the transition for the given transition-ordinal.
+     *
+     * @param ordinal The transition's ordinal.
+     * @return {@link Transition}
+     */
+    public Transition getTransition(final int ordinal) {
+        return this.transitions[ordinal];
+    }
+
+    /**
+     * Returns the interned key for the given transition-name. Keys can be held on to
+     * and allow executing transitions without resolving their name each time.
+     *
+     * @param name The name of the transition(s).
+     * @return {@link TransitionKey}
+     * @throws NoSuchTransitionException if no state of this definition has a transition
+     * with the given name.
+     */
+    public TransitionKey getTransitionKey(@NonNull final String name) throws NoSuchTransitionException {
+        final int id = this.transitionSymbols.idOf(Objects.requireNonNull(name));
+        if (id < 0) {
+            throw new NoSuchTransitionException("No transition with name " + name);
+        }
+        return this.transitionKeys[id];
+    }
+
+    /**
+     * Returns the interned key for the given ID.
+     *
+     * @param id The ID of the key (see {@link TransitionKey#getId()}).
+     * @return {@link TransitionKey}
+     * @throws IndexOutOfBoundsException if there is no such key.
+     */
+    public TransitionKey getTransitionKey(final int id) {
+        return this.transitionKeys[Objects.checkIndex(id, this.transitionKeys.length)];
+    }
+
+    /**
+     * Returns the interned key for the given argument-slot.
+     *
+     * @param id The ID of the key (see {@link ArgumentKey#getId()}).
+     * @return {@link ArgumentKey}
+     * @throws IndexOutOfBoundsException if there is no such key.
+     */
+    public ArgumentKey getArgumentKey(final int id) {
+        return this.argumentKeys[Objects.checkIndex(id, this.argumentKeys.length)];
+    }
+
+    /**
+     * Returns the interned key for an argument of transitions with the given name.
+     *
+     * @param transitionName The name of the transition(s).
+     * @param argumentName The name of the argument.
+     * @return {@link ArgumentKey}
+     * @throws NoSuchTransitionException if no state of this definition has a transition
+     * with the given name.
+     * @throws NoSuchArgumentException if none of these transitions has such an argument.
+     */
+    public ArgumentKey getArgumentKey(@NonNull final String transitionName, @NonNull final String argumentName)
+        throws NoSuchTransitionException, NoSuchArgumentException
+    {
+        Objects.requireNonNull(argumentName);
+        this.getTransitionKey(transitionName);
+
+        final var byName = this.argumentKeysByName.get(transitionName);
+        final var key = byName == null ? null : byName.get(argumentName);
+        if (key == null) {
+            throw new NoSuchArgumentException("There is no argument with the name '" + argumentName + "'.");
+        }
+        return key;
+    }
+
+    /**
+     * Returns a hash of the structure of this definition. Definitions compiled from
+     * machines that were built the same way have the same fingerprint, which allows
+     * to detect, e.g., snapshots taken from another definition.
+     *
+     * @return the fingerprint
+     */
+    public int getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @return {@link SymbolTable} that interns the names of all transitions.
+     */
+    public SymbolTable getTransitionSymbols() {
+        return this.transitionSymbols;
+    }
+
+    /**
+     * @return the amount of argument-slots, i.e. distinct pairs of transition- and argument-name.
+     */
+    public int getArgumentCount() {
+        return this.argumentKeys.length;
+    }
+
+    /**
+     * Resolves a transition among the transitions defined on a state.
+     *
+     * @param state The ordinal of the state that defines the transition.
+     * @param key The key of the transition.
+     * @return the transition's ordinal or -1, if the state has no such transition.
+     * @throws IllegalArgumentException if the key belongs to another definition.
+     */
+    public int findTransition(final int state, @NonNull final TransitionKey key) {
+        if (key.definition != this) {
+            throw new IllegalArgumentException("The key " + key + " belongs to another definition.");
+        }
+        return this.transitionOf(state, key.id);
+    }
+
+    /**
+     * Resolves a transition by name among the transitions defined on a state.
+     *
+     * @param state The ordinal of the state that defines the transition.
+     * @param name The name of the transition.
+     * @return the transition's ordinal or -1, if there is no such transition.
+     */
+    public int findTransition(final int state, @NonNull final String name) {
+        final int id = this.transitionSymbols.idOf(Objects.requireNonNull(name));
+        return id < 0 ? -1 : this.transitionOf(state, id);
+    }
+
+    /**
+     * Looks up the transition of a state by the ID of its name, using the dense table
+     * or, for large definitions, the sparse rows.
+     *
+     * @param state The ordinal of the state that defines the transition.
+     * @param symbol The ID of the transition's name.
+     * @return the transition's ordinal or -1, if the state has no such transition.
+     */
+    int transitionOf(final int state, final int symbol) {
+        final var dispatch = this.dispatch;
+        if (dispatch != null) {
+            return dispatch[state * this.transitionKeys.length + symbol];
+        }
+        final int i = Arrays.binarySearch(this.rowSymbols,
+            this.stateTransitionOffset[state], this.stateTransitionOffset[state + 1], symbol);
+        return i < 0 ? -1 : this.rowTransitions[i];
+    }
+
+    /**
+     * @return the ordinal of the state that defines the given transition.
+     */
+    private int transitionFrom(final int t) {
+        int s = Arrays.binarySearch(this.stateTransitionOffset, t);
+        if (s < 0) {
+            return -s - 2;
+        }
+        // States without transitions share their offset with the next state:
+        while (this.stateTransitionOffset[s + 1] == t) {
+            s++;
+        }
+        return s;
+    }
+
+    /**
+     * @return the ordinal of the machine that defines the given state, or -1 for the
+     * top-level machine and the states (and machines) that are not defined by a machine.
+     */
+    private int parentOf(final int state) {
+        final int slot = this.stateOwner[state];
+        return slot < 0 || this.machineStates[slot] == state ? -1 : this.machineStates[slot];
+    }
+
+    private int depthOf(int state) {
+        int depth = 0;
+        for (state = this.parentOf(state); state >= 0; state = this.parentOf(state)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private int topOf(int state) {
+        for (int parent = this.parentOf(state); parent >= 0; parent = this.parentOf(state)) {
+            state = parent;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the deepest machine that owns the 'to'-state (directly or indirectly) and
+     * is, or owns, the 'from'-state; see {@link
+     * io.github.mrshoenel.stateMachines.stateMachine.HierarchyIndex}. If the two states
+     * are not part of the same hierarchy, this is the machine that defines the 'to'-state,
+     * so that only it is made to point at it.
+     *
+     * @return the ordinal of that machine, or -1 if the 'to'-state is at the top.
+     */
+    private int leastCommonAncestor(int from, final int to) {
+        int ancestor = this.parentOf(to);
+        if (ancestor < 0 || this.topOf(from) != this.topOf(to)) {
+            return ancestor;
+        }
+        int fromDepth = this.depthOf(from), ancestorDepth = this.depthOf(ancestor);
+        for (; fromDepth > ancestorDepth; fromDepth--) {
+            from = this.parentOf(from);
+        }
+        for (; ancestorDepth > fromDepth; ancestorDepth--) {
+            ancestor = this.parentOf(ancestor);
+        }
+        while (ancestor != from) {
+            ancestor = this.parentOf(ancestor);
+            from = this.parentOf(from);
+        }
+        return ancestor;
+    }
+
+    /**
+     * Makes the machines of a configuration point at the states entered by the given
+     * transition. If the 'to'-state is a machine, it points at itself. The transition
+     * must have been checked before; its 'to'-state must not be an orphan.
+     *
+     * @param current The current state per machine slot.
+     * @param t The ordinal of the transition.
+     */
+    void enter(final int[] current, final int t) {
+        final int to = this.transitionTo[t];
+        final int slot = this.stateMachineSlot[to];
+        if (slot >= 0) {
+            current[slot] = to;
+        }
+        for (int e = this.enteredOffset[t]; e < this.enteredOffset[t + 1]; e++) {
+            final int state = this.enteredStates[e];
+            current[this.stateOwner[state]] = state;
+        }
+    }
+
+    /**
+     * @return the key for the pair of transition- and argument-name, or null.
+     */
+    ArgumentKey findArgumentKey(final String transitionName, final String argumentName) {
+        final var byName = this.argumentKeysByName.get(transitionName);
+        return byName == null ? null : byName.get(argumentName);
+    }
+
+    /**
+     * Checks that the given key belongs to this definition.
+     */
+    void checkKey(final ArgumentKey key) {
+        if (key.definition != this) {
+            throw new IllegalArgumentException("The key " + key + " belongs to another definition.");
+        }
+    }
+
+    /**
+     * Follows the current states of the given configuration from the top-level
+     * machine down to the most deeply nested active state; equivalent to what
+     * {@link StateMachine#getCurrentStateDeep()} does.
+     *
+     * @param current The current state per machine slot.
+     * @return the ordinal of the most deeply nested active state.
+     */
+    int currentStateDeep(final int[] current) {
+        int slot = 0, state = current[0];
+        // Bounded, as a nested machine might point back at one of its ancestors.
+        for (int i = 0; i < this.machineStates.length; i++) {
+            final int next = this.stateMachineSlot[state];
+            if (next < 0 || next == slot) {
+                break;
+            }
+            slot = next;
+            state = current[slot];
+        }
+        return state;
+    }
+
+    private static List<Map.Entry<String, Transition>> sortedTransitions(final State state) {
+        final var transitions = state.getAllDefinedTransitions();
+        if (transitions == null) {
+            return List.of();
+        }
+        final var sorted = new ArrayList<>(transitions.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        return sorted;
+    }
+
+    private static Object valueOf(final TransitionArgument<?> argument) {
+        try {
+            return argument.hasValue() ? argument.getValue() : UNSET;
+        } catch (NoValueSetException nvsEx) {
+            throw new Error(nvsEx); // cannot happen, hasValue() was checked
+        }
+    }
+
+    private static int[] toArray(final List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+
+    /**
+     * Collects and orders the states and machines of a machine to compile.
+     */
+    private static class Builder {
+        private final StateMachine root;
+
+        private final Map<State, Integer> ordinals = new HashMap<>();
+
+        private final List<State> states = new ArrayList<>();
+
+        private final List<Integer> owners = new ArrayList<>();
+
+        private final List<Integer> machineSlots = new ArrayList<>();
+
+        private final List<Integer> machines = new ArrayList<>();
+
+        private Builder(final StateMachine root) {
+            this.root = root;
+        }
+
+        private Builder build() {
+            this.addMachine(this.root, 0);
+
+            // Now add all states only reachable through transitions (orphans):
+            for (int s = 0; s < this.states.size(); s++) {
+                for (final var entry : sortedTransitions(this.states.get(s))) {
+                    final var to = Objects.requireNonNull(entry.getValue().getToState());
+                    if (!this.ordinals.containsKey(to)) {
+                        if (to instanceof StateMachine) {
+                            this.addMachine((StateMachine) to, -1);
+                        } else {
+                            this.addState(to, -1);
+                        }
+                    }
+                }
+            }
+
+            return this;
+        }
+
+        private int addState(final State state, final int owner) {
+            final int ordinal = this.states.size();
+            this.ordinals.put(state, ordinal);
+            this.states.add(state);
+            this.owners.add(owner);
+            this.machineSlots.add(-1);
+            return ordinal;
+        }
+
+        private void addMachine(final StateMachine machine, final int owner) {
+            final int slot = this.machines.size();
+            final int ordinal = this.addState(machine, owner);
+            this.machineSlots.set(ordinal, slot);
+            this.machines.add(ordinal);
+
+            final var children = new ArrayList<>(machine.getDefinedStates());
+            children.remove(machine);
+            children.sort(BY_NAME);
+
+            for (final var child : children) {
+                if (this.ordinals.containsKey(child)) {
+                    continue; // defined by more than one machine: the first one wins
+                }
+                if (child instanceof StateMachine) {
+                    this.addMachine((StateMachine) child, slot);
+                } else {
+                    this.addState(child, slot);
+                }
+            }
+        }
+    }
+}
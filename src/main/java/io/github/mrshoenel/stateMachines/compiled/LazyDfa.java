@@ -0,0 +1,381 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Runs a {@link CompiledNfa} by building the states of the equivalent DFA on demand
+ * (lazy subset construction). Each DFA state stands for one configuration of the NFA
+ * and remembers, per symbol, the DFA state that follows it once it was computed. On
+ * hot inputs, a step hence is a single array lookup, while the full DFA, which may
+ * have exponentially many states, is never built.
+ *
+ * The amount of cached DFA states is bounded. When the cache is full, the least
+ * recently computed or looked-up states are evicted. If the cache thrashes, i.e., if
+ * at least half of the steps within a window create new DFA states, the engine falls
+ * back to simulating the NFA ({@link NfaRun#step(int)}) for the next window, and
+ * then tries to use the cache again. Each time the cache thrashes again right after
+ * simulating, the simulation lasts twice as long (up to {@link #MAX_BACKOFF} windows).
+ * The counters of hits, misses, evictions and simulated steps allow to tune the
+ * cache's capacity.
+ *
+ * A {@link LazyDfa} is a run (it has a current configuration) and is not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class LazyDfa implements StateMachineArtifact {
+    /**
+     * The maximum amount of windows to simulate after the cache thrashed.
+     */
+    public static final int MAX_BACKOFF = 64;
+
+    private final CompiledNfa nfa;
+
+    private final int capacity;
+
+    private final int window;
+
+    private final Map<Configuration, DfaState> cache;
+
+    /**
+     * Used to look up configurations in the cache without allocating a key.
+     */
+    private final Configuration probe;
+
+    /**
+     * The current DFA state, or null while simulating.
+     */
+    private DfaState state;
+
+    /**
+     * The current configuration while simulating, and a buffer for the next one.
+     */
+    private long[] current, next;
+
+    private long hits, misses, evictions, simulatedSteps;
+
+    private int windowSteps, windowMisses;
+
+    /**
+     * The amount of windows to simulate the next time the cache thrashes.
+     */
+    private int backoff = 1;
+
+    private int simulationSteps;
+
+    private boolean simulating;
+
+    /**
+     * Creates a new lazy DFA for the given NFA, which starts in the NFA's initial
+     * configuration.
+     *
+     * @param nfa The NFA to run.
+     * @param capacity The maximum amount of DFA states to cache (at least 1).
+     */
+    public LazyDfa(@NonNull final CompiledNfa nfa, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1.");
+        }
+
+        this.nfa = Objects.requireNonNull(nfa);
+        this.capacity = capacity;
+        this.window = Math.max(64, capacity);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Configuration, DfaState> eldest) {
+                if (this.size() <= LazyDfa.this.capacity) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                LazyDfa.this.evictions++;
+                return true;
+            }
+        };
+        this.probe = new Configuration(new long[0]);
+        this.current = new long[nfa.words];
+        this.next = new long[nfa.words];
+        this.reset();
+    }
+
+    /**
+     * @return the name of the NFA.
+     */
+    @Override
+    public String getName() {
+        return this.nfa.getName();
+    }
+
+    /**
+     * @return {@link CompiledNfa} the NFA of this run.
+     */
+    public CompiledNfa getNfa() {
+        return this.nfa;
+    }
+
+    /**
+     * Returns to the NFA's initial configuration. The cache and counters are kept.
+     *
+     * @return {@link LazyDfa} this for chaining
+     */
+    public LazyDfa reset() {
+        this.simulating = false;
+        this.windowSteps = 0;
+        this.windowMisses = 0;
+        this.state = this.lookup(this.nfa.initial);
+        return this;
+    }
+
+    /**
+     * Consumes a symbol by its label. A label that is not known to the NFA leads to
+     * the empty configuration.
+     *
+     * @param label The label of the symbol.
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean step(@NonNull final String label) {
+        final int symbol = this.nfa.getLabels().idOf(Objects.requireNonNull(label));
+        if (symbol < 0) {
+            this.simulating = false;
+            this.state = this.lookup(new long[this.nfa.words]);
+            return false;
+        }
+        return this.step(symbol);
+    }
+
+    /**
+     * Consumes a symbol, with the same semantics as {@link NfaRun#step(int)}.
+     *
+     * @param symbol The ID of the symbol's label (see {@link CompiledNfa#getLabels()}).
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean step(final int symbol) {
+        if (this.simulating) {
+            return this.simulate(symbol);
+        }
+
+        final var from = this.state;
+        // The current state may have been evicted itself:
+        final var to = from.evicted ? null : from.next[symbol];
+        if (to != null && !to.evicted) {
+            this.hits++;
+            this.state = to;
+        } else {
+            this.misses++;
+            this.windowMisses++;
+            NfaRun.step(this.nfa, from.configuration, this.next, symbol);
+            this.state = this.lookup(this.next);
+            if (!from.evicted) {
+                from.next[symbol] = this.state;
+            }
+        }
+
+        final boolean any = !this.state.empty;
+        if (++this.windowSteps == this.window) {
+            if (2 * this.windowMisses >= this.window && this.evictions > 0L) {
+                // The cache thrashes, simulate for the next window(s):
+                this.simulating = true;
+                this.simulationSteps = this.backoff * this.window;
+                this.backoff = Math.min(2 * this.backoff, MAX_BACKOFF);
+                System.arraycopy(this.state.configuration, 0, this.current, 0, this.current.length);
+                this.state = null;
+            } else {
+                this.backoff = 1;
+            }
+            this.windowSteps = 0;
+            this.windowMisses = 0;
+        }
+        return any;
+    }
+
+    private boolean simulate(final int symbol) {
+        this.simulatedSteps++;
+        final long[] current = this.current;
+        final boolean any = NfaRun.step(this.nfa, current, this.next, symbol);
+        this.current = this.next;
+        this.next = current;
+
+        if (++this.windowSteps == this.simulationSteps) {
+            this.simulating = false;
+            this.state = this.lookup(this.current);
+            this.windowSteps = 0;
+            this.windowMisses = 0;
+        }
+        return any;
+    }
+
+    /**
+     * Returns the cached DFA state for the given configuration, or creates and
+     * caches it. The configuration is only copied when it is inserted.
+     */
+    private DfaState lookup(final long[] configuration) {
+        var state = this.cache.get(this.probe.set(configuration));
+        if (state == null) {
+            final var copy = new Configuration(configuration.clone());
+            state = new DfaState(copy.words, this.nfa.getLabels().size(), this.nfa.isAccepting(copy.words));
+            this.cache.put(copy, state);
+        }
+        return state;
+    }
+
+    /**
+     * Consumes all the given symbols, in order.
+     *
+     * @param symbols The IDs of the symbols' labels.
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean run(@NonNull final int[] symbols) {
+        boolean active = !this.isEmpty();
+        for (int i = 0; i < symbols.length && active; i++) {
+            active = this.step(symbols[i]);
+        }
+        return active;
+    }
+
+    /**
+     * @return boolean true, if any active state is a final state.
+     */
+    public boolean isAccepting() {
+        return this.simulating ? this.nfa.isAccepting(this.current) : this.state.accepting;
+    }
+
+    /**
+     * @return boolean true, if no state is active.
+     */
+    public boolean isEmpty() {
+        if (!this.simulating) {
+            return this.state.empty;
+        }
+        for (final long word : this.current) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param ordinal The ordinal of a state of the NFA.
+     * @return boolean true, if the state is active.
+     */
+    public boolean isActive(final int ordinal) {
+        final var configuration = this.simulating ? this.current : this.state.configuration;
+        return (configuration[ordinal >>> 6] & (1L << ordinal)) != 0L;
+    }
+
+    /**
+     * @return boolean true, if the engine currently simulates the NFA because the
+     * cache thrashed.
+     */
+    public boolean isSimulating() {
+        return this.simulating;
+    }
+
+    /**
+     * @return the amount of DFA states currently cached.
+     */
+    public int getCachedStates() {
+        return this.cache.size();
+    }
+
+    /**
+     * @return the amount of steps that followed a cached DFA transition.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return the amount of steps that had to compute the next configuration.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return the amount of DFA states that were evicted from the cache.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * @return the amount of steps that were simulated because the cache thrashed.
+     */
+    public long getSimulatedSteps() {
+        return this.simulatedSteps;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.cache.size() + "/" +
+            this.capacity + " states, " + this.hits + " hits, " + this.misses + " misses, " +
+            this.evictions + " evictions)]";
+    }
+
+
+    /**
+     * A configuration of the NFA used as key of the cache. Keys in the cache are never
+     * changed; only the probe is {@link #set(long[])} to other configurations.
+     */
+    private static final class Configuration {
+        private long[] words;
+
+        private int hash;
+
+        private Configuration(final long[] words) {
+            this.set(words);
+        }
+
+        private Configuration set(final long[] words) {
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Configuration && Arrays.equals(this.words, ((Configuration) obj).words);
+        }
+    }
+
+    /**
+     * A state of the DFA. Evicted states may still be referenced by the transitions of
+     * other states, but are never followed.
+     */
+    private static final class DfaState {
+        private final long[] configuration;
+
+        private final boolean accepting, empty;
+
+        private DfaState[] next;
+
+        private boolean evicted;
+
+        private DfaState(final long[] configuration, final int symbols, final boolean accepting) {
+            this.configuration = configuration;
+            this.next = new DfaState[symbols];
+            this.accepting = accepting;
+            this.empty = Arrays.stream(configuration).allMatch(w -> w == 0L);
+        }
+
+        private void evict() {
+            this.evicted = true;
+            // Do not keep other states reachable through this one:
+            this.next = null;
+        }
+    }
+}
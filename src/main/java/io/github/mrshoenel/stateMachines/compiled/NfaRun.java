@@ -0,0 +1,203 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+
+
+/**
+ * The configuration of a {@link CompiledNfa}, i.e., the set of its currently active
+ * states, held as a bitset of state ordinals. A run uses two buffers that it swaps
+ * after each step, so that stepping does not allocate. Runs are not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class NfaRun implements StateMachineArtifact {
+    private final CompiledNfa nfa;
+
+    private long[] current, next;
+
+    NfaRun(@NonNull final CompiledNfa nfa) {
+        this.nfa = Objects.requireNonNull(nfa);
+        this.current = nfa.initial.clone();
+        this.next = new long[nfa.words];
+    }
+
+    /**
+     * @return the name of the NFA.
+     */
+    @Override
+    public String getName() {
+        return this.nfa.getName();
+    }
+
+    /**
+     * @return {@link CompiledNfa} the NFA of this run.
+     */
+    public CompiledNfa getNfa() {
+        return this.nfa;
+    }
+
+    /**
+     * Consumes a symbol by its label. A label that is not known to the NFA leads to
+     * the empty configuration.
+     *
+     * @param label The label of the symbol.
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean step(@NonNull final String label) {
+        final int symbol = this.nfa.getLabels().idOf(Objects.requireNonNull(label));
+        if (symbol < 0) {
+            Arrays.fill(this.current, 0L);
+            return false;
+        }
+        return this.step(symbol);
+    }
+
+    /**
+     * Consumes a symbol: the next configuration consists of all states that any of
+     * the active states reach by a transition with the symbol's label, and their
+     * epsilon-closures.
+     *
+     * @param symbol The ID of the symbol's label (see {@link CompiledNfa#getLabels()}).
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean step(final int symbol) {
+        final long[] current = this.current;
+        final boolean any = step(this.nfa, current, this.next, symbol);
+        this.current = this.next;
+        this.next = current;
+        return any;
+    }
+
+    /**
+     * Computes the configuration that follows the given configuration when consuming
+     * a symbol.
+     *
+     * @param nfa The NFA.
+     * @param current The current configuration.
+     * @param next Receives the next configuration; overwritten.
+     * @param symbol The ID of the symbol's label.
+     * @return boolean true, if any state is active in the next configuration.
+     */
+    static boolean step(final CompiledNfa nfa, final long[] current, final long[] next, final int symbol) {
+        final int base = symbol * nfa.getStateCount();
+        Arrays.fill(next, 0L);
+
+        long any = 0L;
+        for (int w = 0; w < current.length; w++) {
+            long word = current[w];
+            while (word != 0L) {
+                final int s = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1L;
+                for (int i = nfa.stepOffset[base + s]; i < nfa.stepOffset[base + s + 1]; i++) {
+                    final int t = nfa.stepTargets[i];
+                    next[t >>> 6] |= 1L << t;
+                    any = 1L;
+                }
+            }
+        }
+        return any != 0L;
+    }
+
+    /**
+     * Consumes all the given symbols, in order.
+     *
+     * @param symbols The IDs of the symbols' labels.
+     * @return boolean true, if any state is active afterwards.
+     */
+    public boolean run(@NonNull final int[] symbols) {
+        boolean active = !this.isEmpty();
+        for (int i = 0; i < symbols.length && active; i++) {
+            active = this.step(symbols[i]);
+        }
+        return active;
+    }
+
+    /**
+     * Returns to the initial configuration.
+     *
+     * @return {@link NfaRun} this for chaining
+     */
+    public NfaRun reset() {
+        System.arraycopy(this.nfa.initial, 0, this.current, 0, this.current.length);
+        return this;
+    }
+
+    /**
+     * @param ordinal The ordinal of a state.
+     * @return boolean true, if the state is active.
+     */
+    public boolean isActive(final int ordinal) {
+        return (this.current[ordinal >>> 6] & (1L << ordinal)) != 0L;
+    }
+
+    /**
+     * @return boolean true, if no state is active.
+     */
+    public boolean isEmpty() {
+        for (final long word : this.current) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return boolean true, if any active state is a final state.
+     */
+    public boolean isAccepting() {
+        return this.nfa.isAccepting(this.current);
+    }
+
+    /**
+     * @return the amount of active states.
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (final long word : this.current) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Calls the given action with the ordinal of each active state, in ascending order.
+     *
+     * @param action The action to call.
+     */
+    public void forEachActive(@NonNull final IntConsumer action) {
+        Objects.requireNonNull(action);
+        for (int w = 0; w < this.current.length; w++) {
+            long word = this.current[w];
+            while (word != 0L) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1L;
+            }
+        }
+    }
+
+    /**
+     * @return {@link BitSet} a copy of the current configuration.
+     */
+    public BitSet getActiveStates() {
+        return BitSet.valueOf(this.current);
+    }
+
+    /**
+     * Returns the names of the active states.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final var names = new StringBuilder();
+        this.forEachActive(s -> names.append(names.length() == 0 ? "" : ", ").append(this.nfa.getState(s).getName()));
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " {" + names + "}]";
+    }
+}
@@ -0,0 +1,742 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+
+/**
+ * Stores the configurations of many instances of a {@link CompiledStateMachine} outside
+ * of the heap, either in direct memory ({@link #allocate(CompiledStateMachine, int)}) or
+ * in a memory-mapped file ({@link #open(CompiledStateMachine, Path, int)}). Instances are
+ * identified by dense IDs and are not represented by objects; transitions are executed
+ * directly against the memory, with the semantics of {@link StateMachineInstance}: no
+ * hooks are called, and guards are evaluated on the definition's shared transitions,
+ * so that they do not see the argument values stored for an instance.
+ *
+ * Each instance takes a fixed-size record: the current state per machine slot (four
+ * bytes each), a bitmask of the arguments that are set, and eight bytes per argument.
+ * Hence, only arguments of the types boolean, byte, short, char, int, long, float and
+ * double (boxed) are supported. The store's header holds the definition's fingerprint,
+ * so that a mapped file is only reopened for the same definition; all instances it
+ * holds are immediately available.
+ *
+ * Operations on different instances may run concurrently, while operations on the same
+ * instance must be synchronized externally. The store is limited to 2 GiB.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class OffHeapInstanceStore implements StateMachineArtifact, AutoCloseable {
+    private static final int MAGIC = 0x534d4f48; // "SMOH"
+
+    private static final int HEADER_BYTES = 64;
+
+    private static final int MAGIC_OFFSET = 0, FINGERPRINT_OFFSET = 4, RECORD_BYTES_OFFSET = 8,
+        CAPACITY_OFFSET = 12, SIZE_OFFSET = 16;
+
+    /**
+     * The kinds of values of argument-slots.
+     */
+    private static final byte BOOLEAN = 0, BYTE = 1, SHORT = 2, CHAR = 3, INT = 4, LONG = 5, FLOAT = 6, DOUBLE = 7;
+
+    private final CompiledStateMachine definition;
+
+    private final ByteBuffer buffer;
+
+    private final byte[] kinds;
+
+    /**
+     * The offsets of the bitmask and the argument values within a record, and the size
+     * of a record.
+     */
+    private final int maskOffset, argumentsOffset, recordBytes;
+
+    private final int capacity;
+
+    /**
+     * The initial record of new instances.
+     */
+    private final byte[] initialRecord;
+
+    private int size;
+
+    private OffHeapInstanceStore(final CompiledStateMachine definition, final ByteBuffer buffer, final int capacity) {
+        this.definition = definition;
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.kinds = kindsOf(definition);
+        this.maskOffset = maskOffsetOf(definition);
+        this.argumentsOffset = argumentsOffsetOf(definition);
+        this.recordBytes = recordBytesOf(definition);
+        this.capacity = capacity;
+
+        final var initial = ByteBuffer.allocate(this.recordBytes).order(ByteOrder.nativeOrder());
+        for (int slot = 0; slot < definition.initialCurrent.length; slot++) {
+            initial.putInt(4 * slot, definition.initialCurrent[slot]);
+        }
+        for (int a = 0; a < this.kinds.length; a++) {
+            final var value = definition.initialArguments[a];
+            if (value != CompiledStateMachine.UNSET) {
+                writeArgument(initial, 0, a, this.encode(a, value));
+            }
+        }
+        this.initialRecord = initial.array();
+    }
+
+    private static int maskOffsetOf(final CompiledStateMachine definition) {
+        return (4 * definition.getMachineCount() + 7) & ~7;
+    }
+
+    private static int argumentsOffsetOf(final CompiledStateMachine definition) {
+        return maskOffsetOf(definition) + 8 * ((definition.getArgumentCount() + 63) >>> 6);
+    }
+
+    private static int recordBytesOf(final CompiledStateMachine definition) {
+        return argumentsOffsetOf(definition) + 8 * definition.getArgumentCount();
+    }
+
+    private static int requiredBytes(final int recordBytes, final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity must not be negative: " + capacity);
+        }
+        final long bytes = HEADER_BYTES + (long) recordBytes * capacity;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The store would require more than 2 GiB: " + bytes + " bytes");
+        }
+        return (int) bytes;
+    }
+
+    /**
+     * Creates a store in direct memory.
+     *
+     * @param definition The definition of the instances.
+     * @param capacity The maximum amount of instances.
+     * @return {@link OffHeapInstanceStore}
+     * @exception IllegalArgumentException if the definition has arguments of unsupported
+     * types, or if the store would be too large.
+     */
+    public static OffHeapInstanceStore allocate(@NonNull final CompiledStateMachine definition, final int capacity) {
+        kindsOf(Objects.requireNonNull(definition));
+        final var store = new OffHeapInstanceStore(
+            definition, ByteBuffer.allocateDirect(requiredBytes(recordBytesOf(definition), capacity)), capacity);
+        store.writeHeader();
+        return store;
+    }
+
+    /**
+     * Opens or creates a store in a memory-mapped file. An existing store keeps its
+     * instances and may be grown to a larger capacity.
+     *
+     * @param definition The definition of the instances.
+     * @param file The file of the store.
+     * @param capacity The maximum amount of instances; at least the store's current
+     *                 capacity is used.
+     * @return {@link OffHeapInstanceStore}
+     * @throws IOException if the file cannot be opened or mapped.
+     * @exception IllegalArgumentException if the file is not a store of the given definition,
+     * if the definition has arguments of unsupported types, or if the store would be too large.
+     */
+    public static OffHeapInstanceStore open(
+        @NonNull final CompiledStateMachine definition, @NonNull final Path file, final int capacity) throws IOException
+    {
+        kindsOf(Objects.requireNonNull(definition));
+        final int recordBytes = recordBytesOf(definition);
+        try (final var channel = FileChannel.open(Objects.requireNonNull(file),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            int existingCapacity = -1, existingSize = 0;
+            if (channel.size() >= HEADER_BYTES) {
+                final var header = channel.map(FileChannel.MapMode.READ_ONLY, 0L, HEADER_BYTES).order(ByteOrder.nativeOrder());
+                if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                    throw new IllegalArgumentException("Not an instance store: " + file);
+                }
+                if (header.getInt(FINGERPRINT_OFFSET) != definition.getFingerprint() ||
+                    header.getInt(RECORD_BYTES_OFFSET) != recordBytes) {
+                    throw new IllegalArgumentException("The store was created for another definition: " + file);
+                }
+                existingCapacity = header.getInt(CAPACITY_OFFSET);
+                existingSize = header.getInt(SIZE_OFFSET);
+            } else if (channel.size() > 0L) {
+                throw new IllegalArgumentException("Not an instance store: " + file);
+            }
+
+            final int actualCapacity = Math.max(capacity, existingCapacity);
+            final MappedByteBuffer mapped = channel.map(
+                FileChannel.MapMode.READ_WRITE, 0L, requiredBytes(recordBytes, actualCapacity));
+            final var store = new OffHeapInstanceStore(definition, mapped, actualCapacity);
+            store.size = existingSize;
+            store.writeHeader();
+            return store;
+        }
+    }
+
+    private void writeHeader() {
+        this.buffer.putInt(MAGIC_OFFSET, MAGIC)
+            .putInt(FINGERPRINT_OFFSET, this.definition.getFingerprint())
+            .putInt(RECORD_BYTES_OFFSET, this.recordBytes)
+            .putInt(CAPACITY_OFFSET, this.capacity)
+            .putInt(SIZE_OFFSET, this.size);
+    }
+
+    private static byte[] kindsOf(final CompiledStateMachine definition) {
+        final var kinds = new byte[definition.getArgumentCount()];
+        for (int a = 0; a < kinds.length; a++) {
+            final var type = definition.argumentTypes[a];
+            if (type == Boolean.class) {
+                kinds[a] = BOOLEAN;
+            } else if (type == Byte.class) {
+                kinds[a] = BYTE;
+            } else if (type == Short.class) {
+                kinds[a] = SHORT;
+            } else if (type == Character.class) {
+                kinds[a] = CHAR;
+            } else if (type == Integer.class) {
+                kinds[a] = INT;
+            } else if (type == Long.class) {
+                kinds[a] = LONG;
+            } else if (type == Float.class) {
+                kinds[a] = FLOAT;
+            } else if (type == Double.class) {
+                kinds[a] = DOUBLE;
+            } else {
+                throw new IllegalArgumentException("Argument '" + definition.argumentKeys[a].getName() +
+                    "' of type " + type.getSimpleName() + " cannot be stored off-heap.");
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * @return the name of the definition.
+     */
+    @Override
+    public String getName() {
+        return this.definition.getName();
+    }
+
+    /**
+     * @return {@link CompiledStateMachine} the definition of the instances.
+     */
+    public CompiledStateMachine getDefinition() {
+        return this.definition;
+    }
+
+    /**
+     * @return the amount of instances in this store.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the maximum amount of instances.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the size of an instance's record, in bytes.
+     */
+    public int getRecordBytes() {
+        return this.recordBytes;
+    }
+
+    /**
+     * Adds a new instance in the definition's initial configuration.
+     *
+     * @return the ID of the new instance.
+     * @exception IllegalStateException if the store is full.
+     */
+    public int allocate() {
+        return this.allocate(1);
+    }
+
+    /**
+     * Adds new instances in the definition's initial configuration.
+     *
+     * @param count The amount of instances to add.
+     * @return the ID of the first new instance; the others follow it.
+     * @exception IllegalStateException if the store has not enough space.
+     */
+    public synchronized int allocate(final int count) {
+        if (count < 0 || count > this.capacity - this.size) {
+            throw new IllegalStateException("The store cannot hold " + count + " more instances.");
+        }
+        final int first = this.size;
+        for (int id = first; id < first + count; id++) {
+            this.putRecord(this.offsetOf(id), this.initialRecord);
+        }
+        this.size += count;
+        this.buffer.putInt(SIZE_OFFSET, this.size);
+        return first;
+    }
+
+    /**
+     * Returns an instance to the definition's initial configuration.
+     *
+     * @param id The ID of the instance.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     */
+    public OffHeapInstanceStore reset(final int id) {
+        this.putRecord(this.checkedOffsetOf(id), this.initialRecord);
+        return this;
+    }
+
+    private void putRecord(final int base, final byte[] record) {
+        this.buffer.duplicate().position(base).put(record);
+    }
+
+    private int offsetOf(final int id) {
+        return HEADER_BYTES + id * this.recordBytes;
+    }
+
+    private int checkedOffsetOf(final int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException("No such instance: " + id);
+        }
+        return this.offsetOf(id);
+    }
+
+    /**
+     * Follows the current states of an instance down to the most deeply nested active
+     * state (see {@link CompiledStateMachine#currentStateDeep(int[])}).
+     */
+    private int currentStateDeep(final int base) {
+        final var def = this.definition;
+        int slot = 0, state = this.buffer.getInt(base);
+        for (int i = 0; i < def.machineStates.length; i++) {
+            final int next = def.stateMachineSlot[state];
+            if (next < 0 || next == slot) {
+                break;
+            }
+            slot = next;
+            state = this.buffer.getInt(base + 4 * slot);
+        }
+        return state;
+    }
+
+    /**
+     * @param id The ID of the instance.
+     * @return the ordinal of the instance's most deeply nested active state.
+     */
+    public int getCurrentStateOrdinal(final int id) {
+        return this.currentStateDeep(this.checkedOffsetOf(id));
+    }
+
+    /**
+     * @param id The ID of the instance.
+     * @return {@link State} the instance's most deeply nested active state.
+     */
+    public State getCurrentState(final int id) {
+        return this.definition.getState(this.getCurrentStateOrdinal(id));
+    }
+
+    /**
+     * Executes a transition of an instance's current (deep) state, with the semantics of
+     * {@link StateMachineInstance#transition(TransitionKey)}.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the transition to execute.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     * @throws NoSuchTransitionException if the current state has no transition with the
+     * given key.
+     * @throws IllegalTransitionException if the transition is currently disallowed, if one
+     * of its arguments has no value set or if the 'to'-state is an orphan.
+     */
+    public OffHeapInstanceStore transition(final int id, @NonNull final TransitionKey key)
+        throws NoSuchTransitionException, IllegalTransitionException
+    {
+        final var def = this.definition;
+        final int base = this.checkedOffsetOf(id);
+        final int t = def.findTransition(this.currentStateDeep(base), Objects.requireNonNull(key));
+        if (t < 0) {
+            throw new NoSuchTransitionException("No transition with name " + key.getName());
+        }
+        if (!def.transitions[t].isAllowed()) {
+            throw new IllegalTransitionException("This transition is currently disallowed.");
+        }
+        for (int a = def.argumentOffset[t]; a < def.argumentOffset[t + 1]; a++) {
+            if (!this.isSet(base, def.argumentSlots[a])) {
+                throw new IllegalTransitionException(
+                    "Argument '" + def.argumentKeys[def.argumentSlots[a]].getName() + "' has not been set.");
+            }
+        }
+        if (def.stateOwner[def.transitionTo[t]] < 0) {
+            throw new IllegalTransitionException("Orphan state: " + def.states[def.transitionTo[t]].getName());
+        }
+
+        this.execute(base, t);
+        return this;
+    }
+
+    /**
+     * Executes a sequence of transitions on an instance, with the semantics of {@link
+     * StateMachineInstance#applyAll(int[])}.
+     *
+     * @param id The ID of the instance.
+     * @param ids The IDs of the transitions' keys, in order.
+     * @return the index of the first step that failed, or -1 if all steps succeeded.
+     */
+    public int applyAll(final int id, @NonNull final int[] ids) {
+        final var def = this.definition;
+        final int base = this.checkedOffsetOf(id);
+        final int symbols = def.transitionKeys.length;
+        for (int i = 0; i < Objects.requireNonNull(ids).length; i++) {
+            final int k = ids[i];
+            if (k < 0 || k >= symbols) {
+                return i;
+            }
+            final int t = def.transitionOf(this.currentStateDeep(base), k);
+            if (t < 0 || !this.canExecute(base, t)) {
+                return i;
+            }
+            this.execute(base, t);
+        }
+        return -1;
+    }
+
+    /**
+     * Executes the transition with the given key on each instance in the range of IDs,
+     * where possible.
+     *
+     * @param fromId The ID of the first instance.
+     * @param toId The ID after the last instance.
+     * @param key The key of the transition.
+     * @return the amount of instances that executed the transition.
+     */
+    public int transitionAll(final int fromId, final int toId, @NonNull final TransitionKey key) {
+        final var def = this.definition;
+        if (Objects.requireNonNull(key).definition != def) {
+            throw new IllegalArgumentException("The key " + key + " belongs to another definition.");
+        }
+        Objects.checkFromToIndex(fromId, toId, this.size());
+        final int symbols = def.transitionKeys.length;
+        final int k = key.id;
+
+        int count = 0;
+        for (int id = fromId; id < toId; id++) {
+            final int base = this.offsetOf(id);
+            final int t = def.transitionOf(this.currentStateDeep(base), k);
+            if (t >= 0 && this.canExecute(base, t)) {
+                this.execute(base, t);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean canExecute(final int base, final int t) {
+        final var def = this.definition;
+        if (!def.transitions[t].isAllowed() || def.stateOwner[def.transitionTo[t]] < 0) {
+            return false;
+        }
+        for (int a = def.argumentOffset[t]; a < def.argumentOffset[t + 1]; a++) {
+            if (!this.isSet(base, def.argumentSlots[a])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the machines of an instance point at the states entered by the given transition
+     * (see {@link CompiledStateMachine#enter(int[], int)}).
+     */
+    private void execute(final int base, final int t) {
+        final var def = this.definition;
+        final int to = def.transitionTo[t];
+        final int slot = def.stateMachineSlot[to];
+        if (slot >= 0) {
+            this.buffer.putInt(base + 4 * slot, to);
+        }
+        for (int e = def.enteredOffset[t]; e < def.enteredOffset[t + 1]; e++) {
+            final int state = def.enteredStates[e];
+            this.buffer.putInt(base + 4 * def.stateOwner[state], state);
+        }
+    }
+
+    private boolean isSet(final int base, final int slot) {
+        return (this.buffer.getLong(base + this.maskOffset + 8 * (slot >>> 6)) & (1L << slot)) != 0L;
+    }
+
+    private void writeArgument(final ByteBuffer buffer, final int base, final int slot, final long bits) {
+        final int word = base + this.maskOffset + 8 * (slot >>> 6);
+        buffer.putLong(word, buffer.getLong(word) | (1L << slot));
+        buffer.putLong(base + this.argumentsOffset + 8 * slot, bits);
+    }
+
+    /**
+     * Sets the value of an argument of an instance.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @param value The value, which must be of the argument's type.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     * @exception IllegalArgumentException if the value is null or not of the argument's type.
+     */
+    public OffHeapInstanceStore setArgument(final int id, @NonNull final ArgumentKey key, @Nullable final Object value) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        this.writeArgument(this.buffer, this.checkedOffsetOf(id), key.id, this.encode(key.id, value));
+        return this;
+    }
+
+    /**
+     * Sets the value of an argument of an integral type (or char) without boxing. The
+     * value is narrowed to the argument's type.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @param value The value.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     * @exception IllegalArgumentException if the argument is not of an integral type.
+     */
+    public OffHeapInstanceStore setLong(final int id, @NonNull final ArgumentKey key, final long value) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final byte kind = this.kinds[key.id];
+        if (kind == BOOLEAN || kind == FLOAT || kind == DOUBLE) {
+            throw new IllegalArgumentException("Argument '" + key.getName() + "' is not of an integral type.");
+        }
+        this.writeArgument(this.buffer, this.checkedOffsetOf(id), key.id, narrow(kind, value));
+        return this;
+    }
+
+    /**
+     * Sets the value of an argument of a floating-point type without boxing.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @param value The value.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     * @exception IllegalArgumentException if the argument is not of a floating-point type.
+     */
+    public OffHeapInstanceStore setDouble(final int id, @NonNull final ArgumentKey key, final double value) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final byte kind = this.kinds[key.id];
+        if (kind != FLOAT && kind != DOUBLE) {
+            throw new IllegalArgumentException("Argument '" + key.getName() + "' is not of a floating-point type.");
+        }
+        this.writeArgument(this.buffer, this.checkedOffsetOf(id), key.id,
+            kind == FLOAT ? Float.floatToRawIntBits((float) value) : Double.doubleToRawLongBits(value));
+        return this;
+    }
+
+    /**
+     * Unsets the value of an argument of an instance.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     */
+    public OffHeapInstanceStore unsetArgument(final int id, @NonNull final ArgumentKey key) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final int word = this.checkedOffsetOf(id) + this.maskOffset + 8 * (key.id >>> 6);
+        this.buffer.putLong(word, this.buffer.getLong(word) & ~(1L << key.id));
+        return this;
+    }
+
+    /**
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @return boolean true, if the argument of the instance has a value.
+     */
+    public boolean hasArgument(final int id, @NonNull final ArgumentKey key) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        return this.isSet(this.checkedOffsetOf(id), key.id);
+    }
+
+    /**
+     * Gets the value of an argument of an instance, boxed into the argument's type.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @return the value
+     * @throws NoValueSetException if no value has been set for the argument.
+     */
+    public Object getArgument(final int id, @NonNull final ArgumentKey key) throws NoValueSetException {
+        final long bits = this.getBits(id, key);
+        switch (this.kinds[key.id]) {
+            case BOOLEAN: return bits != 0L;
+            case BYTE: return (byte) bits;
+            case SHORT: return (short) bits;
+            case CHAR: return (char) bits;
+            case INT: return (int) bits;
+            case FLOAT: return Float.intBitsToFloat((int) bits);
+            case DOUBLE: return Double.longBitsToDouble(bits);
+            default: return bits;
+        }
+    }
+
+    /**
+     * Gets the value of an argument of an integral type (or char), or of a boolean (as
+     * 0 or 1), without boxing.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @return the value
+     * @throws NoValueSetException if no value has been set for the argument.
+     * @exception IllegalArgumentException if the argument is of a floating-point type.
+     */
+    public long getLong(final int id, @NonNull final ArgumentKey key) throws NoValueSetException {
+        final long bits = this.getBits(id, key);
+        final byte kind = this.kinds[key.id];
+        if (kind == FLOAT || kind == DOUBLE) {
+            throw new IllegalArgumentException("Argument '" + key.getName() + "' is of a floating-point type.");
+        }
+        return bits;
+    }
+
+    /**
+     * Gets the value of an argument of a floating-point type without boxing.
+     *
+     * @param id The ID of the instance.
+     * @param key The key of the argument.
+     * @return the value
+     * @throws NoValueSetException if no value has been set for the argument.
+     * @exception IllegalArgumentException if the argument is not of a floating-point type.
+     */
+    public double getDouble(final int id, @NonNull final ArgumentKey key) throws NoValueSetException {
+        final long bits = this.getBits(id, key);
+        final byte kind = this.kinds[key.id];
+        if (kind == FLOAT) {
+            return Float.intBitsToFloat((int) bits);
+        } else if (kind != DOUBLE) {
+            throw new IllegalArgumentException("Argument '" + key.getName() + "' is not of a floating-point type.");
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private long getBits(final int id, final ArgumentKey key) throws NoValueSetException {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final int base = this.checkedOffsetOf(id);
+        if (!this.isSet(base, key.id)) {
+            throw new NoValueSetException("No value has been set for argument '" + key.getName() + "'.");
+        }
+        return this.buffer.getLong(base + this.argumentsOffset + 8 * key.id);
+    }
+
+    /**
+     * Encodes a boxed value of the argument's type into eight bytes.
+     */
+    private long encode(final int slot, final Object value) {
+        final var type = this.definition.argumentTypes[slot];
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("Argument '" + this.definition.argumentKeys[slot].getName() +
+                "' requires a (non-null) value of type " + type.getSimpleName());
+        }
+        switch (this.kinds[slot]) {
+            case BOOLEAN: return (Boolean) value ? 1L : 0L;
+            case CHAR: return (Character) value;
+            case FLOAT: return Float.floatToRawIntBits((Float) value);
+            case DOUBLE: return Double.doubleToRawLongBits((Double) value);
+            default: return ((Number) value).longValue();
+        }
+    }
+
+    private static long narrow(final byte kind, final long value) {
+        switch (kind) {
+            case BYTE: return (byte) value;
+            case SHORT: return (short) value;
+            case CHAR: return (char) value;
+            case INT: return (int) value;
+            default: return value;
+        }
+    }
+
+    /**
+     * Copies the configuration and argument values of an instance onto the heap.
+     *
+     * @param id The ID of the instance.
+     * @return {@link StateMachineInstance} a new instance
+     */
+    public StateMachineInstance load(final int id) {
+        final int base = this.checkedOffsetOf(id);
+        final var instance = this.definition.newInstance();
+        for (int slot = 0; slot < instance.current.length; slot++) {
+            instance.current[slot] = this.buffer.getInt(base + 4 * slot);
+        }
+        if (this.kinds.length > 0) {
+            final var arguments = instance.mutableArguments();
+            for (int a = 0; a < this.kinds.length; a++) {
+                try {
+                    arguments[a] = this.isSet(base, a) ? this.getArgument(id, this.definition.argumentKeys[a]) :
+                        CompiledStateMachine.UNSET;
+                } catch (NoValueSetException nvsEx) {
+                    throw new Error(nvsEx); // cannot happen, isSet() was checked
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Copies the configuration and argument values of a heap-instance into the store.
+     *
+     * @param id The ID of the instance to overwrite.
+     * @param instance The instance to copy.
+     * @return {@link OffHeapInstanceStore} this for chaining
+     * @exception IllegalArgumentException if the instance belongs to another definition,
+     * or if one of its argument values is null.
+     */
+    public OffHeapInstanceStore save(final int id, @NonNull final StateMachineInstance instance) {
+        if (Objects.requireNonNull(instance).getDefinition() != this.definition) {
+            throw new IllegalArgumentException("The instance " + instance + " belongs to another definition.");
+        }
+        final int base = this.checkedOffsetOf(id);
+        final var arguments = instance.arguments == null ? this.definition.initialArguments : instance.arguments;
+        final var record = ByteBuffer.allocate(this.recordBytes).order(ByteOrder.nativeOrder());
+        for (int slot = 0; slot < instance.current.length; slot++) {
+            record.putInt(4 * slot, instance.current[slot]);
+        }
+        for (int a = 0; a < this.kinds.length; a++) {
+            if (arguments[a] != CompiledStateMachine.UNSET) {
+                this.writeArgument(record, 0, a, this.encode(a, arguments[a]));
+            }
+        }
+        this.putRecord(base, record.array());
+        return this;
+    }
+
+    /**
+     * Writes the changes of a memory-mapped store to its file. Does nothing for stores in
+     * direct memory.
+     *
+     * @return {@link OffHeapInstanceStore} this for chaining
+     */
+    public OffHeapInstanceStore force() {
+        if (this.buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) this.buffer).force();
+        }
+        return this;
+    }
+
+    /**
+     * Forces the changes of a memory-mapped store. The memory is released once the store
+     * is garbage collected.
+     */
+    @Override
+    public void close() {
+        this.force();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.size() + "/" +
+            this.capacity + " instances, " + this.recordBytes + " bytes each)]";
+    }
+}
@@ -0,0 +1,694 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.TransitionArgument;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+
+/**
+ * Takes compact binary snapshots of the active configuration of {@link
+ * StateMachineInstance}s or machines built using the authoring API, and restores them.
+ * A codec is created for one {@link CompiledStateMachine}; machines are expected to be
+ * built the same way as the machine the definition was compiled from.
+ *
+ * A snapshot holds, in this order:
+ * <ul>
+ *     <li>the definition's fingerprint ({@link CompiledStateMachine#getFingerprint()}),
+ *     as four bytes,</li>
+ *     <li>the ordinals of the current states along the active path, i.e., from the
+ *     top-level machine down to the state returned by {@link
+ *     StateMachine#getCurrentStateDeep()}, as variable-length quantities,</li>
+ *     <li>the amount of arguments whose values differ from the definition's, and for
+ *     each, the distance to the previous argument's slot, the ID of its value's
+ *     {@link ValueCodec} and the encoded value.</li>
+ * </ul>
+ * Only the machines on the active path are restored; all other machines keep their
+ * current state. A machine in a flat configuration without modified arguments hence
+ * takes six bytes.
+ *
+ * Values are encoded by the codec registered for their exact class. Codecs for the
+ * boxed primitives, {@link String} and byte[] are registered by default, further
+ * codecs may be registered using {@link #register(Class, ValueCodec)}. The IDs of
+ * codecs are assigned in the order of registration, so that codecs that take and
+ * restore snapshots must register the same types in the same order.
+ *
+ * Codecs are not thread-safe while types are registered, but may be shared afterwards.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class SnapshotCodec implements StateMachineArtifact {
+    /**
+     * The codec-IDs of unset and null values.
+     */
+    private static final int UNSET = 0, NULL = 1;
+
+    private final CompiledStateMachine definition;
+
+    /**
+     * For each machine slot, the ordinals of its sub-states by their names.
+     */
+    private final List<Map<String, Integer>> childOrdinals;
+
+    private final Map<Class<?>, Integer> codecIds = new HashMap<>();
+
+    private final List<ValueCodec<?>> codecs = new ArrayList<>();
+
+    /**
+     * Creates a new codec for the given definition and registers the default value-codecs.
+     *
+     * @param definition The definition of the instances and machines to snapshot.
+     */
+    public SnapshotCodec(@NonNull final CompiledStateMachine definition) {
+        this.definition = Objects.requireNonNull(definition);
+
+        this.childOrdinals = new ArrayList<>();
+        for (int slot = 0; slot < definition.getMachineCount(); slot++) {
+            this.childOrdinals.add(new HashMap<>());
+        }
+        for (int s = 0; s < definition.getStateCount(); s++) {
+            if (definition.stateOwner[s] >= 0) {
+                this.childOrdinals.get(definition.stateOwner[s]).putIfAbsent(definition.states[s].getName(), s);
+            }
+        }
+
+        this.register(Boolean.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Boolean value) {
+                writer.writeByte(value ? 1 : 0);
+            }
+
+            @Override
+            public Boolean read(final SnapshotReader reader) {
+                return reader.readByte() != 0;
+            }
+        });
+        this.register(Byte.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Byte value) {
+                writer.writeByte(value);
+            }
+
+            @Override
+            public Byte read(final SnapshotReader reader) {
+                return (byte) reader.readByte();
+            }
+        });
+        this.register(Short.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Short value) {
+                writer.writeSignedVarLong(value);
+            }
+
+            @Override
+            public Short read(final SnapshotReader reader) {
+                return (short) reader.readSignedVarLong();
+            }
+        });
+        this.register(Integer.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Integer value) {
+                writer.writeSignedVarLong(value);
+            }
+
+            @Override
+            public Integer read(final SnapshotReader reader) {
+                return (int) reader.readSignedVarLong();
+            }
+        });
+        this.register(Long.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Long value) {
+                writer.writeSignedVarLong(value);
+            }
+
+            @Override
+            public Long read(final SnapshotReader reader) {
+                return reader.readSignedVarLong();
+            }
+        });
+        this.register(Float.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Float value) {
+                writer.writeFloat(value);
+            }
+
+            @Override
+            public Float read(final SnapshotReader reader) {
+                return reader.readFloat();
+            }
+        });
+        this.register(Double.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Double value) {
+                writer.writeDouble(value);
+            }
+
+            @Override
+            public Double read(final SnapshotReader reader) {
+                return reader.readDouble();
+            }
+        });
+        this.register(Character.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final Character value) {
+                writer.writeVarInt(value);
+            }
+
+            @Override
+            public Character read(final SnapshotReader reader) {
+                return (char) reader.readVarInt();
+            }
+        });
+        this.register(String.class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final String value) {
+                writer.writeString(value);
+            }
+
+            @Override
+            public String read(final SnapshotReader reader) {
+                return reader.readString();
+            }
+        });
+        this.register(byte[].class, new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final byte[] value) {
+                writer.writeBytes(value);
+            }
+
+            @Override
+            public byte[] read(final SnapshotReader reader) {
+                return reader.readBytes();
+            }
+        });
+    }
+
+    /**
+     * @return the name of the definition.
+     */
+    @Override
+    public String getName() {
+        return this.definition.getName();
+    }
+
+    /**
+     * @return {@link CompiledStateMachine} the definition of this codec.
+     */
+    public CompiledStateMachine getDefinition() {
+        return this.definition;
+    }
+
+    /**
+     * Registers the codec for values of the given (exact) type. If the type already
+     * has a codec, it is replaced and keeps its ID.
+     *
+     * @param type The type of the values.
+     * @param codec The codec to encode the values with.
+     * @param <T> The type of the values.
+     * @return {@link SnapshotCodec} this for chaining
+     */
+    public <T> SnapshotCodec register(@NonNull final Class<T> type, @NonNull final ValueCodec<? super T> codec) {
+        Objects.requireNonNull(codec);
+        final var id = this.codecIds.get(Objects.requireNonNull(type));
+        if (id == null) {
+            this.codecIds.put(type, this.codecs.size() + NULL + 1);
+            this.codecs.add(codec);
+        } else {
+            this.codecs.set(id - NULL - 1, codec);
+        }
+        return this;
+    }
+
+    /**
+     * @param instance The instance to snapshot.
+     * @return the snapshot
+     * @throws IllegalArgumentException if the instance belongs to another definition or
+     * if there is no codec for one of its argument values.
+     */
+    public byte[] snapshot(@NonNull final StateMachineInstance instance) {
+        final var writer = new SnapshotWriter(32);
+        this.write(instance, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Appends a snapshot of the given instance to the writer.
+     *
+     * @param instance The instance to snapshot.
+     * @param writer The writer to append the snapshot to.
+     * @return {@link SnapshotCodec} this for chaining
+     * @throws IllegalArgumentException if the instance belongs to another definition or
+     * if there is no codec for one of its argument values.
+     */
+    public SnapshotCodec write(@NonNull final StateMachineInstance instance, @NonNull final SnapshotWriter writer) {
+        this.checkDefinition(Objects.requireNonNull(instance));
+        final var def = this.definition;
+        writer.writeFixedInt(def.getFingerprint());
+
+        final int[] current = instance.current;
+        int slot = 0;
+        for (int i = 0; i < current.length; i++) {
+            final int ordinal = current[slot];
+            writer.writeVarInt(ordinal);
+            final int next = def.stateMachineSlot[ordinal];
+            if (next < 0 || next == slot) {
+                break;
+            }
+            slot = next;
+        }
+
+        this.writeArguments(instance.arguments, writer);
+        return this;
+    }
+
+    /**
+     * Restores a snapshot onto a new instance of the definition.
+     *
+     * @param snapshot The snapshot to restore.
+     * @return {@link StateMachineInstance} the new instance
+     * @throws IllegalArgumentException if the snapshot was taken from another
+     * definition, or if it is malformed.
+     */
+    public StateMachineInstance restore(@NonNull final byte[] snapshot) {
+        return this.restore(snapshot, this.definition.newInstance());
+    }
+
+    /**
+     * Restores a snapshot onto the given instance.
+     *
+     * @param snapshot The snapshot to restore.
+     * @param instance The instance to restore.
+     * @return {@link StateMachineInstance} the given instance
+     * @throws IllegalArgumentException if the snapshot was taken from another
+     * definition, or if it is malformed.
+     */
+    public StateMachineInstance restore(@NonNull final byte[] snapshot, @NonNull final StateMachineInstance instance) {
+        return this.read(new SnapshotReader(snapshot), instance);
+    }
+
+    /**
+     * Reads the next snapshot from the reader and restores it onto the given instance.
+     *
+     * @param reader The reader to read the snapshot from.
+     * @param instance The instance to restore.
+     * @return {@link StateMachineInstance} the given instance
+     * @throws IllegalArgumentException if the snapshot was taken from another
+     * definition, or if it is malformed.
+     */
+    public StateMachineInstance read(@NonNull final SnapshotReader reader, @NonNull final StateMachineInstance instance) {
+        this.checkDefinition(Objects.requireNonNull(instance));
+        this.readFingerprint(reader);
+
+        final var def = this.definition;
+        final int[] current = instance.current;
+        int slot = 0;
+        for (int i = 0; i < current.length; i++) {
+            final int ordinal = this.readOrdinal(reader, slot);
+            current[slot] = ordinal;
+            final int next = def.stateMachineSlot[ordinal];
+            if (next < 0 || next == slot) {
+                break;
+            }
+            slot = next;
+        }
+
+        instance.arguments = this.readArguments(reader);
+        return instance;
+    }
+
+    /**
+     * Takes a snapshot of a machine that was built the same way as the machine of
+     * this codec's definition. States are identified by their names.
+     *
+     * @param machine The top-level machine to snapshot.
+     * @return the snapshot
+     * @throws IllegalArgumentException if the machine does not match the definition,
+     * or if there is no codec for one of its argument values.
+     */
+    public byte[] snapshot(@NonNull final StateMachine machine) {
+        final var writer = new SnapshotWriter(32);
+        this.write(machine, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Appends a snapshot of the given machine to the writer (see {@link #snapshot(StateMachine)}).
+     *
+     * @param machine The top-level machine to snapshot.
+     * @param writer The writer to append the snapshot to.
+     * @return {@link SnapshotCodec} this for chaining
+     * @throws IllegalArgumentException if the machine does not match the definition,
+     * or if there is no codec for one of its argument values.
+     */
+    public SnapshotCodec write(@NonNull final StateMachine machine, @NonNull final SnapshotWriter writer) {
+        this.checkDefinition(Objects.requireNonNull(machine));
+        final var def = this.definition;
+        writer.writeFixedInt(def.getFingerprint());
+
+        var owner = machine;
+        int slot = 0;
+        for (int i = 0; i < def.getMachineCount(); i++) {
+            final var current = owner.getCurrentState();
+            final int ordinal;
+            if (current == null || current == owner) {
+                ordinal = def.machineStates[slot];
+            } else {
+                final var child = this.childOrdinals.get(slot).get(current.getName());
+                if (child == null) {
+                    throw new IllegalArgumentException("Unknown state: " + current.getName());
+                }
+                ordinal = child;
+            }
+
+            writer.writeVarInt(ordinal);
+            final int next = def.stateMachineSlot[ordinal];
+            if (next < 0 || next == slot || !(current instanceof StateMachine)) {
+                break;
+            }
+            slot = next;
+            owner = (StateMachine) current;
+        }
+
+        final var values = new Object[def.getArgumentCount()];
+        Arrays.fill(values, CompiledStateMachine.UNSET);
+        this.forEachArgument(machine, (argument, s) -> {
+            if (values[s] == CompiledStateMachine.UNSET && argument.hasValue()) {
+                values[s] = valueOf(argument);
+            }
+        });
+        this.writeArguments(values, writer);
+        return this;
+    }
+
+    /**
+     * Restores a snapshot onto the given machine, which must have been built the same
+     * way as the machine of this codec's definition.
+     *
+     * @param snapshot The snapshot to restore.
+     * @param machine The top-level machine to restore.
+     * @return {@link StateMachine} the given machine
+     * @throws IllegalArgumentException if the snapshot was taken from another definition,
+     * if it is malformed, or if the machine does not match the definition.
+     */
+    public StateMachine restore(@NonNull final byte[] snapshot, @NonNull final StateMachine machine) {
+        return this.read(new SnapshotReader(snapshot), machine);
+    }
+
+    /**
+     * Reads the next snapshot from the reader and restores it onto the given machine.
+     * The current states are set using {@link BaseStateMachine#setCurrentState(State)},
+     * without entering or leaving any states. Arguments that are unset in the snapshot
+     * are unset, if they are {@link BaseTransitionArgument}s.
+     *
+     * @param reader The reader to read the snapshot from.
+     * @param machine The top-level machine to restore.
+     * @return {@link StateMachine} the given machine
+     * @throws IllegalArgumentException if the snapshot was taken from another definition,
+     * if it is malformed, or if the machine does not match the definition.
+     */
+    public StateMachine read(@NonNull final SnapshotReader reader, @NonNull final StateMachine machine) {
+        this.checkDefinition(Objects.requireNonNull(machine));
+        this.readFingerprint(reader);
+
+        final var def = this.definition;
+        var owner = machine;
+        int slot = 0;
+        for (int i = 0; i < def.getMachineCount(); i++) {
+            final int ordinal = this.readOrdinal(reader, slot);
+            final var state = ordinal == def.machineStates[slot] ? owner : findDefinedState(owner, def.states[ordinal].getName());
+            setCurrentState(owner, state);
+
+            final int next = def.stateMachineSlot[ordinal];
+            if (next < 0 || next == slot) {
+                break;
+            }
+            if (!(state instanceof StateMachine)) {
+                throw new IllegalArgumentException("Not a machine: " + state.getName());
+            }
+            slot = next;
+            owner = (StateMachine) state;
+        }
+
+        final var read = this.readArguments(reader);
+        final var values = read == null ? def.initialArguments : read;
+        this.forEachArgument(machine, (argument, s) -> setValue(argument, values[s]));
+        return machine;
+    }
+
+    private void checkDefinition(final StateMachineInstance instance) {
+        if (instance.getDefinition() != this.definition) {
+            throw new IllegalArgumentException("The instance " + instance + " belongs to another definition.");
+        }
+    }
+
+    private void checkDefinition(final StateMachine machine) {
+        if (!Objects.equals(machine.getName(), this.definition.getName())) {
+            throw new IllegalArgumentException("The machine " + machine.getName() + " does not match the definition.");
+        }
+    }
+
+    private void readFingerprint(final SnapshotReader reader) {
+        if (Objects.requireNonNull(reader).readFixedInt() != this.definition.getFingerprint()) {
+            throw new IllegalArgumentException("The snapshot was taken from another definition.");
+        }
+    }
+
+    /**
+     * Reads the ordinal of a state and checks that it is the machine of the given
+     * slot itself, or one of its sub-states.
+     */
+    private int readOrdinal(final SnapshotReader reader, final int slot) {
+        final var def = this.definition;
+        final int ordinal = reader.readVarInt();
+        if (ordinal >= def.getStateCount() || (ordinal != def.machineStates[slot] && def.stateOwner[ordinal] != slot)) {
+            throw new IllegalArgumentException("Not a state of machine " +
+                def.states[def.machineStates[slot]].getName() + ": " + ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Writes all values that differ from the definition's initial values.
+     */
+    private void writeArguments(final Object[] values, final SnapshotWriter writer) {
+        final var initial = this.definition.initialArguments;
+        int count = 0;
+        if (values != null) {
+            for (int a = 0; a < values.length; a++) {
+                count += differs(values[a], initial[a]) ? 1 : 0;
+            }
+        }
+
+        writer.writeVarInt(count);
+        for (int a = 0, previous = -1; count > 0 && a < values.length; a++) {
+            if (differs(values[a], initial[a])) {
+                writer.writeVarInt(a - previous - 1);
+                this.writeSlotValue(values[a], writer);
+                previous = a;
+            }
+        }
+    }
+
+    /**
+     * Writes a single value using the codec registered for its class, preceded by
+     * the codec's ID.
+     *
+     * @param value The value to write, may be null.
+     * @param writer The writer to write the value to.
+     * @return {@link SnapshotCodec} this for chaining
+     * @throws IllegalArgumentException if there is no codec for the value's class.
+     */
+    public SnapshotCodec writeValue(@Nullable final Object value, @NonNull final SnapshotWriter writer) {
+        this.writeSlotValue(value, Objects.requireNonNull(writer));
+        return this;
+    }
+
+    /**
+     * Reads a single value written using {@link #writeValue(Object, SnapshotWriter)}.
+     *
+     * @param reader The reader to read the value from.
+     * @return the value, may be null.
+     * @throws IllegalArgumentException if the value's codec is unknown, or if the
+     * snapshot is malformed.
+     */
+    public Object readValue(@NonNull final SnapshotReader reader) {
+        final var value = this.readSlotValue(Objects.requireNonNull(reader));
+        if (value == CompiledStateMachine.UNSET) {
+            throw new IllegalArgumentException("Expected a value, but the argument is unset.");
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeSlotValue(final Object value, final SnapshotWriter writer) {
+        if (value == CompiledStateMachine.UNSET) {
+            writer.writeVarInt(UNSET);
+        } else if (value == null) {
+            writer.writeVarInt(NULL);
+        } else {
+            final var id = this.codecIds.get(value.getClass());
+            if (id == null) {
+                throw new IllegalArgumentException("There is no codec for values of type " + value.getClass().getName());
+            }
+            writer.writeVarInt(id);
+            ((ValueCodec<Object>) this.codecs.get(id - NULL - 1)).write(writer, value);
+        }
+    }
+
+    /**
+     * @return the argument values, or null if they equal the definition's.
+     */
+    private Object[] readArguments(final SnapshotReader reader) {
+        final var def = this.definition;
+        final int count = reader.readVarInt();
+        if (count == 0) {
+            return null;
+        }
+        if (count > def.getArgumentCount()) {
+            throw new IllegalArgumentException("The snapshot has too many arguments: " + count);
+        }
+
+        final var values = def.initialArguments.clone();
+        for (int i = 0, slot = -1; i < count; i++) {
+            final int gap = reader.readVarInt();
+            if (gap >= values.length - slot - 1) {
+                throw new IllegalArgumentException("Not an argument-slot: " + (slot + gap + 1));
+            }
+            slot += gap + 1;
+
+            final var value = this.readSlotValue(reader);
+            if (value != null && value != CompiledStateMachine.UNSET && !def.argumentTypes[slot].isInstance(value)) {
+                throw new IllegalArgumentException("Argument '" + def.argumentKeys[slot].getName() +
+                    "' requires a value of type " + def.argumentTypes[slot].getSimpleName());
+            }
+            values[slot] = value;
+        }
+        return values;
+    }
+
+    private Object readSlotValue(final SnapshotReader reader) {
+        final int id = reader.readVarInt();
+        if (id == UNSET) {
+            return CompiledStateMachine.UNSET;
+        } else if (id == NULL) {
+            return null;
+        } else if (id - NULL - 1 >= this.codecs.size()) {
+            throw new IllegalArgumentException("Unknown codec: " + id);
+        }
+        return this.codecs.get(id - NULL - 1).read(reader);
+    }
+
+    /**
+     * Visits each argument of each transition of all states of the given machine that
+     * has a slot in the definition, together with its slot.
+     */
+    private void forEachArgument(final StateMachine machine, final ObjIntConsumer<TransitionArgument<?>> action) {
+        final var visited = Collections.newSetFromMap(new IdentityHashMap<State, Boolean>());
+        final var pending = new ArrayDeque<State>();
+        visited.add(machine);
+        pending.add(machine);
+
+        while (!pending.isEmpty()) {
+            final var state = pending.poll();
+            if (state instanceof StateMachine) {
+                for (final var child : ((StateMachine) state).getDefinedStates()) {
+                    if (visited.add(child)) {
+                        pending.add(child);
+                    }
+                }
+            }
+
+            final var transitions = state.getAllDefinedTransitions();
+            if (transitions == null) {
+                continue;
+            }
+            for (final var entry : transitions.entrySet()) {
+                for (final var argument : entry.getValue().getTransitionArguments().values()) {
+                    final var key = this.definition.findArgumentKey(entry.getKey(), argument.getName());
+                    if (key != null) {
+                        action.accept(argument, key.id);
+                    }
+                }
+                final var to = entry.getValue().getToState();
+                if (to != null && visited.add(to)) {
+                    pending.add(to);
+                }
+            }
+        }
+    }
+
+    private static boolean differs(final Object value, final Object initial) {
+        if (value == CompiledStateMachine.UNSET || initial == CompiledStateMachine.UNSET) {
+            return value != initial;
+        }
+        return !Objects.deepEquals(value, initial);
+    }
+
+    private static Object valueOf(final TransitionArgument<?> argument) {
+        try {
+            return argument.getValue();
+        } catch (NoValueSetException nvsEx) {
+            throw new Error(nvsEx); // cannot happen, hasValue() was checked
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void setValue(final TransitionArgument<?> argument, final Object value) {
+        if (value == CompiledStateMachine.UNSET) {
+            if (argument instanceof BaseTransitionArgument) {
+                ((BaseTransitionArgument<?>) argument).unsetValue();
+            }
+        } else if (value == null || argument.getType().isInstance(value)) {
+            ((TransitionArgument<Object>) argument).setValue(value);
+        } else {
+            throw new IllegalArgumentException("Argument '" + argument.getName() +
+                "' requires a value of type " + argument.getType().getSimpleName());
+        }
+    }
+
+    private static State findDefinedState(final StateMachine machine, final String name) {
+        for (final var state : machine.getDefinedStates()) {
+            if (state != machine && Objects.equals(state.getName(), name)) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("Machine " + machine.getName() + " has no state " + name);
+    }
+
+    private static void setCurrentState(final StateMachine machine, final State state) {
+        if (!(machine instanceof BaseStateMachine)) {
+            throw new IllegalArgumentException("Cannot set the current state of " + machine.getName());
+        }
+        try {
+            ((BaseStateMachine) machine).setCurrentState(state);
+        } catch (NoSuchStateException nssEx) {
+            throw new Error(nssEx); // cannot happen, the state is defined
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.codecs.size() + " codecs)]";
+    }
+}
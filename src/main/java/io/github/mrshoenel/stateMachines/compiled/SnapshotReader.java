@@ -0,0 +1,166 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import org.springframework.lang.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+
+/**
+ * Reads the values written by a {@link SnapshotWriter} from a byte array. Readers are
+ * not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class SnapshotReader {
+    private final byte[] buffer;
+
+    private final int limit;
+
+    private int position;
+
+    /**
+     * @param buffer The bytes to read, from the first to the last.
+     */
+    public SnapshotReader(@NonNull final byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * @param buffer The bytes to read.
+     * @param offset The index of the first byte to read.
+     * @param length The amount of bytes that may be read.
+     */
+    public SnapshotReader(@NonNull final byte[] buffer, final int offset, final int length) {
+        Objects.checkFromIndexSize(offset, length, Objects.requireNonNull(buffer).length);
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    private void require(final int amount) {
+        if (this.limit - this.position < amount) {
+            throw new IllegalArgumentException("The snapshot is truncated.");
+        }
+    }
+
+    /**
+     * @return the next byte, as unsigned value.
+     * @throws IllegalArgumentException if there are no more bytes.
+     */
+    public int readByte() {
+        this.require(1);
+        return this.buffer[this.position++] & 0xff;
+    }
+
+    /**
+     * @return the next four bytes as int (little-endian).
+     * @throws IllegalArgumentException if there are not enough bytes.
+     */
+    public int readFixedInt() {
+        this.require(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (this.buffer[this.position++] & 0xff) << (i << 3);
+        }
+        return value;
+    }
+
+    /**
+     * @return the next eight bytes as long (little-endian).
+     * @throws IllegalArgumentException if there are not enough bytes.
+     */
+    public long readFixedLong() {
+        this.require(8);
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value |= (this.buffer[this.position++] & 0xffL) << (i << 3);
+        }
+        return value;
+    }
+
+    /**
+     * @return the next unsigned variable-length quantity, as int.
+     * @throws IllegalArgumentException if the snapshot is truncated or malformed.
+     */
+    public int readVarInt() {
+        final long value = this.readVarLong();
+        if ((value >>> 32) != 0L) {
+            throw new IllegalArgumentException("Malformed variable-length int.");
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return the next unsigned variable-length quantity.
+     * @throws IllegalArgumentException if the snapshot is truncated or malformed.
+     */
+    public long readVarLong() {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = this.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length long.");
+    }
+
+    /**
+     * @return the next zig-zag encoded variable-length quantity.
+     * @throws IllegalArgumentException if the snapshot is truncated or malformed.
+     */
+    public long readSignedVarLong() {
+        final long value = this.readVarLong();
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * @return the next four bytes as float.
+     * @throws IllegalArgumentException if there are not enough bytes.
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(this.readFixedInt());
+    }
+
+    /**
+     * @return the next eight bytes as double.
+     * @throws IllegalArgumentException if there are not enough bytes.
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(this.readFixedLong());
+    }
+
+    /**
+     * @return the next length-prefixed bytes.
+     * @throws IllegalArgumentException if the snapshot is truncated or malformed.
+     */
+    public byte[] readBytes() {
+        final int length = this.readVarInt();
+        this.require(length);
+        final var bytes = new byte[length];
+        System.arraycopy(this.buffer, this.position, bytes, 0, length);
+        this.position += length;
+        return bytes;
+    }
+
+    /**
+     * @return the next length-prefixed UTF-8 string.
+     * @throws IllegalArgumentException if the snapshot is truncated or malformed.
+     */
+    public String readString() {
+        final int length = this.readVarInt();
+        this.require(length);
+        final var value = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+        this.position += length;
+        return value;
+    }
+
+    /**
+     * @return the amount of bytes that have not been read yet.
+     */
+    public int remaining() {
+        return this.limit - this.position;
+    }
+}
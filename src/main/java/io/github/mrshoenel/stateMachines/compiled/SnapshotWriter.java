@@ -0,0 +1,196 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import org.springframework.lang.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+
+/**
+ * A growable buffer that snapshots are written to (see {@link SnapshotCodec}). Integers
+ * are written as variable-length quantities (7 bits per byte, least significant group
+ * first), so that small values, such as ordinals, take a single byte. Signed integers
+ * are zig-zag encoded first. A writer can be reused using {@link #reset()}, and it is
+ * not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class SnapshotWriter {
+    private byte[] buffer;
+
+    private int size;
+
+    /**
+     * Creates a new writer with an initial capacity of 64 bytes.
+     */
+    public SnapshotWriter() {
+        this(64);
+    }
+
+    /**
+     * @param capacity The initial capacity, in bytes.
+     */
+    public SnapshotWriter(final int capacity) {
+        this.buffer = new byte[Math.max(1, capacity)];
+    }
+
+    private void ensure(final int additional) {
+        if (this.size + additional > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.size + additional, 2 * this.buffer.length));
+        }
+    }
+
+    /**
+     * @param value The byte to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeByte(final int value) {
+        this.ensure(1);
+        this.buffer[this.size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes an int as four bytes (little-endian).
+     *
+     * @param value The value to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeFixedInt(final int value) {
+        this.ensure(4);
+        for (int i = 0; i < 4; i++) {
+            this.buffer[this.size++] = (byte) (value >>> (i << 3));
+        }
+        return this;
+    }
+
+    /**
+     * Writes a long as eight bytes (little-endian).
+     *
+     * @param value The value to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeFixedLong(final long value) {
+        this.ensure(8);
+        for (int i = 0; i < 8; i++) {
+            this.buffer[this.size++] = (byte) (value >>> (i << 3));
+        }
+        return this;
+    }
+
+    /**
+     * Writes an int as unsigned variable-length quantity (1 to 5 bytes).
+     *
+     * @param value The value to write; negative values take five bytes.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeVarInt(final int value) {
+        return this.writeVarLong(value & 0xffffffffL);
+    }
+
+    /**
+     * Writes a long as unsigned variable-length quantity (1 to 10 bytes).
+     *
+     * @param value The value to write; negative values take ten bytes.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeVarLong(long value) {
+        this.ensure(10);
+        while ((value & ~0x7fL) != 0L) {
+            this.buffer[this.size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) value;
+        return this;
+    }
+
+    /**
+     * Writes a signed long zig-zag encoded, so that values of small magnitude take
+     * few bytes, regardless of their sign.
+     *
+     * @param value The value to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeSignedVarLong(final long value) {
+        return this.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @param value The value to write (four bytes).
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeFloat(final float value) {
+        return this.writeFixedInt(Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * @param value The value to write (eight bytes).
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeDouble(final double value) {
+        return this.writeFixedLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Writes the length of the given bytes as variable-length quantity, followed by
+     * the bytes.
+     *
+     * @param bytes The bytes to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeBytes(@NonNull final byte[] bytes) {
+        this.writeVarInt(Objects.requireNonNull(bytes).length);
+        this.ensure(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+        this.size += bytes.length;
+        return this;
+    }
+
+    /**
+     * Writes the given string as UTF-8 (see {@link #writeBytes(byte[])}).
+     *
+     * @param value The string to write.
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter writeString(@NonNull final String value) {
+        return this.writeBytes(Objects.requireNonNull(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the amount of bytes written.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Discards all written bytes, but keeps the buffer.
+     *
+     * @return {@link SnapshotWriter} this for chaining
+     */
+    public SnapshotWriter reset() {
+        this.size = 0;
+        return this;
+    }
+
+    /**
+     * Puts the written bytes into the given buffer, at its position.
+     *
+     * @param target The buffer to put the bytes into.
+     * @return {@link SnapshotWriter} this for chaining
+     * @throws java.nio.BufferOverflowException if the buffer has not enough space.
+     */
+    public SnapshotWriter writeTo(@NonNull final ByteBuffer target) {
+        Objects.requireNonNull(target).put(this.buffer, 0, this.size);
+        return this;
+    }
+
+    /**
+     * @return a copy of the written bytes.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+}
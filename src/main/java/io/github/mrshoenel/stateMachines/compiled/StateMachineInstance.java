@@ -0,0 +1,440 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.TransitionResult;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * A lightweight cursor into a shared {@link CompiledStateMachine}. An instance only
+ * holds the current state of each (nested) machine as an ordinal and the values of
+ * the arguments it has set. The argument values are copied from the definition only
+ * when an instance sets its first argument, so that instances that never use any
+ * arguments do not pay for them.
+ *
+ * The semantics of {@link #transition(String)} are those of the {@link
+ * io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine}: transitions
+ * are resolved against the most deeply nested active state, and afterwards, the
+ * machine owning the 'to'-state points at it, as do the machines between it and the
+ * least common ancestor of the 'from'- and 'to'-state. Unlike there, the states' hooks
+ * are not called, and guards do not see the instance's argument values; see {@link
+ * CompiledStateMachine} for what is supported. Instances are not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class StateMachineInstance implements StateMachineArtifact {
+
+    private final CompiledStateMachine definition;
+
+    /**
+     * The current state per machine slot.
+     */
+    final int[] current;
+
+    /**
+     * This instance's argument values, or null while they equal the definition's.
+     */
+    Object[] arguments;
+
+    /**
+     * Creates a new instance that starts in the definition's initial configuration.
+     * Use {@link CompiledStateMachine#newInstance()}.
+     *
+     * @param definition The shared definition.
+     */
+    StateMachineInstance(@NonNull final CompiledStateMachine definition) {
+        this.definition = Objects.requireNonNull(definition);
+        this.current = definition.initialCurrent.clone();
+    }
+
+    /**
+     * @return the name of the compiled top-level machine.
+     */
+    @Override
+    public String getName() {
+        return this.definition.getName();
+    }
+
+    /**
+     * @return {@link CompiledStateMachine} the shared definition of this instance.
+     */
+    public CompiledStateMachine getDefinition() {
+        return this.definition;
+    }
+
+    /**
+     * Returns the ordinal of the most deeply nested active state. This is the
+     * equivalent of {@link StateMachine#getCurrentStateDeep()}.
+     *
+     * @return the state's ordinal
+     */
+    public int getCurrentStateOrdinal() {
+        return this.definition.currentStateDeep(this.current);
+    }
+
+    /**
+     * Returns the most deeply nested active state. Note that the returned state
+     * is shared among all instances and its own notion of a current state (if it
+     * is a machine) is not related to this instance.
+     *
+     * @return {@link State}
+     */
+    public State getCurrentState() {
+        return this.definition.getState(this.getCurrentStateOrdinal());
+    }
+
+    /**
+     * Returns the ordinal of the current state of one of the compiled machines.
+     *
+     * @param machine The ordinal of a state that is a machine.
+     * @return the ordinal of the machine's current state
+     * @throws IllegalArgumentException if the given ordinal is not a machine.
+     */
+    public int getCurrentStateOrdinal(final int machine) {
+        final int slot = this.definition.stateMachineSlot[machine];
+        if (slot < 0) {
+            throw new IllegalArgumentException("Not a machine: " + this.definition.getState(machine).getName());
+        }
+        return this.current[slot];
+    }
+
+    /**
+     * Returns true, if the current (deep) state defines a transition with the given
+     * name. Note that this does not check whether the transition is allowed.
+     *
+     * @param name The name of the transition.
+     * @return boolean
+     */
+    public boolean hasTransition(@NonNull final String name) {
+        Objects.requireNonNull(name);
+        return this.definition.findTransition(this.getCurrentStateOrdinal(), name) >= 0;
+    }
+
+    /**
+     * Returns true, if the current (deep) state defines a transition with the given
+     * key. Note that this does not check whether the transition is allowed.
+     *
+     * @param key The key of the transition.
+     * @return boolean
+     */
+    public boolean hasTransition(@NonNull final TransitionKey key) {
+        Objects.requireNonNull(key);
+        return this.definition.findTransition(this.getCurrentStateOrdinal(), key) >= 0;
+    }
+
+    /**
+     * Resolves the name using {@link CompiledStateMachine#getTransitionKey(String)}
+     * and calls {@link #transition(TransitionKey)}.
+     *
+     * @param name The name of the transition to execute.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws NoSuchTransitionException if the current state has no transition with
+     * the given name.
+     * @throws IllegalTransitionException if the transition is currently disallowed,
+     * if one of its arguments has no value set or if the 'to'-state is an orphan.
+     */
+    public StateMachineInstance transition(@NonNull final String name)
+        throws NoSuchTransitionException, IllegalTransitionException
+    {
+        return this.transition(this.definition.getTransitionKey(name));
+    }
+
+    /**
+     * Executes a transition of the current (deep) state by its key. If the 'to'-
+     * state is a machine, it will point at itself afterwards. The machine owning
+     * the 'to'-state, and the machines between it and the least common ancestor
+     * of the 'from'- and 'to'-state, will then be made to point at the entered states.
+     *
+     * @param key The key of the transition to execute.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws NoSuchTransitionException if the current state has no transition with
+     * the given key.
+     * @throws IllegalTransitionException if the transition is currently disallowed,
+     * if one of its arguments has no value set or if the 'to'-state is an orphan.
+     */
+    public StateMachineInstance transition(@NonNull final TransitionKey key)
+        throws NoSuchTransitionException, IllegalTransitionException
+    {
+        Objects.requireNonNull(key);
+        final var def = this.definition;
+        final int t = def.findTransition(this.getCurrentStateOrdinal(), key);
+        if (t < 0) {
+            throw new NoSuchTransitionException("No transition with name " + key.getName());
+        }
+
+        switch (this.check(t)) {
+            case NOT_ALLOWED:
+                throw new IllegalTransitionException("This transition is currently disallowed.");
+            case MISSING_ARGUMENT:
+                throw new IllegalTransitionException(
+                    "Argument '" + this.firstMissingArgument(t).getName() + "' has not been set.");
+            case ORPHAN_STATE:
+                throw new IllegalTransitionException("Orphan state: " + def.states[def.transitionTo[t]].getName());
+            default:
+                this.execute(t);
+                return this;
+        }
+    }
+
+    /**
+     * Executes a transition of the current (deep) state by its key, without evaluating
+     * its guard or checking that its arguments have values. This is meant for replaying
+     * transitions that were allowed when they were recorded (e.g., by a {@link
+     * io.github.mrshoenel.stateMachines.journal.TransitionJournal}), as guards are
+     * evaluated on the shared transitions and may decide differently at replay time.
+     *
+     * @param key The key of the transition to execute.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws NoSuchTransitionException if the current state has no transition with
+     * the given key.
+     * @throws IllegalTransitionException if the 'to'-state is an orphan.
+     */
+    public StateMachineInstance forceTransition(@NonNull final TransitionKey key)
+        throws NoSuchTransitionException, IllegalTransitionException
+    {
+        Objects.requireNonNull(key);
+        final var def = this.definition;
+        final int t = def.findTransition(this.getCurrentStateOrdinal(), key);
+        if (t < 0) {
+            throw new NoSuchTransitionException("No transition with name " + key.getName());
+        }
+        if (def.stateOwner[def.transitionTo[t]] < 0) {
+            throw new IllegalTransitionException("Orphan state: " + def.states[def.transitionTo[t]].getName());
+        }
+
+        this.execute(t);
+        return this;
+    }
+
+    /**
+     * Like {@link #transition(TransitionKey)}, but signals a failure by returning it,
+     * rather than throwing an exception.
+     *
+     * @param key The key of the transition to execute.
+     * @return {@link TransitionResult} {@link TransitionResult#OK} if the transition was
+     * executed, or the reason why it was not.
+     */
+    public TransitionResult tryTransition(@NonNull final TransitionKey key) {
+        final int t = this.definition.findTransition(this.getCurrentStateOrdinal(), Objects.requireNonNull(key));
+        if (t < 0) {
+            return TransitionResult.NO_SUCH_TRANSITION;
+        }
+
+        final var result = this.check(t);
+        if (result == TransitionResult.OK) {
+            this.execute(t);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves all names to the IDs of their {@link TransitionKey}s and then calls
+     * {@link #applyAll(int[])}. A name that is not known to the definition fails
+     * the step at its index.
+     *
+     * @param names The names of the transitions to execute, in order.
+     * @return the index of the first step that failed, or -1 if all steps succeeded.
+     */
+    public int applyAll(@NonNull final List<String> names) {
+        final var symbols = this.definition.transitionSymbols;
+        final var ids = new int[Objects.requireNonNull(names).size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = symbols.idOf(names.get(i));
+        }
+        return this.applyAll(ids);
+    }
+
+    /**
+     * Executes a sequence of transitions, given by the IDs of their {@link
+     * TransitionKey}s, in order. Unlike {@link #transition(TransitionKey)}, this
+     * method does not throw if a step fails, but stops and returns its index. All
+     * steps before it have been executed. A step fails for the same reasons that
+     * would make {@link #transition(TransitionKey)} throw, or if its ID is unknown.
+     *
+     * @param ids The IDs of the transitions to execute, in order.
+     * @return the index of the first step that failed, or -1 if all steps succeeded.
+     */
+    public int applyAll(@NonNull final int[] ids) {
+        final var def = this.definition;
+        final int symbols = def.transitionKeys.length;
+        for (int i = 0; i < Objects.requireNonNull(ids).length; i++) {
+            final int id = ids[i];
+            if (id < 0 || id >= symbols) {
+                return i;
+            }
+
+            final int t = def.transitionOf(this.getCurrentStateOrdinal(), id);
+            if (t < 0 || this.check(t) != TransitionResult.OK) {
+                return i;
+            }
+            this.execute(t);
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the given transition of the current state may be executed. The
+     * guard is evaluated on the shared transition, i.e., it does not see this instance's
+     * argument values (see {@link CompiledStateMachine}).
+     */
+    private TransitionResult check(final int t) {
+        final var def = this.definition;
+        if (!def.transitions[t].isAllowed()) {
+            return TransitionResult.NOT_ALLOWED;
+        }
+        if (this.firstMissingArgument(t) != null) {
+            return TransitionResult.MISSING_ARGUMENT;
+        }
+        return def.stateOwner[def.transitionTo[t]] < 0 ? TransitionResult.ORPHAN_STATE : TransitionResult.OK;
+    }
+
+    /**
+     * @return the key of the first argument of the transition that has no value, or null.
+     */
+    private ArgumentKey firstMissingArgument(final int t) {
+        final var def = this.definition;
+        final var args = this.arguments == null ? def.initialArguments : this.arguments;
+        for (int a = def.argumentOffset[t]; a < def.argumentOffset[t + 1]; a++) {
+            if (args[def.argumentSlots[a]] == CompiledStateMachine.UNSET) {
+                return def.argumentKeys[def.argumentSlots[a]];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes the machines point at the states entered by the given transition. The
+     * transition must have been checked before.
+     */
+    private void execute(final int t) {
+        this.definition.enter(this.current, t);
+    }
+
+    /**
+     * Resolves the argument using {@link CompiledStateMachine#getArgumentKey(String, String)}
+     * and calls {@link #setArgument(ArgumentKey, Object)}.
+     *
+     * @param transitionName The name of the transition.
+     * @param argumentName The name of the transition's argument.
+     * @param value The value, which must be assignable to the argument's type.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws NoSuchTransitionException if the definition has no such transition.
+     * @throws NoSuchArgumentException if the transition has no such argument.
+     * @throws IllegalArgumentException if the value is not of the argument's type.
+     */
+    public StateMachineInstance setArgument(
+        @NonNull final String transitionName, @NonNull final String argumentName, @Nullable final Object value)
+        throws NoSuchTransitionException, NoSuchArgumentException
+    {
+        return this.setArgument(this.definition.getArgumentKey(transitionName, argumentName), value);
+    }
+
+    /**
+     * Sets the value of an argument. The value is only visible to this instance.
+     *
+     * @param key The key of the argument.
+     * @param value The value, which must be assignable to the argument's type.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws IllegalArgumentException if the value is not of the argument's type.
+     */
+    public StateMachineInstance setArgument(@NonNull final ArgumentKey key, @Nullable final Object value) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final var type = this.definition.argumentTypes[key.id];
+        if (value != null && !type.isInstance(value)) {
+            throw new IllegalArgumentException(
+                "Argument '" + key.getName() + "' requires a value of type " + type.getSimpleName());
+        }
+
+        this.mutableArguments()[key.id] = value;
+        return this;
+    }
+
+    /**
+     * Unsets a previously set value of an argument.
+     *
+     * @param transitionName The name of the transition.
+     * @param argumentName The name of the transition's argument.
+     * @return {@link StateMachineInstance} this for chaining
+     * @throws NoSuchTransitionException if the definition has no such transition.
+     * @throws NoSuchArgumentException if the transition has no such argument.
+     */
+    public StateMachineInstance unsetArgument(@NonNull final String transitionName, @NonNull final String argumentName)
+        throws NoSuchTransitionException, NoSuchArgumentException
+    {
+        return this.unsetArgument(this.definition.getArgumentKey(transitionName, argumentName));
+    }
+
+    /**
+     * Unsets a previously set value of an argument.
+     *
+     * @param key The key of the argument.
+     * @return {@link StateMachineInstance} this for chaining
+     */
+    public StateMachineInstance unsetArgument(@NonNull final ArgumentKey key) {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        this.mutableArguments()[key.id] = CompiledStateMachine.UNSET;
+        return this;
+    }
+
+    /**
+     * Gets the value of an argument.
+     *
+     * @param transitionName The name of the transition.
+     * @param argumentName The name of the transition's argument.
+     * @return the argument's value as seen by this instance
+     * @throws NoSuchTransitionException if the definition has no such transition.
+     * @throws NoSuchArgumentException if the transition has no such argument.
+     * @throws NoValueSetException if no value has been set for the argument.
+     */
+    public Object getArgument(@NonNull final String transitionName, @NonNull final String argumentName)
+        throws NoSuchTransitionException, NoSuchArgumentException, NoValueSetException
+    {
+        return this.getArgument(this.definition.getArgumentKey(transitionName, argumentName));
+    }
+
+    /**
+     * Gets the value of an argument.
+     *
+     * @param key The key of the argument.
+     * @return the argument's value as seen by this instance
+     * @throws NoValueSetException if no value has been set for the argument.
+     */
+    public Object getArgument(@NonNull final ArgumentKey key) throws NoValueSetException {
+        this.definition.checkKey(Objects.requireNonNull(key));
+        final var value = (this.arguments == null ? this.definition.initialArguments : this.arguments)[key.id];
+        if (value == CompiledStateMachine.UNSET) {
+            throw new NoValueSetException("No value has been set for argument'" + key.getName() + "'.");
+        }
+        return value;
+    }
+
+    Object[] mutableArguments() {
+        if (this.arguments == null) {
+            this.arguments = this.definition.initialArguments.clone();
+        }
+        return this.arguments;
+    }
+
+    /**
+     * Returns the names of the current states of all machines.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final var names = Arrays.stream(this.current)
+            .mapToObj(s -> this.definition.getState(s).getName()).toArray();
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " " + Arrays.toString(names) + "]";
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+
+/**
+ * An immutable table that interns names to dense int IDs (0, 1, ...). IDs are
+ * assigned in the natural order of the names, so that two tables created from
+ * the same names always assign the same IDs.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class SymbolTable {
+    private final String[] names;
+
+    private final Map<String, Integer> ids;
+
+    /**
+     * Creates a new table that interns all the given (distinct) names.
+     *
+     * @param names The names to intern; duplicates are ignored.
+     */
+    public SymbolTable(@NonNull final Collection<String> names) {
+        this.names = new TreeSet<>(Objects.requireNonNull(names)).toArray(new String[0]);
+        this.ids = new HashMap<>();
+        for (int id = 0; id < this.names.length; id++) {
+            this.ids.put(this.names[id], id);
+        }
+    }
+
+    /**
+     * @return the amount of interned names.
+     */
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+     * Returns the ID of the given name.
+     *
+     * @param name The name to get the ID for.
+     * @return the ID or -1, if the name was not interned.
+     */
+    public int idOf(@NonNull final String name) {
+        final var id = this.ids.get(Objects.requireNonNull(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the name for the given ID.
+     *
+     * @param id The ID of the name.
+     * @return {@link String}
+     */
+    public String nameOf(final int id) {
+        return this.names[id];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + Arrays.toString(this.names) + "]";
+    }
+}
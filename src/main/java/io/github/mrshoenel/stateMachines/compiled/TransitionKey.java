@@ -0,0 +1,49 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+
+
+/**
+ * A handle for a transition-name that was interned by a {@link CompiledStateMachine}.
+ * Callers may obtain a key once using {@link CompiledStateMachine#getTransitionKey(String)}
+ * and hold on to it, so that executing transitions does not require hashing and
+ * comparing names. A key is only valid for the definition that created it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class TransitionKey implements StateMachineArtifact {
+    final CompiledStateMachine definition;
+
+    final int id;
+
+    private final String name;
+
+    TransitionKey(final CompiledStateMachine definition, final int id, final String name) {
+        this.definition = definition;
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * @return the dense ID of this key within its definition.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the name of the transition(s) this key stands for.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.name + "#" + this.id + "]";
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import org.springframework.lang.NonNull;
+
+import java.util.Objects;
+
+
+/**
+ * Encodes the values of arguments of one type into snapshots (see {@link
+ * SnapshotCodec#register(Class, ValueCodec)}). Codecs never see null values.
+ *
+ * @param <T> The type of the values.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public interface ValueCodec<T> {
+    /**
+     * @param writer The writer to write the value to.
+     * @param value The value to write.
+     */
+    void write(@NonNull SnapshotWriter writer, @NonNull T value);
+
+    /**
+     * @param reader The reader to read the value from.
+     * @return the value that was written using {@link #write(SnapshotWriter, Object)}.
+     */
+    T read(@NonNull SnapshotReader reader);
+
+    /**
+     * Creates a codec that writes the ordinals of the constants of an enum.
+     *
+     * @param type The type of the enum.
+     * @param <E> The type of the enum.
+     * @return {@link ValueCodec}
+     */
+    static <E extends Enum<E>> ValueCodec<E> ofEnum(@NonNull final Class<E> type) {
+        final var constants = Objects.requireNonNull(type).getEnumConstants();
+        return new ValueCodec<>() {
+            @Override
+            public void write(final SnapshotWriter writer, final E value) {
+                writer.writeVarInt(value.ordinal());
+            }
+
+            @Override
+            public E read(final SnapshotReader reader) {
+                final int ordinal = reader.readVarInt();
+                if (ordinal >= constants.length) {
+                    throw new IllegalArgumentException("Not a constant of " + type.getSimpleName() + ": " + ordinal);
+                }
+                return constants[ordinal];
+            }
+        };
+    }
+}
@@ -5,10 +5,26 @@ package io.github.mrshoenel.stateMachines.exception;
  * An exception super-class for all exceptions as being emitted
  * by artifacts used in state-machines.
  *
+ * If the system property {@value #STACKLESS_PROPERTY} is set to "true" at
+ * startup, these exceptions do not capture a stack trace, which makes creating
+ * them much cheaper. This is useful if exceptions are frequent and expected,
+ * e.g., for rejected transitions (see also the non-throwing tryTransition-variants).
+ *
  * @author Sebastian Hönel development@hoenel.net
  */
 public class StateMachineArtifactException extends Exception {
+    /**
+     * The system property that makes these exceptions stackless.
+     */
+    public static final String STACKLESS_PROPERTY = "stateMachines.stacklessExceptions";
+
+    /**
+     * True, iff these exceptions do not capture a stack trace; read once from
+     * {@value #STACKLESS_PROPERTY}.
+     */
+    public static final boolean STACKLESS = Boolean.getBoolean(STACKLESS_PROPERTY);
+
     public StateMachineArtifactException(final String message) {
-        super(message);
+        super(message, null, true, !STACKLESS);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+package io.github.mrshoenel.stateMachines.journal;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.ArgumentKey;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotReader;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.compiled.TransitionKey;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * A transition that was recorded by a {@link TransitionJournal}: the ID of the instance
+ * it was executed on, the transition's key, the time it was recorded at and the values
+ * of its arguments. During replay, a single record is reused for all recorded transitions,
+ * so that a record is only valid while it is being handled.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class JournalRecord implements StateMachineArtifact {
+    private final CompiledStateMachine definition;
+
+    /**
+     * For each transition-key, the keys of its arguments, ordered by slot.
+     */
+    private final ArgumentKey[][] argumentKeys;
+
+    private long instanceId, timestamp;
+
+    private TransitionKey transitionKey;
+
+    private int argumentCount;
+
+    private final ArgumentKey[] keys;
+
+    private final Object[] values;
+
+    JournalRecord(final CompiledStateMachine definition) {
+        this.definition = definition;
+        this.argumentKeys = argumentKeysOf(definition);
+        int max = 0;
+        for (final var keys : this.argumentKeys) {
+            max = Math.max(max, keys.length);
+        }
+        this.keys = new ArgumentKey[max];
+        this.values = new Object[max];
+    }
+
+    /**
+     * Groups the argument-keys of the given definition by the ID of their transition-key.
+     */
+    static ArgumentKey[][] argumentKeysOf(final CompiledStateMachine definition) {
+        final var symbols = definition.getTransitionSymbols();
+        final var grouped = new ArrayList<List<ArgumentKey>>();
+        for (int k = 0; k < symbols.size(); k++) {
+            grouped.add(new ArrayList<>());
+        }
+        for (int a = 0; a < definition.getArgumentCount(); a++) {
+            final var key = definition.getArgumentKey(a);
+            grouped.get(symbols.idOf(key.getTransitionName())).add(key);
+        }
+        return grouped.stream().map(keys -> keys.toArray(new ArgumentKey[0])).toArray(ArgumentKey[][]::new);
+    }
+
+    /**
+     * Reads the next record; see {@link TransitionJournal} for the format.
+     */
+    void read(final SnapshotReader reader, final SnapshotCodec codec) {
+        this.instanceId = reader.readVarLong();
+        final int symbol = reader.readVarInt();
+        if (symbol >= this.argumentKeys.length) {
+            throw new IllegalArgumentException("Unknown transition-key: " + symbol);
+        }
+        this.transitionKey = this.definition.getTransitionKey(symbol);
+        this.timestamp = reader.readVarLong();
+
+        final var keys = this.argumentKeys[symbol];
+        this.argumentCount = reader.readVarInt();
+        if (this.argumentCount > keys.length) {
+            throw new IllegalArgumentException("The record has too many arguments: " + this.argumentCount);
+        }
+        for (int i = 0; i < this.argumentCount; i++) {
+            final int index = reader.readVarInt();
+            if (index >= keys.length) {
+                throw new IllegalArgumentException("Unknown argument of " + this.transitionKey.getName() + ": " + index);
+            }
+            this.keys[i] = keys[index];
+            this.values[i] = codec.readValue(reader);
+        }
+    }
+
+    /**
+     * @return the name of the recorded transition.
+     */
+    @Override
+    public String getName() {
+        return this.transitionKey.getName();
+    }
+
+    /**
+     * @return the ID of the instance the transition was executed on.
+     */
+    public long getInstanceId() {
+        return this.instanceId;
+    }
+
+    /**
+     * @return {@link TransitionKey} the key of the recorded transition.
+     */
+    public TransitionKey getTransitionKey() {
+        return this.transitionKey;
+    }
+
+    /**
+     * @return the time the transition was recorded at, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return the amount of recorded argument values.
+     */
+    public int getArgumentCount() {
+        return this.argumentCount;
+    }
+
+    /**
+     * @param index The index of the argument, less than {@link #getArgumentCount()}.
+     * @return {@link ArgumentKey} the key of the argument.
+     */
+    public ArgumentKey getArgumentKey(final int index) {
+        return this.keys[Objects.checkIndex(index, this.argumentCount)];
+    }
+
+    /**
+     * @param index The index of the argument, less than {@link #getArgumentCount()}.
+     * @return the value of the argument.
+     */
+    public Object getArgumentValue(final int index) {
+        return this.values[Objects.checkIndex(index, this.argumentCount)];
+    }
+
+    /**
+     * Sets the recorded argument values on the given instance and executes the recorded
+     * transition unconditionally (see {@link StateMachineInstance#forceTransition(TransitionKey)}):
+     * it was allowed when it was recorded, so its guard is not evaluated again.
+     *
+     * @param instance The instance to apply this record to.
+     * @throws NoSuchTransitionException if the instance's current state does not have
+     * the recorded transition.
+     * @throws IllegalTransitionException if the transition's 'to'-state is an orphan.
+     */
+    public void applyTo(@NonNull final StateMachineInstance instance)
+        throws NoSuchTransitionException, IllegalTransitionException
+    {
+        Objects.requireNonNull(instance);
+        for (int i = 0; i < this.argumentCount; i++) {
+            instance.setArgument(this.keys[i], this.values[i]);
+        }
+        instance.forceTransition(this.transitionKey);
+    }
+
+    /**
+     * Executes the recorded transition with the recorded argument values on the given
+     * machine. Note that a {@link JournalingStateMachine} would record it again. Unlike
+     * {@link #applyTo(StateMachineInstance)}, this evaluates the transition's guard,
+     * and calls the states' hooks, against the machine as it is at replay time.
+     *
+     * @param machine The machine to apply this record to.
+     * @throws StateMachineArtifactException if the transition cannot be executed.
+     */
+    public void applyTo(@NonNull final BlackBoxStateMachine<?> machine) throws StateMachineArtifactException {
+        Objects.requireNonNull(machine);
+        if (this.argumentCount == 0) {
+            machine.transition(this.getName());
+            return;
+        }
+
+        final var arguments = new HashMap<String, Object>();
+        for (int i = 0; i < this.argumentCount; i++) {
+            arguments.put(this.keys[i].getName(), this.values[i]);
+        }
+        machine.transition(this.getName(), arguments);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " #" + this.instanceId +
+            " @" + this.timestamp + "]";
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.mrshoenel.stateMachines.journal;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionListener;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+
+/**
+ * A {@link BlackBoxStateMachine} that records each transition of its machine in a
+ * {@link TransitionJournal}. Transitions are recorded by a {@link TransitionListener}
+ * that is registered with the machine, so that transitions executed directly (using
+ * {@link Transition#transition()}) are recorded as well as those executed by this
+ * black box, including those of {@link #applyAll(java.util.List)}. A transition is
+ * recorded once it was checked, but before its 'from'-state is left; if it cannot be
+ * recorded, it is not executed, and the machine stays in its state. Conversely, if a
+ * hook of the 'from'- or 'to'-state throws after the transition was recorded, the
+ * journal holds a transition that did not complete; the journal is append-only and
+ * this is not compensated. Replaying such a record onto an instance executes the
+ * transition, so hooks that may throw should be avoided on journaled machines.
+ * Durability is left to the journal (see {@link TransitionJournal#sync()}).
+ *
+ * The recorded values of arguments are those set on the transition's arguments.
+ * Values that are only passed in an {@link io.github.mrshoenel.stateMachines.transition.ArgumentFrame}
+ * (see {@link Transition#transitionWith(io.github.mrshoenel.stateMachines.transition.ArgumentFrame)})
+ * are not visible to listeners and hence not recorded. Use {@link #detach()} to stop
+ * recording.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ * @param <T> A type sub-classing (or being) {@link BaseStateMachine}.
+ */
+public class JournalingStateMachine<T extends BaseStateMachine> extends BlackBoxStateMachine<T> {
+    private final T machine;
+
+    private final TransitionJournal journal;
+
+    private final long instanceId;
+
+    private volatile long lastSequence;
+
+    private final TransitionListener recorder = new TransitionListener() {
+        @Override
+        public void beforeLeave(@NonNull final Transition transition) {
+            JournalingStateMachine.this.record(transition);
+        }
+    };
+
+    /**
+     * @param machine The actual machine; must match the journal's definition.
+     * @param journal The journal to record transitions in.
+     * @param instanceId The ID of the machine in the journal.
+     */
+    public JournalingStateMachine(@NonNull final T machine, @NonNull final TransitionJournal journal, final long instanceId) {
+        super(machine);
+        this.machine = machine;
+        this.journal = Objects.requireNonNull(journal);
+        this.instanceId = instanceId;
+        machine.addTransitionListener(this.recorder);
+    }
+
+    /**
+     * @return {@link TransitionJournal} the journal transitions are recorded in.
+     */
+    public TransitionJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * @return the ID of the machine in the journal.
+     */
+    public long getInstanceId() {
+        return this.instanceId;
+    }
+
+    /**
+     * @return the sequence number of the last recorded transition, or 0.
+     */
+    public long getLastSequence() {
+        return this.lastSequence;
+    }
+
+    /**
+     * Stops recording the transitions of the machine.
+     *
+     * @return {@link JournalingStateMachine} this for chaining
+     */
+    public JournalingStateMachine<T> detach() {
+        this.machine.removeTransitionListener(this.recorder);
+        return this;
+    }
+
+    /**
+     * Records the transition in the journal, before it is executed.
+     *
+     * @param transition The transition that is about to be executed.
+     * @exception UncheckedIOException if the journal cannot create a new segment.
+     */
+    private void record(final Transition transition) {
+        try {
+            this.lastSequence = this.journal.append(this.instanceId, transition);
+        } catch (IOException ioEx) {
+            throw new UncheckedIOException(ioEx);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package io.github.mrshoenel.stateMachines.journal;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.compiled.ArgumentKey;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotReader;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotWriter;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.compiled.TransitionKey;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+
+/**
+ * An append-only journal of executed transitions, backed by memory-mapped segment
+ * files in a directory. Each record holds the ID of the instance the transition was
+ * executed on, the ID of the transition's {@link TransitionKey}, a timestamp and the
+ * values of the transition's arguments that were set. Appending a record copies a few
+ * bytes into the current segment and does not perform any I/O; a new segment is mapped
+ * once the current one is full.
+ *
+ * Records become durable with {@link #sync()}, which forces the segments to disk.
+ * Syncs are committed in groups: concurrent callers wait for a single force that covers
+ * all of their records. Optionally, a background thread syncs periodically.
+ *
+ * A segment is named after its index, starts with a magic number and the definition's
+ * fingerprint, and then holds records, each being the length of its payload (four bytes)
+ * followed by the payload:
+ * <ul>
+ *     <li>the instance's ID, the key's ID and the timestamp, as variable-length quantities,</li>
+ *     <li>the amount of argument values, and for each, the argument's index among the
+ *     transition's arguments and the value (see {@link SnapshotCodec#writeValue(Object, SnapshotWriter)}).</li>
+ * </ul>
+ * The unused remainder of a segment is zero. {@link #replay(Path, SnapshotCodec, RecordHandler)}
+ * streams all segments in order, and {@link #rebuild(Path, SnapshotCodec)} rebuilds the
+ * instances from their recorded transitions.
+ *
+ * Journals are thread-safe. A journal always starts a new segment, so that journals may
+ * be reopened.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class TransitionJournal implements StateMachineArtifact, AutoCloseable {
+    /**
+     * The default size of segments (64 MiB).
+     */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    private static final int MAGIC = 0x534d4a31; // "SMJ1"
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final String SUFFIX = ".journal";
+
+    private static final Object ABSENT = new Object();
+
+    private final Path directory;
+
+    private final SnapshotCodec codec;
+
+    private final CompiledStateMachine definition;
+
+    private final int segmentBytes;
+
+    private final ArgumentKey[][] argumentKeys;
+
+    private final SnapshotWriter writer = new SnapshotWriter(256);
+
+    private final Object[] values;
+
+    /**
+     * Segments that were filled, but not yet forced.
+     */
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+
+    private final Object commitLock = new Object();
+
+    private final Thread committer;
+
+    private MappedByteBuffer segment;
+
+    private int nextSegment, segmentCount;
+
+    private long appended;
+
+    private volatile long durable, forces;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new journal with segments of {@link #DEFAULT_SEGMENT_BYTES} that is
+     * only synced explicitly.
+     *
+     * @param directory The directory of the segments; created if it does not exist.
+     * @param codec The codec for argument values; also determines the definition.
+     * @throws IOException if the directory or the first segment cannot be created.
+     */
+    public TransitionJournal(@NonNull final Path directory, @NonNull final SnapshotCodec codec) throws IOException {
+        this(directory, codec, DEFAULT_SEGMENT_BYTES, 0L);
+    }
+
+    /**
+     * Creates a new journal.
+     *
+     * @param directory The directory of the segments; created if it does not exist.
+     * @param codec The codec for argument values; also determines the definition.
+     * @param segmentBytes The size of each segment, in bytes.
+     * @param commitIntervalMillis If positive, a daemon thread calls {@link #sync()}
+     *                             in this interval.
+     * @throws IOException if the directory or the first segment cannot be created.
+     */
+    public TransitionJournal(
+        @NonNull final Path directory, @NonNull final SnapshotCodec codec,
+        final int segmentBytes, final long commitIntervalMillis) throws IOException
+    {
+        if (segmentBytes < 64) {
+            throw new IllegalArgumentException("Segments must have at least 64 bytes.");
+        }
+
+        this.directory = Files.createDirectories(Objects.requireNonNull(directory));
+        this.codec = Objects.requireNonNull(codec);
+        this.definition = codec.getDefinition();
+        this.segmentBytes = segmentBytes;
+        this.argumentKeys = JournalRecord.argumentKeysOf(this.definition);
+        int max = 0;
+        for (final var keys : this.argumentKeys) {
+            max = Math.max(max, keys.length);
+        }
+        this.values = new Object[max];
+
+        for (final var segment : segmentsOf(this.directory)) {
+            final var name = segment.getFileName().toString();
+            this.nextSegment = Math.max(this.nextSegment, Integer.parseInt(name.substring(0, name.length() - SUFFIX.length())) + 1);
+        }
+        this.roll();
+
+        if (commitIntervalMillis > 0L) {
+            this.committer = new Thread(() -> {
+                while (!this.closed) {
+                    try {
+                        Thread.sleep(commitIntervalMillis);
+                    } catch (InterruptedException iEx) {
+                        break;
+                    }
+                    this.sync();
+                }
+            }, "journal-committer-" + this.getName());
+            this.committer.setDaemon(true);
+            this.committer.start();
+        } else {
+            this.committer = null;
+        }
+    }
+
+    /**
+     * @return the name of the journaled definition.
+     */
+    @Override
+    public String getName() {
+        return this.definition.getName();
+    }
+
+    /**
+     * @return the directory of the segments.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Records a transition that was executed on a machine built using the authoring API,
+     * together with the values of its arguments that are set.
+     *
+     * @param instanceId The ID of the machine.
+     * @param transition The transition that was executed.
+     * @return the sequence number of the record (see {@link #sync(long)}).
+     * @throws IOException if a new segment cannot be created.
+     * @exception IllegalArgumentException if the definition has no transition with the
+     * transition's name, or if there is no codec for one of the values.
+     */
+    public long append(final long instanceId, @NonNull final Transition transition) throws IOException {
+        final int symbol = this.definition.getTransitionSymbols().idOf(Objects.requireNonNull(transition).getName());
+        if (symbol < 0) {
+            throw new IllegalArgumentException("Unknown transition: " + transition.getName());
+        }
+
+        final var keys = this.argumentKeys[symbol];
+        final var arguments = transition.getTransitionArguments();
+        synchronized (this) {
+            for (int i = 0; i < keys.length; i++) {
+                final var argument = arguments.get(keys[i].getName());
+                try {
+                    this.values[i] = argument != null && argument.hasValue() ? argument.getValue() : ABSENT;
+                } catch (NoValueSetException nvsEx) {
+                    throw new Error(nvsEx); // cannot happen, hasValue() was checked
+                }
+            }
+            return this.appendRecord(instanceId, symbol);
+        }
+    }
+
+    /**
+     * Records a transition that was executed on a {@link StateMachineInstance}, together
+     * with the instance's values of the transition's arguments that are set.
+     *
+     * @param instanceId The ID of the instance.
+     * @param key The key of the transition that was executed.
+     * @param instance The instance (after the transition).
+     * @return the sequence number of the record (see {@link #sync(long)}).
+     * @throws IOException if a new segment cannot be created.
+     * @exception IllegalArgumentException if the key or the instance belong to another
+     * definition, or if there is no codec for one of the values.
+     */
+    public long append(final long instanceId, @NonNull final TransitionKey key, @NonNull final StateMachineInstance instance)
+        throws IOException
+    {
+        if (Objects.requireNonNull(instance).getDefinition() != this.definition ||
+            this.definition.getTransitionKey(Objects.requireNonNull(key).getId()) != key) {
+            throw new IllegalArgumentException("The key or instance belong to another definition.");
+        }
+
+        final var keys = this.argumentKeys[key.getId()];
+        synchronized (this) {
+            for (int i = 0; i < keys.length; i++) {
+                try {
+                    this.values[i] = instance.getArgument(keys[i]);
+                } catch (NoValueSetException nvsEx) {
+                    this.values[i] = ABSENT;
+                }
+            }
+            return this.appendRecord(instanceId, key.getId());
+        }
+    }
+
+    /**
+     * Encodes the record from the collected values and copies it into the segment.
+     * Must hold the lock of this journal.
+     */
+    private long appendRecord(final long instanceId, final int symbol) throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException("The journal is closed.");
+        }
+
+        final var keys = this.argumentKeys[symbol];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            count += this.values[i] == ABSENT ? 0 : 1;
+        }
+
+        final var writer = this.writer.reset();
+        writer.writeVarLong(instanceId).writeVarInt(symbol).writeVarLong(System.currentTimeMillis()).writeVarInt(count);
+        for (int i = 0; i < keys.length; i++) {
+            if (this.values[i] != ABSENT) {
+                this.codec.writeValue(this.values[i], writer.writeVarInt(i));
+            }
+            this.values[i] = null;
+        }
+
+        final int length = writer.size();
+        if (this.segment.remaining() < 4 + length) {
+            if (HEADER_BYTES + 4 + length > this.segmentBytes) {
+                throw new IllegalArgumentException("The record does not fit into a segment: " + length + " bytes");
+            }
+            this.unforced.add(this.segment);
+            this.roll();
+        }
+
+        final int start = this.segment.position();
+        this.segment.position(start + 4);
+        writer.writeTo(this.segment);
+        this.segment.putInt(start, length);
+        return ++this.appended;
+    }
+
+    /**
+     * Creates and maps the next segment and writes its header.
+     */
+    private void roll() throws IOException {
+        final var path = this.directory.resolve(String.format("%08d%s", this.nextSegment++, SUFFIX));
+        try (final var channel = FileChannel.open(path,
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0L, this.segmentBytes);
+        }
+        this.segment.putInt(MAGIC).putInt(this.definition.getFingerprint());
+        this.segmentCount++;
+    }
+
+    /**
+     * Forces all records appended so far to disk.
+     *
+     * @return the sequence number of the last durable record.
+     */
+    public long sync() {
+        final long sequence;
+        synchronized (this) {
+            sequence = this.appended;
+        }
+        this.sync(sequence);
+        return sequence;
+    }
+
+    /**
+     * Blocks until the record with the given sequence number (and all before it) is
+     * durable. If another thread is forcing the segments already, this method waits for
+     * it and then only forces the segments, if that did not cover the record.
+     *
+     * @param sequence The sequence number returned by one of the append-methods.
+     */
+    public void sync(final long sequence) {
+        if (this.durable >= sequence) {
+            return;
+        }
+
+        synchronized (this.commitLock) {
+            if (this.durable >= sequence) {
+                return; // Committed as part of the previous group.
+            }
+
+            final long target;
+            final MappedByteBuffer current;
+            final List<MappedByteBuffer> filled;
+            synchronized (this) {
+                target = this.appended;
+                current = this.segment;
+                filled = new ArrayList<>(this.unforced);
+                this.unforced.clear();
+            }
+
+            for (final var segment : filled) {
+                segment.force();
+            }
+            if (current != null) {
+                current.force();
+            }
+            this.forces++;
+            this.durable = target;
+        }
+    }
+
+    /**
+     * @return the amount of records appended to this journal.
+     */
+    public synchronized long getAppendedCount() {
+        return this.appended;
+    }
+
+    /**
+     * @return the sequence number of the last record known to be durable.
+     */
+    public long getDurableCount() {
+        return this.durable;
+    }
+
+    /**
+     * @return how often the segments were forced to disk.
+     */
+    public long getForceCount() {
+        return this.forces;
+    }
+
+    /**
+     * @return the amount of segments created by this journal.
+     */
+    public synchronized int getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Stops the background thread, if any, and forces all records to disk. The
+     * segments are unmapped once they are garbage collected.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.committer != null) {
+            this.committer.interrupt();
+            try {
+                this.committer.join();
+            } catch (InterruptedException iEx) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.sync();
+        synchronized (this) {
+            this.segment = null;
+        }
+    }
+
+    /**
+     * Handles the records of a journal during replay.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * @param record The record; only valid during this call.
+         * @throws StateMachineArtifactException if the record cannot be handled.
+         */
+        void accept(@NonNull JournalRecord record) throws StateMachineArtifactException;
+    }
+
+    /**
+     * Streams all records of all segments in the given directory, in the order they were
+     * appended. Reading a segment stops at its first empty or truncated record.
+     *
+     * @param directory The directory of the segments.
+     * @param codec The codec for argument values; must be the same as the journal's.
+     * @param handler Handles each record.
+     * @return the amount of records handled.
+     * @throws IOException if a segment cannot be read.
+     * @throws StateMachineArtifactException if the handler throws.
+     * @exception IllegalArgumentException if a segment was written for another definition,
+     * or if a record is malformed.
+     */
+    public static long replay(
+        @NonNull final Path directory, @NonNull final SnapshotCodec codec, @NonNull final RecordHandler handler)
+        throws IOException, StateMachineArtifactException
+    {
+        Objects.requireNonNull(handler);
+        final var record = new JournalRecord(Objects.requireNonNull(codec).getDefinition());
+        var bytes = new byte[256];
+        long count = 0L;
+
+        for (final var path : segmentsOf(Objects.requireNonNull(directory))) {
+            final MappedByteBuffer segment;
+            try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            }
+            if (segment.remaining() < HEADER_BYTES) {
+                continue;
+            }
+            if (segment.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a segment of a journal: " + path);
+            }
+            if (segment.getInt() != codec.getDefinition().getFingerprint()) {
+                throw new IllegalArgumentException("The segment was written for another definition: " + path);
+            }
+
+            while (segment.remaining() >= 4) {
+                final int length = segment.getInt();
+                if (length <= 0 || length > segment.remaining()) {
+                    break;
+                }
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, 2 * bytes.length)];
+                }
+                segment.get(bytes, 0, length);
+                record.read(new SnapshotReader(bytes, 0, length), codec);
+                handler.accept(record);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rebuilds instances by replaying all records onto new instances of the codec's
+     * definition; see {@link #rebuild(Path, SnapshotCodec, Map)}.
+     *
+     * @param directory The directory of the segments.
+     * @param codec The codec for argument values; must be the same as the journal's.
+     * @return the instances by their IDs.
+     * @throws IOException if a segment cannot be read.
+     * @throws StateMachineArtifactException if a record cannot be applied.
+     */
+    public static Map<Long, StateMachineInstance> rebuild(@NonNull final Path directory, @NonNull final SnapshotCodec codec)
+        throws IOException, StateMachineArtifactException
+    {
+        return rebuild(directory, codec, new HashMap<>());
+    }
+
+    /**
+     * Replays all records onto the given instances (e.g., restored from snapshots taken
+     * before the journal was started). Instances that are not in the map yet are created
+     * in the definition's initial configuration. Recorded transitions are applied without
+     * evaluating their guards again (see {@link JournalRecord#applyTo(StateMachineInstance)}).
+     *
+     * @param directory The directory of the segments.
+     * @param codec The codec for argument values; must be the same as the journal's.
+     * @param instances The instances by their IDs; modified.
+     * @return the given map.
+     * @throws IOException if a segment cannot be read.
+     * @throws StateMachineArtifactException if a record cannot be applied.
+     */
+    public static Map<Long, StateMachineInstance> rebuild(
+        @NonNull final Path directory, @NonNull final SnapshotCodec codec,
+        @NonNull final Map<Long, StateMachineInstance> instances)
+        throws IOException, StateMachineArtifactException
+    {
+        Objects.requireNonNull(instances);
+        final var definition = Objects.requireNonNull(codec).getDefinition();
+        replay(directory, codec, record -> record.applyTo(
+            instances.computeIfAbsent(record.getInstanceId(), id -> definition.newInstance())));
+        return instances;
+    }
+
+    private static List<Path> segmentsOf(final Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (final var files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches("\\d{8,}" + SUFFIX))
+                .sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.getAppendedCount() +
+            " records, " + this.durable + " durable)]";
+    }
+}
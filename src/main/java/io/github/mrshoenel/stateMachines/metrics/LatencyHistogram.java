@@ -0,0 +1,135 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A concurrent histogram of latencies in nanoseconds, with buckets of powers of two:
+ * bucket 0 counts latencies of 0ns, and bucket i (i &gt; 0) counts latencies in the
+ * range [2^(i-1), 2^i). Recording a latency does not allocate and, like all counters
+ * of the metrics, uses striped {@link LongAdder}s, so that it scales with concurrent
+ * writers.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class LatencyHistogram {
+    /**
+     * The amount of buckets.
+     */
+    public static final int BUCKETS = 65;
+
+    private final LongAdder[] buckets;
+
+    private final LongAdder totalNanos;
+
+    LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+        this.totalNanos = new LongAdder();
+    }
+
+    /**
+     * @param nanos The latency; negative latencies are counted as 0ns.
+     */
+    public void record(final long nanos) {
+        final long latency = Math.max(0L, nanos);
+        this.buckets[64 - Long.numberOfLeadingZeros(latency)].increment();
+        this.totalNanos.add(latency);
+    }
+
+    /**
+     * @param bucket The index of the bucket.
+     * @return the exclusive upper bound of the bucket's latencies, in nanoseconds.
+     */
+    public static long getUpperBound(final int bucket) {
+        Objects.checkIndex(bucket, BUCKETS);
+        return bucket == 64 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * @param bucket The index of the bucket.
+     * @return the amount of latencies recorded in the bucket.
+     */
+    public long getBucketCount(final int bucket) {
+        return this.buckets[Objects.checkIndex(bucket, BUCKETS)].sum();
+    }
+
+    /**
+     * @return the amount of recorded latencies.
+     */
+    public long getCount() {
+        long count = 0L;
+        for (final LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of all recorded latencies, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * @return the mean of the recorded latencies, or 0 if none was recorded.
+     */
+    public double getMeanNanos() {
+        final long count = this.getCount();
+        return count == 0L ? 0d : (double) this.getTotalNanos() / count;
+    }
+
+    /**
+     * Estimates a percentile by the upper bound of the bucket that contains it.
+     *
+     * @param percentile The percentile, in the range (0, 100].
+     * @return the upper bound of the percentile, in nanoseconds, or 0 if no latency
+     * was recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+        if (!(percentile > 0d && percentile <= 100d)) {
+            throw new IllegalArgumentException("The percentile must be in the range (0, 100]: " + percentile);
+        }
+
+        final var counts = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets[i].sum();
+            count += counts[i];
+        }
+
+        final long rank = (long) Math.ceil(count * percentile / 100d);
+        long seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0L) {
+                return getUpperBound(i);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Resets all buckets. Latencies that are recorded concurrently may or may not be
+     * retained.
+     */
+    public void reset() {
+        for (final LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.totalNanos.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": n=" + this.getCount() + ", mean=" +
+            Math.round(this.getMeanNanos()) + "ns, p99<" + (this.getCount() == 0L ? 0L : this.getPercentileNanos(99d)) + "ns]";
+    }
+}
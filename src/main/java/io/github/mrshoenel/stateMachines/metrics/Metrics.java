@@ -0,0 +1,112 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.NonNull;
+
+
+/**
+ * The switch and entry points of the built-in instrumentation of {@link
+ * Transition#transition()}, {@link State#enter(Transition)} and {@link
+ * State#leave(Transition)}. Metrics are enabled by setting the system property
+ * {@value #ENABLED_PROPERTY} to "true" at startup; they are recorded in {@link
+ * #getRegistry()}, which may also be published using {@link MetricsRegistry#registerMBean()}.
+ *
+ * As {@link #ENABLED} is a constant, the JIT removes all instrumentation when metrics
+ * are disabled, so that the entry points cost nothing (see the MetricsBenchmark).
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class Metrics {
+    /**
+     * The system property that enables metrics.
+     */
+    public static final String ENABLED_PROPERTY = "stateMachines.metrics";
+
+    /**
+     * True, iff metrics are recorded; read once from {@value #ENABLED_PROPERTY}.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry("default");
+
+    private Metrics() { }
+
+    /**
+     * @return {@link MetricsRegistry} the registry metrics are recorded in. It stays
+     * empty when metrics are disabled.
+     */
+    public static MetricsRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * @return the current value of {@link System#nanoTime()}, or 0 if metrics are disabled.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Calls {@link State#enter(Transition, ArgumentFrame)}, recording it if metrics are enabled.
+     *
+     * @param state The state being entered.
+     * @param usingTransition The transition entering the state.
+     * @param frame The values of the transition's arguments.
+     * @param startNanos The value returned by {@link #start()} or by a previous entry point.
+     * @return the time after entering the state, or 0 if metrics are disabled.
+     */
+    public static long enter(@NonNull final State state, @NonNull final Transition usingTransition,
+        @NonNull final ArgumentFrame frame, final long startNanos)
+    {
+        if (ENABLED) {
+            return REGISTRY.enter(state, usingTransition, frame, startNanos);
+        }
+        state.enter(usingTransition, frame);
+        return 0L;
+    }
+
+    /**
+     * Calls {@link State#leave(Transition, ArgumentFrame)}, recording it if metrics are enabled.
+     *
+     * @param state The state being left.
+     * @param usingTransition The transition leaving the state.
+     * @param frame The values of the transition's arguments.
+     * @param startNanos The value returned by {@link #start()} or by a previous entry point.
+     * @return the time after leaving the state, or 0 if metrics are disabled.
+     */
+    public static long leave(@NonNull final State state, @NonNull final Transition usingTransition,
+        @NonNull final ArgumentFrame frame, final long startNanos)
+    {
+        if (ENABLED) {
+            return REGISTRY.leave(state, usingTransition, frame, startNanos);
+        }
+        state.leave(usingTransition, frame);
+        return 0L;
+    }
+
+    /**
+     * Records a successful execution of a transition, if metrics are enabled.
+     *
+     * @param transition The executed transition.
+     * @param startNanos The value returned by {@link #start()} before leaving its 'from'-state.
+     * @param endNanos The value returned by {@link #enter(State, Transition, ArgumentFrame, long)}.
+     */
+    public static void transitioned(@NonNull final Transition transition, final long startNanos, final long endNanos) {
+        if (ENABLED) {
+            REGISTRY.transitioned(transition, startNanos, endNanos);
+        }
+    }
+
+    /**
+     * Records that a transition was rejected, if metrics are enabled.
+     *
+     * @param transition The rejected transition.
+     */
+    public static void rejected(@NonNull final Transition transition) {
+        if (ENABLED) {
+            REGISTRY.rejected(transition);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import java.util.Map;
+
+
+/**
+ * The management interface of a {@link MetricsRegistry}, see {@link
+ * MetricsRegistry#registerMBean()}. States are keyed by their name, and transitions by
+ * "from -name-&gt; to"; the metrics of artifacts with equal keys are aggregated.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public interface MetricsMXBean {
+    /**
+     * @return the name of the registry.
+     */
+    String getName();
+
+    /**
+     * @return how often each transition was executed.
+     */
+    Map<String, Long> getTransitionExecutions();
+
+    /**
+     * @return how often each transition was rejected.
+     */
+    Map<String, Long> getTransitionRejections();
+
+    /**
+     * @return the mean latency of each transition, in nanoseconds.
+     */
+    Map<String, Double> getTransitionMeanNanos();
+
+    /**
+     * @return how often each state was entered.
+     */
+    Map<String, Long> getStateEnters();
+
+    /**
+     * @return how often each state was left.
+     */
+    Map<String, Long> getStateLeaves();
+
+    /**
+     * @return the mean latency of entering each state, in nanoseconds.
+     */
+    Map<String, Double> getStateEnterMeanNanos();
+
+    /**
+     * @return the mean latency of leaving each state, in nanoseconds.
+     */
+    Map<String, Double> getStateLeaveMeanNanos();
+
+    /**
+     * Resets all counters and histograms.
+     */
+    void reset();
+}
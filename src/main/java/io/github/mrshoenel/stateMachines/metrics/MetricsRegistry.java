@@ -0,0 +1,405 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.NonNull;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+
+/**
+ * Holds the {@link StateMetrics} and {@link TransitionMetrics} of states and transitions,
+ * which are created when they are first used. Artifacts are held by identity and
+ * weakly: neither the registry nor the metrics keep them reachable, so that machines
+ * created per request do not leak. The metrics of an artifact that was garbage
+ * collected are removed the next time metrics are created or read from the registry;
+ * they can also be removed explicitly, using {@link #remove(StateMachineArtifact)} or
+ * {@link #clear()}. Aggregates by name, such as {@link #getStateEnters()}, thus only
+ * cover artifacts that are still reachable. The registry
+ * that is used while executing transitions is {@link Metrics#getRegistry()}; other
+ * registries may be used to instrument transitions and states explicitly, using
+ * {@link #enter(State, Transition, ArgumentFrame, long)}, {@link #leave(State, Transition, ArgumentFrame, long)},
+ * {@link #transitioned(Transition, long, long)} and {@link #rejected(Transition)}.
+ * Timestamps are passed along, so that an instrumented transition reads the clock
+ * three times.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class MetricsRegistry implements StateMachineArtifact, MetricsMXBean {
+    private final String name;
+
+    private final ConcurrentHashMap<Key, StateMetrics> states;
+
+    private final ConcurrentHashMap<Key, TransitionMetrics> transitions;
+
+    /**
+     * Receives the keys of artifacts that were garbage collected.
+     */
+    private final ReferenceQueue<Object> collected;
+
+    private ObjectName objectName;
+
+    /**
+     * @param name The name of the registry, which is also used for its {@link ObjectName}.
+     */
+    public MetricsRegistry(@NonNull final String name) {
+        this.name = Objects.requireNonNull(name);
+        this.states = new ConcurrentHashMap<>();
+        this.transitions = new ConcurrentHashMap<>();
+        this.collected = new ReferenceQueue<>();
+    }
+
+    /**
+     * Weakly references an artifact, and compares and hashes it by identity. A key
+     * whose artifact was collected is only equal to itself.
+     */
+    private static final class Key extends WeakReference<Object> {
+        private final int hash;
+
+        private Key(final Object artifact, final ReferenceQueue<Object> queue) {
+            super(artifact, queue);
+            this.hash = System.identityHashCode(artifact);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            final Object artifact;
+            return obj instanceof Key && (artifact = this.get()) != null && artifact == ((Key) obj).get();
+        }
+    }
+
+    /**
+     * Looks up the metrics of an artifact without allocating a {@link Key}: the maps
+     * compare the probe to their keys using {@link #equals(Object)}, which is true for
+     * a key that references the probed artifact. Each thread reuses its own probe, which
+     * only references the artifact during the lookup.
+     */
+    private static final class Probe {
+        private static final ThreadLocal<Probe> PROBE = ThreadLocal.withInitial(Probe::new);
+
+        private Object artifact;
+
+        private int hash;
+
+        private static <M> M lookup(final Map<Key, M> metrics, final Object artifact) {
+            final var probe = PROBE.get();
+            probe.artifact = artifact;
+            probe.hash = System.identityHashCode(artifact);
+            try {
+                return metrics.get(probe);
+            } finally {
+                probe.artifact = null;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && ((Key) obj).get() == this.artifact;
+        }
+    }
+
+    /**
+     * Removes the metrics of artifacts that were garbage collected.
+     */
+    private void expunge() {
+        Object key;
+        while ((key = this.collected.poll()) != null) {
+            this.states.remove(key);
+            this.transitions.remove(key);
+        }
+    }
+
+    /**
+     * @return the name of this registry.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @param state The state to get the metrics of.
+     * @return {@link StateMetrics} the state's metrics, created if necessary.
+     */
+    public StateMetrics getStateMetrics(@NonNull final State state) {
+        final var metrics = Probe.lookup(this.states, Objects.requireNonNull(state));
+        if (metrics != null) {
+            return metrics;
+        }
+        this.expunge();
+        return this.states.computeIfAbsent(new Key(state, this.collected), k -> new StateMetrics(state));
+    }
+
+    /**
+     * @param transition The transition to get the metrics of.
+     * @return {@link TransitionMetrics} the transition's metrics, created if necessary.
+     */
+    public TransitionMetrics getTransitionMetrics(@NonNull final Transition transition) {
+        final var metrics = Probe.lookup(this.transitions, Objects.requireNonNull(transition));
+        if (metrics != null) {
+            return metrics;
+        }
+        this.expunge();
+        return this.transitions.computeIfAbsent(new Key(transition, this.collected), k -> new TransitionMetrics(transition));
+    }
+
+    /**
+     * @return an unmodifiable view of the metrics of all states used so far.
+     */
+    public Collection<StateMetrics> getAllStateMetrics() {
+        this.expunge();
+        return Collections.unmodifiableCollection(this.states.values());
+    }
+
+    /**
+     * @return an unmodifiable view of the metrics of all transitions used so far.
+     */
+    public Collection<TransitionMetrics> getAllTransitionMetrics() {
+        this.expunge();
+        return Collections.unmodifiableCollection(this.transitions.values());
+    }
+
+    /**
+     * Calls {@link State#enter(Transition, ArgumentFrame)} and records it in the state's metrics.
+     *
+     * @param state The state being entered.
+     * @param usingTransition The transition entering the state.
+     * @param frame The values of the transition's arguments.
+     * @param startNanos The value of {@link System#nanoTime()} before calling this method.
+     * @return the value of {@link System#nanoTime()} after entering the state.
+     */
+    public long enter(@NonNull final State state, @NonNull final Transition usingTransition,
+        @NonNull final ArgumentFrame frame, final long startNanos)
+    {
+        final var metrics = this.getStateMetrics(state);
+        long end = startNanos;
+        try {
+            state.enter(usingTransition, frame);
+        } finally {
+            end = System.nanoTime();
+            metrics.enterLatency.record(end - startNanos);
+            metrics.enters.increment();
+        }
+        return end;
+    }
+
+    /**
+     * Calls {@link State#leave(Transition, ArgumentFrame)} and records it in the state's metrics.
+     *
+     * @param state The state being left.
+     * @param usingTransition The transition leaving the state.
+     * @param frame The values of the transition's arguments.
+     * @param startNanos The value of {@link System#nanoTime()} before calling this method.
+     * @return the value of {@link System#nanoTime()} after leaving the state.
+     */
+    public long leave(@NonNull final State state, @NonNull final Transition usingTransition,
+        @NonNull final ArgumentFrame frame, final long startNanos)
+    {
+        final var metrics = this.getStateMetrics(state);
+        long end = startNanos;
+        try {
+            state.leave(usingTransition, frame);
+        } finally {
+            end = System.nanoTime();
+            metrics.leaveLatency.record(end - startNanos);
+            metrics.leaves.increment();
+        }
+        return end;
+    }
+
+    /**
+     * Records a successful execution of a transition.
+     *
+     * @param transition The executed transition.
+     * @param startNanos The value of {@link System#nanoTime()} before leaving its 'from'-state.
+     * @param endNanos The value of {@link System#nanoTime()} after entering its 'to'-state.
+     */
+    public void transitioned(@NonNull final Transition transition, final long startNanos, final long endNanos) {
+        final var metrics = this.getTransitionMetrics(transition);
+        metrics.latency.record(endNanos - startNanos);
+        metrics.executions.increment();
+    }
+
+    /**
+     * Records that a transition was rejected.
+     *
+     * @param transition The rejected transition.
+     */
+    public void rejected(@NonNull final Transition transition) {
+        this.getTransitionMetrics(transition).rejections.increment();
+    }
+
+    /**
+     * Removes the metrics of a state or transition.
+     *
+     * @param artifact The state or transition.
+     * @return boolean true, if the artifact had metrics.
+     */
+    public boolean remove(@NonNull final StateMachineArtifact artifact) {
+        Objects.requireNonNull(artifact);
+        final var key = new Key(artifact, null);
+        final boolean state = artifact instanceof State && this.states.remove(key) != null;
+        final boolean transition = artifact instanceof Transition && this.transitions.remove(key) != null;
+        return state || transition;
+    }
+
+    /**
+     * Removes the metrics of all states and transitions.
+     */
+    public void clear() {
+        this.expunge();
+        this.states.clear();
+        this.transitions.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        this.states.values().forEach(StateMetrics::reset);
+        this.transitions.values().forEach(TransitionMetrics::reset);
+    }
+
+    private <M> Map<String, Long> sums(
+        final Map<Key, M> metrics, final Function<M, String> key, final ToLongFunction<M> value)
+    {
+        this.expunge();
+        final var sums = new TreeMap<String, Long>();
+        metrics.values().forEach(m -> sums.merge(key.apply(m), value.applyAsLong(m), Long::sum));
+        return sums;
+    }
+
+    private <M> Map<String, Double> means(
+        final Map<Key, M> metrics, final Function<M, String> key, final Function<M, LatencyHistogram> histogram)
+    {
+        final var counts = this.sums(metrics, key, m -> histogram.apply(m).getCount());
+        final var totals = this.sums(metrics, key, m -> histogram.apply(m).getTotalNanos());
+        final var means = new TreeMap<String, Double>();
+        counts.forEach((k, count) -> means.put(k, count == 0L ? 0d : (double) totals.get(k) / count));
+        return means;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getTransitionExecutions() {
+        return this.sums(this.transitions, TransitionMetrics::getKey, TransitionMetrics::getExecutions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getTransitionRejections() {
+        return this.sums(this.transitions, TransitionMetrics::getKey, TransitionMetrics::getRejections);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> getTransitionMeanNanos() {
+        return this.means(this.transitions, TransitionMetrics::getKey, TransitionMetrics::getLatency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getStateEnters() {
+        return this.sums(this.states, StateMetrics::getName, StateMetrics::getEnters);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getStateLeaves() {
+        return this.sums(this.states, StateMetrics::getName, StateMetrics::getLeaves);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> getStateEnterMeanNanos() {
+        return this.means(this.states, StateMetrics::getName, StateMetrics::getEnterLatency);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Double> getStateLeaveMeanNanos() {
+        return this.means(this.states, StateMetrics::getName, StateMetrics::getLeaveLatency);
+    }
+
+    /**
+     * Registers this registry with the platform's MBean server, using the name
+     * "io.github.mrshoenel.stateMachines:type=Metrics,name=&lt;name&gt;".
+     *
+     * @return {@link ObjectName} the name this registry was registered under.
+     * @throws JMException if this registry cannot be registered, e.g. because another
+     * registry with the same name has been registered.
+     */
+    public synchronized ObjectName registerMBean() throws JMException {
+        if (this.objectName == null) {
+            final var objectName = new ObjectName(
+                "io.github.mrshoenel.stateMachines:type=Metrics,name=" + ObjectName.quote(this.name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        }
+        return this.objectName;
+    }
+
+    /**
+     * Unregisters this registry from the platform's MBean server, if it was registered.
+     *
+     * @throws JMException if this registry cannot be unregistered.
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (this.objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            this.objectName = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        this.expunge();
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.states.size() +
+            " states, " + this.transitions.size() + " transitions)]";
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The metrics of a {@link State}: how often it was entered and left, and the latencies
+ * of {@link State#enter(io.github.mrshoenel.stateMachines.transition.Transition)} and
+ * {@link State#leave(io.github.mrshoenel.stateMachines.transition.Transition)}.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class StateMetrics implements StateMachineArtifact {
+    private final WeakReference<State> state;
+
+    private final String name;
+
+    final LongAdder enters = new LongAdder(), leaves = new LongAdder();
+
+    final LatencyHistogram enterLatency = new LatencyHistogram(), leaveLatency = new LatencyHistogram();
+
+    StateMetrics(final State state) {
+        this.state = new WeakReference<>(state);
+        this.name = state.getName();
+    }
+
+    /**
+     * @return the name the state had when these metrics were created.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The metrics do not keep their state reachable.
+     *
+     * @return {@link State} the state these metrics belong to, or null, if it was
+     * garbage collected.
+     */
+    @Nullable
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * @return how often the state was entered.
+     */
+    public long getEnters() {
+        return this.enters.sum();
+    }
+
+    /**
+     * @return how often the state was left.
+     */
+    public long getLeaves() {
+        return this.leaves.sum();
+    }
+
+    /**
+     * @return {@link LatencyHistogram} the latencies of entering the state.
+     */
+    public LatencyHistogram getEnterLatency() {
+        return this.enterLatency;
+    }
+
+    /**
+     * @return {@link LatencyHistogram} the latencies of leaving the state.
+     */
+    public LatencyHistogram getLeaveLatency() {
+        return this.leaveLatency;
+    }
+
+    void reset() {
+        this.enters.reset();
+        this.leaves.reset();
+        this.enterLatency.reset();
+        this.leaveLatency.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.getEnters() +
+            " enters, " + this.getLeaves() + " leaves)]";
+    }
+}
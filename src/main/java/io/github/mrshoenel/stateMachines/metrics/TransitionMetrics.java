@@ -0,0 +1,96 @@
+package io.github.mrshoenel.stateMachines.metrics;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.springframework.lang.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The metrics of a {@link Transition}: how often it was executed and rejected (because
+ * it was disallowed or lacked values for its arguments), and the latencies of executing
+ * it, i.e. of leaving its 'from'- and entering its 'to'-state (guards are not included).
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class TransitionMetrics implements StateMachineArtifact {
+    private final WeakReference<Transition> transition;
+
+    private final String name, key;
+
+    final LongAdder executions = new LongAdder(), rejections = new LongAdder();
+
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    TransitionMetrics(final Transition transition) {
+        this.transition = new WeakReference<>(transition);
+        this.name = transition.getName();
+        this.key = transition.getFromState().getName() + " -" + transition.getName() + "-> " +
+            transition.getToState().getName();
+    }
+
+    /**
+     * @return the name of the transition.
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the key the metrics are aggregated by: "from -name-&gt; to", using the
+     * names of the transition's 'from'- and 'to'-state.
+     */
+    String getKey() {
+        return this.key;
+    }
+
+    /**
+     * The metrics do not keep their transition reachable.
+     *
+     * @return {@link Transition} the transition these metrics belong to, or null, if it
+     * was garbage collected.
+     */
+    @Nullable
+    public Transition getTransition() {
+        return this.transition.get();
+    }
+
+    /**
+     * @return how often the transition was executed.
+     */
+    public long getExecutions() {
+        return this.executions.sum();
+    }
+
+    /**
+     * @return how often the transition was rejected.
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    /**
+     * @return {@link LatencyHistogram} the latencies of executing the transition.
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    void reset() {
+        this.executions.reset();
+        this.rejections.reset();
+        this.latency.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" + this.getExecutions() +
+            " executions, " + this.getRejections() + " rejections)]";
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.mrshoenel.stateMachines.runtime;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import org.springframework.lang.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * An event that was sent to a machine of a {@link MachineRuntime}. It requests the
+ * execution of a transition by its name, with optional argument values.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ * @param <K> The type of the IDs of the machines.
+ */
+public final class MachineEvent<K> {
+    private final K machineId;
+
+    private final String transitionName;
+
+    private final Map<String, ?> arguments;
+
+    private final long enqueuedNanos;
+
+    MachineEvent(
+        @NonNull final K machineId, @NonNull final String transitionName,
+        @NonNull final Map<String, ?> arguments, final long enqueuedNanos)
+    {
+        this.machineId = Objects.requireNonNull(machineId);
+        this.transitionName = Objects.requireNonNull(transitionName);
+        this.arguments = Objects.requireNonNull(arguments);
+        this.enqueuedNanos = enqueuedNanos;
+    }
+
+    /**
+     * @return the ID of the machine this event was sent to.
+     */
+    public K getMachineId() {
+        return this.machineId;
+    }
+
+    /**
+     * @return the name of the transition to execute.
+     */
+    public String getTransitionName() {
+        return this.transitionName;
+    }
+
+    /**
+     * @return an unmodifiable view of the values of the transition's arguments.
+     */
+    public Map<String, ?> getArguments() {
+        return Collections.unmodifiableMap(this.arguments);
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} when the event was sent.
+     */
+    public long getEnqueuedNanos() {
+        return this.enqueuedNanos;
+    }
+
+    /**
+     * Executes the requested transition on the given machine.
+     *
+     * @param machine The machine this event was sent to.
+     * @throws StateMachineArtifactException if the transition cannot be executed.
+     */
+    void applyTo(final BlackBoxStateMachine<?> machine) throws StateMachineArtifactException {
+        if (this.arguments.isEmpty()) {
+            machine.transition(this.transitionName);
+        } else {
+            machine.transition(this.transitionName, this.arguments);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.machineId + " " + this.transitionName + "]";
+    }
+}
@@ -0,0 +1,320 @@
+package io.github.mrshoenel.stateMachines.runtime;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+
+/**
+ * Drives many independent {@link BlackBoxStateMachine}s from events. Each registered
+ * machine has its own mailbox. Producers {@link #send(Object, String, Map)} events
+ * without locking, and the events of one machine are processed one at a time and in
+ * order (run-to-completion), so that the machines themselves need not be thread-safe.
+ * Mailboxes are drained by tasks submitted to an {@link Executor}; a mailbox is only
+ * ever scheduled once at a time, and it yields its thread after a batch of events,
+ * so that busy machines cannot starve others.
+ *
+ * By default, a small pool with one daemon thread per available processor is used.
+ * Any other {@link Executor} may be supplied, such as one that starts a virtual
+ * thread per task on JVMs that support them.
+ *
+ * Events that fail (e.g. because the transition does not exist or is disallowed)
+ * are passed to the error handler and do not affect subsequent events.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ * @param <K> The type of the IDs of the machines.
+ */
+public class MachineRuntime<K> implements AutoCloseable {
+    /**
+     * The maximum amount of events a mailbox processes before it yields its thread.
+     */
+    public static final int BATCH_SIZE = 64;
+
+    private final Executor executor;
+
+    private final ExecutorService ownedExecutor;
+
+    private final Map<K, Mailbox> mailboxes;
+
+    private final LongAdder pending, processed, failed, latencyNanos;
+
+    private final AtomicLong maxLatencyNanos;
+
+    private volatile BiConsumer<MachineEvent<K>, Exception> errorHandler;
+
+    /**
+     * Creates a new runtime that uses its own pool of daemon threads, one per
+     * available processor. The pool is shut down by {@link #close()}.
+     */
+    public MachineRuntime() {
+        this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            final var thread = new Thread(r, MachineRuntime.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates a new runtime that processes the mailboxes using the given executor.
+     * The executor is not shut down by {@link #close()}.
+     *
+     * @param executor The executor to submit the processing of mailboxes to.
+     */
+    public MachineRuntime(@NonNull final Executor executor) {
+        this(executor, false);
+    }
+
+    private MachineRuntime(final Executor executor, final boolean owned) {
+        this.executor = Objects.requireNonNull(executor);
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.pending = new LongAdder();
+        this.processed = new LongAdder();
+        this.failed = new LongAdder();
+        this.latencyNanos = new LongAdder();
+        this.maxLatencyNanos = new AtomicLong();
+        this.errorHandler = (event, ex) -> { };
+    }
+
+    /**
+     * Registers a machine under the given ID, so that events can be sent to it.
+     *
+     * @param id The ID of the machine.
+     * @param machine The machine. It must not be used outside of this runtime while
+     *                it is registered.
+     * @return {@link MachineRuntime} this for chaining
+     * @exception IllegalArgumentException if a machine with the same ID is registered.
+     */
+    public MachineRuntime<K> register(@NonNull final K id, @NonNull final BlackBoxStateMachine<?> machine) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(machine);
+        if (this.mailboxes.putIfAbsent(id, new Mailbox(machine)) != null) {
+            throw new IllegalArgumentException("A machine with ID " + id + " is already registered.");
+        }
+        return this;
+    }
+
+    /**
+     * Deregisters a machine. Events that are still in its mailbox are discarded.
+     *
+     * @param id The ID of the machine.
+     * @return {@link BlackBoxStateMachine} the machine, or null, if no machine was
+     * registered under the given ID.
+     */
+    @Nullable
+    public BlackBoxStateMachine<?> unregister(@NonNull final K id) {
+        final var mailbox = this.mailboxes.remove(Objects.requireNonNull(id));
+        if (mailbox == null) {
+            return null;
+        }
+
+        MachineEvent<K> event;
+        while ((event = mailbox.queue.poll()) != null) {
+            mailbox.depth.decrementAndGet();
+            this.pending.decrement();
+        }
+        return mailbox.machine;
+    }
+
+    /**
+     * Sets the handler that is called (by the processing thread) for each event that
+     * could not be processed. The default handler ignores failed events; they are
+     * still counted by {@link #getFailedCount()}. Exceptions thrown by the handler
+     * itself are ignored, so that they cannot stop the processing of other events.
+     *
+     * @param errorHandler The handler that receives the event and its exception.
+     * @return {@link MachineRuntime} this for chaining
+     */
+    public MachineRuntime<K> setErrorHandler(@NonNull final BiConsumer<MachineEvent<K>, Exception> errorHandler) {
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        return this;
+    }
+
+    /**
+     * Sends an event without arguments to a machine.
+     *
+     * @param id The ID of the machine.
+     * @param transitionName The name of the transition to execute.
+     * @return {@link MachineEvent} the event that was enqueued.
+     * @exception IllegalArgumentException if no machine is registered under the ID.
+     */
+    public MachineEvent<K> send(@NonNull final K id, @NonNull final String transitionName) {
+        return this.send(id, transitionName, Collections.emptyMap());
+    }
+
+    /**
+     * Sends an event to a machine. The event is appended to the machine's mailbox,
+     * and the mailbox is scheduled for processing, if it is not already. This method
+     * never blocks. If the machine is unregistered concurrently, the event may be
+     * discarded (or processed, if its mailbox took it already) and this method throws.
+     *
+     * @param id The ID of the machine.
+     * @param transitionName The name of the transition to execute.
+     * @param arguments The values of the transition's arguments. The map must not be
+     *                  modified after it was sent.
+     * @return {@link MachineEvent} the event that was enqueued.
+     * @exception IllegalArgumentException if no machine is registered under the ID.
+     */
+    public MachineEvent<K> send(
+        @NonNull final K id, @NonNull final String transitionName, @NonNull final Map<String, ?> arguments)
+    {
+        final var mailbox = this.mailboxes.get(Objects.requireNonNull(id));
+        if (mailbox == null) {
+            throw new IllegalArgumentException("No machine with ID " + id + " is registered.");
+        }
+
+        final var event = new MachineEvent<>(id, transitionName, arguments, System.nanoTime());
+        this.pending.increment();
+        mailbox.depth.incrementAndGet();
+        mailbox.queue.offer(event);
+        if (this.mailboxes.get(id) != mailbox && mailbox.queue.remove(event)) {
+            // unregister() has drained the mailbox already:
+            mailbox.depth.decrementAndGet();
+            this.pending.decrement();
+            throw new IllegalArgumentException("No machine with ID " + id + " is registered.");
+        }
+        mailbox.schedule();
+        return event;
+    }
+
+    /**
+     * @param id The ID of the machine.
+     * @return the amount of events in the machine's mailbox that have not been
+     * processed yet, or 0 if no such machine is registered.
+     */
+    public int getQueueDepth(@NonNull final K id) {
+        final var mailbox = this.mailboxes.get(Objects.requireNonNull(id));
+        return mailbox == null ? 0 : mailbox.depth.get();
+    }
+
+    /**
+     * @return the amount of events in all mailboxes that have not been processed yet.
+     */
+    public long getQueueDepth() {
+        return this.pending.sum();
+    }
+
+    /**
+     * @return the amount of events that were processed, including failed events.
+     */
+    public long getProcessedCount() {
+        return this.processed.sum();
+    }
+
+    /**
+     * @return the amount of events that could not be processed.
+     */
+    public long getFailedCount() {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return the mean time between sending an event and the completion of its
+     * processing, in nanoseconds, or 0 if no events were processed yet.
+     */
+    public long getMeanLatencyNanos() {
+        final long count = this.processed.sum();
+        return count == 0L ? 0L : this.latencyNanos.sum() / count;
+    }
+
+    /**
+     * @return the maximum time between sending an event and the completion of its
+     * processing, in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return this.maxLatencyNanos.get();
+    }
+
+    /**
+     * Shuts down the runtime's own pool of threads, if it was created by {@link
+     * #MachineRuntime()}. Events that have not been processed yet are discarded.
+     */
+    @Override
+    public void close() {
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdownNow();
+        }
+    }
+
+    private void process(final BlackBoxStateMachine<?> machine, final MachineEvent<K> event) {
+        try {
+            event.applyTo(machine);
+        } catch (Exception ex) {
+            this.failed.increment();
+            try {
+                this.errorHandler.accept(event, ex);
+            } catch (RuntimeException ignored) {
+                // The handler must not stop the mailbox.
+            }
+        } finally {
+            final long latency = System.nanoTime() - event.getEnqueuedNanos();
+            this.latencyNanos.add(latency);
+            this.maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            this.processed.increment();
+            this.pending.decrement();
+        }
+    }
+
+    /**
+     * The mailbox of a single machine. It is processed by at most one thread at a time.
+     */
+    private class Mailbox implements Runnable {
+        private final BlackBoxStateMachine<?> machine;
+
+        private final Queue<MachineEvent<K>> queue;
+
+        private final AtomicInteger depth;
+
+        private final AtomicBoolean scheduled;
+
+        private Mailbox(final BlackBoxStateMachine<?> machine) {
+            this.machine = machine;
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.depth = new AtomicInteger();
+            this.scheduled = new AtomicBoolean();
+        }
+
+        private void schedule() {
+            if (this.scheduled.compareAndSet(false, true)) {
+                MachineRuntime.this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    final var event = this.queue.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    this.depth.decrementAndGet();
+                    MachineRuntime.this.process(this.machine, event);
+                }
+            } finally {
+                // Also cleared if an Error escaped, so that later events are still processed.
+                this.scheduled.set(false);
+                // An event may have been offered after the last poll, but before the
+                // flag was cleared, in which case its producer did not schedule us.
+                if (!this.queue.isEmpty()) {
+                    this.schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package io.github.mrshoenel.stateMachines.runtime;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+
+/**
+ * Partitions many machines across a fixed number of worker threads (shards). Each
+ * machine is assigned to a shard by a stable hash of its ID, and all of its events
+ * are processed by that shard's thread, in the order they were sent. A shard keeps
+ * its machines in a map that only its own thread accesses, so that neither the
+ * machines nor the map need any synchronization. Workers drain their queue in
+ * batches, which amortizes the cost of the queue's synchronization over many events.
+ *
+ * Compared to the {@link MachineRuntime}, where each machine has its own mailbox and
+ * may be processed by any thread, this executor trades fairness among machines for
+ * throughput with very many machines and events.
+ *
+ * Events that fail, including those that throw an {@link Error}, are passed to the
+ * error handler and do not affect subsequent events. A {@link VirtualMachineError},
+ * however, is counted and then rethrown, which terminates the shard's thread. Note
+ * that a shard's thread is blocked for as long as an event is processed.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ * @param <K> The type of the IDs of the machines. The shard of an ID depends on its
+ *           {@link Object#hashCode()}, which should hence be stable (such as for
+ *           {@link String} or {@link Long}).
+ */
+public class ShardedMachineExecutor<K> implements AutoCloseable {
+    /**
+     * The maximum amount of events a shard drains from its queue at once.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    private final List<Shard> shards;
+
+    private final Set<K> registered;
+
+    private volatile BiConsumer<MachineEvent<K>, Exception> errorHandler;
+
+    /**
+     * Creates a new executor and starts one daemon thread per shard.
+     *
+     * @param shards The amount of shards (worker threads), at least 1.
+     */
+    public ShardedMachineExecutor(final int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is required.");
+        }
+
+        this.registered = ConcurrentHashMap.newKeySet();
+        this.errorHandler = (event, ex) -> { };
+        this.shards = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            final var shard = new Shard(i);
+            this.shards.add(shard);
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * @return the amount of shards.
+     */
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Returns the shard the machine with the given ID is (or would be) assigned to.
+     *
+     * @param id The ID of the machine.
+     * @return the index of the shard
+     */
+    public int shardOf(@NonNull final K id) {
+        final int h = Objects.requireNonNull(id).hashCode();
+        return Math.floorMod(h ^ (h >>> 16), this.shards.size());
+    }
+
+    /**
+     * Registers a machine under the given ID. The machine is wrapped in a {@link
+     * BlackBoxStateMachine} and handed over to its shard.
+     *
+     * @param id The ID of the machine.
+     * @param machine The machine. It must not be used outside of this executor while
+     *                it is registered.
+     * @return {@link ShardedMachineExecutor} this for chaining
+     * @exception IllegalArgumentException if a machine with the same ID is registered.
+     */
+    public ShardedMachineExecutor<K> register(@NonNull final K id, @NonNull final BaseStateMachine machine) {
+        return this.register(id, new BlackBoxStateMachine<>(Objects.requireNonNull(machine)));
+    }
+
+    /**
+     * Registers a machine under the given ID and hands it over to its shard.
+     *
+     * @param id The ID of the machine.
+     * @param machine The machine. It must not be used outside of this executor while
+     *                it is registered.
+     * @return {@link ShardedMachineExecutor} this for chaining
+     * @exception IllegalArgumentException if a machine with the same ID is registered.
+     */
+    public ShardedMachineExecutor<K> register(@NonNull final K id, @NonNull final BlackBoxStateMachine<?> machine) {
+        Objects.requireNonNull(machine);
+        if (!this.registered.add(Objects.requireNonNull(id))) {
+            throw new IllegalArgumentException("A machine with ID " + id + " is already registered.");
+        }
+        this.shards.get(this.shardOf(id)).commands.offer(machines -> machines.put(id, machine));
+        return this;
+    }
+
+    /**
+     * Deregisters a machine. Events for the machine that are sent afterwards fail.
+     *
+     * @param id The ID of the machine.
+     * @return {@link ShardedMachineExecutor} this for chaining
+     * @exception IllegalArgumentException if no machine is registered under the ID.
+     */
+    public ShardedMachineExecutor<K> unregister(@NonNull final K id) {
+        if (!this.registered.remove(Objects.requireNonNull(id))) {
+            throw new IllegalArgumentException("No machine with ID " + id + " is registered.");
+        }
+        this.shards.get(this.shardOf(id)).commands.offer(machines -> machines.remove(id));
+        return this;
+    }
+
+    /**
+     * Sets the handler that is called (by the shard's thread) for each event that
+     * could not be processed. The default handler ignores failed events; they are
+     * still counted by {@link #getFailedCount(int)}. An {@link Error} thrown while
+     * processing an event is passed wrapped in an {@link ExecutionException} (and is
+     * rethrown afterwards, if it is a {@link VirtualMachineError}). Exceptions
+     * thrown by the handler itself are ignored, so that they cannot stop the shard.
+     *
+     * @param errorHandler The handler that receives the event and its exception.
+     * @return {@link ShardedMachineExecutor} this for chaining
+     */
+    public ShardedMachineExecutor<K> setErrorHandler(
+        @NonNull final BiConsumer<MachineEvent<K>, Exception> errorHandler)
+    {
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        return this;
+    }
+
+    /**
+     * Sends an event without arguments to a machine.
+     *
+     * @param id The ID of the machine.
+     * @param transitionName The name of the transition to execute.
+     * @return {@link MachineEvent} the event that was enqueued.
+     * @exception IllegalArgumentException if no machine is registered under the ID.
+     */
+    public MachineEvent<K> send(@NonNull final K id, @NonNull final String transitionName) {
+        return this.send(id, transitionName, Collections.emptyMap());
+    }
+
+    /**
+     * Sends an event to a machine by appending it to the queue of its shard.
+     *
+     * @param id The ID of the machine.
+     * @param transitionName The name of the transition to execute.
+     * @param arguments The values of the transition's arguments. The map must not be
+     *                  modified after it was sent.
+     * @return {@link MachineEvent} the event that was enqueued.
+     * @exception IllegalArgumentException if no machine is registered under the ID.
+     */
+    public MachineEvent<K> send(
+        @NonNull final K id, @NonNull final String transitionName, @NonNull final Map<String, ?> arguments)
+    {
+        if (!this.registered.contains(Objects.requireNonNull(id))) {
+            throw new IllegalArgumentException("No machine with ID " + id + " is registered.");
+        }
+
+        final var event = new MachineEvent<>(id, transitionName, arguments, System.nanoTime());
+        this.shards.get(this.shardOf(id)).queue.offer(event);
+        return event;
+    }
+
+    /**
+     * @param shard The index of the shard.
+     * @return the amount of events in the shard's queue that have not been processed yet.
+     */
+    public int getBacklog(final int shard) {
+        return this.shards.get(shard).queue.size();
+    }
+
+    /**
+     * @param shard The index of the shard.
+     * @return the amount of events the shard has processed, including failed events.
+     */
+    public long getProcessedCount(final int shard) {
+        return this.shards.get(shard).processed;
+    }
+
+    /**
+     * @param shard The index of the shard.
+     * @return the amount of events the shard could not process.
+     */
+    public long getFailedCount(final int shard) {
+        return this.shards.get(shard).failed;
+    }
+
+    /**
+     * @param shard The index of the shard.
+     * @return the amount of batches the shard has drained from its queue.
+     */
+    public long getBatchCount(final int shard) {
+        return this.shards.get(shard).batches;
+    }
+
+    /**
+     * @param shard The index of the shard.
+     * @return the amount of events the shard has processed per second, on average,
+     * since this executor was created.
+     */
+    public double getThroughput(final int shard) {
+        final var s = this.shards.get(shard);
+        final double seconds = (System.nanoTime() - s.startedNanos) / 1e9;
+        return seconds <= 0d ? 0d : s.processed / seconds;
+    }
+
+    /**
+     * @return the amount of events in all queues that have not been processed yet.
+     */
+    public long getBacklog() {
+        long backlog = 0L;
+        for (final var shard : this.shards) {
+            backlog += shard.queue.size();
+        }
+        return backlog;
+    }
+
+    /**
+     * Stops all shards and waits for their threads to terminate. Events that have not
+     * been processed yet are discarded. If the calling thread is interrupted while
+     * waiting, this method returns early and the thread's interrupt flag is set.
+     */
+    @Override
+    public void close() {
+        for (final var shard : this.shards) {
+            shard.thread.interrupt();
+        }
+        try {
+            for (final var shard : this.shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException iEx) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A shard owns a queue of events and the machines assigned to it. Only the shard's
+     * own thread accesses its machines. The counters are only written by that thread.
+     */
+    private class Shard implements Runnable {
+        private final BlockingQueue<MachineEvent<K>> queue;
+
+        private final Queue<Consumer<Map<K, BlackBoxStateMachine<?>>>> commands;
+
+        private final Map<K, BlackBoxStateMachine<?>> machines;
+
+        private final Thread thread;
+
+        private final long startedNanos;
+
+        private volatile long processed, failed, batches;
+
+        private Shard(final int index) {
+            this.queue = new LinkedBlockingQueue<>();
+            this.commands = new ConcurrentLinkedQueue<>();
+            this.machines = new HashMap<>();
+            this.startedNanos = System.nanoTime();
+            this.thread = new Thread(this, ShardedMachineExecutor.class.getSimpleName() + "-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void applyCommands() {
+            Consumer<Map<K, BlackBoxStateMachine<?>>> command;
+            while ((command = this.commands.poll()) != null) {
+                command.accept(this.machines);
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<MachineEvent<K>> batch = new ArrayList<>(BATCH_SIZE);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(this.queue.take());
+                    this.queue.drainTo(batch, BATCH_SIZE - 1);
+                    this.applyCommands();
+
+                    long processed = 0L;
+                    try {
+                        for (final var event : batch) {
+                            processed++;
+                            this.process(event);
+                        }
+                    } finally {
+                        this.processed += processed;
+                        this.batches++;
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException iEx) {
+                // close() was called
+            }
+        }
+
+        private void process(final MachineEvent<K> event) {
+            var machine = this.machines.get(event.getMachineId());
+            if (machine == null) {
+                // The machine may have been registered after the commands were applied.
+                this.applyCommands();
+                machine = this.machines.get(event.getMachineId());
+            }
+
+            try {
+                if (machine == null) {
+                    throw new IllegalArgumentException("No machine with ID " + event.getMachineId() + " is registered.");
+                }
+                event.applyTo(machine);
+            } catch (Exception ex) {
+                this.failed++;
+                this.handle(event, ex);
+            } catch (Error err) {
+                this.failed++;
+                this.handle(event, new ExecutionException(err));
+                if (err instanceof VirtualMachineError) {
+                    throw err;
+                }
+            }
+        }
+
+        private void handle(final MachineEvent<K> event, final Exception ex) {
+            try {
+                ShardedMachineExecutor.this.errorHandler.accept(event, ex);
+            } catch (RuntimeException ignored) {
+                // The handler must not stop the shard.
+            }
+        }
+    }
+}
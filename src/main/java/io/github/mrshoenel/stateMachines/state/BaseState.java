@@ -4,6 +4,7 @@ import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
 import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
 import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
 import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
 import io.github.mrshoenel.stateMachines.transition.Transition;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
@@ -12,6 +13,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 
 /**
@@ -24,12 +26,46 @@ import java.util.Objects;
 public class BaseState implements State {
     protected final String name;
 
+    /**
+     * The defined transitions. Sub-classes should use {@link #setTransition(Transition)}
+     * and {@link #unsetTransition(String)} rather than modifying this map directly, as
+     * this state keeps derived information about its transitions. Sub-classes that do
+     * modify it directly must call {@link #transitionsChanged()} afterwards.
+     */
     protected final Map<String, Transition> transitions;
 
     private final Map<String, Transition> transitionsUnmod;
 
+    /**
+     * All defined transitions as array, rebuilt whenever a transition is set or
+     * unset, so that iterating them does not require an {@link java.util.Iterator}.
+     */
+    private Transition[] transitionsArray;
+
+    /**
+     * An immutable copy of the defined transitions, as returned by {@link #getTransitions()}
+     * if none of them is guarded. Created lazily.
+     */
+    private Map<String, Transition> transitionsSnapshot;
+
+    /**
+     * True, iff none of the defined transitions has a guard (see {@link Transition#isGuarded(Transition)}).
+     */
+    private boolean hasUnguardedTransitionsOnly;
+
     protected BaseStateMachine belongsToMachine;
 
+    /**
+     * Bounds walking nested machines, which might form a cycle.
+     */
+    private static final int MAX_DEPTH = 1 << 10;
+
+    /**
+     * Changes whenever the hierarchy this state is the top of changes; see {@link
+     * #getHierarchyEpoch()}.
+     */
+    private volatile int hierarchyEpoch;
+
     /**
      * Initializes a new instance of a {@link BaseState}.
      *
@@ -45,6 +81,7 @@ public class BaseState implements State {
         this.setBelongsToMachine(machine);
         this.transitions = new HashMap<>();
         this.transitionsUnmod = Collections.unmodifiableMap(this.transitions);
+        this.transitionsChanged();
         this.initialize();
     }
 
@@ -84,10 +121,45 @@ public class BaseState implements State {
      * @return
      */
     public BaseState setBelongsToMachine(@Nullable final BaseStateMachine stateMachine) {
-        this.belongsToMachine = stateMachine;
+        if (this.belongsToMachine != stateMachine) {
+            // Only the hierarchies this state leaves and joins change:
+            final var previousRoot = this.getHierarchyRoot();
+            this.belongsToMachine = stateMachine;
+            previousRoot.hierarchyEpoch++;
+            this.getHierarchyRoot().hierarchyEpoch++;
+        }
         return this;
     }
 
+    /**
+     * Follows {@link #getBelongsToMachine()} to the top-level machine this state is
+     * nested in. A machine that belongs to itself is a top-level machine.
+     *
+     * @return {@link BaseState} the top-level machine, or this state, if it does not
+     * belong to a machine.
+     */
+    public BaseState getHierarchyRoot() {
+        BaseState state = this;
+        BaseStateMachine outer;
+        for (int depth = 0; depth < MAX_DEPTH && (outer = state.belongsToMachine) != null && outer != state; depth++) {
+            state = outer;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the epoch of the hierarchy this state is the top of, i.e. if it is the
+     * result of {@link #getHierarchyRoot()}. The epoch changes whenever a state is
+     * (un-)defined on any machine of that hierarchy, or the top itself is defined on a
+     * machine. Hence, information derived from a hierarchy is valid for as long as its
+     * top's epoch does not change; changes to other hierarchies do not affect it.
+     *
+     * @return the epoch of the hierarchy this state is the top of.
+     */
+    public int getHierarchyEpoch() {
+        return this.hierarchyEpoch;
+    }
+
     /**
      * Does nothing. Should be overridden when initialization (such as
      * adding transitions on the fly) is required. This method is called
@@ -112,6 +184,7 @@ public class BaseState implements State {
         Objects.requireNonNull(transition);
 
         this.transitions.put(transition.getName(), transition);
+        this.transitionsChanged();
         return this;
     }
 
@@ -140,11 +213,29 @@ public class BaseState implements State {
 
         if (this.transitions.containsKey(transitionName)) {
             this.transitions.remove(transitionName);
+            this.transitionsChanged();
             return this;
         }
         throw new NoSuchTransitionException("There is no transition with the name '" + transitionName + "'.");
     }
 
+    /**
+     * Rebuilds the array of transitions and determines whether all of them are
+     * unguarded. Called whenever a transition is set or unset; sub-classes need to
+     * call it after modifying {@link #transitions} directly.
+     */
+    protected void transitionsChanged() {
+        this.transitionsArray = this.transitions.values().toArray(new Transition[0]);
+        this.transitionsSnapshot = null;
+        this.hasUnguardedTransitionsOnly = true;
+        for (final Transition transition : this.transitionsArray) {
+            if (Transition.isGuarded(transition)) {
+                this.hasUnguardedTransitionsOnly = false;
+                break;
+            }
+        }
+    }
+
     /**
      * Used to determine if this state has a defined transition with the given name.
      * Calls {@link BaseState#hasTransition(String)}.
@@ -199,6 +290,40 @@ public class BaseState implements State {
         return this.transitionsUnmod;
     }
 
+    /**
+     * If none of the defined transitions has a guard, all of them are always allowed
+     * and an immutable copy of the defined transitions is returned, which is reused
+     * until the transitions change. Otherwise, a new map is created.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Transition> getTransitions() {
+        if (!this.hasUnguardedTransitionsOnly) {
+            return State.super.getTransitions();
+        }
+        if (this.transitionsSnapshot == null) {
+            this.transitionsSnapshot = Collections.unmodifiableMap(new HashMap<>(this.transitions));
+        }
+        return this.transitionsSnapshot;
+    }
+
+    /**
+     * Iterates over an array of the defined transitions, so that no allocations
+     * are required.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachAllowedTransition(@NonNull final Consumer<? super Transition> action) {
+        Objects.requireNonNull(action);
+        for (final Transition transition : this.transitionsArray) {
+            if (GuardCache.isAllowed(transition)) {
+                action.accept(transition);
+            }
+        }
+    }
+
     /**
      * The {@link State#enter(Transition)} method was overriden here, so that we can
      * check if this state belongs to a {@link BaseStateMachine}. If so, then the
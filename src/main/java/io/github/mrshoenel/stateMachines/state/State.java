@@ -3,12 +3,15 @@ package io.github.mrshoenel.stateMachines.state;
 
 import io.github.mrshoenel.stateMachines.StateMachineArtifact;
 import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
 import io.github.mrshoenel.stateMachines.transition.Transition;
 import org.springframework.lang.NonNull;
 
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -41,6 +44,30 @@ public interface State extends StateMachineArtifact {
         Objects.requireNonNull(usingTransition);
     };
 
+    /**
+     * Called by {@link Transition#transitionWith(ArgumentFrame)} when the state is entered.
+     * Override this method to read the values of the transition's arguments of this
+     * execution. The default implementation calls {@link #enter(Transition)}.
+     *
+     * @param usingTransition The {@link Transition} will pass itself in.
+     * @param frame The values of the transition's arguments.
+     */
+    default void enter(@NonNull final Transition usingTransition, @NonNull final ArgumentFrame frame) {
+        this.enter(usingTransition);
+    }
+
+    /**
+     * Called by {@link Transition#transitionWith(ArgumentFrame)} when the state is left.
+     * Override this method to read the values of the transition's arguments of this
+     * execution. The default implementation calls {@link #leave(Transition)}.
+     *
+     * @param usingTransition The {@link Transition} will pass itself in.
+     * @param frame The values of the transition's arguments.
+     */
+    default void leave(@NonNull final Transition usingTransition, @NonNull final ArgumentFrame frame) {
+        this.leave(usingTransition);
+    }
+
     /**
      * The default returns false. Override this method to return a value
      * indicating whether this state is an initial state or not.
@@ -99,7 +126,24 @@ public interface State extends StateMachineArtifact {
     default Map<String, Transition> getTransitions() {
         return Collections.unmodifiableMap(
             this.getAllDefinedTransitions().values()
-                .stream().filter(Transition::isAllowed)
+                .stream().filter(GuardCache::isAllowed)
                 .collect(Collectors.toMap(Transition::getName, kv -> kv)));
     }
+
+    /**
+     * Calls the given action for every currently defined and allowed transition.
+     * Unlike {@link State#getTransitions()}, this method does not need to create
+     * a new {@link Map} and is therefore preferable for merely inspecting the
+     * allowed transitions.
+     *
+     * @param action The action to call for each allowed transition.
+     */
+    default void forEachAllowedTransition(@NonNull final Consumer<? super Transition> action) {
+        Objects.requireNonNull(action);
+        for (final Transition transition : this.getAllDefinedTransitions().values()) {
+            if (GuardCache.isAllowed(transition)) {
+                action.accept(transition);
+            }
+        }
+    }
 }
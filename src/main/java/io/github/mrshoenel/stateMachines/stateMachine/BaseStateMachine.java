@@ -3,11 +3,18 @@ package io.github.mrshoenel.stateMachines.stateMachine;
 import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
 import io.github.mrshoenel.stateMachines.state.BaseState;
 import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
 import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionListener;
+import io.github.mrshoenel.stateMachines.transition.TransitionListeners;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -27,6 +34,48 @@ public class BaseStateMachine extends BaseState implements StateMachine {
 
     protected State currentState;
 
+    /**
+     * The state a {@link HierarchyIndex.Route} is currently entering, which is known
+     * to be defined by this machine; see {@link #setCurrentState(State)}.
+     */
+    private State routed;
+
+    private volatile TransitionListener[] transitionListeners = TransitionListeners.NONE;
+
+    private volatile GuardCache guardCache;
+
+    /**
+     * Bounds walking nested machines, which might form a cycle.
+     */
+    private static final int MAX_DEPTH = 1 << 10;
+
+    /**
+     * The top-level machine this machine is nested in (or this machine), and its
+     * depth below it, as of the root's hierarchy-epoch {@link #rootEpoch}.
+     */
+    private BaseStateMachine root;
+
+    private int depth, rootEpoch;
+
+    /**
+     * True, if this machine maintains its active configuration (see {@link #enableActivePath()}).
+     */
+    private boolean activePathEnabled;
+
+    /**
+     * The active configuration of this machine, if it is a top-level machine: this
+     * machine, its current state, that state's current state (if it is a machine), and
+     * so on. Valid if {@link #activeLength} is positive and the configuration was built
+     * in {@link #activeEpoch}; it is then updated incrementally by {@link #setCurrentState(State)}.
+     * If {@link #openEnd} is true, the last state is a machine whose current state is
+     * not tracked, such as a {@link ConcurrentStateMachine}.
+     */
+    private State[] activePath = new State[4];
+
+    private int activeLength, activeEpoch;
+
+    private boolean openEnd;
+
     /**
      * Creates a new {@link BaseStateMachine} with the given name. Initially, the
      * machine will point at itself as current state.
@@ -116,14 +165,259 @@ public class BaseStateMachine extends BaseState implements StateMachine {
      */
     public BaseStateMachine setCurrentState(@NonNull final State currentState) throws NoSuchStateException {
         Objects.requireNonNull(currentState);
-        if (!this.getDefinedStates().contains(currentState)) {
+        if (currentState != this.routed && !this.getDefinedStates().contains(currentState)) {
             throw new NoSuchStateException("Not a known/defined state: " + currentState.getName());
         }
 
+        this.point(currentState);
+        return this;
+    }
+
+    /**
+     * Called by a {@link HierarchyIndex.Route} before and after it executes a transition
+     * into the given state, so that entering it does not check again that this machine
+     * defines it.
+     *
+     * @param state The state that is entered, or null once it was entered.
+     * @return the state that was entered before, if routes are nested, or null.
+     */
+    State route(final State state) {
+        final var previous = this.routed;
+        this.routed = state;
+        return previous;
+    }
+
+    /**
+     * Makes this machine point at the given state, which is known to be defined by it.
+     * Called by {@link #setCurrentState(State)} after checking that, and by {@link
+     * HierarchyIndex.Route#enter()}, which knows it from the index.
+     *
+     * @param currentState The state the machine shall point at.
+     */
+    void point(final State currentState) {
         this.currentState = currentState;
+        this.activated();
+    }
+
+    /**
+     * Makes this machine maintain its active configuration (see {@link #getActiveConfiguration()})
+     * as an array, which is updated incrementally whenever this machine or a machine
+     * nested in it changes its current state using {@link #setCurrentState(State)}.
+     * This makes {@link #getCurrentStateDeep()} and {@link #isActive(State)} constant-time
+     * operations, for this machine and all machines nested in it, at the expense of a
+     * few more instructions per transition. Only top-level machines, i.e., machines
+     * that do not belong to another machine, maintain their configuration; for nested
+     * machines, this setting has no effect.
+     *
+     * While enabled, subclasses of the machines must not assign {@link #currentState}
+     * directly, but use {@link #setCurrentState(State)}.
+     *
+     * @return {@link BaseStateMachine} this for chaining
+     */
+    public BaseStateMachine enableActivePath() {
+        this.activePathEnabled = true;
+        this.activeLength = 0;
+        return this;
+    }
+
+    /**
+     * Stops maintaining the active configuration; see {@link #enableActivePath()}.
+     *
+     * @return {@link BaseStateMachine} this for chaining
+     */
+    public BaseStateMachine disableActivePath() {
+        this.activePathEnabled = false;
+        Arrays.fill(this.activePath, null);
+        this.activeLength = 0;
         return this;
     }
 
+    /**
+     * @return boolean true, if this machine maintains its active configuration.
+     */
+    public boolean isActivePathEnabled() {
+        return this.activePathEnabled;
+    }
+
+    /**
+     * Returns whether the changes of this machine's current state are tracked in the
+     * active configuration of its top-level machine (see {@link #enableActivePath()}).
+     * Subclasses that change the current state without calling {@link
+     * BaseStateMachine#setCurrentState(State)} must return false; the configuration
+     * then ends with them. The default returns true.
+     *
+     * @return boolean
+     */
+    protected boolean isActivePathTracked() {
+        return true;
+    }
+
+    /**
+     * @return the top-level machine this machine is nested in, or this machine. Also
+     * updates {@link #depth}.
+     */
+    private BaseStateMachine root() {
+        final var cached = this.root;
+        if (cached == null || cached.getHierarchyEpoch() != this.rootEpoch) {
+            BaseStateMachine machine = this;
+            int depth = 0;
+            for (BaseStateMachine outer; depth < MAX_DEPTH &&
+                (outer = machine.getBelongsToMachine()) != null && outer != machine; depth++) {
+                machine = outer;
+            }
+            this.root = machine;
+            this.depth = depth;
+            this.rootEpoch = machine.getHierarchyEpoch();
+        }
+        return this.root;
+    }
+
+    /**
+     * Called on a top-level machine; rebuilds its active configuration if it is not valid.
+     */
+    private void validatePath() {
+        final int epoch = this.getHierarchyEpoch();
+        if (this.activeLength == 0 || this.activeEpoch != epoch) {
+            this.activePath[0] = this;
+            this.activeLength = 1;
+            this.activeEpoch = epoch;
+            this.extendPath(this);
+        }
+    }
+
+    /**
+     * Called on a top-level machine; appends the current state of the given machine,
+     * which is the last state of the active configuration, and its current states.
+     */
+    private void extendPath(BaseStateMachine machine) {
+        this.openEnd = false;
+        while (this.activeLength < MAX_DEPTH) {
+            final State current = machine.getCurrentState();
+            if (current == machine) {
+                return;
+            }
+
+            if (this.activeLength == this.activePath.length) {
+                this.activePath = Arrays.copyOf(this.activePath, 2 * this.activeLength);
+            }
+            this.activePath[this.activeLength++] = current;
+
+            if (!(current instanceof BaseStateMachine) || !((BaseStateMachine) current).isActivePathTracked() ||
+                ((BaseStateMachine) current).getBelongsToMachine() != machine)
+            {
+                this.openEnd = current instanceof StateMachine;
+                return;
+            }
+            machine = (BaseStateMachine) current;
+        }
+        this.openEnd = true;
+    }
+
+    /**
+     * Updates the active configuration of the top-level machine after the current
+     * state of this machine changed. If this machine is not active, nothing changes.
+     */
+    private void activated() {
+        final var root = this.root();
+        final int depth = this.depth;
+        // An outdated configuration is rebuilt when it is used next.
+        if (root.activePathEnabled && root.activeEpoch == this.rootEpoch && depth < root.activeLength &&
+            root.activePath[depth] == this && !(root.openEnd && depth == root.activeLength - 1))
+        {
+            Arrays.fill(root.activePath, depth + 1, root.activeLength, null);
+            root.activeLength = depth + 1;
+            root.extendPath(this);
+        }
+    }
+
+    /**
+     * Returns the index of this machine in the active configuration of its top-level
+     * machine, or -1 if this machine is not active or its configuration is not tracked.
+     */
+    private int activeIndex() {
+        if (!this.isActivePathTracked()) {
+            return -1;
+        }
+        final var root = this.root();
+        if (!root.activePathEnabled) {
+            return -1;
+        }
+        root.validatePath();
+        final int depth = this.depth;
+        return depth < root.activeLength && root.activePath[depth] == this ? depth : -1;
+    }
+
+    /**
+     * Returns the most deeply nested active state. If the top-level machine maintains
+     * its active configuration (see {@link #enableActivePath()}) and this machine is
+     * active and tracked (see {@link #isActivePathTracked()}), this is a constant-time
+     * lookup. Otherwise, the current states are traversed.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public State getCurrentStateDeep() {
+        if (this.activeIndex() < 0) {
+            return StateMachine.super.getCurrentStateDeep();
+        }
+        final var root = this.root;
+        final var deepest = root.activePath[root.activeLength - 1];
+        return root.openEnd ? ((StateMachine) deepest).getCurrentStateDeep() : deepest;
+    }
+
+    /**
+     * Returns whether the given state is part of this machine's active configuration,
+     * i.e., whether it is this machine, its current state or a state active in a
+     * nested machine that is active. For {@link BaseState}s, this is a constant-time
+     * lookup if the top-level machine maintains its active configuration (see {@link
+     * #enableActivePath()}).
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isActive(@NonNull final State state) {
+        Objects.requireNonNull(state);
+        final int index = this.activeIndex();
+        if (index < 0) {
+            return StateMachine.super.isActive(state);
+        }
+
+        final var root = this.root;
+        final var machine = state instanceof BaseStateMachine ? (BaseStateMachine) state :
+            state instanceof BaseState ? ((BaseState) state).getBelongsToMachine() : null;
+        if (machine == null || machine.root() != root) {
+            for (int i = index; i < root.activeLength; i++) {
+                if (root.activePath[i] == state) {
+                    return true;
+                }
+            }
+        } else {
+            final int position = machine == state ? machine.depth : machine.depth + 1;
+            if (position >= index && position < root.activeLength) {
+                return root.activePath[position] == state;
+            }
+        }
+        return root.openEnd && ((StateMachine) root.activePath[root.activeLength - 1]).isActive(state);
+    }
+
+    /**
+     * @return the active configuration of this machine, from this machine to its most
+     * deeply nested active state. See {@link #isActive(State)}.
+     */
+    public List<State> getActiveConfiguration() {
+        final var configuration = new ArrayList<State>();
+        State state = this;
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            configuration.add(state);
+            final var current = state instanceof StateMachine ? ((StateMachine) state).getCurrentState() : state;
+            if (current == state) {
+                break;
+            }
+            state = current;
+        }
+        return Collections.unmodifiableList(configuration);
+    }
+
     /**
      * Obtains an unmodifiable set of all defined states.
      *
@@ -133,4 +427,87 @@ public class BaseStateMachine extends BaseState implements StateMachine {
     public Set<State> getDefinedStates() {
         return this.definedStatesUnmod;
     }
+
+    /**
+     * Registers a listener for all transitions that leave a state of this machine (or
+     * this machine itself), including the states of nested machines.
+     *
+     * @param listener The listener to add.
+     * @return {@link BaseStateMachine} this for chaining
+     */
+    public synchronized BaseStateMachine addTransitionListener(@NonNull final TransitionListener listener) {
+        this.transitionListeners = TransitionListeners.add(this.transitionListeners, listener);
+        TransitionListeners.invalidate();
+        return this;
+    }
+
+    /**
+     * Unregisters a listener that was registered using {@link #addTransitionListener(TransitionListener)}.
+     *
+     * @param listener The listener to remove.
+     * @return boolean true, if the listener was registered.
+     */
+    public synchronized boolean removeTransitionListener(@NonNull final TransitionListener listener) {
+        final var listeners = TransitionListeners.remove(this.transitionListeners, Objects.requireNonNull(listener));
+        if (listeners == this.transitionListeners) {
+            return false;
+        }
+        this.transitionListeners = listeners;
+        TransitionListeners.invalidate();
+        return true;
+    }
+
+    /**
+     * @return the listeners registered for this machine, in the order they were registered.
+     */
+    public List<TransitionListener> getTransitionListeners() {
+        return Collections.unmodifiableList(Arrays.asList(this.transitionListeners));
+    }
+
+    /**
+     * Makes this machine memoize the results of the guards of its transitions and of
+     * the transitions of machines nested in it, unless those have a cache themselves.
+     * See {@link GuardCache} for when results are invalidated.
+     *
+     * @return {@link GuardCache} the new or already enabled cache.
+     */
+    public synchronized GuardCache enableGuardCache() {
+        if (this.guardCache == null) {
+            this.guardCache = new GuardCache(this);
+        }
+        return this.guardCache;
+    }
+
+    /**
+     * Stops memoizing the results of guards.
+     *
+     * @return {@link BaseStateMachine} this for chaining
+     */
+    public synchronized BaseStateMachine disableGuardCache() {
+        this.guardCache = null;
+        return this;
+    }
+
+    /**
+     * @return {@link GuardCache} the cache enabled on this machine, or null.
+     */
+    @Nullable
+    public GuardCache getGuardCache() {
+        return this.guardCache;
+    }
+
+    /**
+     * Discards the memoized results of guards of this machine's cache, if enabled. Call
+     * this whenever a guard depends on something else than the machine's configuration
+     * and the arguments of its transitions, and that changed.
+     *
+     * @return {@link BaseStateMachine} this for chaining
+     */
+    public BaseStateMachine invalidateGuards() {
+        final var cache = this.guardCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+        return this;
+    }
 }
@@ -0,0 +1,238 @@
+package io.github.mrshoenel.stateMachines.stateMachine;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.metrics.Metrics;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionListeners;
+import org.springframework.lang.NonNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * A {@link BaseStateMachine} whose current state may be read and updated by many
+ * threads without an external lock. Reads and writes of the current state have
+ * volatile semantics, and {@link #compareAndTransition(State, Transition)} allows
+ * threads that race on the same machine to execute a transition such that exactly
+ * one of them wins, while the others fail fast instead of blocking. While the winner
+ * leaves the 'from'-state and enters the 'to'-state, the machine holds a marker, so
+ * that no other thread can transition away from the 'to'-state before it was entered;
+ * hence, the hooks of consecutive transitions never interleave. Readers see the
+ * 'to'-state meanwhile (see {@link #getCurrentState()}). Subclasses must not read
+ * {@link #currentState} directly, as it may hold the marker.
+ *
+ * Note that defining or undefining states is not thread-safe; the machine should be
+ * fully set up before it is shared among threads. Also, the guards and arguments of
+ * transitions are evaluated by the calling thread and need to be thread-safe by
+ * themselves, if they access shared data.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class ConcurrentStateMachine extends BaseStateMachine {
+    private static final VarHandle CURRENT_STATE;
+
+    static {
+        try {
+            CURRENT_STATE = MethodHandles.lookup().findVarHandle(
+                BaseStateMachine.class, "currentState", State.class);
+        } catch (ReflectiveOperationException roEx) {
+            throw new ExceptionInInitializerError(roEx);
+        }
+    }
+
+    /**
+     * The marker a successful {@link #compareAndTransition(State, Transition)} installs
+     * while its thread leaves the 'from'- and enters the 'to'-state. Entering the state
+     * makes its machine point at it (see {@link #point(State)}), which must not replace
+     * the marker before the hooks are done.
+     */
+    private static final class Entering implements State {
+        private final State to;
+
+        private final Thread thread;
+
+        private Entering(final State to) {
+            this.to = to;
+            this.thread = Thread.currentThread();
+        }
+
+        @Override
+        public String getName() {
+            return this.to.getName();
+        }
+
+        @Override
+        public State setTransition(@NonNull final Transition transition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public State unsetTransition(@NonNull final Transition transition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Transition> getAllDefinedTransitions() {
+            return this.to.getAllDefinedTransitions();
+        }
+    }
+
+    /**
+     * Creates a new {@link ConcurrentStateMachine} with the given name. Initially, the
+     * machine will point at itself as current state.
+     *
+     * @param name The name of the Machine.
+     */
+    public ConcurrentStateMachine(@NonNull final String name) {
+        super(name);
+    }
+
+    /**
+     * Reads the current state with volatile semantics. While a transition is executed
+     * by {@link #compareAndTransition(State, Transition)}, this is its 'to'-state.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public State getCurrentState() {
+        final var state = (State) CURRENT_STATE.getVolatile(this);
+        return state instanceof Entering ? ((Entering) state).to : state;
+    }
+
+    /**
+     * The current state of this machine changes without calling {@link
+     * BaseStateMachine#setCurrentState(State)}, so it is not tracked in the active
+     * configuration of the top-level machine; lookups traverse this machine instead.
+     *
+     * @return boolean false
+     */
+    @Override
+    protected boolean isActivePathTracked() {
+        return false;
+    }
+
+    /**
+     * Unconditionally sets the current state with volatile semantics. Use {@link
+     * #compareAndTransition(State, Transition)} to update the state atomically.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public ConcurrentStateMachine setCurrentState(@NonNull final State currentState) throws NoSuchStateException {
+        super.setCurrentState(currentState);
+        return this;
+    }
+
+    /**
+     * Sets the current state with volatile semantics, unless the current thread is
+     * entering it in {@link #compareAndTransition(State, Transition)}, which publishes
+     * it once it was entered.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    void point(final State currentState) {
+        final var current = CURRENT_STATE.getVolatile(this);
+        if (!(current instanceof Entering) || ((Entering) current).to != currentState ||
+            ((Entering) current).thread != Thread.currentThread())
+        {
+            CURRENT_STATE.setVolatile(this, currentState);
+        }
+    }
+
+    /**
+     * Atomically makes this machine point at the 'to'-state of the given transition,
+     * if (and only if) it currently points at the expected state. If the update
+     * succeeds, the 'from'-state is left and the 'to'-state is entered, as if
+     * {@link Transition#transition()} had been called. If many threads race with the
+     * same expected state, exactly one of them succeeds.
+     *
+     * The transition's guard and arguments are checked before attempting the update,
+     * so that a disallowed transition never changes the current state.
+     *
+     * @param expected The state this machine is expected to point at.
+     * @param transition The transition to execute. Its 'to'-state must be defined
+     *                   by this machine (or be this machine).
+     * @return boolean true, if this machine pointed at the expected state and the
+     * transition was executed; false, if the machine pointed at another state.
+     * @throws NoSuchStateException if the 'to'-state is not defined by this machine.
+     * @throws IllegalTransitionException if the transition is currently disallowed
+     * or if one or more of its arguments have no value set.
+     */
+    public boolean compareAndTransition(@NonNull final State expected, @NonNull final Transition transition)
+        throws NoSuchStateException, IllegalTransitionException
+    {
+        try (final var frame = ArgumentFrame.acquire(transition)) {
+            return this.compareAndTransition(expected, transition, frame);
+        }
+    }
+
+    /**
+     * Like {@link #compareAndTransition(State, Transition)}, but executes the transition
+     * with the argument values of the given frame (see {@link Transition#transitionWith(ArgumentFrame)}),
+     * so that many threads may race with the same transition and their own values.
+     *
+     * @param expected The state this machine is expected to point at.
+     * @param transition The transition to execute. Its 'to'-state must be defined
+     *                   by this machine (or be this machine).
+     * @param frame A frame that was acquired for the transition.
+     * @return boolean true, if this machine pointed at the expected state and the
+     * transition was executed; false, if the machine pointed at another state.
+     * @throws NoSuchStateException if the 'to'-state is not defined by this machine.
+     * @throws IllegalTransitionException if the transition is currently disallowed
+     * or if one or more of its arguments have no value.
+     * @exception IllegalArgumentException if the frame was acquired for another transition.
+     */
+    public boolean compareAndTransition(@NonNull final State expected, @NonNull final Transition transition,
+        @NonNull final ArgumentFrame frame) throws NoSuchStateException, IllegalTransitionException
+    {
+        Objects.requireNonNull(expected);
+        final State to = Objects.requireNonNull(transition).getToState();
+        if (Objects.requireNonNull(frame).getTransition() != transition) {
+            throw new IllegalArgumentException("The frame was acquired for another transition.");
+        }
+        if (!this.getDefinedStates().contains(to)) {
+            throw new NoSuchStateException("Not a known/defined state: " + to.getName());
+        }
+
+        final var listeners = TransitionListeners.of(transition);
+        if (!GuardCache.isAllowed(transition)) {
+            Metrics.rejected(transition);
+            throw TransitionListeners.rejected(listeners, transition,
+                new IllegalTransitionException("This transition is currently disallowed."));
+        }
+        final var missing = frame.getMissingArgument();
+        if (missing != null) {
+            Metrics.rejected(transition);
+            throw TransitionListeners.rejected(listeners, transition,
+                new IllegalTransitionException("Argument '" + missing.getName() + "' has not been set."));
+        }
+
+        final var entering = new Entering(to);
+        if (!CURRENT_STATE.compareAndSet(this, expected, entering)) {
+            return false;
+        }
+
+        final long start, now;
+        try {
+            TransitionListeners.beforeLeave(listeners, transition);
+            start = Metrics.start();
+            now = Metrics.enter(to, transition, frame,
+                Metrics.leave(transition.getFromState(), transition, frame, start));
+        } finally {
+            // Unless another thread has set the state unconditionally in the meantime:
+            CURRENT_STATE.compareAndSet(this, entering, to);
+        }
+        Metrics.transitioned(transition, start, now);
+        GuardCache.invalidate(transition);
+        TransitionListeners.afterEnter(listeners, transition);
+        return true;
+    }
+}
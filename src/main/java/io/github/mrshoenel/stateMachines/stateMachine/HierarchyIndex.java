@@ -0,0 +1,367 @@
+package io.github.mrshoenel.stateMachines.stateMachine;
+
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionResult;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * A snapshot of the hierarchy of a top-level {@link BaseStateMachine}: every state
+ * of it and of the machines nested in it is assigned an ordinal, along with the
+ * ordinal of the machine that owns it and its depth below the top-level machine.
+ * For transitions between these states, a {@link Route} holds the states that are
+ * entered, as determined by the least common ancestor of the 'from'- and 'to'-state,
+ * so that executing a transition is a walk over an array, rather than a sequence of
+ * lookups in the machines' defined states.
+ *
+ * A state is owned by a machine if the machine defines it and the state belongs to
+ * that machine ({@link BaseState#getBelongsToMachine()}). Only {@link BaseState}s
+ * are indexed; states defined by more than one machine are owned by the first one
+ * found. An index is valid as long as the hierarchy does not change, which is
+ * tracked by the {@link BaseState#getHierarchyEpoch()} of the indexed machine's
+ * {@link BaseState#getHierarchyRoot()}; see {@link #isCurrent()}. Changes to other
+ * hierarchies do not affect the index.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class HierarchyIndex {
+    private final BaseStateMachine root;
+
+    /**
+     * The top of the hierarchy the root is part of when it was indexed, and its epoch.
+     */
+    private final BaseState top;
+
+    private final int epoch;
+
+    private final Map<State, Integer> ordinals;
+
+    private final BaseState[] states;
+
+    /**
+     * For each state, the ordinal of the machine that owns it, or -1 for the top-level machine.
+     */
+    private final int[] owner;
+
+    /**
+     * For each state, its depth below the top-level machine, which has a depth of 0.
+     */
+    private final int[] depth;
+
+    private final Map<Transition, Route> routes;
+
+    private HierarchyIndex(final BaseStateMachine root) {
+        this.root = root;
+        this.top = root.getHierarchyRoot();
+        this.epoch = this.top.getHierarchyEpoch();
+        this.ordinals = new IdentityHashMap<>();
+        this.routes = new IdentityHashMap<>();
+
+        final var states = new ArrayList<BaseState>();
+        final var owners = new ArrayList<Integer>();
+        states.add(root);
+        owners.add(-1);
+        this.ordinals.put(root, 0);
+        for (int s = 0; s < states.size(); s++) {
+            if (!(states.get(s) instanceof BaseStateMachine)) {
+                continue;
+            }
+            final var machine = (BaseStateMachine) states.get(s);
+            for (final var child : machine.getDefinedStates()) {
+                if (child instanceof BaseState && ((BaseState) child).getBelongsToMachine() == machine &&
+                    !this.ordinals.containsKey(child))
+                {
+                    this.ordinals.put(child, states.size());
+                    states.add((BaseState) child);
+                    owners.add(s);
+                }
+            }
+        }
+
+        this.states = states.toArray(new BaseState[0]);
+        this.owner = new int[this.states.length];
+        this.depth = new int[this.states.length];
+        for (int s = 0; s < this.states.length; s++) {
+            this.owner[s] = owners.get(s);
+            // Owners are always indexed before the states they own:
+            this.depth[s] = this.owner[s] < 0 ? 0 : this.depth[this.owner[s]] + 1;
+        }
+    }
+
+    /**
+     * Indexes the hierarchy of the given machine in its current form.
+     *
+     * @param root The top-level machine.
+     * @return {@link HierarchyIndex}
+     */
+    public static HierarchyIndex of(@NonNull final BaseStateMachine root) {
+        return new HierarchyIndex(Objects.requireNonNull(root));
+    }
+
+    /**
+     * @return the top-level machine this index was built for.
+     */
+    public BaseStateMachine getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return boolean true, if no state was (un-)defined on any machine of the hierarchy
+     * the indexed machine is part of, and the hierarchy was not nested in another
+     * machine, since this index was built. Otherwise, a new index should be built.
+     */
+    public boolean isCurrent() {
+        return this.epoch == this.top.getHierarchyEpoch();
+    }
+
+    /**
+     * @return the amount of indexed states, including all machines.
+     */
+    public int getStateCount() {
+        return this.states.length;
+    }
+
+    /**
+     * Returns the ordinal of the given state. The top-level machine has the ordinal 0,
+     * and machines have lower ordinals than the states they own.
+     *
+     * @param state The state to get the ordinal for.
+     * @return the ordinal or -1, if the state is not part of this index.
+     */
+    public int ordinalOf(@NonNull final State state) {
+        final var ordinal = this.ordinals.get(Objects.requireNonNull(state));
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the state for the given ordinal.
+     *
+     * @param ordinal The state's ordinal.
+     * @return {@link BaseState}
+     */
+    public BaseState getState(final int ordinal) {
+        return this.states[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the machine that owns the state with the given ordinal.
+     *
+     * @param ordinal The state's ordinal.
+     * @return the owner's ordinal, or -1 for the top-level machine.
+     */
+    public int getOwner(final int ordinal) {
+        return this.owner[ordinal];
+    }
+
+    /**
+     * Returns the depth of the state with the given ordinal below the top-level machine.
+     *
+     * @param ordinal The state's ordinal.
+     * @return the depth; 0 for the top-level machine.
+     */
+    public int getDepth(final int ordinal) {
+        return this.depth[ordinal];
+    }
+
+    /**
+     * Returns the route of the given transition through the hierarchy. Routes are
+     * determined once per transition and index.
+     *
+     * @param transition The transition.
+     * @return {@link Route} or null, if the transition's 'from'- or 'to'-state is not
+     * part of this index.
+     */
+    @Nullable
+    public Route route(@NonNull final Transition transition) {
+        Objects.requireNonNull(transition);
+        var route = this.routes.get(transition);
+        if (route == null) {
+            final int from = this.ordinalOf(transition.getFromState());
+            final int to = this.ordinalOf(transition.getToState());
+            if (from < 0 || to < 0) {
+                return null;
+            }
+            route = new Route(from, to);
+            this.routes.put(transition, route);
+        }
+        return route;
+    }
+
+    /**
+     * Returns the deepest machine that owns the 'to'-state (directly or indirectly)
+     * and is, or owns, the 'from'-state. That machine stays active when a transition
+     * between the two states is executed.
+     *
+     * @return the ordinal of that machine, or -1 if the 'to'-state is the top-level machine.
+     */
+    private int leastCommonAncestor(int from, final int to) {
+        int ancestor = this.owner[to];
+        if (ancestor < 0) {
+            return -1;
+        }
+        while (this.depth[from] > this.depth[ancestor]) {
+            from = this.owner[from];
+        }
+        while (this.depth[ancestor] > this.depth[from]) {
+            ancestor = this.owner[ancestor];
+        }
+        while (ancestor != from) {
+            ancestor = this.owner[ancestor];
+            from = this.owner[from];
+        }
+        return ancestor;
+    }
+
+
+    /**
+     * The states a transition enters: the machines below the least common ancestor of
+     * the 'from'- and 'to'-state that own the 'to'-state, and the 'to'-state. Machines
+     * that are exited keep pointing at their current state, and the hooks of neither
+     * the exited nor the entered machines are called; only those of the 'from'- and
+     * 'to'-state are, by the transition itself. The compiled engines (see {@link
+     * io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine}) make the same
+     * machines point at the entered states.
+     */
+    public final class Route {
+        private final int from, to;
+
+        /**
+         * Ordinals of the entered states, outermost first.
+         */
+        private final int[] entries;
+
+        private Route(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+            final var ancestor = HierarchyIndex.this.leastCommonAncestor(from, to);
+
+            int length = 0;
+            for (int s = to; s != ancestor; s = HierarchyIndex.this.owner[s]) {
+                length++;
+            }
+            this.entries = new int[length];
+            for (int s = to; s != ancestor; s = HierarchyIndex.this.owner[s]) {
+                this.entries[--length] = s;
+            }
+        }
+
+        /**
+         * @return the entered states, from the outermost one to the 'to'-state.
+         */
+        public List<BaseState> getEntrySet() {
+            final var states = new ArrayList<BaseState>(this.entries.length);
+            for (final int ordinal : this.entries) {
+                states.add(HierarchyIndex.this.states[ordinal]);
+            }
+            return Collections.unmodifiableList(states);
+        }
+
+        /**
+         * Executes the given transition, which must be the one this route was obtained
+         * for, using {@link Transition#transition()}, and then makes the owner of each
+         * entered state point at it (see {@link #enter()}). While the transition is
+         * executed, the owner of the 'to'-state accepts it as its current state without
+         * checking again that it defines it (see {@link BaseStateMachine#setCurrentState(State)}).
+         *
+         * @param transition The transition of this route.
+         * @throws IllegalTransitionException if the transition is not allowed.
+         */
+        public void transition(@NonNull final Transition transition) throws IllegalTransitionException {
+            final var owner = this.owner();
+            final var previous = owner == null ? null : owner.route(this.toState());
+            try {
+                transition.transition();
+            } finally {
+                if (owner != null) {
+                    owner.route(previous);
+                }
+            }
+            this.enter();
+        }
+
+        /**
+         * Like {@link #transition(Transition)}, but uses {@link Transition#tryTransitionWith(ArgumentFrame)}
+         * and only enters the states if the transition was executed.
+         *
+         * @param transition The transition of this route.
+         * @param frame The frame to execute the transition with.
+         * @return {@link TransitionResult} the result of {@link Transition#tryTransitionWith(ArgumentFrame)}.
+         */
+        public TransitionResult tryTransition(@NonNull final Transition transition, @NonNull final ArgumentFrame frame) {
+            final var owner = this.owner();
+            final var previous = owner == null ? null : owner.route(this.toState());
+            final TransitionResult result;
+            try {
+                result = transition.tryTransitionWith(frame);
+            } finally {
+                if (owner != null) {
+                    owner.route(previous);
+                }
+            }
+            if (result == TransitionResult.OK) {
+                this.enter();
+            }
+            return result;
+        }
+
+        private BaseState toState() {
+            return HierarchyIndex.this.states[this.to];
+        }
+
+        /**
+         * @return the machine that owns the 'to'-state, or null for the top-level machine.
+         */
+        private BaseStateMachine owner() {
+            final int owner = HierarchyIndex.this.owner[this.to];
+            return owner < 0 ? null : (BaseStateMachine) HierarchyIndex.this.states[owner];
+        }
+
+        /**
+         * Makes the owner of each entered state point at it. If the 'to'-state is a
+         * machine, it is made to point at itself. The states are known to be defined
+         * by their owners, so that this does not check that again. Owners that already
+         * point at the entered state, e.g., because its hook made them, are skipped.
+         * This method does not call any of the states' hooks.
+         */
+        public void enter() {
+            final var states = HierarchyIndex.this.states;
+            final var owner = HierarchyIndex.this.owner;
+            final var to = states[this.to];
+            if (to instanceof BaseStateMachine && ((BaseStateMachine) to).getCurrentState() != to) {
+                ((BaseStateMachine) to).point(to);
+            }
+            for (final int entered : this.entries) {
+                if (owner[entered] >= 0) {
+                    final var machine = (BaseStateMachine) states[owner[entered]];
+                    if (machine.getCurrentState() != states[entered]) {
+                        machine.point(states[entered]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the 'from'- and 'to'-state of the route.
+         *
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final var states = HierarchyIndex.this.states;
+            return "[" + this.getClass().getSimpleName() + ": " + states[this.from].getName() + " -> " +
+                states[this.to].getName() + "]";
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package io.github.mrshoenel.stateMachines.stateMachine;
+
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.TransitionResult;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A {@link BaseStateMachine} whose sub-states are orthogonal regions: each region is
+ * a machine of its own, and all regions are active at the same time, whenever this
+ * machine is active. This allows to model independent concerns of one entity (e.g.
+ * the payment and the shipping of an order) within a single machine, rather than
+ * coordinating separate machines. An event is dispatched to all regions using
+ * {@link #dispatch(String)}, and each region whose most deeply nested active state
+ * has a transition with the event's name executes it.
+ *
+ * Regions can be declared isolated ({@link #defineRegion(BaseStateMachine, boolean)}),
+ * which means that the hooks, guards and arguments of their states and transitions
+ * only access data of the region itself, or data that is thread-safe. If a pool is
+ * set ({@link #setPool(ForkJoinPool)}), isolated regions execute their transitions
+ * in parallel on that pool, while the other regions execute them, in the order they
+ * were defined, on the calling thread. Listeners and metrics of the transitions of
+ * isolated regions may thus be called concurrently, too.
+ *
+ * This machine always points at itself; use {@link #getActiveStates()} to obtain the
+ * active state of each region. Defining or undefining regions is not thread-safe.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class OrthogonalStateMachine extends BaseStateMachine {
+    private static final Region[] NO_REGIONS = new Region[0];
+
+    private volatile Region[] regions = NO_REGIONS;
+
+    private volatile ForkJoinPool pool;
+
+    /**
+     * A region, and the index its transitions are routed through.
+     */
+    private static final class Region {
+        private final BaseStateMachine machine;
+
+        private final boolean isolated;
+
+        private HierarchyIndex index;
+
+        private Region(final BaseStateMachine machine, final boolean isolated) {
+            this.machine = machine;
+            this.isolated = isolated;
+        }
+
+        /**
+         * Executes the transition with the given name of the region's most deeply nested
+         * active state, like {@link io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine#tryTransition(String)}
+         * does.
+         */
+        private TransitionResult fire(final String name) {
+            final var tr = this.machine.getCurrentStateDeep().getAllDefinedTransitions().get(name);
+            if (tr == null) {
+                return TransitionResult.NO_SUCH_TRANSITION;
+            }
+
+            var index = this.index;
+            if (index == null || !index.isCurrent()) {
+                this.index = index = HierarchyIndex.of(this.machine);
+            }
+            final var route = index.route(tr);
+            if (route == null) {
+                return TransitionResult.ORPHAN_STATE;
+            }
+
+            try (final var frame = ArgumentFrame.acquire(tr)) {
+                return route.tryTransition(tr, frame);
+            }
+        }
+    }
+
+    /**
+     * Dispatches an event to a range of isolated regions, splitting the range until
+     * it contains a single region.
+     */
+    private static final class DispatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Region[] regions;
+
+        private final int[] indexes;
+
+        private final int from, to;
+
+        private final String name;
+
+        private final TransitionResult[] results;
+
+        private DispatchTask(final Region[] regions, final int[] indexes, final int from, final int to,
+            final String name, final TransitionResult[] results)
+        {
+            this.regions = regions;
+            this.indexes = indexes;
+            this.from = from;
+            this.to = to;
+            this.name = name;
+            this.results = results;
+        }
+
+        /**
+         * Unlike {@link ForkJoinTask#invokeAll(ForkJoinTask, ForkJoinTask)}, this always
+         * joins both halves before an exception of either is propagated, so that no
+         * region is still executing once the root task completes.
+         */
+        @Override
+        protected void compute() {
+            if (this.to - this.from == 1) {
+                final int r = this.indexes[this.from];
+                this.results[r] = this.regions[r].fire(this.name);
+                return;
+            }
+            final int mid = (this.from + this.to) >>> 1;
+            final var right = new DispatchTask(this.regions, this.indexes, mid, this.to, this.name, this.results);
+            right.fork();
+            try {
+                new DispatchTask(this.regions, this.indexes, this.from, mid, this.name, this.results).invoke();
+            } finally {
+                right.join();
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@link OrthogonalStateMachine} with the given name and no regions.
+     *
+     * @param name The name of the Machine.
+     */
+    public OrthogonalStateMachine(@NonNull final String name) {
+        super(name);
+    }
+
+    /**
+     * Defines the given machine as a region that is not isolated. Only machines can
+     * be defined; see {@link #defineRegion(BaseStateMachine, boolean)}.
+     *
+     * {@inheritDoc}
+     * @exception IllegalArgumentException if the state is not a {@link BaseStateMachine}
+     * or was already defined.
+     */
+    @Override
+    public OrthogonalStateMachine defineState(@NonNull final State state) {
+        if (state == this) {
+            // Called by the constructor of the super class; this machine is not a region.
+            super.defineState(state);
+            return this;
+        }
+        if (!(state instanceof BaseStateMachine)) {
+            throw new IllegalArgumentException("Only machines can be regions: " + Objects.requireNonNull(state).getName());
+        }
+        return this.defineRegion((BaseStateMachine) state, false);
+    }
+
+    /**
+     * Defines a machine as region of this machine. The region's current state is left
+     * as is, and it becomes active whenever this machine is active.
+     *
+     * @param region The machine to define as region.
+     * @param isolated If true, the region declares that the hooks, guards and arguments
+     *                 of its states and transitions do not access data of other regions,
+     *                 so that its transitions may be executed in parallel with those of
+     *                 other isolated regions.
+     * @exception IllegalArgumentException if the region was already defined.
+     * @return {@link OrthogonalStateMachine} this for chaining
+     */
+    public OrthogonalStateMachine defineRegion(@NonNull final BaseStateMachine region, final boolean isolated) {
+        Objects.requireNonNull(region);
+        if (region == this) {
+            throw new IllegalArgumentException("A machine cannot be a region of itself.");
+        }
+        super.defineState(region);
+
+        final var regions = Arrays.copyOf(this.regions, this.regions.length + 1);
+        regions[regions.length - 1] = new Region(region, isolated);
+        this.regions = regions;
+        return this;
+    }
+
+    /**
+     * Undefines a region.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public OrthogonalStateMachine undefineState(@NonNull final State state) throws NoSuchStateException {
+        super.undefineState(state);
+
+        final var regions = new ArrayList<>(Arrays.asList(this.regions));
+        regions.removeIf(region -> region.machine == state);
+        this.regions = regions.isEmpty() ? NO_REGIONS : regions.toArray(NO_REGIONS);
+        return this;
+    }
+
+    /**
+     * @return the regions of this machine, in the order they were defined.
+     */
+    public List<BaseStateMachine> getRegions() {
+        final var regions = this.regions;
+        final var machines = new ArrayList<BaseStateMachine>(regions.length);
+        for (final var region : regions) {
+            machines.add(region.machine);
+        }
+        return Collections.unmodifiableList(machines);
+    }
+
+    /**
+     * Sets the pool used to execute the transitions of isolated regions in parallel.
+     *
+     * @param pool The pool, or null to execute all transitions on the calling thread.
+     * @return {@link OrthogonalStateMachine} this for chaining
+     */
+    public OrthogonalStateMachine setPool(@Nullable final ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * @return {@link ForkJoinPool} the pool used for isolated regions, or null.
+     */
+    @Nullable
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Dispatches an event to all regions; see {@link #dispatch(String, TransitionResult[])}.
+     *
+     * @param name The name of the transition(s) to execute.
+     * @return the amount of regions that executed a transition.
+     */
+    public int dispatch(@NonNull final String name) {
+        return this.dispatch(name, null);
+    }
+
+    /**
+     * Dispatches an event to all regions: each region whose most deeply nested active
+     * state has an allowed transition with the given name executes it, with the values
+     * its arguments currently have. The machine of the transition's 'to'-state, and all
+     * machines between it and the region, are made to point at it. Transitions whose
+     * 'to'-state is not part of the region are not executed. If a pool is set, isolated
+     * regions execute their transitions in parallel; this method returns once all
+     * regions are done. A {@link RuntimeException} thrown by a hook of any region is
+     * rethrown once all regions are done. An {@link Error} thrown by a hook of a region
+     * that is not isolated skips the remaining such regions, but is, too, only rethrown
+     * once the isolated regions are done.
+     *
+     * @param name The name of the transition(s) to execute.
+     * @param results If not null, receives the result for each region, in the order
+     *                the regions were defined: {@link TransitionResult#OK} if the region
+     *                executed the transition, {@link TransitionResult#ORPHAN_STATE} if
+     *                its 'to'-state is not part of the region, or the reason otherwise.
+     * @return the amount of regions that executed a transition.
+     * @exception IllegalArgumentException if the array of results is shorter than the
+     * amount of regions.
+     */
+    public int dispatch(@NonNull final String name, @Nullable final TransitionResult[] results) {
+        Objects.requireNonNull(name);
+        final var regions = this.regions;
+        if (results != null && results.length < regions.length) {
+            throw new IllegalArgumentException("There are " + regions.length + " regions, but only " +
+                results.length + " results.");
+        }
+        return this.dispatch(regions, name, results == null ? new TransitionResult[regions.length] : results);
+    }
+
+    private int dispatch(final Region[] regions, final String name, final TransitionResult[] results) {
+
+        final var pool = this.pool;
+        int isolated = 0;
+        if (pool != null) {
+            for (final var region : regions) {
+                if (region.isolated) {
+                    isolated++;
+                }
+            }
+        }
+
+        if (isolated < 2) {
+            RuntimeException thrown = null;
+            for (int r = 0; r < regions.length; r++) {
+                try {
+                    results[r] = regions[r].fire(name);
+                } catch (RuntimeException rEx) {
+                    thrown = thrown == null ? rEx : thrown;
+                }
+            }
+            if (thrown != null) {
+                throw thrown;
+            }
+        } else {
+            final var indexes = new int[isolated];
+            for (int r = 0, i = 0; r < regions.length; r++) {
+                if (regions[r].isolated) {
+                    indexes[i++] = r;
+                }
+            }
+            final var task = pool.submit(new DispatchTask(regions, indexes, 0, isolated, name, results));
+
+            RuntimeException thrown = null;
+            try {
+                for (int r = 0; r < regions.length; r++) {
+                    if (!regions[r].isolated) {
+                        try {
+                            results[r] = regions[r].fire(name);
+                        } catch (RuntimeException rEx) {
+                            thrown = thrown == null ? rEx : thrown;
+                        }
+                    }
+                }
+            } finally {
+                // Never return while the isolated regions are still executing, not even on an Error.
+                try {
+                    task.join();
+                } catch (RuntimeException rEx) {
+                    thrown = thrown == null ? rEx : thrown;
+                }
+            }
+            if (thrown != null) {
+                throw thrown;
+            }
+        }
+
+        int executed = 0;
+        for (int r = 0; r < regions.length; r++) {
+            if (results[r] == TransitionResult.OK) {
+                executed++;
+            }
+        }
+        return executed;
+    }
+
+    /**
+     * @return the most deeply nested active state of each region, in the order the
+     * regions were defined.
+     */
+    public List<State> getActiveStates() {
+        final var regions = this.regions;
+        final var states = new ArrayList<State>(regions.length);
+        for (final var region : regions) {
+            states.add(region.machine.getCurrentStateDeep());
+        }
+        return Collections.unmodifiableList(states);
+    }
+
+    /**
+     * Returns true for this machine and for states that are active in any of its regions.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isActive(@NonNull final State state) {
+        Objects.requireNonNull(state);
+        if (state == this) {
+            return true;
+        }
+        for (final var region : this.regions) {
+            if (region.machine.isActive(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * All regions are active at the same time, so that the active configuration ends
+     * with this machine, and lookups ask this machine.
+     *
+     * @return boolean false
+     */
+    @Override
+    protected boolean isActivePathTracked() {
+        return false;
+    }
+
+    /**
+     * This machine always points at itself; entering a region does not change that.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    void point(final State currentState) {
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.mrshoenel.stateMachines.stateMachine;
 
 import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
+
+import java.util.Objects;
 import java.util.Set;
 
 
@@ -41,4 +44,26 @@ public interface StateMachine extends State {
         }
         return current;
     }
+
+    /**
+     * Default implementation for checking whether a state is part of this machine's
+     * active configuration, i.e., whether it is this machine, its current state or,
+     * if that is a machine, part of its active configuration. Nested machines are
+     * asked using their {@link #isActive(State)}, so that machines with more than one
+     * active state (such as an {@link OrthogonalStateMachine}) can answer for them.
+     *
+     * @param state The state to check.
+     * @return boolean true, if the state is active.
+     */
+    default boolean isActive(@NonNull final State state) {
+        Objects.requireNonNull(state);
+        if (state == this) {
+            return true;
+        }
+        final State current = this.getCurrentState();
+        if (current == this || current == null) {
+            return false;
+        }
+        return current == state || (current instanceof StateMachine && ((StateMachine) current).isActive(state));
+    }
 }
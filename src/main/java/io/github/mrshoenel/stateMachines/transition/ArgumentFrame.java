@@ -0,0 +1,379 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Holds the values of the arguments of one execution of a {@link Transition}, so
+ * that many threads may execute the same transition with different values (see
+ * {@link Transition#transitionWith(ArgumentFrame)}). The transition's arguments, as
+ * returned by {@link Transition#getTransitionArguments()}, declare which values a
+ * frame accepts; a value that is not set in the frame is taken from its argument,
+ * if that has one. The states being left and entered read the values in {@link
+ * State#leave(Transition, ArgumentFrame)} and {@link State#enter(Transition, ArgumentFrame)}.
+ *
+ * Frames are pooled per thread: obtain one using {@link #acquire(Transition)} and
+ * close it after the execution, preferably using try-with-resources. A closed
+ * frame must not be used anymore. Acquiring and closing frames does not allocate
+ * once the pool of the thread is warm. Values of {@link PrimitiveTransitionArgument}s
+ * that are set using the primitive setters, such as {@link #setInt(IntTransitionArgument, int)},
+ * are stored without boxing them.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class ArgumentFrame implements AutoCloseable {
+    static final TransitionArgument<?>[] NO_ARGUMENTS = new TransitionArgument<?>[0];
+
+    /**
+     * The amount of closed frames kept per thread, which bounds the depth of nested
+     * executions that do not allocate.
+     */
+    private static final int MAX_POOLED = 16;
+
+    private static final ThreadLocal<ArrayDeque<ArgumentFrame>> POOL =
+        ThreadLocal.withInitial(() -> new ArrayDeque<>(MAX_POOLED));
+
+    private Transition transition;
+
+    private TransitionArgument<?>[] arguments = NO_ARGUMENTS;
+
+    private Object[] values = new Object[0];
+
+    private static final byte NONE = 0, OBJECT = 1, BITS = 2;
+
+    /**
+     * Per argument, whether its value is in {@link #values}, in {@link #bits} or not set.
+     */
+    private byte[] present = new byte[0];
+
+    private long[] bits = new long[0];
+
+    private ArgumentFrame() { }
+
+    /**
+     * Obtains an empty frame for the given transition from the pool of the current
+     * thread, or creates one if the pool is empty.
+     *
+     * @param transition The transition the frame holds the argument values for.
+     * @return {@link ArgumentFrame} the frame, which must be closed after use.
+     */
+    public static ArgumentFrame acquire(@NonNull final Transition transition) {
+        Objects.requireNonNull(transition);
+        final var frame = POOL.get().poll();
+        return (frame == null ? new ArgumentFrame() : frame).bind(transition);
+    }
+
+    private ArgumentFrame bind(final Transition transition) {
+        this.transition = transition;
+        this.arguments = transition instanceof BaseTransition ? ((BaseTransition) transition).argumentSchema() :
+            transition.getTransitionArguments().values().toArray(NO_ARGUMENTS);
+        if (this.values.length < this.arguments.length) {
+            this.values = new Object[this.arguments.length];
+            this.present = new byte[this.arguments.length];
+            this.bits = new long[this.arguments.length];
+        }
+        return this;
+    }
+
+    /**
+     * @return {@link Transition} the transition this frame holds the argument values for.
+     * @throws IllegalStateException if this frame was closed.
+     */
+    public Transition getTransition() {
+        if (this.transition == null) {
+            throw new IllegalStateException("This frame was closed.");
+        }
+        return this.transition;
+    }
+
+    private int indexOf(final String name) throws NoSuchArgumentException {
+        this.getTransition();
+        for (int i = 0; i < this.arguments.length; i++) {
+            if (this.arguments[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new NoSuchArgumentException("There is no argument with the name '" + name + "'.");
+    }
+
+    private int indexOf(final TransitionArgument<?> argument) throws NoSuchArgumentException {
+        this.getTransition();
+        for (int i = 0; i < this.arguments.length; i++) {
+            if (this.arguments[i] == argument) {
+                return i;
+            }
+        }
+        return this.indexOf(argument.getName());
+    }
+
+    /**
+     * Sets the value of an argument for this execution only.
+     *
+     * @param name The name of the argument.
+     * @param value The value, which may be null.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have such an argument.
+     * @exception IllegalArgumentException if the value is not of its argument's type.
+     */
+    public ArgumentFrame set(@NonNull final String name, @Nullable final Object value) throws NoSuchArgumentException {
+        return this.setAt(this.indexOf(Objects.requireNonNull(name)), value);
+    }
+
+    /**
+     * Sets the value of an argument for this execution only.
+     *
+     * @param argument The argument of the transition.
+     * @param value The value, which may be null.
+     * @param <T> The type of the argument.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     */
+    public <T> ArgumentFrame set(@NonNull final TransitionArgument<T> argument, @Nullable final T value)
+        throws NoSuchArgumentException
+    {
+        return this.setAt(this.indexOf(Objects.requireNonNull(argument)), value);
+    }
+
+    /**
+     * Sets the values of many arguments using {@link #set(String, Object)}.
+     *
+     * @param values The values, keyed by the names of their arguments.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have one of the arguments.
+     */
+    public ArgumentFrame setAll(@NonNull final Map<String, ?> values) throws NoSuchArgumentException {
+        for (final var entry : Objects.requireNonNull(values).entrySet()) {
+            this.set(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    private ArgumentFrame setAt(final int index, final Object value) {
+        final var argument = this.arguments[index];
+        if (value == null ? argument instanceof PrimitiveTransitionArgument : !argument.getType().isInstance(value)) {
+            throw new IllegalArgumentException("Argument '" + argument.getName() +
+                "' requires a value of type " + argument.getType().getSimpleName());
+        }
+        this.values[index] = value;
+        this.present[index] = OBJECT;
+        return this;
+    }
+
+    private ArgumentFrame setBits(final PrimitiveTransitionArgument<?> argument, final long bits)
+        throws NoSuchArgumentException
+    {
+        final int index = this.indexOf(Objects.requireNonNull(argument));
+        this.bits[index] = bits;
+        this.present[index] = BITS;
+        return this;
+    }
+
+    /**
+     * Sets the value of an int-argument for this execution only, without boxing it.
+     *
+     * @param argument The argument of the transition.
+     * @param value The value.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     */
+    public ArgumentFrame setInt(@NonNull final IntTransitionArgument argument, final int value)
+        throws NoSuchArgumentException
+    {
+        return this.setBits(argument, value);
+    }
+
+    /**
+     * Sets the value of a long-argument for this execution only, without boxing it.
+     *
+     * @param argument The argument of the transition.
+     * @param value The value.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     */
+    public ArgumentFrame setLong(@NonNull final LongTransitionArgument argument, final long value)
+        throws NoSuchArgumentException
+    {
+        return this.setBits(argument, value);
+    }
+
+    /**
+     * Sets the value of a double-argument for this execution only, without boxing it.
+     *
+     * @param argument The argument of the transition.
+     * @param value The value.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     */
+    public ArgumentFrame setDouble(@NonNull final DoubleTransitionArgument argument, final double value)
+        throws NoSuchArgumentException
+    {
+        return this.setBits(argument, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Sets the value of a boolean-argument for this execution only, without boxing it.
+     *
+     * @param argument The argument of the transition.
+     * @param value The value.
+     * @return {@link ArgumentFrame} this for chaining
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     */
+    public ArgumentFrame setBoolean(@NonNull final BooleanTransitionArgument argument, final boolean value)
+        throws NoSuchArgumentException
+    {
+        return this.setBits(argument, value ? 1L : 0L);
+    }
+
+    /**
+     * @param name The name of the argument.
+     * @return boolean true, if the argument has a value in this frame, or has one itself.
+     * @throws NoSuchArgumentException if the transition does not have such an argument.
+     */
+    public boolean has(@NonNull final String name) throws NoSuchArgumentException {
+        final int index = this.indexOf(Objects.requireNonNull(name));
+        return this.present[index] != NONE || this.arguments[index].hasValue();
+    }
+
+    /**
+     * @param name The name of the argument.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have such an argument.
+     * @throws NoValueSetException if neither this frame nor the argument have a value.
+     */
+    public Object get(@NonNull final String name) throws NoSuchArgumentException, NoValueSetException {
+        return this.getAt(this.indexOf(Objects.requireNonNull(name)));
+    }
+
+    /**
+     * @param argument The argument of the transition.
+     * @param <T> The type of the argument.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     * @throws NoValueSetException if neither this frame nor the argument have a value.
+     */
+    public <T> T get(@NonNull final TransitionArgument<T> argument) throws NoSuchArgumentException, NoValueSetException {
+        return argument.getType().cast(this.getAt(this.indexOf(Objects.requireNonNull(argument))));
+    }
+
+    private Object getAt(final int index) throws NoValueSetException {
+        return this.present[index] == NONE ? this.arguments[index].getValue() : this.valueAt(index);
+    }
+
+    /**
+     * @return the value that was set in this frame, boxing it if necessary.
+     */
+    private Object valueAt(final int index) {
+        return this.present[index] == BITS ?
+            ((PrimitiveTransitionArgument<?>) this.arguments[index]).fromBits(this.bits[index]) : this.values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> long getBits(final PrimitiveTransitionArgument<T> argument) throws NoSuchArgumentException {
+        final int index = this.indexOf(Objects.requireNonNull(argument));
+        switch (this.present[index]) {
+            case OBJECT:
+                return argument.toBits((T) this.values[index]);
+            case BITS:
+                return this.bits[index];
+            default:
+                return argument.getBits();
+        }
+    }
+
+    /**
+     * @param argument The argument of the transition.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     * @exception IllegalStateException if neither this frame nor the argument have a value.
+     */
+    public int getInt(@NonNull final IntTransitionArgument argument) throws NoSuchArgumentException {
+        return (int) this.getBits(argument);
+    }
+
+    /**
+     * @param argument The argument of the transition.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     * @exception IllegalStateException if neither this frame nor the argument have a value.
+     */
+    public long getLong(@NonNull final LongTransitionArgument argument) throws NoSuchArgumentException {
+        return this.getBits(argument);
+    }
+
+    /**
+     * @param argument The argument of the transition.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     * @exception IllegalStateException if neither this frame nor the argument have a value.
+     */
+    public double getDouble(@NonNull final DoubleTransitionArgument argument) throws NoSuchArgumentException {
+        return Double.longBitsToDouble(this.getBits(argument));
+    }
+
+    /**
+     * @param argument The argument of the transition.
+     * @return the value of the argument in this frame, or else the argument's own value.
+     * @throws NoSuchArgumentException if the transition does not have the argument.
+     * @exception IllegalStateException if neither this frame nor the argument have a value.
+     */
+    public boolean getBoolean(@NonNull final BooleanTransitionArgument argument) throws NoSuchArgumentException {
+        return this.getBits(argument) != 0L;
+    }
+
+    /**
+     * @return {@link TransitionArgument} the first argument that has neither a value
+     * in this frame nor one itself, or null if all arguments have a value.
+     */
+    @Nullable
+    public TransitionArgument<?> getMissingArgument() {
+        for (int i = 0; i < this.arguments.length; i++) {
+            if (this.present[i] == NONE && !this.arguments[i].hasValue()) {
+                return this.arguments[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Discards the values of this frame and returns it to the pool of the current
+     * thread. Closing a frame more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (this.transition == null) {
+            return;
+        }
+        Arrays.fill(this.values, 0, this.arguments.length, null);
+        Arrays.fill(this.present, 0, this.arguments.length, NONE);
+        this.transition = null;
+        this.arguments = NO_ARGUMENTS;
+
+        final var pool = POOL.get();
+        if (pool.size() < MAX_POOLED) {
+            pool.push(this);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final var builder = new StringBuilder("[").append(this.getClass().getSimpleName()).append(": ")
+            .append(this.transition == null ? "<closed>" : this.transition.getName());
+        for (int i = 0; i < this.arguments.length; i++) {
+            builder.append(i == 0 ? " (" : ", ").append(this.arguments[i].getName()).append('=')
+                .append(this.present[i] == NONE ? "<argument's value>" : this.valueAt(i));
+        }
+        return builder.append(this.arguments.length == 0 ? "]" : ")]").toString();
+    }
+}
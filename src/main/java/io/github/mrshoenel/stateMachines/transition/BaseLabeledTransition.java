@@ -0,0 +1,49 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+
+/**
+ * A {@link BaseTransition} that implements {@link LabeledTransition}.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class BaseLabeledTransition extends BaseTransition implements LabeledTransition {
+
+    protected final String label;
+
+    /**
+     * @param name A name that is unique among the transitions of the 'from'-state.
+     * @param label The label of the transition, or null for an epsilon-transition.
+     * @param fromState The state this transition is leaving.
+     * @param toState The state this transition is entering.
+     */
+    public BaseLabeledTransition(
+        @NonNull final String name, @Nullable final String label,
+        @NonNull final State fromState, @NonNull final State toState)
+    {
+        super(name, fromState, toState);
+        this.label = label;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Returns the concrete sub-class' name, the name and the label.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (" +
+            (this.label == null ? "ε" : this.label) + ")]";
+    }
+}
@@ -4,8 +4,10 @@ import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
 import io.github.mrshoenel.stateMachines.state.State;
 import org.springframework.lang.NonNull;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -27,6 +29,24 @@ public class BaseTransition implements Transition {
 
     private final Map<String, TransitionArgument<?>> transitionArgsUnmod;
 
+    private volatile TransitionListener[] listeners = TransitionListeners.NONE;
+
+    /**
+     * The arguments of this transition as an array, so that binding an {@link
+     * ArgumentFrame} to it does not iterate the map.
+     */
+    private volatile TransitionArgument<?>[] schema = ArgumentFrame.NO_ARGUMENTS;
+
+    /**
+     * The listeners that apply to this transition, flattened in the epoch they carry.
+     */
+    private TransitionListeners.Flattened flattened;
+
+    /**
+     * The last result of {@link #isAllowed()}, as memoized by a {@link GuardCache}.
+     */
+    GuardCache.Entry guardEntry;
+
     public BaseTransition(@NonNull final String name, @NonNull final State fromState, @NonNull final State toState) {
         this.name = Objects.requireNonNull(name);
         this.fromState = Objects.requireNonNull(fromState);
@@ -87,7 +107,13 @@ public class BaseTransition implements Transition {
     public BaseTransition setArgument(@NonNull BaseTransitionArgument<?> argument) {
         Objects.requireNonNull(argument);
 
-        this.transitionArgs.put(argument.getName(), argument);
+        final var previous = this.transitionArgs.put(argument.getName(), argument);
+        if (previous != null) {
+            previous.removeOwner(this);
+        }
+        argument.addOwner(this);
+        this.schema = this.transitionArgs.values().toArray(ArgumentFrame.NO_ARGUMENTS);
+        GuardCache.invalidate(this);
         return this;
     }
 
@@ -101,7 +127,9 @@ public class BaseTransition implements Transition {
         Objects.requireNonNull(argName);
 
         if (this.transitionArgs.containsKey(argName)) {
-            this.transitionArgs.remove(argName);
+            this.transitionArgs.remove(argName).removeOwner(this);
+            this.schema = this.transitionArgs.values().toArray(ArgumentFrame.NO_ARGUMENTS);
+            GuardCache.invalidate(this);
             return this;
         }
         throw new NoSuchArgumentException("There is no argument with the name '" + argName + "'.");
@@ -129,6 +157,67 @@ public class BaseTransition implements Transition {
         return this.transitionArgsUnmod;
     }
 
+    /**
+     * @return the arguments of this transition; the array must not be modified.
+     */
+    TransitionArgument<?>[] argumentSchema() {
+        return this.schema;
+    }
+
+
+    /**
+     * Registers a listener for this transition only.
+     *
+     * @param listener The listener to add.
+     * @return BaseTransition this for chaining
+     */
+    public synchronized BaseTransition addListener(@NonNull final TransitionListener listener) {
+        this.listeners = TransitionListeners.add(this.listeners, listener);
+        TransitionListeners.invalidate();
+        return this;
+    }
+
+    /**
+     * Unregisters a listener that was registered using {@link #addListener(TransitionListener)}.
+     *
+     * @param listener The listener to remove.
+     * @return boolean true, if the listener was registered.
+     */
+    public synchronized boolean removeListener(@NonNull final TransitionListener listener) {
+        final var listeners = TransitionListeners.remove(this.listeners, Objects.requireNonNull(listener));
+        if (listeners == this.listeners) {
+            return false;
+        }
+        this.listeners = listeners;
+        TransitionListeners.invalidate();
+        return true;
+    }
+
+    /**
+     * @return the listeners registered for this transition only, in the order they were
+     * registered. See {@link TransitionListeners#of(Transition)} for all listeners that
+     * apply to this transition.
+     */
+    public List<TransitionListener> getListeners() {
+        return Collections.unmodifiableList(Arrays.asList(this.listeners));
+    }
+
+    /**
+     * Returns the flattened listeners that apply to this transition, flattening them
+     * again if any registration changed since.
+     */
+    TransitionListener[] flattenedListeners() {
+        if (!TransitionListeners.isRegistered()) {
+            return TransitionListeners.NONE;
+        }
+        final int epoch = TransitionListeners.getEpoch();
+        var flattened = this.flattened;
+        if (flattened == null || !flattened.isCurrent(epoch)) {
+            this.flattened = flattened = TransitionListeners.Flattened.of(epoch, this);
+        }
+        return flattened.listeners;
+    }
+
 
     /**
      * Returns a meaningful string-representation with the type of the arguments and the
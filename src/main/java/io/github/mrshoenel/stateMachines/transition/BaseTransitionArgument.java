@@ -4,6 +4,7 @@ package io.github.mrshoenel.stateMachines.transition;
 import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
 import org.springframework.lang.NonNull;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -20,6 +21,14 @@ public class BaseTransitionArgument<T> implements TransitionArgument<T> {
 
     protected T value;
 
+    private static final BaseTransition[] NO_OWNERS = new BaseTransition[0];
+
+    /**
+     * The transitions this argument was set on; changes of the value invalidate their
+     * memoized guards (see {@link GuardCache}).
+     */
+    private volatile BaseTransition[] owners = NO_OWNERS;
+
     /**
      * Initializes a new {@link BaseTransitionArgument} with a value already
      * present.
@@ -71,6 +80,7 @@ public class BaseTransitionArgument<T> implements TransitionArgument<T> {
     public void setValue(T t) {
         this.value = t;
         this.hasValue = true;
+        this.valueChanged();
     }
 
     /**
@@ -79,6 +89,35 @@ public class BaseTransitionArgument<T> implements TransitionArgument<T> {
     public void unsetValue() {
         this.value = null;
         this.hasValue = false;
+        this.valueChanged();
+    }
+
+    /**
+     * Invalidates the memoized guards of the transitions this argument was set on.
+     * Subclasses that store their value elsewhere must call this after changing it.
+     */
+    protected void valueChanged() {
+        for (final BaseTransition owner : this.owners) {
+            GuardCache.invalidate(owner);
+        }
+    }
+
+    synchronized void addOwner(final BaseTransition owner) {
+        final var owners = Arrays.copyOf(this.owners, this.owners.length + 1);
+        owners[this.owners.length] = owner;
+        this.owners = owners;
+    }
+
+    synchronized void removeOwner(final BaseTransition owner) {
+        for (int i = 0; i < this.owners.length; i++) {
+            if (this.owners[i] == owner) {
+                final var owners = new BaseTransition[this.owners.length - 1];
+                System.arraycopy(this.owners, 0, owners, 0, i);
+                System.arraycopy(this.owners, i + 1, owners, i, owners.length - i);
+                this.owners = owners;
+                return;
+            }
+        }
     }
 
     /**
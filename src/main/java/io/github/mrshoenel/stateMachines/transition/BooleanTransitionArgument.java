@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import org.springframework.lang.NonNull;
+
+
+/**
+ * An argument that holds a boolean without boxing it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class BooleanTransitionArgument extends PrimitiveTransitionArgument<Boolean> {
+    /**
+     * Initializes a new {@link BooleanTransitionArgument} without a value.
+     *
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public BooleanTransitionArgument(@NonNull final String name) {
+        super(Boolean.class, name);
+    }
+
+    /**
+     * Initializes a new {@link BooleanTransitionArgument} with a value already present.
+     *
+     * @param value the value for this argument
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public BooleanTransitionArgument(final boolean value, @NonNull final String name) {
+        this(name);
+        this.setBoolean(value);
+    }
+
+    /**
+     * @param value The value to set.
+     */
+    public void setBoolean(final boolean value) {
+        this.setBits(value ? 1L : 0L);
+    }
+
+    /**
+     * @return the value of this argument.
+     * @exception IllegalStateException if no value has been set.
+     */
+    public boolean getBoolean() {
+        return this.getBits() != 0L;
+    }
+
+    @Override
+    Boolean fromBits(final long bits) {
+        return bits != 0L;
+    }
+
+    @Override
+    long toBits(final Boolean value) {
+        return value ? 1L : 0L;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import org.springframework.lang.NonNull;
+
+
+/**
+ * An argument that holds a double without boxing it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class DoubleTransitionArgument extends PrimitiveTransitionArgument<Double> {
+    /**
+     * Initializes a new {@link DoubleTransitionArgument} without a value.
+     *
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public DoubleTransitionArgument(@NonNull final String name) {
+        super(Double.class, name);
+    }
+
+    /**
+     * Initializes a new {@link DoubleTransitionArgument} with a value already present.
+     *
+     * @param value the value for this argument
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public DoubleTransitionArgument(final double value, @NonNull final String name) {
+        this(name);
+        this.setDouble(value);
+    }
+
+    /**
+     * @param value The value to set.
+     */
+    public void setDouble(final double value) {
+        this.setBits(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * @return the value of this argument.
+     * @exception IllegalStateException if no value has been set.
+     */
+    public double getDouble() {
+        return Double.longBitsToDouble(this.getBits());
+    }
+
+    @Override
+    Double fromBits(final long bits) {
+        return Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    long toBits(final Double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+}
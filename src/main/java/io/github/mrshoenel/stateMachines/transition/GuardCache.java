@@ -0,0 +1,242 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.StateMachineArtifact;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Memoizes the results of {@link Transition#isAllowed()} for the transitions of a
+ * machine (see {@link BaseStateMachine#enableGuardCache()}), so that guards are
+ * evaluated once while listing and then executing transitions. A result is valid
+ * until the cache's epoch changes, which happens when
+ * <ul>
+ *     <li>a transition of the machine, or of a machine nested in it, is executed,</li>
+ *     <li>a value of an argument of such a transition is set or unset, or</li>
+ *     <li>{@link #invalidate()} (or {@link BaseStateMachine#invalidateGuards()}) is called.</li>
+ * </ul>
+ * Guards that depend on anything else must be invalidated explicitly. The transitions
+ * of a machine without a cache use the cache of the nearest machine they are nested
+ * in. Only results of {@link BaseTransition}s are memoized; each one holds its last
+ * result, so that a lookup does not access a map.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class GuardCache implements StateMachineArtifact {
+    /**
+     * Bounds walking up nested machines, which might form a cycle.
+     */
+    private static final int MAX_DEPTH = 1 << 10;
+
+    /**
+     * True, once any cache was created; until then, guards are evaluated directly.
+     */
+    private static volatile boolean enabled;
+
+    private final BaseStateMachine machine;
+
+    private final AtomicInteger epoch;
+
+    private final LongAdder hits, misses, invalidations;
+
+    /**
+     * A memoized result, held by the transition it belongs to. It is updated in place
+     * whenever the guard is evaluated again, and only replaced if the transition is
+     * evaluated by another cache. The epoch and the result are written together as a
+     * single stamp, so that concurrent evaluations cannot pair one's epoch with the
+     * other's result.
+     */
+    static final class Entry {
+        final GuardCache cache;
+
+        /**
+         * The epoch in the upper, and the result in the lowest bit.
+         */
+        volatile long stamp;
+
+        Entry(final GuardCache cache, final int epoch, final boolean allowed) {
+            this.cache = cache;
+            this.stamp = stamp(epoch, allowed);
+        }
+
+        static long stamp(final int epoch, final boolean allowed) {
+            return ((long) epoch << 1) | (allowed ? 1L : 0L);
+        }
+    }
+
+    /**
+     * Creates a cache for the given machine. Use {@link BaseStateMachine#enableGuardCache()}
+     * rather than this constructor, so that the machine uses the cache.
+     *
+     * @param machine The machine the cache belongs to.
+     */
+    public GuardCache(@NonNull final BaseStateMachine machine) {
+        this.machine = Objects.requireNonNull(machine);
+        this.epoch = new AtomicInteger();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.invalidations = new LongAdder();
+        enabled = true;
+    }
+
+    /**
+     * @return the name of the machine this cache belongs to.
+     */
+    @Override
+    public String getName() {
+        return this.machine.getName();
+    }
+
+    /**
+     * @return {@link BaseStateMachine} the machine this cache belongs to.
+     */
+    public BaseStateMachine getMachine() {
+        return this.machine;
+    }
+
+    /**
+     * Evaluates a transition's guard, using the cache that applies to it, if any.
+     * All code paths of this library evaluate guards using this method.
+     *
+     * @param transition The transition.
+     * @return boolean the (possibly memoized) result of {@link Transition#isAllowed()}.
+     */
+    public static boolean isAllowed(@NonNull final Transition transition) {
+        if (!enabled || !(transition instanceof BaseTransition)) {
+            return transition.isAllowed();
+        }
+        final var cache = of(transition);
+        return cache == null ? transition.isAllowed() : cache.evaluate((BaseTransition) transition);
+    }
+
+    private boolean evaluate(final BaseTransition transition) {
+        final int epoch = this.epoch.get();
+        final var entry = transition.guardEntry;
+        if (entry != null && entry.cache == this) {
+            final long stamp = entry.stamp;
+            if ((int) (stamp >> 1) == epoch) {
+                this.hits.increment();
+                return (stamp & 1L) != 0L;
+            }
+        }
+
+        this.misses.increment();
+        final boolean allowed = transition.isAllowed();
+        if (entry != null && entry.cache == this) {
+            entry.stamp = Entry.stamp(epoch, allowed);
+        } else {
+            transition.guardEntry = new Entry(this, epoch, allowed);
+        }
+        return allowed;
+    }
+
+    /**
+     * @return the machine the transition's 'from'-state belongs to (or is).
+     */
+    private static BaseStateMachine machineOf(final Transition transition) {
+        final var from = transition.getFromState();
+        return from instanceof BaseStateMachine ? (BaseStateMachine) from :
+            from instanceof BaseState ? ((BaseState) from).getBelongsToMachine() : null;
+    }
+
+    /**
+     * @param transition The transition.
+     * @return {@link GuardCache} the cache that applies to the transition, or null.
+     */
+    @Nullable
+    public static GuardCache of(@NonNull final Transition transition) {
+        var machine = machineOf(transition);
+        for (int depth = 0; machine != null && depth < MAX_DEPTH; depth++) {
+            final var cache = machine.getGuardCache();
+            if (cache != null) {
+                return cache;
+            }
+            final var outer = machine.getBelongsToMachine();
+            machine = outer == machine ? null : outer;
+        }
+        return null;
+    }
+
+    /**
+     * Invalidates the caches of the machine the transition belongs to and of all
+     * machines it is nested in. Called after a transition was executed, or when one
+     * of its arguments changed.
+     *
+     * @param transition The transition.
+     */
+    public static void invalidate(@NonNull final Transition transition) {
+        if (!enabled) {
+            return;
+        }
+        var machine = machineOf(transition);
+        for (int depth = 0; machine != null && depth < MAX_DEPTH; depth++) {
+            final var cache = machine.getGuardCache();
+            if (cache != null) {
+                cache.invalidate();
+            }
+            final var outer = machine.getBelongsToMachine();
+            machine = outer == machine ? null : outer;
+        }
+    }
+
+    /**
+     * Discards all memoized results of this cache.
+     */
+    public void invalidate() {
+        this.epoch.incrementAndGet();
+        this.invalidations.increment();
+    }
+
+    /**
+     * @return how often a memoized result was used.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return how often a guard had to be evaluated.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return how often this cache was invalidated.
+     */
+    public long getInvalidations() {
+        return this.invalidations.sum();
+    }
+
+    /**
+     * @return the share of lookups that used a memoized result, or 0 if there were none.
+     */
+    public double getHitRate() {
+        final long hits = this.getHits(), lookups = hits + this.getMisses();
+        return lookups == 0L ? 0d : (double) hits / lookups;
+    }
+
+    /**
+     * Resets the statistics of this cache, but keeps the memoized results.
+     */
+    public void resetStatistics() {
+        this.hits.reset();
+        this.misses.reset();
+        this.invalidations.reset();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " + this.getName() + " (hit rate " +
+            Math.round(100d * this.getHitRate()) + "%)]";
+    }
+}
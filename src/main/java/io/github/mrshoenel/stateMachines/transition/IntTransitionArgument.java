@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import org.springframework.lang.NonNull;
+
+
+/**
+ * An argument that holds an int without boxing it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class IntTransitionArgument extends PrimitiveTransitionArgument<Integer> {
+    /**
+     * Initializes a new {@link IntTransitionArgument} without a value.
+     *
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public IntTransitionArgument(@NonNull final String name) {
+        super(Integer.class, name);
+    }
+
+    /**
+     * Initializes a new {@link IntTransitionArgument} with a value already present.
+     *
+     * @param value the value for this argument
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public IntTransitionArgument(final int value, @NonNull final String name) {
+        this(name);
+        this.setInt(value);
+    }
+
+    /**
+     * @param value The value to set.
+     */
+    public void setInt(final int value) {
+        this.setBits(value);
+    }
+
+    /**
+     * @return the value of this argument.
+     * @exception IllegalStateException if no value has been set.
+     */
+    public int getInt() {
+        return (int) this.getBits();
+    }
+
+    @Override
+    Integer fromBits(final long bits) {
+        return (int) bits;
+    }
+
+    @Override
+    long toBits(final Integer value) {
+        return value;
+    }
+}
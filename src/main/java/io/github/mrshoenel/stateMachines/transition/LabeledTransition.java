@@ -0,0 +1,44 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+
+
+/**
+ * A transition that carries a label (the input symbol it consumes) in addition to
+ * its name. The name still needs to be unique among the transitions of a state, but
+ * many transitions of the same state may share a label, as is the case for non-
+ * deterministic finite automata (NFAs). A transition without a label (null) is an
+ * epsilon-transition, that is taken without consuming any symbol.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public interface LabeledTransition extends Transition {
+    /**
+     * @return the label of this transition, or null, if this is an epsilon-transition.
+     */
+    @Nullable
+    String getLabel();
+
+    /**
+     * @return boolean true, iff this transition does not have a label.
+     */
+    default boolean isEpsilon() {
+        return this.getLabel() == null;
+    }
+
+    /**
+     * Returns the label of any transition. Transitions that are not {@link
+     * LabeledTransition}s are labeled with their name.
+     *
+     * @param transition The transition to get the label of.
+     * @return the label, or null for epsilon-transitions.
+     */
+    @Nullable
+    static String labelOf(@NonNull final Transition transition) {
+        return Objects.requireNonNull(transition) instanceof LabeledTransition ?
+            ((LabeledTransition) transition).getLabel() : transition.getName();
+    }
+}
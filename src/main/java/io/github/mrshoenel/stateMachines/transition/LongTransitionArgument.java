@@ -0,0 +1,58 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import org.springframework.lang.NonNull;
+
+
+/**
+ * An argument that holds a long without boxing it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class LongTransitionArgument extends PrimitiveTransitionArgument<Long> {
+    /**
+     * Initializes a new {@link LongTransitionArgument} without a value.
+     *
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public LongTransitionArgument(@NonNull final String name) {
+        super(Long.class, name);
+    }
+
+    /**
+     * Initializes a new {@link LongTransitionArgument} with a value already present.
+     *
+     * @param value the value for this argument
+     * @param name the name of this argument; should be unique within all
+     *             arguments for a transition.
+     */
+    public LongTransitionArgument(final long value, @NonNull final String name) {
+        this(name);
+        this.setLong(value);
+    }
+
+    /**
+     * @param value The value to set.
+     */
+    public void setLong(final long value) {
+        this.setBits(value);
+    }
+
+    /**
+     * @return the value of this argument.
+     * @exception IllegalStateException if no value has been set.
+     */
+    public long getLong() {
+        return this.getBits();
+    }
+
+    @Override
+    Long fromBits(final long bits) {
+        return bits;
+    }
+
+    @Override
+    long toBits(final Long value) {
+        return value;
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import org.springframework.lang.NonNull;
+
+import java.util.Objects;
+
+
+/**
+ * The base-class of the arguments that hold a primitive value, such as {@link
+ * IntTransitionArgument}. The value is stored as the raw bits of a long, so that
+ * setting and reading it using the primitive accessors of the subclasses does not
+ * box it; {@link #setValue(Object)} and {@link #getValue()} are still supported,
+ * but do box. An {@link ArgumentFrame} stores values for these arguments unboxed,
+ * too. Null-values are not supported.
+ *
+ * @param <T> The boxed type of the primitive value.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public abstract class PrimitiveTransitionArgument<T> extends BaseTransitionArgument<T> {
+    protected long bits;
+
+    PrimitiveTransitionArgument(@NonNull final Class<T> type, @NonNull final String name) {
+        super(type, name);
+    }
+
+    /**
+     * @param bits The raw bits of the primitive value.
+     * @return the boxed value.
+     */
+    abstract T fromBits(long bits);
+
+    /**
+     * @param value The boxed value.
+     * @return the raw bits of the primitive value.
+     */
+    abstract long toBits(@NonNull T value);
+
+    protected void setBits(final long bits) {
+        this.bits = bits;
+        this.hasValue = true;
+        this.valueChanged();
+    }
+
+    /**
+     * @return the raw bits of the primitive value.
+     * @exception IllegalStateException if no value has been set.
+     */
+    protected long getBits() {
+        if (!this.hasValue) {
+            throw new IllegalStateException("No value has been set for argument '" + this.name + "'.");
+        }
+        return this.bits;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @exception NullPointerException if the value is null.
+     */
+    @Override
+    public void setValue(final T t) {
+        this.setBits(this.toBits(Objects.requireNonNull(t)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unsetValue() {
+        this.bits = 0L;
+        super.unsetValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getValue() throws NoValueSetException {
+        if (!this.hasValue) {
+            throw new NoValueSetException(
+                "No value has been set for argument'" + this.name + "'.");
+        }
+        return this.fromBits(this.bits);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[" + this.getClass().getSimpleName() + ": " +
+            (this.hasValue() ? this.fromBits(this.bits) : "<no value was set>") + "]";
+    }
+}
@@ -3,10 +3,13 @@ package io.github.mrshoenel.stateMachines.transition;
 
 import io.github.mrshoenel.stateMachines.StateMachineArtifact;
 import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.metrics.Metrics;
 import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 
 
 /**
@@ -47,36 +50,115 @@ public interface Transition extends StateMachineArtifact {
     }
 
     /**
-     * Default implementation of executing a transition. Will notify the 'from'-
-     * state that it is being left (by calling {@link State#leave(Transition)})
-     * and the 'to'-state that it is being entered (by calling {@link State#enter(Transition)}.
-     * While calling these, this implementation will pass itself in.
+     * Default implementation of executing a transition. Executes it using {@link
+     * #transitionWith(ArgumentFrame)} with an empty frame, so that the values of its
+     * arguments are taken from the arguments themselves.
      *
      * @throws IllegalTransitionException if this transition is currently dis-
      * allowed of if one or more of its arguments have no value set.
      */
     default void transition() throws IllegalTransitionException {
-        if (!this.isAllowed()) {
-            throw new IllegalTransitionException(
-                "This transition is currently disallowed.");
+        try (final var frame = ArgumentFrame.acquire(this)) {
+            this.transitionWith(frame);
         }
+    }
 
-        for (TransitionArgument<?> arg : this.getTransitionArguments().values()) {
-            if (!arg.hasValue()) {
-                throw new IllegalTransitionException(
-                    "Argument '" + arg.getName() + "' has not been set.");
-            }
+    /**
+     * Executes this transition with the argument values of the given frame. Will
+     * notify the 'from'-state that it is being left (by calling {@link
+     * State#leave(Transition, ArgumentFrame)}) and the 'to'-state that it is being
+     * entered (by calling {@link State#enter(Transition, ArgumentFrame)}). While
+     * calling these, this implementation will pass itself and the frame in. The {@link
+     * TransitionListener}s that apply to this transition ({@link TransitionListeners#of(Transition)})
+     * are notified before leaving, after entering and upon rejection. If {@link
+     * Metrics#ENABLED}, the execution is recorded in {@link Metrics#getRegistry()}.
+     * The guard is evaluated using {@link GuardCache#isAllowed(Transition)}.
+     *
+     * As the values are not stored in the (shared) arguments, many threads may execute
+     * the same transition concurrently, each using its own frame.
+     *
+     * @param frame A frame that was acquired for this transition.
+     * @throws IllegalTransitionException if this transition is currently dis-
+     * allowed of if one or more of its arguments have no value, neither in the frame
+     * nor set on the argument.
+     * @exception IllegalArgumentException if the frame was acquired for another transition.
+     */
+    default void transitionWith(@NonNull final ArgumentFrame frame) throws IllegalTransitionException {
+        final var listeners = TransitionListeners.of(this);
+        final var result = this.attempt(frame, listeners);
+        if (result != TransitionResult.OK) {
+            throw TransitionListeners.rejected(listeners, this, this.rejection(result, frame));
         }
+    }
 
+    /**
+     * Like {@link #transition()}, but signals a rejection by returning it, rather
+     * than throwing an exception.
+     *
+     * @return {@link TransitionResult} {@link TransitionResult#OK}, {@link
+     * TransitionResult#NOT_ALLOWED} or {@link TransitionResult#MISSING_ARGUMENT}.
+     */
+    default TransitionResult tryTransition() {
+        try (final var frame = ArgumentFrame.acquire(this)) {
+            return this.tryTransitionWith(frame);
+        }
+    }
+
+    /**
+     * Like {@link #transitionWith(ArgumentFrame)}, but signals a rejection by returning
+     * it, rather than throwing an exception. An exception is only created if there are
+     * {@link TransitionListener}s to notify about the rejection.
+     *
+     * @param frame A frame that was acquired for this transition.
+     * @return {@link TransitionResult} {@link TransitionResult#OK}, {@link
+     * TransitionResult#NOT_ALLOWED} or {@link TransitionResult#MISSING_ARGUMENT}.
+     * @exception IllegalArgumentException if the frame was acquired for another transition.
+     */
+    default TransitionResult tryTransitionWith(@NonNull final ArgumentFrame frame) {
+        final var listeners = TransitionListeners.of(this);
+        final var result = this.attempt(frame, listeners);
+        if (result != TransitionResult.OK && listeners.length > 0) {
+            TransitionListeners.rejected(listeners, this, this.rejection(result, frame));
+        }
+        return result;
+    }
+
+    /**
+     * Checks and, if possible, executes this transition; see {@link #transitionWith(ArgumentFrame)}.
+     */
+    private TransitionResult attempt(final ArgumentFrame frame, final TransitionListener[] listeners) {
+        if (Objects.requireNonNull(frame).getTransition() != this) {
+            throw new IllegalArgumentException("The frame was acquired for another transition.");
+        }
+
+        final var result = TransitionResult.check(this, frame);
+        if (result != TransitionResult.OK) {
+            Metrics.rejected(this);
+            return result;
+        }
+
+        TransitionListeners.beforeLeave(listeners, this);
+        final long start = Metrics.start();
+        long now = start;
         State from = this.getFromState();
         if (from instanceof State) {
-            from.leave(this);
+            now = Metrics.leave(from, this, frame, now);
         }
 
         State to = this.getToState();
         if (to instanceof State) {
-            to.enter(this);
+            now = Metrics.enter(to, this, frame, now);
         }
+        Metrics.transitioned(this, start, now);
+        GuardCache.invalidate(this);
+        TransitionListeners.afterEnter(listeners, this);
+        return TransitionResult.OK;
+    }
+
+    private IllegalTransitionException rejection(final TransitionResult result, final ArgumentFrame frame) {
+        return result == TransitionResult.NOT_ALLOWED ?
+            new IllegalTransitionException("This transition is currently disallowed.") :
+            new IllegalTransitionException("Argument '" + frame.getMissingArgument().getName() + "' has not been set.");
     }
 
     /**
@@ -88,4 +170,21 @@ public interface Transition extends StateMachineArtifact {
     default Map<String, TransitionArgument<?>> getTransitionArguments() {
         return Collections.unmodifiableMap(Collections.emptyMap());
     }
+
+    /**
+     * Returns a value indicating whether the given transition has a guard, i.e.
+     * whether its class overrides {@link Transition#isAllowed()}. Transitions
+     * without a guard are always allowed.
+     *
+     * @param transition The transition to check.
+     * @return boolean true, iff the transition's class overrides {@link Transition#isAllowed()}.
+     */
+    static boolean isGuarded(@NonNull final Transition transition) {
+        try {
+            return Objects.requireNonNull(transition).getClass()
+                .getMethod("isAllowed").getDeclaringClass() != Transition.class;
+        } catch (NoSuchMethodException nsmEx) {
+            throw new Error(nsmEx); // cannot happen, it is defined by this interface
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.State;
+import org.springframework.lang.NonNull;
+
+
+/**
+ * Observes the execution of transitions, without having to sub-class states or
+ * transitions. Listeners can be registered globally ({@link
+ * TransitionListeners#addGlobal(TransitionListener)}), per machine ({@link
+ * io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine#addTransitionListener(TransitionListener)})
+ * or per transition ({@link BaseTransition#addListener(TransitionListener)}). All
+ * methods do nothing by default.
+ *
+ * Listeners are called by the thread executing the transition, in the order global,
+ * machine (outermost first), transition, and in the order they were registered. An
+ * exception thrown by a listener propagates to the caller of {@link Transition#transition()}.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public interface TransitionListener {
+    /**
+     * Called after the transition was checked and before its 'from'-state is left
+     * ({@link State#leave(Transition)}).
+     *
+     * @param transition The transition being executed.
+     */
+    default void beforeLeave(@NonNull final Transition transition) { }
+
+    /**
+     * Called after the transition's 'to'-state was entered ({@link State#enter(Transition)}).
+     *
+     * @param transition The executed transition.
+     */
+    default void afterEnter(@NonNull final Transition transition) { }
+
+    /**
+     * Called when the transition was rejected, before the exception is thrown.
+     *
+     * @param transition The rejected transition.
+     * @param reason The exception that is thrown.
+     */
+    default void onRejected(@NonNull final Transition transition, @NonNull final IllegalTransitionException reason) { }
+}
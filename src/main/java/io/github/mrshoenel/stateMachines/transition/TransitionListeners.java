@@ -0,0 +1,257 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.springframework.lang.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Holds the global {@link TransitionListener}s and flattens the listeners that apply
+ * to a transition into an array, so that dispatching is a loop over that array. The
+ * listeners that apply to a transition are the global listeners, those of the machine
+ * its 'from'-state belongs to (or is, if the state is a machine) and of all machines
+ * that machine is nested in, and those of the transition itself.
+ *
+ * {@link BaseTransition} keeps its flattened listeners until any registration changes,
+ * which is tracked by a global epoch ({@link #getEpoch()}), or until the hierarchy of
+ * its 'from'-state changes, which is tracked by the {@link BaseState#getHierarchyEpoch()}
+ * of that hierarchy's top ({@link BaseState#getHierarchyRoot()}). Other transitions flatten
+ * their listeners whenever they are executed. Until a listener is registered for the
+ * first time, no transition flattens its listeners.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public final class TransitionListeners {
+    /**
+     * An empty array of listeners.
+     */
+    public static final TransitionListener[] NONE = new TransitionListener[0];
+
+    private static volatile TransitionListener[] global = NONE;
+
+    private static volatile int epoch;
+
+    /**
+     * True, once any listener was registered using {@link #add(TransitionListener[], TransitionListener)}.
+     */
+    private static volatile boolean registered;
+
+    private TransitionListeners() { }
+
+    /**
+     * Flattened listeners, along with the epoch they were flattened in, and the top of
+     * the hierarchy of the transition's 'from'-state and its epoch at that time.
+     */
+    static final class Flattened {
+        final int epoch;
+
+        final BaseState top;
+
+        final int topEpoch;
+
+        final TransitionListener[] listeners;
+
+        private Flattened(final int epoch, final BaseState top, final int topEpoch, final TransitionListener[] listeners) {
+            this.epoch = epoch;
+            this.top = top;
+            this.topEpoch = topEpoch;
+            this.listeners = listeners;
+        }
+
+        /**
+         * @return boolean true, if neither any registration nor the hierarchy of the
+         * 'from'-state changed since the listeners were flattened.
+         */
+        boolean isCurrent(final int epoch) {
+            return this.epoch == epoch && (this.top == null || this.top.getHierarchyEpoch() == this.topEpoch);
+        }
+
+        static Flattened of(final int epoch, final Transition transition) {
+            final var from = transition.getFromState();
+            final var top = from instanceof BaseState ? ((BaseState) from).getHierarchyRoot() : null;
+            final int topEpoch = top == null ? 0 : top.getHierarchyEpoch();
+            return new Flattened(epoch, top, topEpoch, flatten(transition));
+        }
+    }
+
+    /**
+     * Registers a listener for all transitions.
+     *
+     * @param listener The listener to add.
+     */
+    public static synchronized void addGlobal(@NonNull final TransitionListener listener) {
+        global = add(global, Objects.requireNonNull(listener));
+        invalidate();
+    }
+
+    /**
+     * Unregisters a listener that was registered using {@link #addGlobal(TransitionListener)}.
+     *
+     * @param listener The listener to remove.
+     * @return boolean true, if the listener was registered.
+     */
+    public static synchronized boolean removeGlobal(@NonNull final TransitionListener listener) {
+        final var listeners = remove(global, Objects.requireNonNull(listener));
+        if (listeners == global) {
+            return false;
+        }
+        global = listeners;
+        invalidate();
+        return true;
+    }
+
+    /**
+     * @return the global listeners, in the order they were registered.
+     */
+    public static List<TransitionListener> getGlobal() {
+        return Collections.unmodifiableList(Arrays.asList(global));
+    }
+
+    /**
+     * @return the epoch, which changes whenever a listener is registered or unregistered.
+     */
+    public static int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Makes all transitions flatten their listeners again when they are executed next.
+     * This is called by all methods that (un-)register listeners. Changes to hierarchies
+     * ({@link BaseState#setBelongsToMachine(BaseStateMachine)}) are tracked per hierarchy.
+     */
+    public static synchronized void invalidate() {
+        epoch++;
+    }
+
+    /**
+     * Appends a listener to a copy of the given array. All registrations of listeners
+     * must use this method.
+     *
+     * @param listeners The current listeners.
+     * @param listener The listener to append.
+     * @return a new array
+     */
+    public static TransitionListener[] add(@NonNull final TransitionListener[] listeners, @NonNull final TransitionListener listener) {
+        final var added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = Objects.requireNonNull(listener);
+        registered = true;
+        return added;
+    }
+
+    /**
+     * Removes the first occurrence of a listener from a copy of the given array.
+     *
+     * @param listeners The current listeners.
+     * @param listener The listener to remove.
+     * @return a new array, or the given array if it does not contain the listener.
+     */
+    public static TransitionListener[] remove(@NonNull final TransitionListener[] listeners, @NonNull final TransitionListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                final var removed = new TransitionListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+                return removed.length == 0 ? NONE : removed;
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * Returns the listeners that apply to the given transition; uses the flattened
+     * listeners of a {@link BaseTransition}.
+     *
+     * @param transition The transition.
+     * @return the listeners; must not be modified.
+     */
+    public static TransitionListener[] of(@NonNull final Transition transition) {
+        if (transition instanceof BaseTransition) {
+            return ((BaseTransition) transition).flattenedListeners();
+        }
+        return registered ? flatten(transition) : NONE;
+    }
+
+    /**
+     * @return boolean true, if any listener was ever registered.
+     */
+    static boolean isRegistered() {
+        return registered;
+    }
+
+    /**
+     * Collects the listeners that currently apply to the given transition.
+     */
+    static TransitionListener[] flatten(final Transition transition) {
+        final var listeners = new ArrayList<>(Arrays.asList(global));
+
+        final var from = transition.getFromState();
+        var machine = from instanceof BaseStateMachine ? (BaseStateMachine) from :
+            from instanceof BaseState ? ((BaseState) from).getBelongsToMachine() : null;
+        final var machines = new ArrayDeque<BaseStateMachine>();
+        final var seen = Collections.newSetFromMap(new IdentityHashMap<BaseStateMachine, Boolean>());
+        while (machine != null && seen.add(machine)) {
+            machines.addFirst(machine);
+            machine = machine.getBelongsToMachine();
+        }
+        for (final var outer : machines) {
+            listeners.addAll(outer.getTransitionListeners());
+        }
+
+        if (transition instanceof BaseTransition) {
+            listeners.addAll(((BaseTransition) transition).getListeners());
+        }
+        return listeners.isEmpty() ? NONE : listeners.toArray(NONE);
+    }
+
+    /**
+     * Calls {@link TransitionListener#beforeLeave(Transition)} on all listeners.
+     *
+     * @param listeners The listeners, as returned by {@link #of(Transition)}.
+     * @param transition The transition being executed.
+     */
+    public static void beforeLeave(@NonNull final TransitionListener[] listeners, @NonNull final Transition transition) {
+        for (final TransitionListener listener : listeners) {
+            listener.beforeLeave(transition);
+        }
+    }
+
+    /**
+     * Calls {@link TransitionListener#afterEnter(Transition)} on all listeners.
+     *
+     * @param listeners The listeners, as returned by {@link #of(Transition)}.
+     * @param transition The executed transition.
+     */
+    public static void afterEnter(@NonNull final TransitionListener[] listeners, @NonNull final Transition transition) {
+        for (final TransitionListener listener : listeners) {
+            listener.afterEnter(transition);
+        }
+    }
+
+    /**
+     * Calls {@link TransitionListener#onRejected(Transition, IllegalTransitionException)}
+     * on all listeners.
+     *
+     * @param listeners The listeners, as returned by {@link #of(Transition)}.
+     * @param transition The rejected transition.
+     * @param reason The exception that is thrown.
+     * @return the given exception, so that it can be thrown.
+     */
+    public static IllegalTransitionException rejected(
+        @NonNull final TransitionListener[] listeners, @NonNull final Transition transition,
+        @NonNull final IllegalTransitionException reason)
+    {
+        for (final TransitionListener listener : listeners) {
+            listener.onRejected(transition, reason);
+        }
+        return reason;
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import org.springframework.lang.NonNull;
+
+import java.util.Objects;
+
+
+/**
+ * The outcome of attempting to execute a transition using one of the non-throwing
+ * variants, such as {@link Transition#tryTransition()}. These variants signal a
+ * rejection by returning one of these constants, instead of creating and throwing
+ * an exception, so that rejections, which are expected in many applications, are
+ * cheap.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public enum TransitionResult {
+    /**
+     * The transition was executed.
+     */
+    OK,
+
+    /**
+     * The transition's guard disallowed it (see {@link Transition#isAllowed()}). The
+     * throwing variants signal this using an {@link IllegalTransitionException}.
+     */
+    NOT_ALLOWED,
+
+    /**
+     * One or more of the transition's arguments have no value. The throwing variants
+     * signal this using an {@link IllegalTransitionException}.
+     */
+    MISSING_ARGUMENT,
+
+    /**
+     * The current state does not have a transition with the requested name. The
+     * throwing variants signal this using a {@link NoSuchTransitionException}.
+     */
+    NO_SUCH_TRANSITION,
+
+    /**
+     * The transition's 'to'-state does not belong to a machine. The throwing variants
+     * signal this using an {@link IllegalTransitionException}.
+     */
+    ORPHAN_STATE;
+
+    /**
+     * @return boolean true, iff this is {@link #OK}.
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+
+    /**
+     * Checks whether a transition may be executed with the values of the given frame,
+     * without executing it. The guard is evaluated using {@link GuardCache#isAllowed(Transition)}.
+     *
+     * @param transition The transition.
+     * @param frame A frame that was acquired for the transition.
+     * @return {@link TransitionResult} {@link #OK}, {@link #NOT_ALLOWED} or {@link #MISSING_ARGUMENT}.
+     */
+    public static TransitionResult check(@NonNull final Transition transition, @NonNull final ArgumentFrame frame) {
+        if (!GuardCache.isAllowed(Objects.requireNonNull(transition))) {
+            return NOT_ALLOWED;
+        }
+        return frame.getMissingArgument() == null ? OK : MISSING_ARGUMENT;
+    }
+}
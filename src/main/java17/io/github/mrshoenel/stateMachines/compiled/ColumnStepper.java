@@ -0,0 +1,45 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+
+/**
+ * Advances a range of the instances of a {@link ColumnarDfa} by one symbol. This is
+ * the implementation for Java 17 and newer: if the module jdk.incubator.vector is
+ * present (e.g., using {@code --add-modules jdk.incubator.vector}), it gathers the
+ * next states of as many instances at once as a vector has lanes ({@link
+ * VectorColumnStepper}). Otherwise, it is scalar, like the implementation for Java 11.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+final class ColumnStepper {
+    /**
+     * Whether the Vector API can be used. {@link VectorColumnStepper} is only loaded if so.
+     */
+    private static final boolean VECTORIZED =
+        ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private ColumnStepper() {
+    }
+
+    /**
+     * @return boolean true, if the Vector API is used.
+     */
+    static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * @param column The next states for the symbol, indexed by the current state.
+     * @param states The states of the instances; [from, to) is updated in place.
+     * @param from The index of the first instance to advance.
+     * @param to One past the index of the last instance to advance.
+     */
+    static void step(final int[] column, final int[] states, final int from, final int to) {
+        if (VECTORIZED) {
+            VectorColumnStepper.step(column, states, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            states[i] = column[states[i]];
+        }
+    }
+}
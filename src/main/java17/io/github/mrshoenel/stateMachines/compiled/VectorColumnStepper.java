@@ -0,0 +1,31 @@
+package io.github.mrshoenel.stateMachines.compiled;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Advances a range of the instances of a {@link ColumnarDfa} by one symbol using the
+ * Vector API: the states of as many instances as a vector has lanes are used as the
+ * index map of a single gather from the symbol's column. Instances that do not fill
+ * a whole vector are advanced one by one. Only loaded by {@link ColumnStepper}, if
+ * the module jdk.incubator.vector is present.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+final class VectorColumnStepper {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorColumnStepper() {
+    }
+
+    static void step(final int[] column, final int[] states, final int from, final int to) {
+        int i = from;
+        for (final int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, column, 0, states, i).intoArray(states, i);
+        }
+        for (; i < to; i++) {
+            states[i] = column[states[i]];
+        }
+    }
+}
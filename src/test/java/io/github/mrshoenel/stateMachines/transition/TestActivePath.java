@@ -0,0 +1,98 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.ConcurrentStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestActivePath {
+
+    @Test
+    public void testIncrementalUpdates() throws Exception {
+        // m1 -> m2 -> m3 -> (s1 <-> s2), and m1 -> s0
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var m3 = new BaseStateMachine("m3");
+        var s0 = new BaseState("s0");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m1.defineState(m2).defineState(s0);
+        m2.defineState(m3);
+        m3.defineState(s1).defineState(s2);
+        m1.setTransition(new BaseTransition("enter", m1, m2));
+        m2.setTransition(new BaseTransition("enter", m2, m3));
+        m3.setTransition(new BaseTransition("enter", m3, s1));
+        s1.setTransition(new BaseTransition("next", s1, s2));
+        s2.setTransition(new BaseTransition("next", s2, s1));
+        s2.setTransition(new BaseTransition("leave", s2, s0));
+
+        assertSame(m1, m1.enableActivePath());
+        assertTrue(m1.isActivePathEnabled());
+        assertSame(m1, m1.getCurrentStateDeep());
+        assertTrue(m1.isActive(m1));
+        assertFalse(m1.isActive(m2));
+
+        var blackBox = new BlackBoxStateMachine<>(m1);
+        blackBox.transition("enter").transition("enter").transition("enter");
+        assertSame(s1, m1.getCurrentStateDeep());
+        assertSame(s1, m2.getCurrentStateDeep());
+        assertEquals(List.of(m1, m2, m3, s1), m1.getActiveConfiguration());
+        assertTrue(m1.isActive(m3) && m1.isActive(s1) && m2.isActive(s1));
+        assertFalse(m1.isActive(s2) || m1.isActive(s0) || m3.isActive(m2));
+
+        blackBox.transition("next");
+        assertSame(s2, m1.getCurrentStateDeep());
+        assertTrue(m1.isActive(s2));
+        assertFalse(m1.isActive(s1));
+
+        // Leaving the nested machines; they keep pointing at their states:
+        blackBox.transition("leave");
+        assertSame(s0, m1.getCurrentStateDeep());
+        assertFalse(m1.isActive(m2) || m1.isActive(s2));
+        assertSame(s2, m2.getCurrentStateDeep());
+        assertTrue(m2.isActive(s2));
+        m1.setCurrentState(m2);
+        assertSame(s2, m1.getCurrentStateDeep());
+
+        // Changes of the hierarchy rebuild the configuration:
+        var s3 = new BaseState("s3");
+        m3.undefineState(s2);
+        m3.defineState(s3).setCurrentState(s3);
+        assertSame(s3, m1.getCurrentStateDeep());
+        assertTrue(m1.isActive(s3));
+
+        // Results are the same when the configuration is not maintained:
+        m1.disableActivePath();
+        assertSame(s3, m1.getCurrentStateDeep());
+        assertTrue(m1.isActive(s3));
+        assertFalse(m1.isActive(s1));
+    }
+
+    @Test
+    public void testConcurrentMachinesEndTheConfiguration() throws Exception {
+        var m1 = new BaseStateMachine("m1").enableActivePath();
+        var c = new ConcurrentStateMachine("c");
+        var m3 = new BaseStateMachine("m3");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m1.defineState(c);
+        c.defineState(m3).defineState(s2);
+        m3.defineState(s1);
+
+        m1.setCurrentState(c);
+        assertSame(c, m1.getCurrentStateDeep());
+        assertTrue(c.compareAndTransition(c, new BaseTransition("tr", c, m3)));
+        m3.setCurrentState(s1);
+        assertSame(s1, m1.getCurrentStateDeep());
+        assertTrue(m1.isActive(s1));
+        assertTrue(c.compareAndTransition(m3, new BaseTransition("tr", m3, s2)));
+        assertSame(s2, m1.getCurrentStateDeep());
+        assertFalse(m1.isActive(s1));
+        assertTrue(m1.isActive(s2));
+    }
+}
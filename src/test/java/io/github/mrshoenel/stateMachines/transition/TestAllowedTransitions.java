@@ -0,0 +1,125 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.dummies.DefaultTransition2;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAllowedTransitions {
+
+    private static final int ITERATIONS = 100_000;
+
+    private static long sink;
+
+    @Test
+    public void testGuardedAndUnguarded() {
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var tr1 = new BaseTransition("tr1", s1, s2);
+        s1.setTransition(tr1);
+
+        assertFalse(Transition.isGuarded(tr1));
+        // Unguarded only: the same snapshot is returned until the transitions change
+        var snapshot = s1.getTransitions();
+        assertSame(snapshot, s1.getTransitions());
+        assertNotSame(s1.getAllDefinedTransitions(), snapshot);
+
+        var tr2 = new DefaultTransition2(s1, s2);
+        assertTrue(Transition.isGuarded(tr2));
+        s1.setTransition(tr2);
+        assertEquals(1, snapshot.size());
+        assertEquals(2, s1.getTransitions().size());
+
+        tr2.setIsAllowed(false);
+        assertEquals(1, s1.getTransitions().size());
+        var visited = new ArrayList<Transition>();
+        s1.forEachAllowedTransition(visited::add);
+        assertEquals(1, visited.size());
+        assertSame(tr1, visited.get(0));
+
+        assertDoesNotThrow(() -> s1.unsetTransition(tr2));
+        assertSame(s1.getTransitions(), s1.getTransitions());
+        assertEquals(s1.getAllDefinedTransitions(), s1.getTransitions());
+    }
+
+    @Test
+    public void testDirectModificationsAreInvalidated() {
+        var tr1 = new BaseTransition("tr", new BaseState("s0"), new BaseState("s1"));
+        var tr2 = new BaseTransition("tr", new BaseState("s0"), new BaseState("s2"));
+        var s1 = new BaseState("s1") {
+            void replace(final Transition transition) {
+                this.transitions.put(transition.getName(), transition);
+                this.transitionsChanged();
+            }
+
+            void replaceThroughView(final Transition transition) {
+                this.transitions.entrySet().iterator().next().setValue(transition);
+                this.transitionsChanged();
+            }
+        };
+        s1.setTransition(tr1);
+        assertSame(tr1, s1.getTransitions().get("tr"));
+
+        // Replacing an entry does not change the size:
+        s1.replace(tr2);
+        assertSame(tr2, s1.getTransitions().get("tr"));
+        var visited = new ArrayList<Transition>();
+        s1.forEachAllowedTransition(visited::add);
+        assertEquals(List.of(tr2), visited);
+
+        s1.replaceThroughView(tr1);
+        assertSame(tr1, s1.getTransitions().get("tr"));
+        assertSame(tr1, s1.getAllDefinedTransitions().get("tr"));
+    }
+
+    @Test
+    public void testNoAllocationsForUnguardedStates() {
+        var s1 = new BaseState("s1");
+        for (int i = 0; i < 5; i++) {
+            s1.setTransition(new BaseTransition("tr" + i, s1, new BaseState("s" + i)));
+        }
+
+        final Runnable getTransitions = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink += s1.getTransitions().size();
+            }
+        };
+        final Runnable forEach = () -> {
+            for (int i = 0; i < ITERATIONS; i++) {
+                s1.forEachAllowedTransition(TestAllowedTransitions::consume);
+            }
+        };
+
+        assertEquals(0L, allocatedBytes(getTransitions));
+        assertEquals(0L, allocatedBytes(forEach));
+    }
+
+    private static void consume(final Transition transition) {
+        sink++;
+    }
+
+    /**
+     * Warms up the given code, then returns the bytes it allocated during one run,
+     * corrected by what the measurement itself allocates.
+     */
+    private static long allocatedBytes(final Runnable runnable) {
+        var threadMx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var id = Thread.currentThread().getId();
+
+        for (int i = 0; i < 20; i++) {
+            runnable.run();
+        }
+
+        var empty = -threadMx.getThreadAllocatedBytes(id) + threadMx.getThreadAllocatedBytes(id);
+        var before = threadMx.getThreadAllocatedBytes(id);
+        runnable.run();
+        var after = threadMx.getThreadAllocatedBytes(id);
+
+        return Math.max(0L, after - before - empty);
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestArgumentFrame {
+
+    @Test
+    public void testFrameValuesAndHooks() throws Exception {
+        var machine = new BaseStateMachine("m");
+        var seen = new ArrayList<Object>();
+        var s1 = new BaseState("s1") {
+            @Override
+            public void leave(final Transition usingTransition, final ArgumentFrame frame) {
+                try {
+                    seen.add(frame.get("name"));
+                } catch (NoSuchArgumentException | NoValueSetException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        };
+        var s2 = new BaseState("s2") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                super.enter(usingTransition, frame);
+                try {
+                    seen.add(frame.get(usingTransition.getTransitionArguments().get("int")));
+                } catch (NoSuchArgumentException | NoValueSetException ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        };
+        machine.defineState(s1).defineState(s2);
+        var intArg = new BaseTransitionArgument<>(Integer.class, "int");
+        var tr = new BaseTransition("tr", s1, s2).setArgument(intArg)
+            .setArgument(new BaseTransitionArgument<>("default", "name"));
+
+        try (var frame = ArgumentFrame.acquire(tr)) {
+            assertSame(tr, frame.getTransition());
+            assertFalse(frame.has("int"));
+            assertTrue(frame.has("name"));
+            assertSame(intArg, frame.getMissingArgument());
+            assertThrows(NoValueSetException.class, () -> frame.get(intArg));
+            assertThrows(IllegalTransitionException.class, () -> tr.transitionWith(frame));
+            assertThrows(NoSuchArgumentException.class, () -> frame.set("foo", 1));
+            assertThrows(IllegalArgumentException.class, () -> frame.set("int", "1"));
+
+            frame.set(intArg, 42);
+            assertNull(frame.getMissingArgument());
+            tr.transitionWith(frame);
+            assertSame(s2, machine.getCurrentState());
+            assertEquals(List.of("default", 42), seen);
+        }
+
+        // Frame values are not written to the shared arguments:
+        assertFalse(intArg.hasValue());
+        seen.clear();
+        try (var frame = ArgumentFrame.acquire(tr)) {
+            frame.setAll(Map.of("int", 7, "name", "frame"));
+            tr.transitionWith(frame);
+            assertThrows(IllegalArgumentException.class,
+                () -> new BaseTransition("other", s2, s1).transitionWith(frame));
+        }
+        assertEquals(List.of("frame", 7), seen);
+
+        // Without a frame, the values are taken from the arguments:
+        seen.clear();
+        intArg.setValue(1);
+        tr.transition();
+        assertEquals(List.of("default", 1), seen);
+    }
+
+    @Test
+    public void testPoolingAndConcurrentExecutions() throws Exception {
+        var s1 = new BaseState("s1");
+        var mismatches = new AtomicInteger();
+        var expected = new ThreadLocal<Integer>();
+        var s2 = new BaseState("s2") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                try {
+                    if (!expected.get().equals(frame.get("id"))) {
+                        mismatches.incrementAndGet();
+                    }
+                } catch (NoSuchArgumentException | NoValueSetException ex) {
+                    mismatches.incrementAndGet();
+                }
+            }
+        };
+        var tr = new BaseTransition("tr", s1, s2).setArgument(new BaseTransitionArgument<>(Integer.class, "id"));
+
+        var frame = ArgumentFrame.acquire(tr);
+        frame.close();
+        frame.close();
+        assertThrows(IllegalStateException.class, frame::getTransition);
+        try (var reused = ArgumentFrame.acquire(tr); var nested = ArgumentFrame.acquire(tr)) {
+            assertSame(frame, reused);
+            assertNotSame(reused, nested);
+            assertFalse(reused.has("id"));
+        }
+
+        final int threads = 4, executions = 10_000;
+        var pool = Executors.newFixedThreadPool(threads);
+        try {
+            var tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                tasks.add(() -> {
+                    expected.set(id);
+                    for (int i = 0; i < executions; i++) {
+                        try (var f = ArgumentFrame.acquire(tr)) {
+                            tr.transitionWith(f.set("id", id));
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (var future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(0, mismatches.get());
+    }
+}
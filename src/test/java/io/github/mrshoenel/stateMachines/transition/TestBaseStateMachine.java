@@ -9,10 +9,14 @@ import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
 import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
 import io.github.mrshoenel.stateMachines.transition.dummies.DefaultBaseStateMachine;
 import io.github.mrshoenel.stateMachines.transition.dummies.DefaultState;
+import io.github.mrshoenel.stateMachines.transition.dummies.DefaultTransition2;
 import org.junit.jupiter.api.Test;
 import org.junit.platform.commons.util.ReflectionUtils;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -178,6 +182,57 @@ public class TestBaseStateMachine {
         });
     }
 
+    @Test
+    public void testBlackBoxListsEqualTransitions() throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var tr1 = new DefaultTransition2(m1, s1);
+
+        m1.setTransition(tr1);
+        m1.defineState(s1);
+
+        var bb = new BlackBoxStateMachine<>(m1);
+        var bbt = bb.getTransitions().get(tr1.getName());
+        assertEquals(bbt, bb.getTransitions().get(tr1.getName()));
+
+        tr1.setIsAllowed(false);
+        assertTrue(bb.getTransitions().isEmpty());
+        assertThrows(NoSuchTransitionException.class, () -> {
+            bb.transition(bbt);
+        });
+
+        tr1.setIsAllowed(true);
+        bb.transition(bbt);
+        assertSame(s1, m1.getCurrentState());
+    }
+
+    @Test
+    public void testBlackBoxApplyAll() {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m1.defineState(s1).defineState(s2);
+
+        m1.setTransition(new BaseTransition("tr1", m1, s1));
+        s1.setTransition(new BaseTransition("tr2", s1, s2));
+        var tr3 = new BaseTransition("tr3", s2, s1);
+        tr3.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        s2.setTransition(tr3);
+
+        var bb = new BlackBoxStateMachine<>(m1);
+        assertEquals(-1, bb.applyAll(List.of()));
+        assertEquals(2, bb.applyAll(List.of("tr1", "tr2", "tr3")));
+        assertSame(s2, m1.getCurrentState());
+
+        tr3.getTransitionArguments().get("int").setValue(null);
+        assertEquals(3, bb.applyAll(List.of("tr3", "tr2", "tr3", "foo")));
+        assertSame(s1, m1.getCurrentState());
+
+        // Nothing is executed if any of the names is null:
+        assertThrows(NullPointerException.class, () -> bb.applyAll(Arrays.asList("tr2", null)));
+        assertSame(s1, m1.getCurrentState());
+    }
+
     @Test
     public void testBlackBoxTransition() throws InstantiationException, IllegalAccessException {
         assertThrows(IllegalArgumentException.class, () -> {
@@ -201,4 +256,25 @@ public class TestBaseStateMachine {
             ));
         });
     }
+
+    @Test
+    public void testBlackBoxDoesNotRetainUnsetTransitions() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        m1.defineState(s1);
+        var bb = new BlackBoxStateMachine<>(m1);
+
+        var tr = new BaseTransition("start", m1, s1);
+        m1.setTransition(tr);
+        assertEquals(1, bb.getTransitions().size());
+        m1.unsetTransition(tr);
+        var reference = new WeakReference<>(tr);
+        tr = null;
+
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
 }
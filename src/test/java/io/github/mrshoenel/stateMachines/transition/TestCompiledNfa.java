@@ -0,0 +1,138 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledNfa;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompiledNfa {
+
+    /**
+     * Accepts all words over {a, b} that end in "ab":
+     * m -ε-> q0; q0 -a,b-> q0; q0 -a-> q1 -b-> q2 (final)
+     */
+    private static BaseStateMachine createMachine() {
+        var m = new BaseStateMachine("m");
+        var q0 = new BaseState("q0");
+        var q1 = new BaseState("q1");
+        var q2 = new BaseState("q2");
+        m.defineState(q0).defineState(q1).defineState(q2);
+
+        m.setTransition(new BaseLabeledTransition("start", null, m, q0));
+        q0.setTransition(new BaseLabeledTransition("a-loop", "a", q0, q0));
+        q0.setTransition(new BaseLabeledTransition("b-loop", "b", q0, q0));
+        q0.setTransition(new BaseLabeledTransition("a-q1", "a", q0, q1));
+        q1.setTransition(new BaseLabeledTransition("b-q2", "b", q1, q2));
+        return m;
+    }
+
+    private static boolean accepts(final CompiledNfa nfa, final String word) {
+        var run = nfa.newRun();
+        for (var c : word.toCharArray()) {
+            run.step(String.valueOf(c));
+        }
+        return run.isAccepting();
+    }
+
+    @Test
+    public void testSubsetSimulation() {
+        var m = createMachine();
+        var nfa = CompiledNfa.compile(m);
+        assertEquals(2, nfa.getLabels().size());
+
+        var run = nfa.newRun();
+        assertEquals(2, run.getActiveCount()); // m and q0 (epsilon)
+        assertTrue(run.isActive(nfa.ordinalOf(m)));
+
+        assertTrue(accepts(nfa, "ab"));
+        assertTrue(accepts(nfa, "abbaab"));
+        assertFalse(accepts(nfa, "aba"));
+        assertFalse(accepts(nfa, ""));
+
+        run.step("a");
+        assertEquals(2, run.getActiveCount()); // q0, q1
+        assertFalse(run.step("c"));
+        assertTrue(run.isEmpty());
+        assertEquals(2, run.reset().getActiveCount());
+
+        final var a = nfa.getLabels().idOf("a");
+        final var b = nfa.getLabels().idOf("b");
+        assertTrue(run.run(new int[] { b, a, b }));
+        assertTrue(run.isAccepting());
+        assertEquals(run.getActiveStates().cardinality(), run.getActiveCount());
+    }
+
+    @Test
+    public void testEpsilonClosures() {
+        // m -x-> s1 -ε-> s2 -ε-> s3; s3 -ε-> s1
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var s3 = new BaseStateMachine("s3");
+        var s4 = new BaseState("s4");
+        m.defineState(s1).defineState(s2).defineState(s3);
+        s3.defineState(s4);
+        m.setTransition(new BaseLabeledTransition("x", "x", m, s1));
+        s1.setTransition(new BaseLabeledTransition("e1", null, s1, s2));
+        s2.setTransition(new BaseLabeledTransition("e2", null, s2, s3));
+        s3.setTransition(new BaseLabeledTransition("e3", null, s3, s1));
+        // Plain transitions are labeled with their name:
+        s3.setTransition(new BaseTransition("y", s3, s4));
+
+        var nfa = CompiledNfa.compile(m);
+        var run = nfa.newRun();
+        assertTrue(run.step("x"));
+        assertEquals(3, run.getActiveCount());
+        assertTrue(run.step("y"));
+        assertTrue(run.isActive(nfa.ordinalOf(s4)));
+        assertTrue(run.isAccepting());
+
+        var guarded = new BaseStateMachine("g");
+        guarded.setTransition(new BaseTransition("tr", guarded, guarded) {
+            @Override
+            public boolean isAllowed() {
+                return false;
+            }
+        });
+        assertThrows(IllegalArgumentException.class, () -> CompiledNfa.compile(guarded));
+    }
+
+    @Test
+    public void testManyStatesWithoutAllocation() {
+        // A chain of n states, where each state also loops; all states become active.
+        final int n = 5000;
+        var m = new BaseStateMachine("m");
+        var previous = new BaseState("s0");
+        m.defineState(previous);
+        m.setTransition(new BaseLabeledTransition("start", null, m, previous));
+        for (int i = 1; i < n; i++) {
+            var state = new BaseState("s" + i);
+            m.defineState(state);
+            previous.setTransition(new BaseLabeledTransition("loop", "a", previous, previous));
+            previous.setTransition(new BaseLabeledTransition("next", "a", previous, state));
+            previous = state;
+        }
+
+        var nfa = CompiledNfa.compile(m);
+        var run = nfa.newRun();
+        final int a = nfa.getLabels().idOf("a");
+        for (int i = 0; i < n; i++) {
+            run.step(a);
+        }
+        assertEquals(n, run.getActiveCount());
+        assertTrue(run.isAccepting());
+
+        var threadMx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var id = Thread.currentThread().getId();
+        var empty = -threadMx.getThreadAllocatedBytes(id) + threadMx.getThreadAllocatedBytes(id);
+        var before = threadMx.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 100; i++) {
+            run.step(a);
+        }
+        assertEquals(0L, Math.max(0L, threadMx.getThreadAllocatedBytes(id) - before - empty));
+    }
+}
@@ -0,0 +1,508 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.ColumnarDfa;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.OffHeapInstanceStore;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.simplePoker.SimplePokerGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompiledStateMachine {
+
+    /**
+     * m1 -tr1-> s1 -tr2-> s2 -tr3(int)-> m1
+     */
+    private static BaseStateMachine createMachine() {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+
+        m1.setTransition(new BaseTransition("tr1", m1, s1));
+        s1.setTransition(new BaseTransition("tr2", s1, s2));
+        var tr3 = new BaseTransition("tr3", s2, m1);
+        tr3.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        s2.setTransition(tr3);
+
+        m1.defineState(s1).defineState(s2);
+        return m1;
+    }
+
+    @Test
+    public void testInstancesAreIndependent() throws Exception {
+        var m1 = createMachine();
+        var def = CompiledStateMachine.compile(m1);
+
+        assertEquals("m1", def.getName());
+        assertEquals(3, def.getStateCount());
+        assertEquals(1, def.getMachineCount());
+        assertEquals(3, def.getTransitionCount());
+
+        var i1 = def.newInstance();
+        var i2 = def.newInstance();
+        assertSame(m1, i1.getCurrentState());
+
+        i1.transition("tr1").transition("tr2");
+        assertEquals("s2", i1.getCurrentState().getName());
+        assertSame(m1, i2.getCurrentState());
+        // The authoring machine is not affected by instances:
+        assertSame(m1, m1.getCurrentState());
+
+        assertThrows(IllegalTransitionException.class, () -> i1.transition("tr3"));
+        assertThrows(NoSuchTransitionException.class, () -> i1.transition("tr1"));
+
+        i1.setArgument("tr3", "int", 42);
+        assertEquals(42, i1.getArgument("tr3", "int"));
+        i1.transition("tr3");
+        assertSame(m1, i1.getCurrentState());
+
+        // i2 never saw the value set by i1:
+        i2.transition("tr1").transition("tr2");
+        assertThrows(NoValueSetException.class, () -> i2.getArgument("tr3", "int"));
+        assertThrows(NoSuchArgumentException.class, () -> i2.setArgument("tr3", "foo", 1));
+        assertThrows(IllegalArgumentException.class, () -> i2.setArgument("tr3", "int", "42"));
+
+        i1.transition("tr1").transition("tr2");
+        i1.unsetArgument("tr3", "int");
+        assertThrows(IllegalTransitionException.class, () -> i1.transition("tr3"));
+    }
+
+    @Test
+    public void testPresetArgumentsAndGuards() throws Exception {
+        var s1 = new BaseStateMachine("s1");
+        var s2 = new BaseState("s2");
+        var tr = new DummyTransition(s1, s2);
+        tr.setArgument(new BaseTransitionArgument<>("preset", "arg"));
+        s1.setTransition(tr);
+        s1.defineState(s2);
+
+        var instance = CompiledStateMachine.compile(s1).newInstance();
+        assertEquals("preset", instance.getArgument(tr.getName(), "arg"));
+
+        tr.allowed = false;
+        assertThrows(IllegalTransitionException.class, () -> instance.transition(tr.getName()));
+        tr.allowed = true;
+        instance.transition(tr.getName());
+        assertSame(s2, instance.getCurrentState());
+    }
+
+    @Test
+    public void testConflictingPresetsAreRejected() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m1.defineState(s1).defineState(s2);
+        var tr1 = new BaseTransition("tr", s1, s2);
+        var tr2 = new BaseTransition("tr", s2, s1);
+        tr1.setArgument(new BaseTransitionArgument<>("a", "arg"));
+        tr2.setArgument(new BaseTransitionArgument<>(String.class, "arg"));
+        s1.setTransition(tr1);
+        s2.setTransition(tr2);
+        assertEquals("a", CompiledStateMachine.compile(m1).newInstance().getArgument("tr", "arg"));
+
+        tr2.setArgument(new BaseTransitionArgument<>("b", "arg"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledStateMachine.compile(m1));
+        tr2.setArgument(new BaseTransitionArgument<>(1, "arg"));
+        assertThrows(IllegalArgumentException.class, () -> CompiledStateMachine.compile(m1));
+    }
+
+    @Test
+    public void testSparseDispatch() throws Exception {
+        // A chain of states, each with a transition of its own name, exceeds the dense table:
+        final int n = (int) Math.sqrt(CompiledStateMachine.DENSE_DISPATCH_LIMIT) + 1;
+        var m1 = new BaseStateMachine("m1");
+        var states = new BaseState[n];
+        for (int i = 0; i < n; i++) {
+            states[i] = new BaseState("s" + i);
+            m1.defineState(states[i]);
+        }
+        m1.setTransition(new BaseTransition("start", m1, states[0]));
+        for (int i = 1; i < n; i++) {
+            states[i - 1].setTransition(new BaseTransition("tr" + i, states[i - 1], states[i]));
+        }
+        states[n - 1].setTransition(new BaseTransition("start", states[n - 1], states[0]));
+
+        var instance = CompiledStateMachine.compile(m1).newInstance();
+        instance.transition("start");
+        assertTrue(instance.hasTransition("tr1") && !instance.hasTransition("tr2"));
+        for (int i = 1; i < n; i++) {
+            instance.transition("tr" + i);
+        }
+        assertSame(states[n - 1], instance.getCurrentState());
+        instance.transition("start");
+        assertSame(states[0], instance.getCurrentState());
+    }
+
+    @Test
+    public void testNestedMachines() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var m3 = new BaseStateMachine("m3");
+        var s1 = new BaseState("s1");
+
+        m1.setTransition(new BaseTransition("m1-m2", m1, m2));
+        m2.setTransition(new BaseTransition("m2-m3", m2, m3));
+        m3.setTransition(new BaseTransition("m3-s1", m3, s1));
+        s1.setTransition(new BaseTransition("s1-m2", s1, m2));
+
+        m1.defineState(m2);
+        m2.defineState(m3);
+        m3.defineState(s1);
+
+        var def = CompiledStateMachine.compile(m1);
+        assertEquals(3, def.getMachineCount());
+
+        var instance = def.newInstance();
+        instance.transition("m1-m2").transition("m2-m3").transition("m3-s1");
+        assertSame(s1, instance.getCurrentState());
+        assertSame(m3, def.getState(instance.getCurrentStateOrdinal(def.ordinalOf(m2))));
+        assertThrows(IllegalArgumentException.class, () -> instance.getCurrentStateOrdinal(def.ordinalOf(s1)));
+
+        instance.transition("s1-m2");
+        assertSame(m2, instance.getCurrentState());
+        assertTrue(instance.hasTransition("m2-m3"));
+        assertFalse(instance.hasTransition("m3-s1"));
+    }
+
+    @Test
+    public void testOrphans() {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        m1.setTransition(new BaseTransition("tr1", m1, s1)); // s1 is NOT defined
+
+        var def = CompiledStateMachine.compile(m1);
+        assertEquals(2, def.getStateCount());
+        assertThrows(IllegalTransitionException.class, () -> def.newInstance().transition("tr1"));
+    }
+
+    @Test
+    public void testDeterministicOrdinals() {
+        var def1 = CompiledStateMachine.compile(createMachine());
+        var def2 = CompiledStateMachine.compile(createMachine());
+
+        for (int s = 0; s < def1.getStateCount(); s++) {
+            assertEquals(def1.getState(s).getName(), def2.getState(s).getName());
+        }
+        for (int t = 0; t < def1.getTransitionCount(); t++) {
+            assertEquals(def1.getTransition(t).getName(), def2.getTransition(t).getName());
+        }
+    }
+
+    @Test
+    public void testInternedKeys() throws Exception {
+        var def = CompiledStateMachine.compile(createMachine());
+        var other = CompiledStateMachine.compile(createMachine());
+
+        assertEquals(3, def.getTransitionSymbols().size());
+        assertEquals(1, def.getArgumentCount());
+        assertThrows(NoSuchTransitionException.class, () -> def.getTransitionKey("foo"));
+        assertThrows(NoSuchTransitionException.class, () -> def.getArgumentKey("foo", "int"));
+        assertThrows(NoSuchArgumentException.class, () -> def.getArgumentKey("tr1", "int"));
+
+        var tr1 = def.getTransitionKey("tr1");
+        var tr2 = def.getTransitionKey("tr2");
+        var tr3 = def.getTransitionKey("tr3");
+        var arg = def.getArgumentKey("tr3", "int");
+        assertSame(tr1, def.getTransitionKey("tr1"));
+        assertEquals(tr1.getId(), other.getTransitionKey("tr1").getId());
+        assertEquals("tr3", arg.getTransitionName());
+
+        var instance = def.newInstance();
+        assertTrue(instance.hasTransition(tr1));
+        assertFalse(instance.hasTransition(tr2));
+        assertThrows(IllegalArgumentException.class, () -> instance.transition(other.getTransitionKey("tr1")));
+        assertThrows(IllegalArgumentException.class, () -> instance.setArgument(other.getArgumentKey("tr3", "int"), 1));
+
+        instance.transition(tr1).transition(tr2).setArgument(arg, 1).transition(tr3);
+        assertEquals(1, instance.getArgument(arg));
+        assertEquals(0, instance.getCurrentStateOrdinal());
+    }
+
+    @Test
+    public void testApplyAll() throws Exception {
+        var def = CompiledStateMachine.compile(createMachine());
+        var instance = def.newInstance();
+
+        assertEquals(2, instance.applyAll(List.of("tr1", "tr2", "tr3")));
+        assertEquals("s2", instance.getCurrentState().getName());
+
+        instance.setArgument("tr3", "int", 1);
+        assertEquals(-1, instance.applyAll(List.of("tr3", "tr1", "tr2")));
+        assertEquals("s2", instance.getCurrentState().getName());
+
+        final int tr1 = def.getTransitionKey("tr1").getId();
+        final int tr2 = def.getTransitionKey("tr2").getId();
+        final int tr3 = def.getTransitionKey("tr3").getId();
+        assertEquals(-1, instance.applyAll(new int[] { tr3, tr1 }));
+        assertEquals(1, instance.applyAll(new int[] { tr2, 42 }));
+        assertEquals(0, instance.applyAll(List.of("foo")));
+        assertEquals("s2", instance.getCurrentState().getName());
+    }
+
+    @Test
+    public void testColumnarDfa() throws Exception {
+        // m -tr1-> s1 -tr2-> s2 -tr2-> m; s2 -tr1-> s2
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m.defineState(s1).defineState(s2);
+        m.setTransition(new BaseTransition("tr1", m, s1));
+        s1.setTransition(new BaseTransition("tr2", s1, s2));
+        s2.setTransition(new BaseTransition("tr2", s2, m));
+        s2.setTransition(new BaseTransition("tr1", s2, s2));
+
+        var def = CompiledStateMachine.compile(m);
+        assertTrue(ColumnarDfa.isPure(def));
+        var dfa = ColumnarDfa.compile(def);
+        final int tr1 = def.getTransitionKey("tr1").getId(), tr2 = def.getTransitionKey("tr2").getId();
+
+        var states = dfa.newPopulation(10_000);
+        assertEquals(10_000, dfa.count(states, def.ordinalOf(m)));
+        dfa.step(states, tr1);
+        dfa.run(states, new int[] { tr2, tr1, tr1, tr2 });
+        assertEquals(10_000, dfa.count(states, def.ordinalOf(m)));
+
+        // s1 has no transition tr1:
+        states[0] = def.ordinalOf(s1);
+        dfa.run(states, new int[] { tr1, tr2 });
+        assertEquals(dfa.getDeadState(), states[0]);
+        assertEquals(9_999, dfa.count(states, def.ordinalOf(s2)));
+
+        // The same sequences on an instance:
+        var instance = def.newInstance();
+        assertEquals(-1, instance.applyAll(new int[] { tr1, tr2, tr1, tr1, tr2 }));
+        assertEquals(def.ordinalOf(m), instance.getCurrentStateOrdinal());
+
+        assertFalse(ColumnarDfa.isPure(CompiledStateMachine.compile(createMachine())));
+        assertThrows(IllegalArgumentException.class, () -> ColumnarDfa.compile(CompiledStateMachine.compile(new SimplePokerGame())));
+    }
+
+    @Test
+    public void testColumnarDfaAdvancesPopulationsLikeSingleInstances() throws Exception {
+        // A ring of four states, where tr1 advances and tr2 goes back:
+        var m = new BaseStateMachine("m");
+        var ring = new BaseState[4];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new BaseState("s" + i);
+            m.defineState(ring[i]);
+        }
+        m.setTransition(new BaseTransition("tr1", m, ring[0]));
+        for (int i = 0; i < ring.length; i++) {
+            ring[i].setTransition(new BaseTransition("tr1", ring[i], ring[(i + 1) % ring.length]));
+            ring[i].setTransition(new BaseTransition("tr2", ring[i], ring[(i + 3) % ring.length]));
+        }
+
+        var def = CompiledStateMachine.compile(m);
+        var dfa = ColumnarDfa.compile(def);
+        final int tr1 = def.getTransitionKey("tr1").getId(), tr2 = def.getTransitionKey("tr2").getId();
+
+        // A population that does not fill whole vectors, with instances in all states:
+        var states = dfa.newPopulation(1_003);
+        for (int i = 0; i < states.length; i++) {
+            states[i] = i % (ring.length + 1) == 0 ? dfa.getInitialState() : def.ordinalOf(ring[i % ring.length]);
+        }
+        var expected = states.clone();
+        var symbols = new int[] { tr1, tr1, tr2, tr1, tr2, tr2, tr1 };
+
+        dfa.step(states, tr1);
+        dfa.run(states, Arrays.copyOfRange(symbols, 1, symbols.length));
+        for (int i = 0; i < expected.length; i++) {
+            var one = new int[] { expected[i] };
+            dfa.run(one, symbols);
+            assertEquals(one[0], states[i], "instance " + i + (ColumnarDfa.isVectorized() ? " (vectorized)" : ""));
+        }
+    }
+
+    @Test
+    public void testColumnarDfaRejectsFrameOverrides() {
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                super.enter(usingTransition, frame);
+            }
+        };
+        m.defineState(s1);
+        m.setTransition(new BaseTransition("tr1", m, s1));
+        var def = CompiledStateMachine.compile(m);
+        assertFalse(ColumnarDfa.isPure(def));
+        assertThrows(IllegalArgumentException.class, () -> ColumnarDfa.compile(def));
+
+        var n = new BaseStateMachine("n");
+        var s2 = new BaseState("s2");
+        n.defineState(s2);
+        n.setTransition(new BaseTransition("tr1", n, s2) {
+            @Override
+            public TransitionResult tryTransitionWith(final ArgumentFrame frame) {
+                return super.tryTransitionWith(frame);
+            }
+        });
+        assertFalse(ColumnarDfa.isPure(CompiledStateMachine.compile(n)));
+    }
+
+    @Test
+    public void testMinimizeDfa() {
+        // m -a-> s1 -c-> f; m -b-> s2 -c-> f; s3 (unreachable) -c-> s4 (not final, no way out)
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var s3 = new BaseState("s3");
+        var s4 = new BaseState("s4") {
+            @Override
+            public boolean isFinalState() {
+                return false;
+            }
+        };
+        var f = new BaseState("f");
+        m.defineState(s1).defineState(s2).defineState(s3).defineState(s4).defineState(f);
+        m.setTransition(new BaseTransition("a", m, s1));
+        m.setTransition(new BaseTransition("b", m, s2));
+        s1.setTransition(new BaseTransition("c", s1, f));
+        s2.setTransition(new BaseTransition("c", s2, f));
+        s3.setTransition(new BaseTransition("c", s3, s4));
+
+        var def = CompiledStateMachine.compile(m);
+        var dfa = ColumnarDfa.compile(def);
+        var min = dfa.minimize();
+
+        assertEquals(7, dfa.getStateCount());
+        assertEquals(4, min.getStateCount());
+        assertTrue(min.getTransitionCount() < dfa.getTransitionCount());
+        assertTrue(min.getTableBytes() < dfa.getTableBytes());
+        assertEquals(min.getStateCount(), min.minimize().getStateCount());
+
+        var names = min.getMergedNames();
+        assertEquals("s1", names.get("s2"));
+        assertEquals("f", names.get("f"));
+        assertNull(names.get("s3"));
+        assertNull(names.get("s4"));
+        assertEquals(min.getDeadState(), min.stateOf(def.ordinalOf(s4)));
+        assertEquals(min.getInitialState(), min.stateOf(def.ordinalOf(m)));
+        assertEquals(min.stateOf(def.ordinalOf(s1)), min.stateOf(def.ordinalOf(s2)));
+
+        // Both DFAs accept the same sequences from every state:
+        var random = new java.util.Random(1);
+        final int symbols = def.getTransitionSymbols().size();
+        for (int run = 0; run < 100; run++) {
+            var sequence = random.ints(random.nextInt(4), 0, symbols).toArray();
+            var original = new int[def.getStateCount()];
+            var minimized = new int[def.getStateCount()];
+            for (int s = 0; s < original.length; s++) {
+                original[s] = s;
+                minimized[s] = min.stateOf(s);
+            }
+            dfa.run(original, sequence);
+            min.run(minimized, sequence);
+            for (int s = 0; s < original.length; s++) {
+                assertEquals(dfa.isFinalState(original[s]), min.isFinalState(minimized[s]));
+                assertEquals(min.stateOf(original[s] == dfa.getDeadState() ? def.ordinalOf(s4) : original[s]), minimized[s]);
+            }
+        }
+    }
+
+    @Test
+    public void testMinimizeRemovesUnreachableStates() throws Exception {
+        // m -a-> s1 -b-> f; u (unreachable) -a-> f, which no other state is equivalent to
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var u = new BaseState("u");
+        var f = new BaseState("f");
+        m.defineState(s1).defineState(u).defineState(f);
+        m.setTransition(new BaseTransition("a", m, s1));
+        s1.setTransition(new BaseTransition("b", s1, f));
+        u.setTransition(new BaseTransition("a", u, f));
+
+        var def = CompiledStateMachine.compile(m);
+        var dfa = ColumnarDfa.compile(def);
+        var min = dfa.minimize();
+
+        assertEquals(5, dfa.getStateCount());
+        assertNotEquals(dfa.getDeadState(), dfa.stateOf(def.ordinalOf(u)));
+        assertEquals(4, min.getStateCount());
+        assertEquals(min.getDeadState(), min.stateOf(def.ordinalOf(u)));
+        assertNull(min.getMergedNames().get("u"));
+        assertEquals("s1", min.getMergedNames().get("s1"));
+
+        // Instances that start in the initial state are not affected:
+        var states = min.newPopulation(3);
+        min.run(states, new int[] { def.getTransitionKey("a").getId(), def.getTransitionKey("b").getId() });
+        assertEquals(3, min.count(states, min.stateOf(def.ordinalOf(f))));
+        assertTrue(min.isFinalState(states[0]));
+    }
+
+    @Test
+    public void testNestedTransitionsAgreeWithBlackBox() throws Exception {
+        // m1 -> (m2 -> (m3 -> (s1)), s0)
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var m3 = new BaseStateMachine("m3");
+        var s0 = new BaseState("s0");
+        var s1 = new BaseState("s1");
+        m1.defineState(m2).defineState(s0);
+        m2.defineState(m3);
+        m3.defineState(s1);
+        m1.setTransition(new BaseTransition("start", m1, s0));
+        s0.setTransition(new BaseTransition("deep", s0, s1));
+        s1.setTransition(new BaseTransition("restart", s1, m2));
+        m2.setTransition(new BaseTransition("down", m2, s1));
+        s1.setTransition(new BaseTransition("up", s1, s0));
+
+        var def = CompiledStateMachine.compile(m1);
+        var codec = new SnapshotCodec(def);
+        var instance = def.newInstance();
+        try (var store = OffHeapInstanceStore.allocate(def, 1)) {
+            final int id = store.allocate();
+            var blackBox = new BlackBoxStateMachine<>(m1);
+            for (var name : List.of("start", "deep", "restart", "down", "up", "deep")) {
+                blackBox.transition(name);
+                instance.transition(name);
+                store.transition(id, def.getTransitionKey(name));
+
+                var loaded = store.load(id);
+                for (var machine : List.of(m1, m2, m3)) {
+                    final int ordinal = def.ordinalOf(machine.getCurrentState());
+                    assertEquals(ordinal, instance.getCurrentStateOrdinal(def.ordinalOf(machine)), name);
+                    assertEquals(ordinal, loaded.getCurrentStateOrdinal(def.ordinalOf(machine)), name);
+                }
+                final int deep = def.ordinalOf(m1.getCurrentStateDeep());
+                assertEquals(deep, instance.getCurrentStateOrdinal());
+                assertEquals(deep, codec.restore(codec.snapshot(m1)).getCurrentStateOrdinal());
+            }
+            assertSame(s1, instance.getCurrentState());
+        }
+    }
+
+    @Test
+    public void testCompileSimplePoker() {
+        var game = new SimplePokerGame();
+        var def = CompiledStateMachine.compile(game);
+
+        assertEquals(2, def.getMachineCount());
+        assertEquals(6, def.getStateCount());
+        assertEquals("SimplePokerGameInitialState", def.newInstance().getCurrentState().getName());
+    }
+
+    private static class DummyTransition extends BaseTransition {
+        private boolean allowed = true;
+
+        private DummyTransition(BaseState from, BaseState to) {
+            super(from, to);
+        }
+
+        @Override
+        public boolean isAllowed() {
+            return this.allowed;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.ConcurrentStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestConcurrentStateMachine {
+
+    @Test
+    public void testCompareAndTransition() throws Exception {
+        var m1 = new ConcurrentStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var undefined = new BaseState("undefined");
+        m1.defineState(s1).defineState(s2);
+
+        var tr1 = new BaseTransition("tr1", m1, s1);
+        var tr2 = new BaseTransition("tr2", s1, s2);
+
+        assertFalse(m1.compareAndTransition(s1, tr2));
+        assertSame(m1, m1.getCurrentState());
+
+        assertTrue(m1.compareAndTransition(m1, tr1));
+        assertSame(s1, m1.getCurrentState());
+
+        var tr3 = new BaseTransition("tr3", s2, m1);
+        tr3.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        assertThrows(IllegalTransitionException.class, () -> m1.compareAndTransition(s1, tr3));
+        assertSame(s1, m1.getCurrentState());
+
+        assertThrows(NoSuchStateException.class,
+            () -> m1.compareAndTransition(s1, new BaseTransition(s1, undefined)));
+
+        // Entering a state through a regular transition still works:
+        tr2.transition();
+        assertSame(s2, m1.getCurrentState());
+    }
+
+    @Test
+    public void testExactlyOneWinner() throws Exception {
+        var m1 = new ConcurrentStateMachine("m1");
+        var s1 = new BaseState("s1");
+        m1.defineState(s1);
+        var tr = new BaseTransition("tr", m1, s1);
+
+        final int threads = 8;
+        var start = new CountDownLatch(1);
+        var done = new CountDownLatch(threads);
+        var winners = new AtomicInteger();
+        var errors = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    if (m1.compareAndTransition(m1, tr)) {
+                        winners.incrementAndGet();
+                    }
+                } catch (Exception ex) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+        assertEquals(1, winners.get());
+        assertEquals(0, errors.get());
+        assertSame(s1, m1.getCurrentState());
+    }
+
+    @Test
+    public void testNoTransitionBeforeEntered() throws Exception {
+        var m1 = new ConcurrentStateMachine("m1");
+        var s2 = new BaseState("s2");
+        var entered = new AtomicInteger();
+        var next = new AtomicReference<Transition>();
+        var s1 = new BaseState("s1") {
+            @Override
+            public void enter(Transition usingTransition) {
+                super.enter(usingTransition);
+                // Readers see the state being entered, but cannot transition away from it yet:
+                assertSame(this, m1.getCurrentState());
+                assertDoesNotThrow(() -> assertFalse(m1.compareAndTransition(this, next.get())));
+                entered.incrementAndGet();
+            }
+        };
+        m1.defineState(s1).defineState(s2);
+
+        var tr1 = new BaseTransition("tr1", m1, s1);
+        var tr2 = new BaseTransition("tr2", s1, s2);
+        next.set(tr2);
+
+        assertTrue(m1.compareAndTransition(m1, tr1));
+        assertEquals(1, entered.get());
+        assertSame(s1, m1.getCurrentState());
+        assertTrue(m1.compareAndTransition(s1, tr2));
+        assertSame(s2, m1.getCurrentState());
+    }
+}
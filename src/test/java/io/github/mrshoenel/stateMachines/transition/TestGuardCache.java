@@ -0,0 +1,154 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGuardCache {
+
+    private static class CountingTransition extends BaseTransition {
+        final AtomicInteger evaluations = new AtomicInteger();
+
+        final AtomicBoolean allowed = new AtomicBoolean(true);
+
+        CountingTransition(final String name, final State from, final State to) {
+            super(name, from, to);
+        }
+
+        @Override
+        public boolean isAllowed() {
+            this.evaluations.incrementAndGet();
+            return this.allowed.get();
+        }
+    }
+
+    @Test
+    public void testMemoizationAndInvalidation() throws Exception {
+        var machine = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        machine.defineState(s1).defineState(s2);
+        var tr1 = new CountingTransition("tr1", s1, s2);
+        var back = new CountingTransition("back", s2, s1);
+        var arg = new BaseTransitionArgument<>(Integer.class, "int");
+        back.setArgument(arg);
+        s1.setTransition(tr1);
+        s2.setTransition(back);
+
+        // Without a cache, each evaluation calls the guard:
+        s1.getTransitions();
+        tr1.transition();
+        assertEquals(2, tr1.evaluations.get());
+
+        var cache = machine.enableGuardCache();
+        assertSame(cache, machine.enableGuardCache());
+        assertSame(cache, GuardCache.of(tr1));
+        tr1.evaluations.set(0);
+        assertEquals(1, s1.getTransitions().size());
+        s1.forEachAllowedTransition(t -> { });
+        tr1.transition();
+        assertEquals(1, tr1.evaluations.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2d / 3d, cache.getHitRate(), 1e-9);
+
+        // The transition invalidated the cache:
+        s1.getTransitions();
+        assertEquals(2, tr1.evaluations.get());
+
+        // So do explicit invalidations...
+        tr1.allowed.set(false);
+        assertEquals(1, s1.getTransitions().size());
+        machine.invalidateGuards();
+        assertTrue(s1.getTransitions().isEmpty());
+        assertEquals(3, tr1.evaluations.get());
+
+        // ... and changes of arguments:
+        s2.getTransitions();
+        s2.getTransitions();
+        assertEquals(1, back.evaluations.get());
+        arg.setValue(42);
+        s2.getTransitions();
+        assertEquals(2, back.evaluations.get());
+        back.removeArgument(arg);
+        arg.unsetValue();
+        s2.getTransitions();
+        assertEquals(3, back.evaluations.get());
+
+        cache.resetStatistics();
+        assertEquals(0d, cache.getHitRate());
+        machine.disableGuardCache();
+        assertNull(GuardCache.of(tr1));
+    }
+
+    @Test
+    public void testNestedMachinesAndBlackBox() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var s3 = new BaseState("s3");
+        var s4 = new BaseState("s4");
+        m1.defineState(m2);
+        m2.defineState(s3).defineState(s4);
+        m1.setTransition(new BaseTransition("enter", m1, m2));
+        m2.setTransition(new BaseTransition("start", m2, s3));
+        var tr = new CountingTransition("tr", s3, s4);
+        s3.setTransition(tr);
+
+        var cache = m1.enableGuardCache();
+        assertSame(cache, GuardCache.of(tr));
+
+        var blackBox = new BlackBoxStateMachine<>(m1);
+        blackBox.transition("enter").transition("start");
+        assertTrue(blackBox.getTransitions().containsKey("tr"));
+        assertTrue(blackBox.getTransitions().get("tr").isAllowed());
+        blackBox.transition("tr");
+        assertEquals(1, tr.evaluations.get());
+        assertThrows(NoSuchTransitionException.class, () -> blackBox.transition("tr"));
+
+        // A nested machine's own cache is preferred; transitions invalidate both:
+        var own = m2.enableGuardCache();
+        assertSame(own, GuardCache.of(tr));
+        final long invalidations = cache.getInvalidations();
+        tr.transition();
+        assertEquals(invalidations + 1, cache.getInvalidations());
+        assertEquals(1, own.getInvalidations());
+    }
+
+    @Test
+    public void testEntriesAreUpdatedInPlace() {
+        var machine = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        machine.defineState(s1);
+        var tr = new CountingTransition("tr", machine, s1);
+        var cache = machine.enableGuardCache();
+
+        assertTrue(GuardCache.isAllowed(tr));
+        var entry = tr.guardEntry;
+        assertNotNull(entry);
+
+        // A miss after an invalidation reuses the entry:
+        tr.allowed.set(false);
+        cache.invalidate();
+        assertFalse(GuardCache.isAllowed(tr));
+        assertFalse(GuardCache.isAllowed(tr));
+        assertSame(entry, tr.guardEntry);
+        assertEquals(2, tr.evaluations.get());
+
+        // Another cache replaces it:
+        var outer = new BaseStateMachine("outer");
+        outer.defineState(machine);
+        machine.disableGuardCache();
+        outer.enableGuardCache();
+        assertFalse(GuardCache.isAllowed(tr));
+        assertNotSame(entry, tr.guardEntry);
+        assertSame(outer.getGuardCache(), tr.guardEntry.cache);
+    }
+}
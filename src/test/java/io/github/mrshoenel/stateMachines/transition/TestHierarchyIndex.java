@@ -0,0 +1,165 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.HierarchyIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHierarchyIndex {
+
+    @Test
+    public void testOrdinalsAndRoutes() {
+        // m1 -> (m2 -> (m3 -> (s1, s2)), s0)
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var m3 = new BaseStateMachine("m3");
+        var s0 = new BaseState("s0");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var orphan = new BaseState("orphan");
+        m1.defineState(m2).defineState(s0);
+        m2.defineState(m3);
+        m3.defineState(s1).defineState(s2);
+
+        var index = HierarchyIndex.of(m1);
+        assertTrue(index.isCurrent());
+        assertEquals(6, index.getStateCount());
+        assertEquals(0, index.ordinalOf(m1));
+        assertEquals(-1, index.getOwner(0));
+        assertEquals(-1, index.ordinalOf(orphan));
+        assertSame(m3, index.getState(index.getOwner(index.ordinalOf(s1))));
+        assertEquals(3, index.getDepth(index.ordinalOf(s2)));
+        assertEquals(1, index.getDepth(index.ordinalOf(s0)));
+
+        var sibling = index.route(new BaseTransition("tr", s1, s2));
+        assertEquals(List.of(s2), sibling.getEntrySet());
+
+        var up = index.route(new BaseTransition("tr", s2, s0));
+        assertEquals(List.of(s0), up.getEntrySet());
+
+        var down = index.route(new BaseTransition("tr", s0, s1));
+        assertEquals(List.of(m2, m3, s1), down.getEntrySet());
+
+        // A machine's own transitions do not enter it again; transitions to an ancestor do:
+        assertEquals(List.of(s1), index.route(new BaseTransition("tr", m3, s1)).getEntrySet());
+        assertEquals(List.of(m2), index.route(new BaseTransition("tr", s1, m2)).getEntrySet());
+        assertEquals(List.of(m1), index.route(new BaseTransition("tr", m2, m1)).getEntrySet());
+
+        var tr = new BaseTransition("tr", s1, s2);
+        assertSame(index.route(tr), index.route(tr));
+        assertNull(index.route(new BaseTransition("tr", s1, orphan)));
+
+        m3.defineState(orphan);
+        assertFalse(index.isCurrent());
+        assertNotEquals(-1, HierarchyIndex.of(m1).ordinalOf(orphan));
+    }
+
+    @Test
+    public void testEpochsArePerHierarchy() {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var s1 = new BaseState("s1");
+        m1.defineState(m2);
+        m2.defineState(s1);
+        var index = HierarchyIndex.of(m2);
+        final int listenerEpoch = TransitionListeners.getEpoch();
+
+        // Creating and building other machines affects neither the index nor the listeners:
+        var other = new BaseStateMachine("other");
+        other.defineState(new BaseState("s"));
+        assertTrue(index.isCurrent());
+        assertEquals(listenerEpoch, TransitionListeners.getEpoch());
+        assertSame(m1, s1.getHierarchyRoot());
+
+        // Changes below the top-level machine do:
+        m2.defineState(new BaseState("s2"));
+        assertFalse(index.isCurrent());
+        index = HierarchyIndex.of(m2);
+        other.defineState(m1);
+        assertFalse(index.isCurrent());
+        assertSame(other, s1.getHierarchyRoot());
+
+        // Listeners of machines a transition was moved into apply to it:
+        var listener = new TransitionListener() { };
+        var tr = new BaseTransition("tr", s1, m2);
+        assertEquals(0, TransitionListeners.of(tr).length);
+        var outer = new BaseStateMachine("outer").addTransitionListener(listener);
+        assertEquals(0, TransitionListeners.of(tr).length);
+        outer.defineState(other);
+        assertArrayEquals(new TransitionListener[] { listener }, TransitionListeners.of(tr));
+        outer.removeTransitionListener(listener);
+    }
+
+    @Test
+    public void testRoutesDoNotLookUpDefinedStates() throws Exception {
+        var lookups = new AtomicInteger();
+        var m1 = new BaseStateMachine("m1") {
+            @Override
+            public Set<State> getDefinedStates() {
+                lookups.incrementAndGet();
+                return super.getDefinedStates();
+            }
+        };
+        var s0 = new BaseState("s0");
+        var s1 = new BaseState("s1");
+        m1.defineState(s0).defineState(s1);
+        m1.setTransition(new BaseTransition("start", m1, s0));
+        s0.setTransition(new BaseTransition("next", s0, s1));
+        s1.setTransition(new BaseTransition("next", s1, s0));
+
+        var blackBox = new BlackBoxStateMachine<>(m1);
+        blackBox.transition("start");
+        lookups.set(0);
+        for (int i = 0; i < 10; i++) {
+            blackBox.transition("next");
+            assertEquals(TransitionResult.OK, blackBox.tryTransition("next"));
+        }
+        assertSame(s0, m1.getCurrentState());
+        assertEquals(0, lookups.get());
+
+        // Transitions that are not routed still check their 'to'-state:
+        s0.getBelongsToMachine().setCurrentState(s1);
+        assertTrue(lookups.get() > 0);
+    }
+
+    @Test
+    public void testBlackBoxEntersAllMachines() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var m3 = new BaseStateMachine("m3");
+        var s0 = new BaseState("s0");
+        var s1 = new BaseState("s1");
+        m1.defineState(m2).defineState(s0);
+        m2.defineState(m3);
+        m3.defineState(s1);
+        m1.setTransition(new BaseTransition("start", m1, s0));
+        s0.setTransition(new BaseTransition("deep", s0, s1));
+        s1.setTransition(new BaseTransition("restart", s1, m2));
+
+        var blackBox = new BlackBoxStateMachine<>(m1);
+        blackBox.transition("start").transition("deep");
+        assertSame(m2, m1.getCurrentState());
+        assertSame(m3, m2.getCurrentState());
+        assertSame(s1, m1.getCurrentStateDeep());
+
+        // Entering a machine makes it point at itself:
+        blackBox.transition("restart");
+        assertSame(m2, m1.getCurrentStateDeep());
+        assertSame(s1, m3.getCurrentState());
+
+        // The index is rebuilt when the hierarchy changes:
+        var s2 = new BaseState("s2");
+        m2.defineState(s2);
+        m2.setTransition(new BaseTransition("next", m2, s2));
+        assertEquals(TransitionResult.OK, blackBox.tryTransition("next"));
+        assertSame(s2, m1.getCurrentStateDeep());
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledNfa;
+import io.github.mrshoenel.stateMachines.compiled.LazyDfa;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLazyDfa {
+
+    /**
+     * Accepts all words over {a, b}, whose k-th symbol from the end is an a. The
+     * equivalent DFA has 2^k states.
+     */
+    private static CompiledNfa createNfa(final int k) {
+        var m = new BaseStateMachine("m");
+        var q = new BaseState[k + 1];
+        for (int i = 0; i <= k; i++) {
+            q[i] = new BaseState("q" + i);
+            m.defineState(q[i]);
+        }
+
+        m.setTransition(new BaseLabeledTransition("start", null, m, q[0]));
+        q[0].setTransition(new BaseLabeledTransition("a-loop", "a", q[0], q[0]));
+        q[0].setTransition(new BaseLabeledTransition("b-loop", "b", q[0], q[0]));
+        q[0].setTransition(new BaseLabeledTransition("a-next", "a", q[0], q[1]));
+        for (int i = 1; i < k; i++) {
+            q[i].setTransition(new BaseLabeledTransition("a-next", "a", q[i], q[i + 1]));
+            q[i].setTransition(new BaseLabeledTransition("b-next", "b", q[i], q[i + 1]));
+        }
+        return CompiledNfa.compile(m);
+    }
+
+    private static void assertSameAsSimulation(final CompiledNfa nfa, final LazyDfa dfa, final int steps) {
+        var run = nfa.newRun();
+        dfa.reset();
+        var random = new Random(42);
+        for (int i = 0; i < steps; i++) {
+            final int symbol = random.nextInt(2);
+            assertEquals(run.step(symbol), dfa.step(symbol));
+            assertEquals(run.isAccepting(), dfa.isAccepting());
+            for (int s = 0; s < nfa.getStateCount(); s++) {
+                assertEquals(run.isActive(s), dfa.isActive(s));
+            }
+        }
+    }
+
+    @Test
+    public void testCachedSubsetConstruction() {
+        var nfa = createNfa(3);
+        var dfa = new LazyDfa(nfa, 1000);
+
+        assertTrue(dfa.step("a"));
+        assertFalse(dfa.isAccepting());
+        assertTrue(dfa.step("b"));
+        assertTrue(dfa.step("b"));
+        assertTrue(dfa.isAccepting());
+
+        assertSameAsSimulation(nfa, dfa, 10_000);
+        // At most 2^3 states, plus the initial configuration:
+        assertTrue(dfa.getCachedStates() <= 9);
+        assertEquals(0, dfa.getEvictions());
+        assertTrue(dfa.getHits() > dfa.getMisses());
+        assertFalse(dfa.isSimulating());
+
+        assertFalse(dfa.step("c"));
+        assertTrue(dfa.isEmpty());
+    }
+
+    @Test
+    public void testEvictionAndFallback() {
+        var nfa = createNfa(10);
+        var dfa = new LazyDfa(nfa, 16);
+
+        assertSameAsSimulation(nfa, dfa, 10_000);
+        assertTrue(dfa.getCachedStates() <= 16);
+        assertTrue(dfa.getEvictions() > 0);
+        assertTrue(dfa.getSimulatedSteps() > 0);
+        assertEquals(10_000, dfa.getHits() + dfa.getMisses() + dfa.getSimulatedSteps());
+    }
+}
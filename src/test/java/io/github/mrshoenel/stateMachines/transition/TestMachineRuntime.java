@@ -0,0 +1,280 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.runtime.MachineRuntime;
+import io.github.mrshoenel.stateMachines.runtime.ShardedMachineExecutor;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMachineRuntime {
+
+    /**
+     * m -start-> a -ab-> b -ba(int)-> a
+     */
+    private static BaseStateMachine createMachine(final String name) {
+        var m = new BaseStateMachine(name);
+        var a = new BaseState("a");
+        var b = new BaseState("b");
+        m.defineState(a).defineState(b);
+
+        m.setTransition(new BaseTransition("start", m, a));
+        a.setTransition(new BaseTransition("ab", a, b));
+        var ba = new BaseTransition("ba", b, a);
+        ba.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        b.setTransition(ba);
+        return m;
+    }
+
+    @Test
+    public void testRunToCompletion() throws Exception {
+        var failure = new AtomicReference<Exception>();
+        var runtime = new MachineRuntime<String>(Runnable::run)
+            .setErrorHandler((event, ex) -> failure.set(ex));
+        var m = createMachine("m");
+        runtime.register("m", new BlackBoxStateMachine<>(m));
+        assertThrows(IllegalArgumentException.class, () -> runtime.register("m", new BlackBoxStateMachine<>(m)));
+        assertThrows(IllegalArgumentException.class, () -> runtime.send("foo", "start"));
+
+        runtime.send("m", "start");
+        runtime.send("m", "ab");
+        assertEquals("b", m.getCurrentState().getName());
+
+        runtime.send("m", "ab");
+        assertTrue(failure.get() instanceof NoSuchTransitionException);
+        runtime.send("m", "ba", Map.of("foo", 1));
+        assertTrue(failure.get() instanceof NoSuchArgumentException);
+
+        runtime.send("m", "ba", Map.of("int", 42));
+        assertEquals("a", m.getCurrentState().getName());
+
+        assertEquals(5, runtime.getProcessedCount());
+        assertEquals(2, runtime.getFailedCount());
+        assertEquals(0, runtime.getQueueDepth());
+        assertTrue(runtime.getMaxLatencyNanos() >= runtime.getMeanLatencyNanos());
+        assertNotNull(runtime.unregister("m"));
+        assertNull(runtime.unregister("m"));
+    }
+
+    @Test
+    public void testFailuresDoNotStopTheMailbox() throws Exception {
+        var runtime = new MachineRuntime<String>(Runnable::run)
+            .setErrorHandler((event, ex) -> { throw new IllegalStateException("handler"); });
+        var fail = new AtomicBoolean();
+        var m = new BaseStateMachine("m");
+        var a = new BaseState("a");
+        var b = new BaseState("b") {
+            @Override
+            public void enter(final Transition usingTransition) {
+                super.enter(usingTransition);
+                if (fail.get()) {
+                    throw new AssertionError("hook");
+                }
+            }
+        };
+        m.defineState(a).defineState(b);
+        m.setTransition(new BaseTransition("start", m, a));
+        a.setTransition(new BaseTransition("ab", a, b));
+        runtime.register("m", new BlackBoxStateMachine<>(m));
+
+        // A throwing handler must not prevent later events from being processed:
+        runtime.send("m", "ab");
+        runtime.send("m", "start");
+        assertEquals("a", m.getCurrentState().getName());
+
+        // Neither must an Error thrown by a hook:
+        fail.set(true);
+        assertThrows(AssertionError.class, () -> runtime.send("m", "ab"));
+        fail.set(false);
+        runtime.send("m", "start");
+        assertEquals(4, runtime.getProcessedCount());
+        assertEquals(0, runtime.getQueueDepth());
+    }
+
+    @Test
+    public void testArgumentsApplyToOneTransition() throws Exception {
+        var m = createMachine("m");
+        var box = new BlackBoxStateMachine<>(m);
+        box.transition("start").transition("ab");
+        var arg = m.getCurrentState().getAllDefinedTransitions().get("ba").getTransitionArguments().get("int");
+
+        // Nothing is set if any of the values is invalid:
+        assertThrows(NoSuchArgumentException.class, () -> box.transition("ba", Map.of("int", 1, "foo", 2)));
+        assertThrows(IllegalArgumentException.class, () -> box.transition("ba", Map.of("int", "1")));
+        assertFalse(arg.hasValue());
+
+        box.transition("ba", Map.of("int", 1));
+        assertEquals("a", m.getCurrentState().getName());
+        assertFalse(arg.hasValue());
+    }
+
+    @Test
+    public void testManyProducers() throws Exception {
+        final int machines = 100, events = 101, producers = 4;
+        try (var runtime = new MachineRuntime<Integer>()) {
+            var ms = new ArrayList<BaseStateMachine>();
+            for (int i = 0; i < machines; i++) {
+                ms.add(createMachine("m" + i));
+                runtime.register(i, new BlackBoxStateMachine<>(ms.get(i)));
+                runtime.send(i, "start");
+            }
+
+            // Each producer owns a subset of the machines, so the order of their events is defined.
+            var threads = new ArrayList<Thread>();
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                threads.add(new Thread(() -> {
+                    for (int e = 0; e < events; e++) {
+                        for (int i = producer; i < machines; i += producers) {
+                            if (e % 2 == 0) {
+                                runtime.send(i, "ab");
+                            } else {
+                                runtime.send(i, "ba", Map.of("int", e));
+                            }
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (var thread : threads) {
+                thread.join();
+            }
+
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            while (runtime.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1L);
+            }
+
+            assertEquals(0, runtime.getQueueDepth());
+            assertEquals(0, runtime.getFailedCount());
+            assertEquals((long) machines * (events + 1), runtime.getProcessedCount());
+            for (var m : ms) {
+                assertEquals("b", m.getCurrentState().getName());
+            }
+        }
+    }
+
+    @Test
+    public void testShardedExecutor() throws Exception {
+        final int machines = 1000, events = 51, shards = 4;
+        try (var executor = new ShardedMachineExecutor<String>(shards)) {
+            assertEquals(executor.shardOf("m42"), executor.shardOf("m42"));
+            assertThrows(IllegalArgumentException.class, () -> executor.send("m0", "start"));
+
+            var ms = new ArrayList<BaseStateMachine>();
+            for (int i = 0; i < machines; i++) {
+                ms.add(createMachine("m" + i));
+                executor.register("m" + i, ms.get(i));
+                executor.send("m" + i, "start");
+            }
+            for (int e = 0; e < events; e++) {
+                for (int i = 0; i < machines; i++) {
+                    if (e % 2 == 0) {
+                        executor.send("m" + i, "ab");
+                    } else {
+                        executor.send("m" + i, "ba", Map.of("int", e));
+                    }
+                }
+            }
+
+            final long expected = (long) machines * (events + 1);
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            long processed = 0L;
+            while (processed < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1L);
+                processed = 0L;
+                for (int s = 0; s < shards; s++) {
+                    processed += executor.getProcessedCount(s);
+                }
+            }
+
+            assertEquals(expected, processed);
+            assertEquals(0, executor.getBacklog());
+            for (int s = 0; s < shards; s++) {
+                assertEquals(0, executor.getFailedCount(s));
+                assertTrue(executor.getProcessedCount(s) > 0);
+                assertTrue(executor.getBatchCount(s) <= executor.getProcessedCount(s));
+                assertTrue(executor.getThroughput(s) > 0d);
+            }
+            for (var m : ms) {
+                assertEquals("b", m.getCurrentState().getName());
+            }
+        }
+    }
+
+    @Test
+    public void testShardSurvivesFailures() throws Exception {
+        var failures = new AtomicInteger();
+        try (var executor = new ShardedMachineExecutor<String>(1)) {
+            executor.setErrorHandler((event, ex) -> {
+                failures.incrementAndGet();
+                throw new IllegalStateException("handler");
+            });
+            var m = new BaseStateMachine("m");
+            var a = new BaseState("a");
+            var b = new BaseState("b") {
+                @Override
+                public void enter(final Transition usingTransition) {
+                    super.enter(usingTransition);
+                    throw new AssertionError("hook");
+                }
+            };
+            m.defineState(a).defineState(b);
+            m.setTransition(new BaseTransition("start", m, a));
+            a.setTransition(new BaseTransition("ab", a, b));
+            executor.register("m", m);
+            executor.register("n", createMachine("n"));
+
+            executor.send("m", "start");
+            executor.send("m", "ab");
+            executor.send("n", "start");
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            while (executor.getProcessedCount(0) < 3L && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1L);
+            }
+
+            assertEquals(3L, executor.getProcessedCount(0));
+            assertEquals(1L, executor.getFailedCount(0));
+            assertEquals(1, failures.get());
+        }
+    }
+
+    @Test
+    public void testShardRethrowsVirtualMachineErrors() throws Exception {
+        var failures = new AtomicInteger();
+        try (var executor = new ShardedMachineExecutor<String>(1)) {
+            executor.setErrorHandler((event, ex) -> failures.incrementAndGet());
+            var m = new BaseStateMachine("m");
+            var a = new BaseState("a") {
+                @Override
+                public void enter(final Transition usingTransition) {
+                    super.enter(usingTransition);
+                    throw new OutOfMemoryError("hook");
+                }
+            };
+            m.defineState(a);
+            m.setTransition(new BaseTransition("start", m, a));
+            executor.register("m", m);
+
+            executor.send("m", "start");
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            while (executor.getProcessedCount(0) < 1L && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1L);
+            }
+
+            assertEquals(1L, executor.getProcessedCount(0));
+            assertEquals(1L, executor.getFailedCount(0));
+            assertEquals(1, failures.get());
+        }
+    }
+}
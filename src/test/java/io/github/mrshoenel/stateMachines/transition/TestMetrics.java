@@ -0,0 +1,113 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.metrics.LatencyHistogram;
+import io.github.mrshoenel.stateMachines.metrics.Metrics;
+import io.github.mrshoenel.stateMachines.metrics.MetricsRegistry;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMetrics {
+
+    @Test
+    public void testRegistry() throws Exception {
+        var registry = new MetricsRegistry("test");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var tr = new BaseTransition("tr", s1, s2);
+
+        for (int i = 0; i < 3; i++) {
+            try (var frame = ArgumentFrame.acquire(tr)) {
+                final long start = System.nanoTime();
+                final long left = registry.leave(s1, tr, frame, start);
+                assertTrue(left >= start);
+                registry.transitioned(tr, start, registry.enter(s2, tr, frame, left));
+            }
+        }
+        registry.rejected(tr);
+
+        var trMetrics = registry.getTransitionMetrics(tr);
+        assertEquals(3, trMetrics.getExecutions());
+        assertEquals(1, trMetrics.getRejections());
+        assertEquals(3, trMetrics.getLatency().getCount());
+        assertEquals(3, registry.getStateMetrics(s1).getLeaves());
+        assertEquals(0, registry.getStateMetrics(s1).getEnters());
+        assertEquals(3, registry.getStateMetrics(s2).getEnterLatency().getCount());
+
+        assertEquals(Long.valueOf(3L), registry.getTransitionExecutions().get("s1 -tr-> s2"));
+        assertEquals(Long.valueOf(3L), registry.getStateEnters().get("s2"));
+        assertTrue(registry.getTransitionMeanNanos().get("s1 -tr-> s2") >= 0d);
+
+        var name = registry.registerMBean();
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(server.isRegistered(name));
+            assertEquals("test", server.getAttribute(name, "Name"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0, trMetrics.getExecutions());
+        } finally {
+            registry.unregisterMBean();
+        }
+
+        assertTrue(registry.remove(tr));
+        assertFalse(registry.remove(tr));
+        assertEquals(2, registry.getAllStateMetrics().size());
+        registry.clear();
+        assertTrue(registry.getAllStateMetrics().isEmpty());
+    }
+
+    @Test
+    public void testRegistryDoesNotRetainArtifacts() throws Exception {
+        var registry = new MetricsRegistry("weak");
+        var s1 = new BaseState("s1");
+        var tr = new BaseTransition("tr", s1, new BaseState("s2"));
+        assertEquals(0, registry.getStateMetrics(s1).getEnters());
+        registry.rejected(tr);
+        var metrics = registry.getTransitionMetrics(tr);
+        assertSame(tr, metrics.getTransition());
+        assertEquals(2, registry.getAllStateMetrics().size() + registry.getAllTransitionMetrics().size());
+
+        var reference = new WeakReference<>(tr);
+        s1 = null;
+        tr = null;
+        for (int i = 0; i < 20 && (reference.get() != null || !registry.getAllStateMetrics().isEmpty()); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        assertNull(metrics.getTransition());
+        assertTrue(registry.getAllStateMetrics().isEmpty());
+        assertTrue(registry.getAllTransitionMetrics().isEmpty());
+    }
+
+    @Test
+    public void testHistogramAndDisabledMetrics() throws IllegalTransitionException {
+        var histogram = new MetricsRegistry("h").getStateMetrics(new BaseState("s")).getEnterLatency();
+        assertEquals(0L, histogram.getPercentileNanos(50d));
+        histogram.record(0L);
+        histogram.record(5L);
+        histogram.record(6L);
+        histogram.record(1000L);
+        assertEquals(1, histogram.getBucketCount(0));
+        assertEquals(2, histogram.getBucketCount(3));
+        assertEquals(8L, histogram.getPercentileNanos(75d));
+        assertEquals(1024L, histogram.getPercentileNanos(100d));
+        assertEquals(1011L, histogram.getTotalNanos());
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(64));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(0d));
+
+        var s1 = new BaseState("s1");
+        var tr = new BaseTransition("tr", s1, new BaseState("s2"));
+        tr.transition();
+        if (!Metrics.ENABLED) {
+            assertFalse(Metrics.getRegistry().getAllTransitionMetrics().stream().anyMatch(m -> m.getTransition() == tr));
+        } else {
+            assertEquals(1, Metrics.getRegistry().getTransitionMetrics(tr).getExecutions());
+        }
+    }
+}
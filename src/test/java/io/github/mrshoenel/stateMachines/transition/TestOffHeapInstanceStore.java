@@ -0,0 +1,147 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.OffHeapInstanceStore;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOffHeapInstanceStore {
+    private Path directory;
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        if (this.directory != null) {
+            try (var files = Files.list(this.directory)) {
+                for (var file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(this.directory);
+        }
+    }
+
+    /**
+     * m1 -tr1-> s1 -tr2-> m2 (s3 -tr3-> s4) -back(int, double)-> s1
+     */
+    private static BaseStateMachine createMachine() {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var s1 = new BaseState("s1");
+        var s3 = new BaseState("s3");
+        var s4 = new BaseState("s4");
+        m1.defineState(s1).defineState(m2);
+        m2.defineState(s3).defineState(s4);
+
+        m1.setTransition(new BaseTransition("tr1", m1, s1));
+        s1.setTransition(new BaseTransition("tr2", s1, m2));
+        m2.setTransition(new BaseTransition("tr3", m2, s3));
+        s3.setTransition(new BaseTransition("tr4", s3, s4));
+        var back = new BaseTransition("back", s4, s1);
+        back.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        back.setArgument(new BaseTransitionArgument<>(0.5d, "double"));
+        s4.setTransition(back);
+        return m1;
+    }
+
+    @Test
+    public void testTransitionsAndArguments() throws Exception {
+        var def = CompiledStateMachine.compile(createMachine());
+        var tr1 = def.getTransitionKey("tr1");
+        var back = def.getTransitionKey("back");
+        var intArg = def.getArgumentKey("back", "int");
+        var doubleArg = def.getArgumentKey("back", "double");
+
+        try (var store = OffHeapInstanceStore.allocate(def, 4)) {
+            assertEquals(0, store.allocate(3));
+            assertEquals(3, store.size());
+            assertSame(def.getState(0), store.getCurrentState(1));
+            assertThrows(IndexOutOfBoundsException.class, () -> store.getCurrentState(3));
+
+            store.transition(0, tr1);
+            assertEquals("s1", store.getCurrentState(0).getName());
+            assertThrows(NoSuchTransitionException.class, () -> store.transition(0, tr1));
+            assertEquals(-1, store.applyAll(0, new int[] {
+                def.getTransitionKey("tr2").getId(), def.getTransitionKey("tr3").getId(), def.getTransitionKey("tr4").getId() }));
+            assertEquals("s4", store.getCurrentState(0).getName());
+
+            assertThrows(IllegalTransitionException.class, () -> store.transition(0, back));
+            assertThrows(NoValueSetException.class, () -> store.getLong(0, intArg));
+            assertEquals(0.5d, store.getDouble(0, doubleArg));
+            store.setLong(0, intArg, 42L).setDouble(0, doubleArg, -1.25d);
+            assertEquals(42, store.getArgument(0, intArg));
+            assertThrows(IllegalArgumentException.class, () -> store.setArgument(0, intArg, "x"));
+            assertThrows(IllegalArgumentException.class, () -> store.setDouble(0, intArg, 1d));
+
+            // The same configuration on the heap:
+            var instance = store.load(0);
+            assertEquals("s4", instance.getCurrentState().getName());
+            assertEquals(-1.25d, instance.getArgument(doubleArg));
+            instance.transition(back);
+            store.save(2, instance);
+            assertEquals("s1", store.getCurrentState(2).getName());
+            assertEquals(instance.toString(), store.load(2).toString());
+
+            store.transition(0, back);
+            assertEquals("s1", store.getCurrentState(0).getName());
+            store.unsetArgument(0, intArg);
+            assertFalse(store.hasArgument(0, intArg));
+            assertEquals(0.5d, store.reset(0).getDouble(0, doubleArg));
+
+            assertEquals(2, store.transitionAll(0, 3, tr1));
+            assertEquals("s1", store.getCurrentState(1).getName());
+            assertEquals(3, store.allocate());
+            assertThrows(IllegalStateException.class, store::allocate);
+        }
+    }
+
+    @Test
+    public void testReopenMappedFile() throws Exception {
+        this.directory = Files.createTempDirectory("store");
+        var file = this.directory.resolve("instances.store");
+        var def = CompiledStateMachine.compile(createMachine());
+        var intArg = def.getArgumentKey("back", "int");
+
+        try (var store = OffHeapInstanceStore.open(def, file, 1000)) {
+            store.allocate(1000);
+            for (int id = 0; id < 1000; id += 2) {
+                store.transition(id, def.getTransitionKey("tr1"));
+                store.setLong(id, intArg, id);
+            }
+        }
+
+        try (var store = OffHeapInstanceStore.open(def, file, 2000)) {
+            assertEquals(1000, store.size());
+            assertEquals(2000, store.getCapacity());
+            for (int id = 0; id < 1000; id++) {
+                assertEquals(id % 2 == 0 ? "s1" : "m1", store.getCurrentState(id).getName());
+                assertEquals(id % 2 == 0, store.hasArgument(id, intArg));
+            }
+            assertEquals(998L, store.getLong(998, intArg));
+        }
+
+        // Another definition must not open the store:
+        var other = new BaseStateMachine("other");
+        var s = new BaseState("s");
+        other.defineState(s);
+        var otherDef = CompiledStateMachine.compile(other);
+        assertThrows(IllegalArgumentException.class, () -> OffHeapInstanceStore.open(otherDef, file, 1));
+
+        // Only fixed-size arguments can be stored:
+        var named = new BaseTransition("tr", other, s);
+        named.setArgument(new BaseTransitionArgument<>(String.class, "name"));
+        other.setTransition(named);
+        var namedDef = CompiledStateMachine.compile(other);
+        assertThrows(IllegalArgumentException.class, () -> OffHeapInstanceStore.allocate(namedDef, 1));
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.OrthogonalStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestOrthogonalStateMachine {
+
+    /**
+     * A region with the states open -> done, and a transition with the given name.
+     */
+    private static BaseStateMachine region(final String name, final String transition, final Set<String> threads) {
+        var region = new BaseStateMachine(name);
+        var open = new BaseState(name + "-open");
+        var done = new BaseState(name + "-done") {
+            @Override
+            public void enter(final Transition usingTransition) {
+                threads.add(Thread.currentThread().getName());
+                super.enter(usingTransition);
+            }
+        };
+        region.defineState(open).defineState(done);
+        region.setTransition(new BaseTransition("start", region, open));
+        open.setTransition(new BaseTransition(transition, open, done));
+        return region;
+    }
+
+    @Test
+    public void testDispatchToAllRegions() throws Exception {
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var order = new OrthogonalStateMachine("order");
+        var payment = region("payment", "complete", threads);
+        var shipping = region("shipping", "complete", threads);
+        var invoice = region("invoice", "send", threads);
+        order.defineState(payment).defineRegion(shipping, true).defineRegion(invoice, true);
+        assertThrows(IllegalArgumentException.class, () -> order.defineState(new BaseState("s")));
+
+        var outer = new BaseStateMachine("outer");
+        outer.defineState(order).setCurrentState(order);
+        assertEquals(List.of(payment, shipping, invoice), order.getRegions());
+
+        var results = new TransitionResult[3];
+        assertEquals(3, order.dispatch("start"));
+        assertEquals(2, order.dispatch("complete", results));
+        assertArrayEquals(new TransitionResult[] {
+            TransitionResult.OK, TransitionResult.OK, TransitionResult.NO_SUCH_TRANSITION }, results);
+        assertEquals(List.of("payment-done", "shipping-done", "invoice-open"),
+            order.getActiveStates().stream().map(State::getName).collect(Collectors.toList()));
+
+        assertSame(order, order.getCurrentState());
+        assertSame(order, outer.getCurrentStateDeep());
+        assertTrue(order.isActive(shipping.getCurrentState()) && outer.isActive(shipping.getCurrentState()));
+        assertTrue(outer.isActive(invoice.getCurrentState()));
+        assertFalse(outer.isActive(new BaseState("other")));
+
+        order.undefineState(invoice);
+        assertEquals(List.of(payment, shipping), order.getRegions());
+        assertEquals(0, order.dispatch("send"));
+    }
+
+    @Test
+    public void testParallelDispatch() {
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var order = new OrthogonalStateMachine("order");
+        for (int i = 0; i < 8; i++) {
+            order.defineRegion(region("r" + i, "complete", threads), i > 0);
+        }
+
+        var pool = new ForkJoinPool(4);
+        try {
+            assertSame(pool, order.setPool(pool).getPool());
+            assertEquals(8, order.dispatch("start"));
+            assertEquals(8, order.dispatch("complete"));
+            assertEquals(0, order.dispatch("complete"));
+            assertTrue(order.getActiveStates().stream().allMatch(s -> s.getName().endsWith("-done")));
+            // The region that is not isolated is executed on the calling thread:
+            assertTrue(threads.contains(Thread.currentThread().getName()));
+            assertTrue(threads.stream().anyMatch(name -> name.contains("ForkJoinPool")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testErrorsWaitForIsolatedRegions() {
+        var order = new OrthogonalStateMachine("order");
+        var failing = new BaseStateMachine("failing");
+        var open = new BaseState("failing-open");
+        var done = new BaseState("failing-done") {
+            @Override
+            public void enter(final Transition usingTransition) {
+                super.enter(usingTransition);
+                throw new AssertionError("hook");
+            }
+        };
+        failing.defineState(open).defineState(done);
+        failing.setTransition(new BaseTransition("start", failing, open));
+        open.setTransition(new BaseTransition("complete", open, done));
+        order.defineRegion(failing, false);
+        for (int i = 0; i < 4; i++) {
+            order.defineRegion(slowRegion("r" + i), true);
+        }
+
+        var pool = new ForkJoinPool(4);
+        try {
+            order.setPool(pool).dispatch("start");
+            assertThrows(AssertionError.class, () -> order.dispatch("complete"));
+            // The isolated regions are done once the Error is rethrown:
+            assertTrue(order.getActiveStates().stream().skip(1L).allMatch(s -> s.getName().endsWith("-done")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExceptionsWaitForAllRegions() {
+        var order = new OrthogonalStateMachine("order");
+        order.defineRegion(failingRegion("failing"), true);
+        for (int i = 0; i < 3; i++) {
+            order.defineRegion(slowRegion("r" + i), true);
+        }
+        order.dispatch("start");
+
+        // Sequentially, the remaining regions are still dispatched to:
+        var results = new TransitionResult[4];
+        assertThrows(IllegalStateException.class, () -> order.dispatch("complete", results));
+        assertTrue(order.getActiveStates().stream().skip(1L).allMatch(s -> s.getName().endsWith("-done")));
+        assertEquals(List.of(TransitionResult.OK, TransitionResult.OK, TransitionResult.OK), Arrays.asList(results).subList(1, 4));
+
+        // In parallel, a failing task does not abandon the others:
+        order.dispatch("reset");
+        var pool = new ForkJoinPool(4);
+        try {
+            assertThrows(IllegalStateException.class, () -> order.setPool(pool).dispatch("complete"));
+            assertTrue(order.getActiveStates().stream().skip(1L).allMatch(s -> s.getName().endsWith("-done")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A region with the states open -> done, where entering 'done' throws.
+     */
+    private static BaseStateMachine failingRegion(final String name) {
+        var region = new BaseStateMachine(name);
+        var open = new BaseState(name + "-open");
+        var done = new BaseState(name + "-done") {
+            @Override
+            public void enter(final Transition usingTransition) {
+                throw new IllegalStateException("hook");
+            }
+        };
+        region.defineState(open).defineState(done);
+        region.setTransition(new BaseTransition("start", region, open));
+        open.setTransition(new BaseTransition("complete", open, done));
+        return region;
+    }
+
+    /**
+     * Like {@link #region(String, String, Set)}, but entering the state 'done' takes a while.
+     */
+    private static BaseStateMachine slowRegion(final String name) {
+        var region = new BaseStateMachine(name);
+        var open = new BaseState(name + "-open");
+        var done = new BaseState(name + "-done") {
+            @Override
+            public void enter(final Transition usingTransition) {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException iEx) {
+                    Thread.currentThread().interrupt();
+                }
+                super.enter(usingTransition);
+            }
+        };
+        region.defineState(open).defineState(done);
+        region.setTransition(new BaseTransition("start", region, open));
+        open.setTransition(new BaseTransition("complete", open, done));
+        done.setTransition(new BaseTransition("reset", done, open));
+        return region;
+    }
+}
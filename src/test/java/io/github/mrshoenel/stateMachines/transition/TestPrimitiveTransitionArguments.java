@@ -0,0 +1,96 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPrimitiveTransitionArguments {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAccessorsAndContract() throws Exception {
+        var i = new IntTransitionArgument("i");
+        var l = new LongTransitionArgument(Long.MAX_VALUE, "l");
+        var d = new DoubleTransitionArgument(-0.5, "d");
+        var b = new BooleanTransitionArgument(true, "b");
+
+        assertFalse(i.hasValue());
+        assertThrows(IllegalStateException.class, i::getInt);
+        assertThrows(NoValueSetException.class, i::getValue);
+        i.setInt(-7);
+        assertEquals(-7, i.getInt());
+        assertEquals(Integer.valueOf(-7), i.getValue());
+        assertEquals(Long.MAX_VALUE, l.getLong());
+        assertEquals(-0.5, d.getDouble());
+        assertTrue(b.getBoolean());
+        assertEquals(Integer.class, i.getType());
+
+        // The generic contract is still supported:
+        TransitionArgument<Object> generic = (TransitionArgument<Object>) (TransitionArgument<?>) d;
+        generic.setValue(2.25);
+        assertEquals(2.25, d.getDouble());
+        assertThrows(NullPointerException.class, () -> generic.setValue(null));
+        b.unsetValue();
+        assertFalse(b.hasValue());
+        assertEquals("[BooleanTransitionArgument: <no value was set>]", b.toString());
+        assertEquals("[IntTransitionArgument: -7]", i.toString());
+    }
+
+    @Test
+    public void testTransitionsAndFrames() throws Exception {
+        var machine = new BaseStateMachine("m");
+        var amount = new LongTransitionArgument("amount");
+        var factor = new DoubleTransitionArgument(1.5, "factor");
+        var sum = new AtomicLong();
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                super.enter(usingTransition, frame);
+                try {
+                    sum.addAndGet((long) (frame.getLong(amount) * frame.getDouble(factor)));
+                } catch (Exception ex) {
+                    throw new AssertionError(ex);
+                }
+            }
+        };
+        machine.defineState(s1).defineState(s2);
+        var tr = new BaseTransition("tr", s1, s2).setArgument(amount).setArgument(factor);
+        s1.setTransition(tr);
+
+        // The pre-check recognizes unset primitive arguments:
+        assertThrows(IllegalTransitionException.class, tr::transition);
+        amount.setLong(10L);
+        tr.transition();
+        assertEquals(15L, sum.get());
+
+        try (var frame = ArgumentFrame.acquire(tr)) {
+            tr.transitionWith(frame.setLong(amount, 100L).setDouble(factor, 2d));
+            assertEquals(Long.valueOf(100L), frame.get(amount));
+            assertEquals(2d, frame.get("factor"));
+        }
+        assertEquals(215L, sum.get());
+        assertEquals(10L, amount.getLong());
+
+        // Boxed values in a frame are readable using the primitive getters:
+        try (var frame = ArgumentFrame.acquire(tr)) {
+            tr.transitionWith(frame.set("amount", 4L));
+            assertEquals(4L, frame.getLong(amount));
+            assertThrows(IllegalArgumentException.class, () -> frame.set("amount", null));
+        }
+        assertEquals(221L, sum.get());
+
+        // Changing a value invalidates memoized guards:
+        var cache = machine.enableGuardCache();
+        s1.getTransitions();
+        final long invalidations = cache.getInvalidations();
+        amount.setLong(1L);
+        assertEquals(invalidations + 1, cache.getInvalidations());
+    }
+}
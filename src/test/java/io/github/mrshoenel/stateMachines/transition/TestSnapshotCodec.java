@@ -0,0 +1,146 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotReader;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotWriter;
+import io.github.mrshoenel.stateMachines.compiled.ValueCodec;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSnapshotCodec {
+
+    /**
+     * m1 -tr1-> s1 -tr2-> m2 (s3 -tr3-> s4) -back(int, name)-> s1
+     */
+    private static BaseStateMachine createMachine() {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var s1 = new BaseState("s1");
+        var s3 = new BaseState("s3");
+        var s4 = new BaseState("s4");
+        m1.defineState(s1).defineState(m2);
+        m2.defineState(s3).defineState(s4);
+
+        m1.setTransition(new BaseTransition("tr1", m1, s1));
+        s1.setTransition(new BaseTransition("tr2", s1, m2));
+        m2.setTransition(new BaseTransition("tr3", m2, s3));
+        s3.setTransition(new BaseTransition("tr4", s3, s4));
+        var back = new BaseTransition("back", s4, s1);
+        back.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        back.setArgument(new BaseTransitionArgument<>("default", "name"));
+        s4.setTransition(back);
+        return m1;
+    }
+
+    @Test
+    public void testInstanceRoundTrip() throws Exception {
+        var def = CompiledStateMachine.compile(createMachine());
+        var codec = new SnapshotCodec(def);
+
+        var fresh = codec.snapshot(def.newInstance());
+        assertEquals(6, fresh.length);
+        assertSame(def.getState(0), codec.restore(fresh).getCurrentState());
+
+        var instance = def.newInstance().transition("tr1").transition("tr2").transition("tr3").transition("tr4");
+        instance.setArgument("back", "int", -7);
+        var snapshot = codec.snapshot(instance);
+        assertTrue(snapshot.length < 16);
+
+        var restored = codec.restore(snapshot);
+        assertEquals("s4", restored.getCurrentState().getName());
+        assertEquals(-7, restored.getArgument("back", "int"));
+        assertEquals("default", restored.getArgument("back", "name"));
+        assertEquals(instance.toString(), restored.toString());
+
+        restored.setArgument("back", "name", null).unsetArgument("back", "int");
+        var copy = codec.restore(codec.snapshot(restored));
+        assertNull(copy.getArgument("back", "name"));
+        assertFalse(copy.hasTransition("tr1"));
+        assertThrows(IllegalTransitionException.class, () -> copy.transition("back"));
+
+        // Many snapshots in one buffer:
+        var writer = new SnapshotWriter();
+        codec.write(instance, writer).write(copy, writer);
+        var reader = new SnapshotReader(writer.toByteArray());
+        assertEquals(instance.toString(), codec.read(reader, def.newInstance()).toString());
+        assertEquals(copy.toString(), codec.read(reader, def.newInstance()).toString());
+        assertEquals(0, reader.remaining());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMachineRoundTrip() throws Exception {
+        var source = createMachine();
+        var def = CompiledStateMachine.compile(source);
+        var codec = new SnapshotCodec(def);
+
+        source.getAllDefinedTransitions().get("tr1").transition();
+        var s1 = source.getCurrentState();
+        s1.getAllDefinedTransitions().get("tr2").transition();
+        var m2 = (BaseStateMachine) source.getCurrentState();
+        m2.getAllDefinedTransitions().get("tr3").transition();
+        var back = m2.getCurrentStateDeep().getAllDefinedTransitions().get("tr4").getToState().getAllDefinedTransitions().get("back");
+        ((TransitionArgument<Integer>) back.getTransitionArguments().get("int")).setValue(42);
+
+        var snapshot = codec.snapshot(source);
+        var target = createMachine();
+        assertSame(codec.restore(snapshot, target), target);
+        assertEquals("s3", target.getCurrentStateDeep().getName());
+        assertEquals("m2", target.getCurrentState().getName());
+
+        var targetBack = target.getDefinedStates().stream()
+            .filter(s -> s.getName().equals("m2")).findFirst().orElseThrow()
+            .getAllDefinedTransitions().get("tr3").getToState()
+            .getAllDefinedTransitions().get("tr4").getToState()
+            .getAllDefinedTransitions().get("back");
+        assertEquals(42, targetBack.getTransitionArguments().get("int").getValue());
+
+        // Instances and machines use the same format:
+        assertEquals("s3", codec.restore(snapshot).getCurrentState().getName());
+    }
+
+    @Test
+    public void testCodecsAndMismatches() throws Exception {
+        var def = CompiledStateMachine.compile(createMachine());
+        var codec = new SnapshotCodec(def);
+
+        var instance = def.newInstance();
+        // Arguments of type Object accept anything, but require a codec:
+        var m = new BaseStateMachine("m");
+        var tr = new BaseTransition("tr", m, m);
+        tr.setArgument(new BaseTransitionArgument<>(Object.class, "day"));
+        m.setTransition(tr);
+        var other = CompiledStateMachine.compile(m);
+        var otherCodec = new SnapshotCodec(other);
+        var otherInstance = other.newInstance().setArgument("tr", "day", DayOfWeek.MONDAY);
+        assertThrows(IllegalArgumentException.class, () -> otherCodec.snapshot(otherInstance));
+        otherCodec.register(DayOfWeek.class, ValueCodec.ofEnum(DayOfWeek.class));
+        assertEquals(DayOfWeek.MONDAY, otherCodec.restore(otherCodec.snapshot(otherInstance)).getArgument("tr", "day"));
+
+        assertNotEquals(def.getFingerprint(), other.getFingerprint());
+        assertEquals(def.getFingerprint(), CompiledStateMachine.compile(createMachine()).getFingerprint());
+        assertThrows(IllegalArgumentException.class, () -> codec.restore(otherCodec.snapshot(otherInstance)));
+        assertThrows(IllegalArgumentException.class, () -> codec.snapshot(otherInstance));
+        assertThrows(IllegalArgumentException.class, () -> codec.restore(new byte[3]));
+
+        var snapshot = codec.snapshot(instance);
+        snapshot[4] = 100; // no such state
+        assertThrows(IllegalArgumentException.class, () -> codec.restore(snapshot));
+
+        var writer = new SnapshotWriter();
+        writer.writeSignedVarLong(-1L).writeSignedVarLong(Long.MIN_VALUE).writeVarInt(300).writeString("ü");
+        assertEquals(1 + 10 + 2 + 3, writer.size());
+        var reader = new SnapshotReader(writer.toByteArray());
+        assertEquals(-1L, reader.readSignedVarLong());
+        assertEquals(Long.MIN_VALUE, reader.readSignedVarLong());
+        assertEquals(300, reader.readVarInt());
+        assertEquals("ü", reader.readString());
+    }
+}
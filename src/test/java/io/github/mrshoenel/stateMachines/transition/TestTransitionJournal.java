@@ -0,0 +1,243 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.journal.JournalingStateMachine;
+import io.github.mrshoenel.stateMachines.journal.TransitionJournal;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTransitionJournal {
+
+    /**
+     * m -start-> s1 -next(amount)-> s2 -back-> s1
+     */
+    private static BaseStateMachine createMachine() {
+        var m = new BaseStateMachine("m");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        m.defineState(s1).defineState(s2);
+
+        m.setTransition(new BaseTransition("start", m, s1));
+        var next = new BaseTransition("next", s1, s2);
+        next.setArgument(new BaseTransitionArgument<>(Long.class, "amount"));
+        s1.setTransition(next);
+        s2.setTransition(new BaseTransition("back", s2, s1));
+        return m;
+    }
+
+    private final List<Path> directories = new ArrayList<>();
+
+    private Path createDirectory() throws Exception {
+        var directory = Files.createTempDirectory("journal");
+        this.directories.add(directory);
+        return directory;
+    }
+
+    @AfterEach
+    public void deleteDirectories() throws Exception {
+        for (var directory : this.directories) {
+            try (var files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testRebuildInstances() throws Exception {
+        var directory = createDirectory();
+        var def = CompiledStateMachine.compile(createMachine());
+        var codec = new SnapshotCodec(def);
+        var start = def.getTransitionKey("start");
+        var next = def.getTransitionKey("next");
+        var back = def.getTransitionKey("back");
+        var amount = def.getArgumentKey("next", "amount");
+
+        var instances = new HashMap<Long, StateMachineInstance>();
+        try (var journal = new TransitionJournal(directory, codec, 256, 0L)) {
+            for (long id = 0L; id < 10L; id++) {
+                var instance = def.newInstance().transition(start);
+                journal.append(id, start, instance);
+                for (int i = 0; i < id; i++) {
+                    instance.setArgument(amount, id * 1000L + i).transition(next);
+                    journal.append(id, next, instance);
+                    instance.transition(back);
+                    journal.append(id, back, instance);
+                }
+                instances.put(id, instance);
+            }
+
+            assertEquals(100L, journal.getAppendedCount());
+            assertTrue(journal.getSegmentCount() > 1);
+            assertEquals(100L, journal.sync());
+            assertEquals(100L, journal.getDurableCount());
+            journal.sync(50L); // covered already
+            assertEquals(1L, journal.getForceCount());
+        }
+
+        var rebuilt = TransitionJournal.rebuild(directory, codec);
+        assertEquals(instances.size(), rebuilt.size());
+        for (var entry : instances.entrySet()) {
+            assertEquals(entry.getValue().toString(), rebuilt.get(entry.getKey()).toString());
+            if (entry.getKey() > 0L) {
+                assertEquals(entry.getValue().getArgument(amount), rebuilt.get(entry.getKey()).getArgument(amount));
+            }
+        }
+
+        final var timestamps = new ArrayList<Long>();
+        assertEquals(100L, TransitionJournal.replay(directory, codec, record -> timestamps.add(record.getTimestamp())));
+        assertTrue(timestamps.get(0) <= timestamps.get(99));
+
+        // Reopening starts a new segment; another definition cannot replay:
+        try (var journal = new TransitionJournal(directory, codec, 256, 0L)) {
+            journal.append(99L, start, def.newInstance().transition(start));
+        }
+        assertEquals(101L, TransitionJournal.replay(directory, codec, record -> { }));
+        var other = new SnapshotCodec(CompiledStateMachine.compile(new BaseStateMachine("m")));
+        assertThrows(IllegalArgumentException.class, () -> TransitionJournal.replay(directory, other, record -> { }));
+    }
+
+    @Test
+    public void testReplayDoesNotEvaluateGuards() throws Exception {
+        var directory = createDirectory();
+        var allowed = new AtomicBoolean(true);
+        var machine = createMachine();
+        var s1 = (BaseState) machine.getAllDefinedTransitions().get("start").getToState();
+        var s2 = (BaseState) s1.getAllDefinedTransitions().get("next").getToState();
+        s2.setTransition(new BaseTransition("guarded", s2, s1) {
+            @Override
+            public boolean isAllowed() {
+                return allowed.get();
+            }
+        });
+        var def = CompiledStateMachine.compile(machine);
+        var codec = new SnapshotCodec(def);
+
+        try (var journal = new TransitionJournal(directory, codec, 256, 0L)) {
+            var instance = def.newInstance().transition("start").setArgument("next", "amount", 1L).transition("next");
+            journal.append(0L, def.getTransitionKey("start"), instance);
+            journal.append(0L, def.getTransitionKey("next"), instance);
+            instance.transition("guarded");
+            journal.append(0L, def.getTransitionKey("guarded"), instance);
+        }
+
+        // The guard disallows the transition at replay time, but it was allowed when recorded:
+        allowed.set(false);
+        assertEquals("s1", TransitionJournal.rebuild(directory, codec).get(0L).getCurrentState().getName());
+        assertThrows(IllegalTransitionException.class, () -> def.newInstance().transition("start")
+            .setArgument("next", "amount", 1L).transition("next").transition("guarded"));
+    }
+
+    @Test
+    public void testJournalingBlackBox() throws Exception {
+        var directory = createDirectory();
+        var codec = new SnapshotCodec(CompiledStateMachine.compile(createMachine()));
+
+        var machine = createMachine();
+        try (var journal = new TransitionJournal(directory, codec, TransitionJournal.DEFAULT_SEGMENT_BYTES, 1L)) {
+            var box = new JournalingStateMachine<>(machine, journal, 7L);
+            box.transition("start").transition("next", Map.of("amount", 42L)).transition("back");
+            // Values passed along with a transition only apply to that execution:
+            assertEquals(0, box.applyAll(List.of("next")));
+            box.transition("next", Map.of("amount", 42L));
+            assertEquals(4L, box.getLastSequence());
+
+            // The committer syncs in the background:
+            for (int i = 0; i < 1000 && journal.getDurableCount() < 4L; i++) {
+                Thread.sleep(5L);
+            }
+            assertEquals(4L, journal.getDurableCount());
+        }
+
+        var replayed = createMachine();
+        var target = new BlackBoxStateMachine<>(replayed);
+        final var ids = new AtomicLong();
+        TransitionJournal.replay(directory, codec, record -> {
+            ids.addAndGet(record.getInstanceId());
+            if (record.getName().equals("next")) {
+                assertEquals(1, record.getArgumentCount());
+                assertEquals("amount", record.getArgumentKey(0).getName());
+                assertEquals(42L, record.getArgumentValue(0));
+            }
+            record.applyTo(target);
+        });
+        assertEquals(28L, ids.get());
+        assertEquals(machine.getCurrentStateDeep().getName(), replayed.getCurrentStateDeep().getName());
+    }
+
+    @Test
+    public void testJournalingRecordsBeforeExecuting() throws Exception {
+        var directory = createDirectory();
+        var codec = new SnapshotCodec(CompiledStateMachine.compile(createMachine()));
+
+        var machine = createMachine();
+        var journal = new TransitionJournal(directory, codec, TransitionJournal.DEFAULT_SEGMENT_BYTES, 0L);
+        var box = new JournalingStateMachine<>(machine, journal, 1L);
+        box.transition("start");
+        var s1 = machine.getCurrentState();
+
+        // Transitions executed directly are recorded, too:
+        machine.getAllDefinedTransitions().get("start").transition();
+        assertEquals(2L, box.getLastSequence());
+        assertEquals(2L, journal.getAppendedCount());
+
+        // A transition that cannot be recorded is not executed:
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> box.transition("next", Map.of("amount", 1L)));
+        assertSame(s1, machine.getCurrentState());
+
+        box.detach().transition("next", Map.of("amount", 1L));
+        assertEquals("s2", machine.getCurrentState().getName());
+        assertEquals(2L, box.getLastSequence());
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        var directory = createDirectory();
+        var def = CompiledStateMachine.compile(createMachine());
+        var codec = new SnapshotCodec(def);
+        var start = def.getTransitionKey("start");
+
+        try (var journal = new TransitionJournal(directory, codec, 4096, 0L)) {
+            var threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++) {
+                final long id = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        var instance = def.newInstance().transition(start);
+                        for (int i = 0; i < 1000; i++) {
+                            journal.sync(journal.append(id, start, instance));
+                        }
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (var thread : threads) {
+                thread.join();
+            }
+            assertEquals(4000L, journal.getDurableCount());
+            assertTrue(journal.getForceCount() <= 4000L);
+        }
+
+        assertEquals(4000L, TransitionJournal.replay(directory, codec, record -> { }));
+    }
+}
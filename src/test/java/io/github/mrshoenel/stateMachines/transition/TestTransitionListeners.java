@@ -0,0 +1,105 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.ConcurrentStateMachine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTransitionListeners {
+    private final List<String> events = new ArrayList<>();
+
+    private TransitionListener global;
+
+    @AfterEach
+    public void removeGlobal() {
+        if (this.global != null) {
+            TransitionListeners.removeGlobal(this.global);
+        }
+    }
+
+    private TransitionListener recorder(final String prefix) {
+        return new TransitionListener() {
+            @Override
+            public void beforeLeave(final Transition transition) {
+                events.add(prefix + ":before:" + transition.getName());
+            }
+
+            @Override
+            public void afterEnter(final Transition transition) {
+                events.add(prefix + ":after:" + transition.getName());
+            }
+
+            @Override
+            public void onRejected(final Transition transition, final IllegalTransitionException reason) {
+                events.add(prefix + ":rejected:" + transition.getName());
+            }
+        };
+    }
+
+    @Test
+    public void testRegistrationLevels() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var m2 = new BaseStateMachine("m2");
+        var s1 = new BaseState("s1") {
+            @Override
+            public void leave(final Transition usingTransition) {
+                events.add("leave:" + this.getName());
+            }
+        };
+        m1.addTransitionListener(this.recorder("m1"));
+        m1.defineState(s1).defineState(m2);
+        var s3 = new BaseState("s3");
+        m2.defineState(s3);
+
+        var tr1 = new BaseTransition("tr1", s1, m2);
+        var tr2 = new BaseTransition("tr2", m2, s3);
+        tr1.transition();
+        assertEquals(List.of("m1:before:tr1", "leave:s1", "m1:after:tr1"), this.events);
+
+        this.events.clear();
+        this.global = this.recorder("global");
+        TransitionListeners.addGlobal(this.global);
+        m2.addTransitionListener(this.recorder("m2"));
+        tr2.addListener(this.recorder("tr2"));
+        tr2.transition();
+        assertEquals(List.of("global:before:tr2", "m1:before:tr2", "m2:before:tr2", "tr2:before:tr2",
+            "global:after:tr2", "m1:after:tr2", "m2:after:tr2", "tr2:after:tr2"), this.events);
+
+        this.events.clear();
+        assertTrue(TransitionListeners.removeGlobal(this.global));
+        assertFalse(TransitionListeners.removeGlobal(this.global));
+        assertTrue(m1.removeTransitionListener(m1.getTransitionListeners().get(0)));
+        tr2.transition();
+        assertEquals(List.of("m2:before:tr2", "tr2:before:tr2", "m2:after:tr2", "tr2:after:tr2"), this.events);
+        assertSame(TransitionListeners.of(tr2), TransitionListeners.of(tr2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRejectionsAndConcurrentMachine() throws Exception {
+        var machine = new ConcurrentStateMachine("m");
+        var s1 = new BaseState("s1");
+        machine.defineState(s1);
+        var tr = new BaseTransition("tr", machine, s1);
+        tr.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        machine.addTransitionListener(this.recorder("m"));
+
+        assertThrows(IllegalTransitionException.class, tr::transition);
+        assertThrows(IllegalTransitionException.class, () -> machine.compareAndTransition(machine, tr));
+        assertEquals(List.of("m:rejected:tr", "m:rejected:tr"), this.events);
+
+        this.events.clear();
+        ((BaseTransitionArgument<Integer>) tr.getTransitionArguments().get("int")).setValue(1);
+        assertTrue(machine.compareAndTransition(machine, tr));
+        assertFalse(machine.compareAndTransition(machine, tr));
+        assertSame(s1, machine.getCurrentState());
+        assertEquals(List.of("m:before:tr", "m:after:tr"), this.events);
+    }
+}
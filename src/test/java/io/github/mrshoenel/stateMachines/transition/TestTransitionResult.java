@@ -0,0 +1,111 @@
+package io.github.mrshoenel.stateMachines.transition;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTransitionResult {
+
+    private static class SwitchedTransition extends BaseTransition {
+        final AtomicBoolean allowed = new AtomicBoolean(true);
+
+        SwitchedTransition(final String name, final State from, final State to) {
+            super(name, from, to);
+        }
+
+        @Override
+        public boolean isAllowed() {
+            return this.allowed.get();
+        }
+    }
+
+    @Test
+    public void testTransitionAndBlackBox() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        var s2 = new BaseState("s2");
+        var orphan = new BaseState("orphan");
+        m1.defineState(s1).defineState(s2);
+        m1.setTransition(new BaseTransition("start", m1, s1));
+        var tr = new SwitchedTransition("tr", s1, s2);
+        var arg = new IntTransitionArgument("int");
+        tr.setArgument(arg);
+        s1.setTransition(tr);
+        s1.setTransition(new BaseTransition("away", s1, orphan));
+
+        var rejections = new AtomicInteger();
+        tr.addListener(new TransitionListener() {
+            @Override
+            public void onRejected(final Transition transition, final IllegalTransitionException reason) {
+                rejections.incrementAndGet();
+            }
+        });
+
+        assertEquals(TransitionResult.MISSING_ARGUMENT, tr.tryTransition());
+        tr.allowed.set(false);
+        assertEquals(TransitionResult.NOT_ALLOWED, tr.tryTransition());
+        assertEquals(2, rejections.get());
+        tr.allowed.set(true);
+        try (var frame = ArgumentFrame.acquire(tr)) {
+            assertEquals(TransitionResult.MISSING_ARGUMENT, TransitionResult.check(tr, frame));
+            assertEquals(TransitionResult.OK, tr.tryTransitionWith(frame.setInt(arg, 1)));
+        }
+        assertSame(s2, m1.getCurrentState());
+
+        m1.setCurrentState(m1);
+        var blackBox = new BlackBoxStateMachine<>(m1);
+        assertEquals(TransitionResult.NO_SUCH_TRANSITION, blackBox.tryTransition("tr"));
+        assertEquals(TransitionResult.OK, blackBox.tryTransition("start"));
+        assertEquals(TransitionResult.MISSING_ARGUMENT, blackBox.tryTransition("tr"));
+        // Transitions to orphans are not executed:
+        assertEquals(TransitionResult.ORPHAN_STATE, blackBox.tryTransition("away"));
+        assertSame(s1, m1.getCurrentState());
+        assertEquals(0, blackBox.applyAll(List.of("away", "tr")));
+        assertSame(s1, m1.getCurrentState());
+
+        arg.setInt(2);
+        assertTrue(blackBox.tryTransition("tr").isOk());
+        assertSame(s2, m1.getCurrentState());
+    }
+
+    @Test
+    public void testCompiledInstanceAndStacklessExceptions() throws Exception {
+        var m1 = new BaseStateMachine("m1");
+        var s1 = new BaseState("s1");
+        m1.defineState(s1);
+        m1.setTransition(new BaseTransition("start", m1, s1));
+        var tr = new SwitchedTransition("tr", s1, m1);
+        tr.setArgument(new BaseTransitionArgument<>(Integer.class, "int"));
+        s1.setTransition(tr);
+        s1.setTransition(new BaseTransition("away", s1, new BaseState("orphan")));
+
+        var def = CompiledStateMachine.compile(m1);
+        var instance = def.newInstance();
+        var trKey = def.getTransitionKey("tr");
+        assertEquals(TransitionResult.NO_SUCH_TRANSITION, instance.tryTransition(trKey));
+        assertEquals(TransitionResult.OK, instance.tryTransition(def.getTransitionKey("start")));
+        assertEquals(TransitionResult.MISSING_ARGUMENT, instance.tryTransition(trKey));
+        assertEquals(TransitionResult.ORPHAN_STATE, instance.tryTransition(def.getTransitionKey("away")));
+        instance.setArgument("tr", "int", 1);
+        tr.allowed.set(false);
+        assertEquals(TransitionResult.NOT_ALLOWED, instance.tryTransition(trKey));
+        assertThrows(IllegalTransitionException.class, () -> instance.transition(trKey));
+        tr.allowed.set(true);
+        assertEquals(TransitionResult.OK, instance.tryTransition(trKey));
+        assertSame(m1, instance.getCurrentState());
+
+        var ex = new IllegalTransitionException("rejected");
+        assertEquals(StateMachineArtifactException.STACKLESS, ex.getStackTrace().length == 0);
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.BaseTransitionArgument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks setting and reading arguments using {@link BaseTransitionArgument},
+ * as well as executing a transition that requires an argument.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArgumentBenchmark {
+
+    private BaseTransitionArgument<Integer> argument;
+
+    private BaseTransition transition;
+
+    private int value;
+
+    @Setup
+    public void setup() {
+        this.argument = new BaseTransitionArgument<>(Integer.class, "amount");
+        this.transition = new BaseTransition("bet", new BaseState("s1"), new BaseState("s2"));
+        this.transition.setArgument(this.argument);
+    }
+
+    @Benchmark
+    public Integer setAndGetValue() throws NoValueSetException {
+        this.argument.setValue(this.value++);
+        return this.argument.getValue();
+    }
+
+    @Benchmark
+    public void setValueAndTransition() throws IllegalTransitionException {
+        this.argument.setValue(this.value++);
+        this.transition.transition();
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.BaseTransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Executes a transition with two arguments, either by setting the values on its
+ * (shared) arguments and calling {@link Transition#transition()}, or by passing
+ * them in a pooled {@link ArgumentFrame} to {@link Transition#transitionWith(ArgumentFrame)}.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ArgumentFrameBenchmark {
+    private BaseTransition transition;
+
+    private BaseTransitionArgument<Integer> id;
+
+    private BaseTransitionArgument<String> label;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        this.id = new BaseTransitionArgument<>(Integer.class, "id");
+        this.label = new BaseTransitionArgument<>(String.class, "label");
+        this.transition = new BaseTransition("tr", new BaseState("s1"), new BaseState("s2"));
+        this.transition.setArgument(this.id).setArgument(this.label);
+    }
+
+    @Benchmark
+    public int sharedArguments() throws IllegalTransitionException {
+        this.id.setValue(this.index++);
+        this.label.setValue("label");
+        this.transition.transition();
+        return this.index;
+    }
+
+    @Benchmark
+    public int argumentFrame() throws IllegalTransitionException, NoSuchArgumentException {
+        try (final var frame = ArgumentFrame.acquire(this.transition)) {
+            this.transition.transitionWith(frame.set(this.id, this.index++).set(this.label, "label"));
+        }
+        return this.index;
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks with the GC/allocation profiler enabled and writes the results
+ * as JSON to "jmh-result.json". All regular JMH command-line options are supported,
+ * e.g. a regular expression to select benchmarks, or "-p states=16" to restrict a
+ * parameter.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+public class BenchmarkRunner {
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final var options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result.json")
+            .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.ColumnarDfa;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Advances a population of DFA instances by a stream of symbols, using the {@link
+ * ColumnarDfa}, one {@link StateMachineInstance} per instance, or one machine per
+ * instance and {@link io.github.mrshoenel.stateMachines.transition.Transition#transition()}.
+ * The scores are per population and stream. On Java 17 and newer, pass {@code
+ * -jvmArgsAppend --add-modules=jdk.incubator.vector} to measure the stepping of the
+ * {@link ColumnarDfa} that uses the Vector API (see {@link ColumnarDfa#isVectorized()}).
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnarDfaBenchmark {
+    private static final int STATES = 16, TRANSITIONS = 4, SYMBOLS = 64;
+
+    @Param({ "1024", "16384" })
+    public int population;
+
+    private ColumnarDfa dfa;
+
+    private int[] states;
+
+    private StateMachineInstance[] instances;
+
+    private BaseStateMachine[] machines;
+
+    private int[] symbols;
+
+    private String[] names;
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchTransitionException {
+        final var definition = CompiledStateMachine.compile(Machines.ring(STATES, TRANSITIONS, false));
+        this.dfa = ColumnarDfa.compile(definition);
+        this.states = this.dfa.newPopulation(this.population);
+
+        this.instances = new StateMachineInstance[this.population];
+        this.machines = new BaseStateMachine[this.population];
+        for (int i = 0; i < this.population; i++) {
+            this.instances[i] = definition.newInstance();
+            this.machines[i] = Machines.ring(STATES, TRANSITIONS, false);
+            this.machines[i].getAllDefinedTransitions().get("start").transition();
+        }
+
+        // Every state of the ring has the same transitions, so any stream is valid.
+        final var random = new Random(42);
+        this.symbols = new int[SYMBOLS];
+        this.names = new String[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            this.names[i] = "t" + random.nextInt(TRANSITIONS);
+            this.symbols[i] = definition.getTransitionKey(this.names[i]).getId();
+        }
+        final int start = definition.getTransitionKey("start").getId();
+        this.dfa.step(this.states, start);
+        for (final var instance : this.instances) {
+            instance.applyAll(new int[] { start });
+        }
+    }
+
+    @Benchmark
+    public int[] columnar() {
+        this.dfa.run(this.states, this.symbols);
+        return this.states;
+    }
+
+    @Benchmark
+    public StateMachineInstance[] instances() {
+        for (final var instance : this.instances) {
+            instance.applyAll(this.symbols);
+        }
+        return this.instances;
+    }
+
+    @Benchmark
+    public BaseStateMachine[] transitions() throws IllegalTransitionException {
+        for (final var machine : this.machines) {
+            for (final var name : this.names) {
+                machine.getCurrentState().getAllDefinedTransitions().get(name).transition();
+            }
+        }
+        return this.machines;
+    }
+}
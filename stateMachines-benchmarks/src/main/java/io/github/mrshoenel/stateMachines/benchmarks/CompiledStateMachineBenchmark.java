@@ -0,0 +1,64 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.compiled.TransitionKey;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks executing transitions on instances of a {@link CompiledStateMachine},
+ * resolving transitions by name or using interned {@link TransitionKey}s. Compare
+ * with {@link TransitionBenchmark#blackBoxTransition()}.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompiledStateMachineBenchmark {
+
+    @Param({ "16", "256" })
+    public int states;
+
+    @Param({ "1", "8" })
+    public int transitions;
+
+    private StateMachineInstance instance;
+
+    private TransitionKey key;
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchTransitionException {
+        final var definition = CompiledStateMachine.compile(Machines.ring(this.states, this.transitions, false));
+        this.instance = definition.newInstance().transition("start");
+        this.key = definition.getTransitionKey("t0");
+    }
+
+    @Benchmark
+    public StateMachineInstance transitionByName() throws IllegalTransitionException, NoSuchTransitionException {
+        return this.instance.transition("t0");
+    }
+
+    @Benchmark
+    public StateMachineInstance transitionByKey() throws IllegalTransitionException, NoSuchTransitionException {
+        return this.instance.transition(this.key);
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.ConcurrentStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Lets several threads race on one shared machine that toggles between two states.
+ * Compares a {@link ConcurrentStateMachine} (lock-free compare-and-transition) with
+ * a {@link BaseStateMachine} that is guarded by a coarse lock.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    private ConcurrentStateMachine concurrent;
+
+    private BaseStateMachine locked;
+
+    private final Map<State, Transition> concurrentNext = new HashMap<>();
+
+    private final Map<State, Transition> lockedNext = new HashMap<>();
+
+    @Setup
+    public void setup() throws NoSuchStateException {
+        this.concurrent = toggle(new ConcurrentStateMachine("concurrent"), this.concurrentNext);
+        this.locked = toggle(new BaseStateMachine("locked"), this.lockedNext);
+    }
+
+    /**
+     * Returns true if this thread won the race for the state it observed.
+     */
+    @Benchmark
+    public boolean compareAndTransition() throws NoSuchStateException, IllegalTransitionException {
+        final var expected = this.concurrent.getCurrentState();
+        return this.concurrent.compareAndTransition(expected, this.concurrentNext.get(expected));
+    }
+
+    @Benchmark
+    public State synchronizedTransition() throws IllegalTransitionException {
+        synchronized (this.locked) {
+            this.lockedNext.get(this.locked.getCurrentState()).transition();
+            return this.locked.getCurrentState();
+        }
+    }
+
+    /**
+     * a &lt;-&gt; b; the machine initially points at a.
+     */
+    private static <T extends BaseStateMachine> T toggle(final T machine, final Map<State, Transition> next)
+        throws NoSuchStateException
+    {
+        final var a = new BaseState("a");
+        final var b = new BaseState("b");
+        machine.defineState(a).defineState(b).setCurrentState(a);
+
+        next.put(a, new BaseTransition("ab", a, b));
+        next.put(b, new BaseTransition("ba", b, a));
+        return machine;
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks {@link BaseStateMachine#getCurrentStateDeep()} and {@link
+ * BaseStateMachine#isActive(io.github.mrshoenel.stateMachines.state.State)} at
+ * various nesting depths, with and without maintaining the active configuration
+ * ({@link BaseStateMachine#enableActivePath()}). Executing a transition in the
+ * innermost machine shows the cost of maintaining it.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeepStateBenchmark {
+
+    @Param({ "1", "2", "4", "6", "8" })
+    public int depth;
+
+    @Param({ "false", "true" })
+    public boolean activePath;
+
+    private BaseStateMachine machine;
+
+    private BaseState leaf;
+
+    private Transition[] toggle;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        this.machine = Machines.nested(this.depth);
+        this.leaf = (BaseState) this.machine.getCurrentStateDeep();
+        final var other = new BaseState("other");
+        this.leaf.getBelongsToMachine().defineState(other);
+        this.toggle = new Transition[] {
+            new BaseTransition("away", this.leaf, other), new BaseTransition("back", other, this.leaf) };
+
+        if (this.activePath) {
+            this.machine.enableActivePath();
+        }
+    }
+
+    @Benchmark
+    public Object getCurrentStateDeep() {
+        return this.machine.getCurrentStateDeep();
+    }
+
+    @Benchmark
+    public boolean isActive() {
+        return this.machine.isActive(this.leaf);
+    }
+
+    @Benchmark
+    public Object transitionThenGetCurrentStateDeep() throws IllegalTransitionException {
+        this.toggle[this.index++ & 1].transition();
+        return this.machine.getCurrentStateDeep();
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.GuardCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Lists the transitions of a {@link BlackBoxStateMachine} and then executes one of
+ * them, as a request would, on a ring whose guards perform the given amount of work.
+ * With a {@link GuardCache}, each guard is evaluated once per step.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class GuardCacheBenchmark {
+    @Param({ "0", "256" })
+    public int guardWork;
+
+    @Param({ "false", "true" })
+    public boolean cached;
+
+    private BlackBoxStateMachine<BaseStateMachine> blackBox;
+
+    /**
+     * A guard that spins for the given amount of rounds.
+     */
+    private static final class ExpensiveTransition extends BaseTransition {
+        private final int work;
+
+        ExpensiveTransition(final String name, final State from, final State to, final int work) {
+            super(name, from, to);
+            this.work = work;
+        }
+
+        @Override
+        public boolean isAllowed() {
+            long x = this.work;
+            for (int i = 0; i < this.work; i++) {
+                x = x * 6364136223846793005L + 1442695040888963407L;
+            }
+            return x != 1L;
+        }
+    }
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException {
+        final int states = 16, transitions = 4;
+        final var machine = new BaseStateMachine("ring");
+        final var ring = new BaseState[states];
+        for (int i = 0; i < states; i++) {
+            ring[i] = new BaseState("s" + i);
+            machine.defineState(ring[i]);
+        }
+        machine.setTransition(new BaseTransition("start", machine, ring[0]));
+        for (int i = 0; i < states; i++) {
+            for (int k = 0; k < transitions; k++) {
+                ring[i].setTransition(new ExpensiveTransition(
+                    "t" + k, ring[i], ring[(i + k + 1) % states], this.guardWork));
+            }
+        }
+
+        if (this.cached) {
+            machine.enableGuardCache();
+        }
+        this.blackBox = new BlackBoxStateMachine<>(machine);
+        this.blackBox.transition("start");
+    }
+
+    @Benchmark
+    public BlackBoxStateMachine<BaseStateMachine> listThenTransition()
+        throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException
+    {
+        if (!this.blackBox.getTransitions().get("t0").isAllowed()) {
+            throw new IllegalStateException();
+        }
+        return this.blackBox.transition("t0");
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.HierarchyIndex;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks {@link BlackBoxStateMachine#transition(String)} in nested machines,
+ * which follows the {@link HierarchyIndex.Route} of each transition: between two
+ * states of the innermost machine, and between the innermost machine and a state
+ * of the top-level machine. Also measures building the index.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HierarchyBenchmark {
+
+    @Param({ "1", "4", "8" })
+    public int depth;
+
+    private BaseStateMachine machine;
+
+    private BlackBoxStateMachine<BaseStateMachine> blackBox;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        this.machine = Machines.nested(this.depth);
+        final var leaf = (BaseState) this.machine.getCurrentStateDeep();
+        final var other = new BaseState("other");
+        final var top = new BaseState("top");
+        leaf.getBelongsToMachine().defineState(other);
+        this.machine.defineState(top);
+
+        leaf.setTransition(new BaseTransition("sibling", leaf, other));
+        other.setTransition(new BaseTransition("sibling", other, leaf));
+        leaf.setTransition(new BaseTransition("across", leaf, top));
+        top.setTransition(new BaseTransition("across", top, leaf));
+
+        this.blackBox = new BlackBoxStateMachine<>(this.machine);
+    }
+
+    @Benchmark
+    public BlackBoxStateMachine<BaseStateMachine> blackBoxSibling()
+        throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException
+    {
+        return this.blackBox.transition("sibling");
+    }
+
+    @Benchmark
+    public BlackBoxStateMachine<BaseStateMachine> blackBoxAcrossLevels()
+        throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException
+    {
+        return this.blackBox.transition("across");
+    }
+
+    @Benchmark
+    public HierarchyIndex buildIndex() {
+        return HierarchyIndex.of(this.machine);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.compiled.TransitionKey;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import io.github.mrshoenel.stateMachines.journal.TransitionJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+/**
+ * Appends records to a {@link TransitionJournal} (without syncing, and syncing every
+ * 64th record), and replays a journal of {@link #RECORDS} records. The journal lives
+ * in a temporary directory, so that the results depend on the local disk.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JournalBenchmark {
+    private static final int RECORDS = 100_000;
+
+    private Path directory, replayDirectory;
+
+    private SnapshotCodec codec;
+
+    private TransitionJournal journal;
+
+    private StateMachineInstance instance;
+
+    private TransitionKey key;
+
+    private long sequence;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException, StateMachineArtifactException {
+        this.codec = new SnapshotCodec(CompiledStateMachine.compile(Machines.ring(16, 4, false)));
+        this.directory = Files.createTempDirectory("journal");
+        this.journal = new TransitionJournal(this.directory, this.codec);
+        this.instance = this.codec.getDefinition().newInstance();
+        this.key = this.codec.getDefinition().getTransitionKey("t0");
+
+        this.replayDirectory = Files.createTempDirectory("replay");
+        try (final var journal = new TransitionJournal(this.replayDirectory, this.codec)) {
+            for (int i = 0; i < RECORDS; i++) {
+                journal.append(i & 1023, this.key, this.instance);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        this.journal.close();
+        for (final var path : new Path[] { this.directory, this.replayDirectory }) {
+            try (final Stream<Path> files = Files.walk(path)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return this.journal.append(++this.sequence & 1023, this.key, this.instance);
+    }
+
+    @Benchmark
+    public long appendAndSyncEvery64() throws IOException {
+        final long sequence = this.journal.append(++this.sequence & 1023, this.key, this.instance);
+        if ((sequence & 63) == 0) {
+            this.journal.sync(sequence);
+        }
+        return sequence;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public long replay() throws IOException, StateMachineArtifactException {
+        return TransitionJournal.replay(this.replayDirectory, this.codec, record -> { });
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledNfa;
+import io.github.mrshoenel.stateMachines.compiled.LazyDfa;
+import io.github.mrshoenel.stateMachines.compiled.NfaRun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Runs a random stream of symbols through the NFA of {@link Machines#kthFromLast(int)},
+ * either by simulating it ({@link NfaRun}) or with a {@link LazyDfa}. With k = 4, all
+ * 2^k DFA states fit into either cache; with k = 12, the small cache thrashes. The
+ * scores are per stream.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LazyDfaBenchmark {
+    private static final int SYMBOLS = 4096;
+
+    @Param({ "4", "12" })
+    public int k;
+
+    @Param({ "64", "65536" })
+    public int capacity;
+
+    private NfaRun run;
+
+    private LazyDfa dfa;
+
+    private int[] symbols;
+
+    @Setup
+    public void setup() {
+        final var nfa = CompiledNfa.compile(Machines.kthFromLast(this.k));
+        this.run = nfa.newRun();
+        this.dfa = new LazyDfa(nfa, this.capacity);
+
+        final var random = new Random(42);
+        this.symbols = new int[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            this.symbols[i] = random.nextInt(nfa.getLabels().size());
+        }
+    }
+
+    @Benchmark
+    public boolean simulation() {
+        this.run.run(this.symbols);
+        return this.run.isAccepting();
+    }
+
+    @Benchmark
+    public boolean lazyDfa() {
+        this.dfa.run(this.symbols);
+        return this.dfa.isAccepting();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Executes transitions ({@link Transition#transition()}) of a ring whose machine has
+ * the given amount of {@link TransitionListener}s registered.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListenerBenchmark {
+    @Param({ "0", "1", "4" })
+    public int listeners;
+
+    private Transition[] transitions;
+
+    private int index;
+
+    private long notified;
+
+    @Setup
+    public void setup() {
+        final var machine = Machines.ring(16, 2, false);
+        for (int i = 0; i < this.listeners; i++) {
+            machine.addTransitionListener(new TransitionListener() {
+                @Override
+                public void afterEnter(final Transition transition) {
+                    notified++;
+                }
+            });
+        }
+
+        final var states = new ArrayList<>(machine.getDefinedStates());
+        states.remove(machine);
+        this.transitions = states.stream().flatMap(s -> s.getAllDefinedTransitions().values().stream())
+            .toArray(Transition[]::new);
+    }
+
+    @Benchmark
+    public long transition() throws IllegalTransitionException {
+        this.transitions[(this.index++ & Integer.MAX_VALUE) % this.transitions.length].transition();
+        return this.notified;
+    }
+}
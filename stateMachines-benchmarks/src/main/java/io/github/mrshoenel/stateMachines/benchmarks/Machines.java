@@ -0,0 +1,114 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.state.State;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseLabeledTransition;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+
+
+/**
+ * Builds the machines used throughout the benchmarks.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+final class Machines {
+    private Machines() { }
+
+    /**
+     * Creates a machine with the given amount of states (s0, s1, ...) arranged in a
+     * ring. Each state has the given amount of transitions (t0, t1, ...), where the
+     * transition tk of state si leads to state s((i + k + 1) % states). The machine
+     * itself has a transition "start" that leads to s0.
+     *
+     * @param states The amount of states.
+     * @param transitions The amount of transitions per state.
+     * @param guarded If true, the transitions override {@link Transition#isAllowed()}.
+     * @return {@link BaseStateMachine}
+     */
+    static BaseStateMachine ring(final int states, final int transitions, final boolean guarded) {
+        final var machine = new BaseStateMachine("ring");
+        final var ring = new BaseState[states];
+        for (int i = 0; i < states; i++) {
+            ring[i] = new BaseState("s" + i);
+            machine.defineState(ring[i]);
+        }
+
+        machine.setTransition(transition("start", machine, ring[0], guarded));
+        for (int i = 0; i < states; i++) {
+            for (int k = 0; k < transitions; k++) {
+                ring[i].setTransition(transition("t" + k, ring[i], ring[(i + k + 1) % states], guarded));
+            }
+        }
+
+        return machine;
+    }
+
+    /**
+     * Creates a machine that nests the given amount of machines, and a single leaf
+     * state in the innermost machine. All machines point at their nested machine
+     * (or leaf), so that {@link BaseStateMachine#getCurrentStateDeep()} has to go
+     * all the way down.
+     *
+     * @param depth The amount of nested machines (at least 1, the top-level machine).
+     * @return {@link BaseStateMachine}
+     */
+    static BaseStateMachine nested(final int depth) {
+        try {
+            final var root = new BaseStateMachine("m0");
+            var machine = root;
+            for (int i = 1; i < depth; i++) {
+                final var nested = new BaseStateMachine("m" + i);
+                machine.defineState(nested).setCurrentState(nested);
+                machine = nested;
+            }
+
+            final State leaf = new BaseState("leaf");
+            machine.defineState(leaf).setCurrentState(leaf);
+            return root;
+        } catch (NoSuchStateException nssEx) {
+            throw new Error(nssEx);
+        }
+    }
+
+    /**
+     * Creates a machine that, compiled as NFA, accepts all words over {a, b} whose k-th
+     * symbol from the end is an a. The smallest equivalent DFA has 2^k states.
+     *
+     * @param k The position of the a, counted from the end (at least 1).
+     * @return {@link BaseStateMachine}
+     */
+    static BaseStateMachine kthFromLast(final int k) {
+        final var machine = new BaseStateMachine("kthFromLast");
+        final var q = new BaseState[k + 1];
+        for (int i = 0; i <= k; i++) {
+            q[i] = new BaseState("q" + i);
+            machine.defineState(q[i]);
+        }
+
+        machine.setTransition(new BaseLabeledTransition("start", null, machine, q[0]));
+        q[0].setTransition(new BaseLabeledTransition("a-loop", "a", q[0], q[0]));
+        q[0].setTransition(new BaseLabeledTransition("b-loop", "b", q[0], q[0]));
+        q[0].setTransition(new BaseLabeledTransition("a-next", "a", q[0], q[1]));
+        for (int i = 1; i < k; i++) {
+            q[i].setTransition(new BaseLabeledTransition("a-next", "a", q[i], q[i + 1]));
+            q[i].setTransition(new BaseLabeledTransition("b-next", "b", q[i], q[i + 1]));
+        }
+
+        return machine;
+    }
+
+    private static Transition transition(final String name, final State from, final State to, final boolean guarded) {
+        if (!guarded) {
+            return new BaseTransition(name, from, to);
+        }
+        return new BaseTransition(name, from, to) {
+            @Override
+            public boolean isAllowed() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.metrics.Metrics;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import io.github.mrshoenel.stateMachines.transition.TransitionArgument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Executes transitions ({@link Transition#transition()}) of a ring, with metrics
+ * disabled and enabled (see {@link Metrics}); each benchmark runs in its own fork, as
+ * metrics are switched at startup. The disabled variant is expected to be on par with
+ * {@link #uninstrumented()}, which executes the transitions without instrumentation.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private Transition[] transitions;
+
+    private int index;
+
+    @Setup
+    public void setup() {
+        final var machine = Machines.ring(16, 2, false);
+        final var states = new ArrayList<>(machine.getDefinedStates());
+        states.remove(machine);
+        this.transitions = states.stream().flatMap(s -> s.getAllDefinedTransitions().values().stream())
+            .toArray(Transition[]::new);
+    }
+
+    private Transition next() {
+        return this.transitions[(this.index++ & Integer.MAX_VALUE) % this.transitions.length];
+    }
+
+    /**
+     * Does what {@link Transition#transition()} does, without the instrumentation.
+     */
+    @Benchmark
+    @Fork(1)
+    public void uninstrumented() throws IllegalTransitionException {
+        final var transition = this.next();
+        if (!transition.isAllowed()) {
+            throw new IllegalTransitionException("This transition is currently disallowed.");
+        }
+        for (final TransitionArgument<?> arg : transition.getTransitionArguments().values()) {
+            if (!arg.hasValue()) {
+                throw new IllegalTransitionException("Argument '" + arg.getName() + "' has not been set.");
+            }
+        }
+        transition.getFromState().leave(transition);
+        transition.getToState().enter(transition);
+    }
+
+    @Benchmark
+    @Fork(1)
+    public void metricsDisabled() throws IllegalTransitionException {
+        this.next().transition();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + Metrics.ENABLED_PROPERTY + "=true")
+    public void metricsEnabled() throws IllegalTransitionException {
+        this.next().transition();
+    }
+}
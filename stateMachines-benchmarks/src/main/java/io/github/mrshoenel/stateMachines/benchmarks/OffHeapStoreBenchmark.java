@@ -0,0 +1,95 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.OffHeapInstanceStore;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.compiled.TransitionKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Executes a transition on each of a million instances, stored either as objects on
+ * the heap ({@link StateMachineInstance}) or in an {@link OffHeapInstanceStore}. The
+ * scores are per instance.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(OffHeapStoreBenchmark.INSTANCES)
+public class OffHeapStoreBenchmark {
+    static final int INSTANCES = 1_000_000;
+
+    @Param({ "16" })
+    public int states;
+
+    private StateMachineInstance[] instances;
+
+    private OffHeapInstanceStore store;
+
+    private TransitionKey key;
+
+    private int[] steps;
+
+    @Setup
+    public void setup() throws Exception {
+        final var definition = CompiledStateMachine.compile(Machines.ring(this.states, 2, false));
+        this.key = definition.getTransitionKey("t0");
+        this.steps = new int[] { this.key.getId() };
+
+        this.instances = new StateMachineInstance[INSTANCES];
+        this.store = OffHeapInstanceStore.allocate(definition, INSTANCES);
+        this.store.allocate(INSTANCES);
+        final var start = definition.getTransitionKey("start");
+        for (int id = 0; id < INSTANCES; id++) {
+            this.instances[id] = definition.newInstance().transition(start);
+            this.store.transition(id, start);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.store.close();
+    }
+
+    @Benchmark
+    public int heapInstances() {
+        int failed = 0;
+        for (final var instance : this.instances) {
+            failed += instance.applyAll(this.steps) + 1;
+        }
+        return failed;
+    }
+
+    @Benchmark
+    public int offHeapStore() {
+        int failed = 0;
+        for (int id = 0; id < INSTANCES; id++) {
+            failed += this.store.applyAll(id, this.steps) + 1;
+        }
+        return failed;
+    }
+
+    @Benchmark
+    public int offHeapStoreRange() {
+        return this.store.transitionAll(0, INSTANCES, this.key);
+    }
+}
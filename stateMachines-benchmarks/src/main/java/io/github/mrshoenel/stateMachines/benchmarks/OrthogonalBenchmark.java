@@ -0,0 +1,109 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.OrthogonalStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Dispatches an event to an {@link OrthogonalStateMachine} with a varying amount of
+ * isolated regions, each of which toggles between two states whose enter-hook burns
+ * a fixed amount of CPU. Executed on the calling thread, the throughput drops with
+ * each region added; executed in parallel on a {@link ForkJoinPool} with one worker
+ * per region, it stays roughly constant, up to the amount of available cores.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrthogonalBenchmark {
+
+    @Param({ "1", "2", "4", "8" })
+    public int regions;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    /**
+     * The CPU burnt per entered state, see {@link Blackhole#consumeCPU(long)}.
+     */
+    @Param({ "0", "10000" })
+    public long work;
+
+    private OrthogonalStateMachine machine;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        this.machine = new OrthogonalStateMachine("orthogonal");
+        for (int r = 0; r < this.regions; r++) {
+            this.machine.defineRegion(this.toggle("r" + r), true);
+        }
+        this.machine.dispatch("start");
+
+        if (this.parallel) {
+            this.pool = new ForkJoinPool(this.regions);
+            this.machine.setPool(this.pool);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int dispatch() {
+        return this.machine.dispatch("toggle");
+    }
+
+    /**
+     * A region with the states a &lt;-&gt; b, and a transition from the region to a.
+     */
+    private BaseStateMachine toggle(final String name) {
+        final var region = new BaseStateMachine(name);
+        final var a = this.state(name + "-a");
+        final var b = this.state(name + "-b");
+        region.defineState(a).defineState(b);
+        region.setTransition(new BaseTransition("start", region, a));
+        a.setTransition(new BaseTransition("toggle", a, b));
+        b.setTransition(new BaseTransition("toggle", b, a));
+        return region;
+    }
+
+    private BaseState state(final String name) {
+        final long work = this.work;
+        return new BaseState(name) {
+            @Override
+            public void enter(final Transition usingTransition) {
+                Blackhole.consumeCPU(work);
+                super.enter(usingTransition);
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchArgumentException;
+import io.github.mrshoenel.stateMachines.exception.NoValueSetException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.ArgumentFrame;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.BaseTransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.LongTransitionArgument;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Executes a transition whose 'to'-state sums up a long-argument, which is either a
+ * generic {@link BaseTransitionArgument} or a {@link LongTransitionArgument}. The
+ * values exceed the cache of {@link Long#valueOf(long)}, so that boxing allocates.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveArgumentBenchmark {
+    private BaseTransitionArgument<Long> generic;
+
+    private LongTransitionArgument primitive;
+
+    private BaseTransition genericTransition, primitiveTransition;
+
+    private long value = 1L << 20, sum;
+
+    @Setup
+    public void setup() {
+        this.generic = new BaseTransitionArgument<>(Long.class, "amount");
+        this.primitive = new LongTransitionArgument("amount");
+
+        this.genericTransition = new BaseTransition("generic", new BaseState("s1"), new BaseState("s2") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                try {
+                    sum += frame.get(generic);
+                } catch (NoSuchArgumentException | NoValueSetException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }).setArgument(this.generic);
+
+        this.primitiveTransition = new BaseTransition("primitive", new BaseState("s1"), new BaseState("s2") {
+            @Override
+            public void enter(final Transition usingTransition, final ArgumentFrame frame) {
+                try {
+                    sum += frame.getLong(primitive);
+                } catch (NoSuchArgumentException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }).setArgument(this.primitive);
+    }
+
+    @Benchmark
+    public long genericArgument() throws IllegalTransitionException {
+        this.generic.setValue(this.value++);
+        this.genericTransition.transition();
+        return this.sum;
+    }
+
+    @Benchmark
+    public long primitiveArgument() throws IllegalTransitionException {
+        this.primitive.setLong(this.value++);
+        this.primitiveTransition.transition();
+        return this.sum;
+    }
+
+    @Benchmark
+    public long genericFrame() throws IllegalTransitionException, NoSuchArgumentException {
+        try (final var frame = ArgumentFrame.acquire(this.genericTransition)) {
+            this.genericTransition.transitionWith(frame.set(this.generic, this.value++));
+        }
+        return this.sum;
+    }
+
+    @Benchmark
+    public long primitiveFrame() throws IllegalTransitionException, NoSuchArgumentException {
+        try (final var frame = ArgumentFrame.acquire(this.primitiveTransition)) {
+            this.primitiveTransition.transitionWith(frame.setLong(this.primitive, this.value++));
+        }
+        return this.sum;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.exception.StateMachineArtifactException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.BaseTransition;
+import io.github.mrshoenel.stateMachines.transition.TransitionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Attempts to execute a transition that the current state of a {@link
+ * BlackBoxStateMachine} does not have, as a stale request would, and a transition
+ * that is disallowed. Compares throwing (with and without stack traces, see {@link
+ * StateMachineArtifactException#STACKLESS}) to the non-throwing tryTransition-variants.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectionBenchmark {
+    private BlackBoxStateMachine<BaseStateMachine> blackBox;
+
+    private BaseTransition disallowed;
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException {
+        final var machine = new BaseStateMachine("m");
+        final var s1 = new BaseState("s1");
+        final var s2 = new BaseState("s2");
+        machine.defineState(s1).defineState(s2);
+        machine.setTransition(new BaseTransition("start", machine, s1));
+        this.disallowed = new BaseTransition("disallowed", s1, s2) {
+            @Override
+            public boolean isAllowed() {
+                return false;
+            }
+        };
+        s1.setTransition(this.disallowed);
+
+        this.blackBox = new BlackBoxStateMachine<>(machine);
+        this.blackBox.transition("start");
+    }
+
+    private boolean staleThrowing() throws IllegalTransitionException, NoSuchStateException {
+        try {
+            this.blackBox.transition("start");
+            return true;
+        } catch (NoSuchTransitionException nstEx) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    public boolean staleRequestThrowing() throws IllegalTransitionException, NoSuchStateException {
+        return this.staleThrowing();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + StateMachineArtifactException.STACKLESS_PROPERTY + "=true")
+    public boolean staleRequestThrowingStackless() throws IllegalTransitionException, NoSuchStateException {
+        return this.staleThrowing();
+    }
+
+    @Benchmark
+    @Fork(1)
+    public TransitionResult staleRequestTry() {
+        return this.blackBox.tryTransition("start");
+    }
+
+    @Benchmark
+    @Fork(1)
+    public boolean disallowedThrowing() {
+        try {
+            this.disallowed.transition();
+            return true;
+        } catch (IllegalTransitionException itEx) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    public TransitionResult disallowedTry() {
+        return this.disallowed.tryTransition();
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Replays a long sequence of transitions, one call per step or using applyAll(),
+ * on a {@link BlackBoxStateMachine} and on a {@link StateMachineInstance}. The
+ * scores are per step.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayBenchmark {
+    private static final int STEPS = 1024;
+
+    @Param({ "16", "256" })
+    public int states;
+
+    @Param({ "1", "8" })
+    public int transitions;
+
+    private BlackBoxStateMachine<BaseStateMachine> blackBox;
+
+    private StateMachineInstance instance;
+
+    private List<String> names;
+
+    private int[] ids;
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException {
+        this.blackBox = new BlackBoxStateMachine<>(Machines.ring(this.states, this.transitions, false));
+        this.blackBox.transition("start");
+
+        final var definition = CompiledStateMachine.compile(Machines.ring(this.states, this.transitions, false));
+        this.instance = definition.newInstance().transition("start");
+
+        // Every state of the ring has the same transitions, so any sequence is valid.
+        this.names = new ArrayList<>(STEPS);
+        this.ids = new int[STEPS];
+        for (int i = 0; i < STEPS; i++) {
+            this.names.add("t" + (i % this.transitions));
+            this.ids[i] = definition.getTransitionKey(this.names.get(i)).getId();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public BlackBoxStateMachine<BaseStateMachine> blackBoxTransitions()
+        throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException
+    {
+        for (final var name : this.names) {
+            this.blackBox.transition(name);
+        }
+        return this.blackBox;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int blackBoxApplyAll() {
+        return this.blackBox.applyAll(this.names);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public StateMachineInstance instanceTransitions() throws IllegalTransitionException, NoSuchTransitionException {
+        for (final var name : this.names) {
+            this.instance.transition(name);
+        }
+        return this.instance;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int instanceApplyAllNames() {
+        return this.instance.applyAll(this.names);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public int instanceApplyAllIds() {
+        return this.instance.applyAll(this.ids);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.transition.simplePoker.SimplePlayer;
+import io.github.mrshoenel.stateMachines.transition.simplePoker.SimplePokerGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Plays the {@link SimplePokerGame} sample (from the library's tests) with a variable
+ * amount of players, the same way the unit-test TestSimplePoker does. The sample
+ * logs every transition to {@link System#out}, which is discarded while benchmarking.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimplePokerBenchmark {
+
+    @Param({ "2", "4", "8" })
+    public int players;
+
+    private PrintStream systemOut;
+
+    @Setup
+    public void setup() {
+        this.systemOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(this.systemOut);
+    }
+
+    @Benchmark
+    public SimplePokerGame playGame() throws IllegalTransitionException {
+        final var game = new SimplePokerGame();
+        for (int i = 0; i < this.players; i++) {
+            game.players.add(new SimplePlayer("Player " + i));
+        }
+
+        BaseState deep = game;
+        deep.getTransitions().get("trans_to_[SimplePokerGameInitialState: SimplePokerGameInitialState]").transition();
+        deep = (BaseState) game.getCurrentStateDeep();
+        deep.getTransitions().get("trans_to_[SimplePokerBetRound: SimplePokerBetRound]").transition();
+        deep = (BaseState) game.getCurrentStateDeep();
+        deep.getTransitions().get("trans_to_[BetRoundIteratePlayers: BetRoundIteratePlayers]").transition();
+        deep = (BaseState) game.getCurrentStateDeep();
+
+        // check - bet, then one raise and call per player, then fold
+        final var transitions = deep.getAllDefinedTransitions();
+        transitions.get("check").transition();
+        transitions.get("bet").transition();
+        for (int i = 0; i < this.players; i++) {
+            transitions.get("raise").transition();
+            transitions.get("call").transition();
+        }
+        transitions.get("fold").transition();
+
+        return game;
+    }
+}
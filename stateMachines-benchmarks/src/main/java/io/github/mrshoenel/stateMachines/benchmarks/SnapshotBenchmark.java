@@ -0,0 +1,82 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.compiled.CompiledStateMachine;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotCodec;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotReader;
+import io.github.mrshoenel.stateMachines.compiled.SnapshotWriter;
+import io.github.mrshoenel.stateMachines.compiled.StateMachineInstance;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.stateMachine.StateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Takes and restores snapshots ({@link SnapshotCodec}) of instances and of machines
+ * built using the authoring API, with the active path going through the given amount
+ * of nested machines.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    @Param({ "1", "8" })
+    public int depth;
+
+    private SnapshotCodec codec;
+
+    private StateMachineInstance instance;
+
+    private BaseStateMachine machine;
+
+    private SnapshotWriter writer;
+
+    private byte[] snapshot;
+
+    @Setup
+    public void setup() {
+        this.machine = Machines.nested(this.depth);
+        this.codec = new SnapshotCodec(CompiledStateMachine.compile(this.machine));
+        this.instance = this.codec.getDefinition().newInstance();
+        this.writer = new SnapshotWriter();
+        this.snapshot = this.codec.snapshot(this.instance);
+    }
+
+    @Benchmark
+    public SnapshotWriter snapshotInstance() {
+        this.codec.write(this.instance, this.writer.reset());
+        return this.writer;
+    }
+
+    @Benchmark
+    public StateMachineInstance restoreInstance() {
+        return this.codec.read(new SnapshotReader(this.snapshot), this.instance);
+    }
+
+    @Benchmark
+    public SnapshotWriter snapshotMachine() {
+        this.codec.write(this.machine, this.writer.reset());
+        return this.writer;
+    }
+
+    @Benchmark
+    public StateMachine restoreMachine() {
+        return this.codec.read(new SnapshotReader(this.snapshot), this.machine);
+    }
+}
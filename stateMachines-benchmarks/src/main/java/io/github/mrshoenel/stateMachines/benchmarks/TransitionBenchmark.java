@@ -0,0 +1,120 @@
+package io.github.mrshoenel.stateMachines.benchmarks;
+
+import io.github.mrshoenel.stateMachines.blackbox.BlackBoxStateMachine;
+import io.github.mrshoenel.stateMachines.exception.IllegalTransitionException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchStateException;
+import io.github.mrshoenel.stateMachines.exception.NoSuchTransitionException;
+import io.github.mrshoenel.stateMachines.state.BaseState;
+import io.github.mrshoenel.stateMachines.stateMachine.BaseStateMachine;
+import io.github.mrshoenel.stateMachines.transition.Transition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks the core paths of executing and listing transitions on machines of
+ * various sizes (states × transitions per state), with and without guards.
+ *
+ * @author Sebastian Hönel development@hoenel.net
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransitionBenchmark {
+
+    @Param({ "16", "256" })
+    public int states;
+
+    @Param({ "1", "8" })
+    public int transitions;
+
+    @Param({ "false", "true" })
+    public boolean guarded;
+
+    private BaseStateMachine machine;
+
+    private BlackBoxStateMachine<BaseStateMachine> blackBox;
+
+    private Transition[] allTransitions;
+
+    private BaseState[] allStates;
+
+    private int index;
+
+    @Setup
+    public void setup() throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException {
+        this.machine = Machines.ring(this.states, this.transitions, this.guarded);
+
+        final var states = new ArrayList<>(this.machine.getDefinedStates());
+        states.remove(this.machine);
+        this.allStates = states.toArray(BaseState[]::new);
+        this.allTransitions = states.stream().flatMap(s -> s.getAllDefinedTransitions().values().stream())
+            .toArray(Transition[]::new);
+
+        this.blackBox = new BlackBoxStateMachine<>(Machines.ring(this.states, this.transitions, this.guarded));
+        this.blackBox.transition("start");
+    }
+
+    private int next(final int length) {
+        return (this.index++ & Integer.MAX_VALUE) % length;
+    }
+
+    /**
+     * {@link Transition#transition()}; note that the transitions of the ring do not
+     * need to be executed in order, as they do not check the current state.
+     */
+    @Benchmark
+    public void transition() throws IllegalTransitionException {
+        this.allTransitions[this.next(this.allTransitions.length)].transition();
+    }
+
+    /**
+     * {@link BaseState#getTransitions()}
+     */
+    @Benchmark
+    public void getTransitions(final Blackhole blackhole) {
+        blackhole.consume(this.allStates[this.next(this.allStates.length)].getTransitions());
+    }
+
+    /**
+     * {@link BaseState#forEachAllowedTransition(java.util.function.Consumer)}
+     */
+    @Benchmark
+    public void forEachAllowedTransition(final Blackhole blackhole) {
+        this.allStates[this.next(this.allStates.length)].forEachAllowedTransition(blackhole::consume);
+    }
+
+    /**
+     * {@link BlackBoxStateMachine#transition(String)}, walking along the ring.
+     */
+    @Benchmark
+    public BlackBoxStateMachine<BaseStateMachine> blackBoxTransition()
+        throws IllegalTransitionException, NoSuchStateException, NoSuchTransitionException
+    {
+        return this.blackBox.transition("t0");
+    }
+
+    /**
+     * {@link BlackBoxStateMachine#getTransitions()}
+     */
+    @Benchmark
+    public void blackBoxGetTransitions(final Blackhole blackhole) {
+        blackhole.consume(this.blackBox.getTransitions());
+    }
+}